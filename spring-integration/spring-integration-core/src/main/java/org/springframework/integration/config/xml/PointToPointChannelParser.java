@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -176,6 +176,7 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 			queueBuilder.addConstructorArgReference(storeRef);
 			queueBuilder.addConstructorArgValue(new TypedStringValue(storeRef).getValue() + ":" + channel);
 			parseQueueCapacity(queueBuilder, queueElement);
+			IntegrationNamespaceUtils.setValueIfAttributeDefined(queueBuilder, queueElement, "poll-batch-size");
 			builder.addConstructorArgValue(queueBuilder.getBeanDefinition());
 			return true;
 		}
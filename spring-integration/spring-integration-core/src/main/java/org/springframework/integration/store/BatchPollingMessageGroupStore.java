@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.store;
+
+import java.util.List;
+
+import org.springframework.integration.Message;
+
+/**
+ * A {@link MessageGroupStore} that can remove several messages from a group in a
+ * single operation, for example a database-backed store claiming a number of rows
+ * with one query.
+ *
+ * @since 3.0
+ *
+ */
+public interface BatchPollingMessageGroupStore extends MessageGroupStore {
+
+	/**
+	 * Poll up to maxMessages messages from the group, oldest first; the messages
+	 * are removed from the group.
+	 * @param groupId the group id.
+	 * @param maxMessages the maximum number of messages to return.
+	 * @return the messages; an empty list if the group has no messages.
+	 */
+	List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages);
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,9 @@ import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -29,6 +32,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.integration.Message;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 /**
@@ -36,6 +41,12 @@ import org.springframework.util.Assert;
  * the face of transaction rollback (assuming the store is transactional) and also to ensure messages are not lost if
  * the process dies (assuming the store is durable). To use the queue across process re-starts, the same group id
  * must be provided, so it needs to be unique but identifiable with a single logical instance of the queue.
+ * <p>
+ * If the store is a {@link BatchPollingMessageGroupStore}, setting a {@link #setPollBatchSize(int) pollBatchSize}
+ * greater than 1 causes messages to be removed from the store in batches. {@link #drainTo(Collection, int)} always
+ * uses batches in that case; single polls only do so when a transaction is active: the remainder of the batch is
+ * bound to the transaction and returned by subsequent polls on the same thread (for example, a poller with
+ * max-messages-per-poll) and any messages not consumed by the time the transaction commits are returned to the store.
  *
  * @author Dave Syer
  * @author Oleg Zhurakousky
@@ -63,6 +74,8 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 
 	private final Condition messageStoreNotEmpty;
 
+	private volatile int pollBatchSize = 1;
+
 	public MessageGroupQueue(MessageGroupStore messageGroupStore, Object groupId) {
 		this(messageGroupStore, groupId, DEFAULT_CAPACITY, new ReentrantLock(true));
 	}
@@ -88,6 +101,21 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		this.capacity = capacity;
 	}
 
+	/**
+	 * The number of messages removed from a {@link BatchPollingMessageGroupStore} in one
+	 * operation; ignored for other stores. Default 1 (no batching). When polling
+	 * transactionally, this should not exceed the number of messages consumed in each
+	 * transaction (max-messages-per-poll); messages that are not consumed are returned
+	 * to the store when the transaction commits and hence lose their position in the
+	 * queue.
+	 * @param pollBatchSize the pollBatchSize to set
+	 * @since 3.0
+	 */
+	public void setPollBatchSize(int pollBatchSize) {
+		Assert.isTrue(pollBatchSize > 0, "'pollBatchSize' must be greater than 0");
+		this.pollBatchSize = pollBatchSize;
+	}
+
 	public Iterator<Message<?>> iterator() {
 		return getMessages().iterator();
 	}
@@ -124,7 +152,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		storeLock.lockInterruptibly();
 
 		try {
-			while (this.size() == 0 && timeoutInNanos > 0){
+			while (!this.hasBufferedMessages() && this.size() == 0 && timeoutInNanos > 0){
 				timeoutInNanos = this.messageStoreNotEmpty.awaitNanos(timeoutInNanos);
 			}
 			message = this.doPoll();
@@ -166,10 +194,28 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		try {
 			storeLock.lockInterruptibly();
 			try {
-				Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId);
-				for (int i = 0; i < maxElements && message != null; i++) {
+				Message<?> message;
+				while (list.size() < maxElements && (message = this.pollBufferedMessage()) != null) {
 					list.add(message);
+				}
+				if (this.pollBatchSize > 1 && this.messageGroupStore instanceof BatchPollingMessageGroupStore) {
+					BatchPollingMessageGroupStore store = (BatchPollingMessageGroupStore) this.messageGroupStore;
+					int batchSize;
+					List<Message<?>> messages;
+					do {
+						batchSize = Math.min(this.pollBatchSize, maxElements - list.size());
+						messages = batchSize > 0 ? store.pollMessagesFromGroup(groupId, batchSize)
+								: new ArrayList<Message<?>>();
+						list.addAll(messages);
+					}
+					while (messages.size() == batchSize && batchSize > 0);
+				}
+				else {
 					message = this.messageGroupStore.pollMessageFromGroup(groupId);
+					for (int i = list.size(); i < maxElements && message != null; i++) {
+						list.add(message);
+						message = this.messageGroupStore.pollMessageFromGroup(groupId);
+					}
 				}
 				this.messageStoreNotFull.signal();
 			}
@@ -254,7 +300,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		storeLock.lockInterruptibly();
 
 		try {
-			while (this.size() == 0){
+			while (!this.hasBufferedMessages() && this.size() == 0){
 				this.messageStoreNotEmpty.await();
 			}
 			message = this.doPoll();
@@ -275,11 +321,55 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 	 * IllegalMonitorStateException may be thrown
 	 */
 	private Message<?> doPoll() {
-		Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId);
+		Message<?> message = this.pollBufferedMessage();
+		if (message == null) {
+			if (this.pollBatchSize > 1 && this.messageGroupStore instanceof BatchPollingMessageGroupStore
+					&& TransactionSynchronizationManager.isSynchronizationActive()
+					&& TransactionSynchronizationManager.isActualTransactionActive()) {
+				message = this.doBatchPoll();
+			}
+			else {
+				message = this.messageGroupStore.pollMessageFromGroup(groupId);
+			}
+		}
 		this.messageStoreNotFull.signal();
 		return message;
 	}
 
+	/**
+	 * Polls a batch of messages and binds all but the first to the current transaction.
+	 */
+	@SuppressWarnings("unchecked")
+	private Message<?> doBatchPoll() {
+		List<Message<?>> messages = ((BatchPollingMessageGroupStore) this.messageGroupStore)
+				.pollMessagesFromGroup(groupId, this.pollBatchSize);
+		if (messages.isEmpty()) {
+			return null;
+		}
+		if (messages.size() > 1) {
+			Queue<Message<?>> buffer = (Queue<Message<?>>) TransactionSynchronizationManager.getResource(this);
+			if (buffer == null) {
+				buffer = new LinkedList<Message<?>>();
+				TransactionSynchronizationManager.bindResource(this, buffer);
+				TransactionSynchronizationManager.registerSynchronization(new BufferedMessagesSynchronization(buffer));
+			}
+			buffer.addAll(messages.subList(1, messages.size()));
+		}
+		return messages.get(0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Message<?> pollBufferedMessage() {
+		Queue<Message<?>> buffer = (Queue<Message<?>>) TransactionSynchronizationManager.getResource(this);
+		return buffer == null ? null : buffer.poll();
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean hasBufferedMessages() {
+		Queue<Message<?>> buffer = (Queue<Message<?>>) TransactionSynchronizationManager.getResource(this);
+		return buffer != null && !buffer.isEmpty();
+	}
+
 	/**
 	 * It is assumed that the 'storeLock' is being held by the caller, otherwise
 	 * IllegalMonitorStateException may be thrown
@@ -293,4 +383,46 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		}
 		return offered;
 	}
+
+	/**
+	 * Returns messages that were polled in a batch, but not consumed, to the store
+	 * before the transaction commits.
+	 */
+	private class BufferedMessagesSynchronization extends TransactionSynchronizationAdapter {
+
+		private final Queue<Message<?>> buffer;
+
+		public BufferedMessagesSynchronization(Queue<Message<?>> buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			if (this.buffer.isEmpty()) {
+				return;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Returning " + this.buffer.size() + " unconsumed message(s) to group " + groupId);
+			}
+			final Lock storeLock = MessageGroupQueue.this.storeLock;
+			storeLock.lock();
+			try {
+				Message<?> message;
+				while ((message = this.buffer.poll()) != null) {
+					messageGroupStore.addMessageToGroup(groupId, message);
+				}
+				messageStoreNotEmpty.signalAll();
+			}
+			finally {
+				storeLock.unlock();
+			}
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(MessageGroupQueue.this);
+		}
+
+	}
+
 }
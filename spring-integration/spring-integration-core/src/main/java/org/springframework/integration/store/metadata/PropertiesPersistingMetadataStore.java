@@ -21,11 +21,14 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 import org.springframework.util.DefaultPropertiesPersister;
 
@@ -34,6 +37,12 @@ import org.springframework.util.DefaultPropertiesPersister;
  * each instance should be constructed with the unique key from which unique file name
  * will be generated. The file name will be 'persistentKey' + ".last.entry".
  * Files will be written to the 'java.io.tmpdir' +  "/spring-integration/".
+ * <p>
+ * The metadata is written when the store is destroyed and, if a
+ * {@link #setFlushInterval(long) flushInterval} is set, periodically on a
+ * {@link TaskScheduler} thread when it has changed; callers of {@link #put(String, String)}
+ * are never blocked by file writes. The file is replaced atomically (where the file
+ * system supports it) by writing to a temporary file and renaming it.
  *
  * @author Oleg Zhurakousky
  * @author Mark Fisher
@@ -51,12 +60,44 @@ public class PropertiesPersistingMetadataStore implements MetadataStore, Initial
 
 	private volatile String baseDirectory = System.getProperty("java.io.tmpdir") + "/spring-integration/";
 
+	private final AtomicBoolean dirty = new AtomicBoolean();
+
+	private final Object saveMonitor = new Object();
+
+	private volatile long flushInterval;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ScheduledFuture<?> flushTask;
+
 
 	public void setBaseDirectory(String baseDirectory) {
 		Assert.hasText(baseDirectory, "'baseDirectory' must be non-empty");
 		this.baseDirectory = baseDirectory;
 	}
 
+	/**
+	 * When greater than 0, changed metadata is written to the file every flushInterval
+	 * milliseconds, using the {@link #setTaskScheduler(TaskScheduler) taskScheduler}, so
+	 * that less is lost if the application fails. Default 0 (only written when the store
+	 * is destroyed).
+	 * @param flushInterval the flushInterval.
+	 * @since 3.0
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * The scheduler used to write changed metadata; required if a
+	 * {@link #setFlushInterval(long) flushInterval} is set.
+	 * @param taskScheduler the taskScheduler.
+	 * @since 3.0
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
 	public void afterPropertiesSet() throws Exception {
 		File baseDir = new File(baseDirectory);
 		baseDir.mkdirs();
@@ -71,25 +112,70 @@ public class PropertiesPersistingMetadataStore implements MetadataStore, Initial
 					+ this.file.getAbsolutePath() + "'", e);
 		}
 		this.loadMetadata();
+		if (this.flushInterval > 0) {
+			Assert.notNull(this.taskScheduler, "A 'taskScheduler' is required when a 'flushInterval' is set");
+			this.flushTask = this.taskScheduler.scheduleWithFixedDelay(new Runnable() {
+
+				public void run() {
+					flush();
+				}
+
+			}, this.flushInterval);
+		}
 	}
 
 	public void put(String key, String value) {
 		this.metadata.setProperty(key, value);
+		this.dirty.set(true);
 	}
 
 	public String get(String key) {
 		return this.metadata.getProperty(key);
 	}
 
+	/**
+	 * Write the metadata to the file if it has changed since it was last written.
+	 * @since 3.0
+	 */
+	public void flush() {
+		if (this.dirty.compareAndSet(true, false) && !this.saveMetadata()) {
+			this.dirty.set(true);
+		}
+	}
+
 	public void destroy() throws Exception {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+		}
+		this.dirty.set(false);
 		this.saveMetadata();
 	}
 
-	private void saveMetadata() {
+	private boolean saveMetadata() {
+		synchronized (this.saveMonitor) {
+			// Properties is synchronized; write a snapshot so puts are not blocked while writing
+			return this.doSaveMetadata((Properties) this.metadata.clone());
+		}
+	}
+
+	private boolean doSaveMetadata(Properties snapshot) {
+		File tempFile = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
 		FileOutputStream outputStream = null;
+		boolean written = false;
 		try {
-			outputStream = new FileOutputStream(this.file);
-			this.persister.store(this.metadata, outputStream, "Last feed entry");
+			outputStream = new FileOutputStream(tempFile);
+			this.persister.store(snapshot, outputStream, "Last feed entry");
+			outputStream.close();
+			outputStream = null;
+			if (!tempFile.renameTo(this.file)) {
+				// some platforms cannot rename over an existing file
+				this.file.delete();
+				if (!tempFile.renameTo(this.file)) {
+					throw new IOException("Failed to rename " + tempFile.getAbsolutePath() + " to "
+							+ this.file.getAbsolutePath());
+				}
+			}
+			written = true;
 		}
 		catch (IOException e) {
 			// not fatal for the functionality of the component
@@ -104,9 +190,13 @@ public class PropertiesPersistingMetadataStore implements MetadataStore, Initial
 			}
 			catch (IOException e) {
 				// not fatal for the functionality of the component
-				logger.warn("Failed to close FileOutputStream to " + this.file.getAbsolutePath(), e);
+				logger.warn("Failed to close FileOutputStream to " + tempFile.getAbsolutePath(), e);
+			}
+			if (!written) {
+				tempFile.delete();
 			}
 		}
+		return written;
 	}
 
 	private void loadMetadata() {
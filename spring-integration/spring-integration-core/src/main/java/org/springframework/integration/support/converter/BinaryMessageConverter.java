@@ -0,0 +1,532 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.support.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * Converts a {@link Message} to/from a compact binary form, without an intermediate
+ * {@link Map} or text representation.
+ * <p>
+ * The encoded form is a version byte, a length-prefixed header table and then the
+ * payload. Standard header names are written as a single byte index; other names
+ * as length-prefixed UTF-8, which is interned when decoded. Header values of common
+ * types (String, numeric and boolean wrappers, byte[], UUID) are written natively;
+ * other values are not carried. The payload is written as raw bytes for byte[] and
+ * UTF-8 for String; other payloads cannot be converted.
+ * <p>
+ * Because decoding Java-serialized data from an untrusted source can instantiate
+ * arbitrary classes, other {@link Serializable} header values and payloads are only
+ * written and read using Java serialization if their classes match the
+ * {@link #setAllowedSerializableClasses(String...) allowedSerializableClasses}.
+ * <p>
+ * The {@code id} and {@code timestamp} headers are never carried; the decoded
+ * message gets new ones.
+ * <p>
+ * The encoded form does not include its overall length, so it must be delimited
+ * when written to a stream.
+ *
+ * @since 3.0
+ */
+public class BinaryMessageConverter implements MessageConverter {
+
+	private static final byte VERSION = 1;
+
+	private static final String[] STANDARD_HEADERS = new String[] {
+		null,
+		MessageHeaders.CORRELATION_ID,
+		MessageHeaders.REPLY_CHANNEL,
+		MessageHeaders.ERROR_CHANNEL,
+		MessageHeaders.EXPIRATION_DATE,
+		MessageHeaders.PRIORITY,
+		MessageHeaders.SEQUENCE_NUMBER,
+		MessageHeaders.SEQUENCE_SIZE,
+		MessageHeaders.SEQUENCE_DETAILS,
+		MessageHeaders.CONTENT_TYPE,
+		MessageHeaders.POSTPROCESS_RESULT,
+	};
+
+	private static final Map<String, Byte> STANDARD_HEADER_INDEXES = new HashMap<String, Byte>();
+
+	static {
+		for (int i = 1; i < STANDARD_HEADERS.length; i++) {
+			STANDARD_HEADER_INDEXES.put(STANDARD_HEADERS[i], (byte) i);
+		}
+	}
+
+	private static final int MAX_INTERNED_NAMES = 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final byte TYPE_NULL = 0;
+
+	private static final byte TYPE_STRING = 1;
+
+	private static final byte TYPE_INTEGER = 2;
+
+	private static final byte TYPE_LONG = 3;
+
+	private static final byte TYPE_BOOLEAN = 4;
+
+	private static final byte TYPE_DOUBLE = 5;
+
+	private static final byte TYPE_FLOAT = 6;
+
+	private static final byte TYPE_SHORT = 7;
+
+	private static final byte TYPE_BYTE = 8;
+
+	private static final byte TYPE_CHARACTER = 9;
+
+	private static final byte TYPE_BYTES = 10;
+
+	private static final byte TYPE_UUID = 11;
+
+	private static final byte TYPE_SERIALIZED = 12;
+
+	private final Log logger = LogFactory.getLog(this.getClass());
+
+	private final Map<String, String> internedNames = new ConcurrentHashMap<String, String>();
+
+	private final SerializingConverter serializingConverter = new SerializingConverter();
+
+	private volatile Set<String> headerNames;
+
+	private volatile String[] allowedSerializableClasses = new String[0];
+
+	private volatile boolean filterHeadersInToMessage;
+
+	/**
+	 * Headers to be converted in {@link #fromMessage(Message)}; by default, all
+	 * headers (other than {@code id} and {@code timestamp}) are converted.
+	 * {@link #toMessage(Object)} will populate all headers found in the
+	 * encoded message, unless {@link #setFilterHeadersInToMessage(boolean)
+	 * filterHeadersInToMessage} is true.
+	 * @param headerNames
+	 */
+	public void setHeaderNames(String... headerNames) {
+		this.headerNames = new HashSet<String>(Arrays.asList(headerNames));
+	}
+
+	/**
+	 * By default all headers in the encoded message passed to {@link #toMessage(Object)}
+	 * will be mapped. Set this property to 'true' if you wish to limit the inbound
+	 * headers to those in the #headerNames.
+	 * @param filterHeadersInToMessage
+	 */
+	public void setFilterHeadersInToMessage(boolean filterHeadersInToMessage) {
+		this.filterHeadersInToMessage = filterHeadersInToMessage;
+	}
+
+	/**
+	 * Patterns ({@code *} wildcards are supported, e.g. {@code com.example.*}) for the
+	 * names of the classes that may be written and read using Java serialization. When
+	 * decoding, every class in the serialized object graph, including serializable
+	 * superclasses (for example {@code java.lang.Number} for a {@code Long}), must
+	 * match. By default, no classes are allowed: header values of other types are
+	 * not carried, and other payloads cannot be converted. Use {@code *} only if the
+	 * encoded messages come from a trusted source.
+	 * @param allowedSerializableClasses the class name patterns.
+	 */
+	public void setAllowedSerializableClasses(String... allowedSerializableClasses) {
+		Assert.notNull(allowedSerializableClasses, "'allowedSerializableClasses' cannot be null");
+		this.allowedSerializableClasses = allowedSerializableClasses;
+	}
+
+	public <P> Message<P> toMessage(Object object) {
+		Assert.isInstanceOf(byte[].class, object, "This converter expects a byte[]");
+		ByteBuffer buffer = ByteBuffer.wrap((byte[]) object);
+		try {
+			byte version = buffer.get();
+			if (version != VERSION) {
+				throw new MessageConversionException("Unsupported encoding version: " + version, null);
+			}
+			int headerTableEnd = this.readLength(buffer);
+			headerTableEnd += buffer.position();
+			Map<String, Object> headers = new HashMap<String, Object>();
+			int headerCount = buffer.getShort() & 0xffff;
+			for (int i = 0; i < headerCount; i++) {
+				String name = this.readName(buffer);
+				Object value = this.readValue(buffer);
+				if (!this.filterHeadersInToMessage || this.headerNames == null || this.headerNames.contains(name)) {
+					headers.put(name, value);
+				}
+			}
+			buffer.position(headerTableEnd);
+			Object payload = this.readPayload(buffer);
+			@SuppressWarnings("unchecked")
+			Message<P> message = (Message<P>) MessageBuilder.withPayload(payload)
+					.copyHeaders(headers)
+					.build();
+			return message;
+		}
+		catch (MessageConversionException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new MessageConversionException("failed to decode Message", e);
+		}
+	}
+
+	public <P> Object fromMessage(Message<P> message) {
+		ByteArrayOutputStream headerTable = new ByteArrayOutputStream();
+		DataOutputStream headerStream = new DataOutputStream(headerTable);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream stream = new DataOutputStream(out);
+		try {
+			int headerCount = 0;
+			for (Entry<String, Object> entry : message.getHeaders().entrySet()) {
+				String name = entry.getKey();
+				if (MessageHeaders.ID.equals(name) || MessageHeaders.TIMESTAMP.equals(name)
+						|| (this.headerNames != null && !this.headerNames.contains(name))) {
+					continue;
+				}
+				if (this.writeHeader(headerStream, name, entry.getValue())) {
+					headerCount++;
+				}
+			}
+			if (headerCount > 0xffff) {
+				throw new MessageConversionException(message, "Too many headers: " + headerCount, null);
+			}
+			stream.writeByte(VERSION);
+			stream.writeInt(headerTable.size() + 2);
+			stream.writeShort(headerCount);
+			headerTable.writeTo(stream);
+			this.writePayload(stream, message.getPayload());
+			stream.flush();
+			return out.toByteArray();
+		}
+		catch (MessageConversionException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new MessageConversionException(message, "failed to encode Message", e);
+		}
+	}
+
+	/**
+	 * Writes the header if its value can be encoded.
+	 * @return true if the header was written.
+	 */
+	private boolean writeHeader(DataOutputStream stream, String name, Object value) throws IOException {
+		if (value != null && !isNativeType(value) && !this.isSerializationAllowed(value)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Header '" + name + "' is not of a supported or allowed serializable type"
+						+ " and will not be converted");
+			}
+			return false;
+		}
+		Byte index = STANDARD_HEADER_INDEXES.get(name);
+		if (index != null) {
+			stream.writeByte(index);
+		}
+		else {
+			stream.writeByte(0);
+			this.writeString(stream, name);
+		}
+		this.writeValue(stream, value);
+		return true;
+	}
+
+	private void writeValue(DataOutputStream stream, Object value) throws IOException {
+		if (value == null) {
+			stream.writeByte(TYPE_NULL);
+		}
+		else if (value instanceof String) {
+			stream.writeByte(TYPE_STRING);
+			this.writeString(stream, (String) value);
+		}
+		else if (value instanceof Integer) {
+			stream.writeByte(TYPE_INTEGER);
+			stream.writeInt((Integer) value);
+		}
+		else if (value instanceof Long) {
+			stream.writeByte(TYPE_LONG);
+			stream.writeLong((Long) value);
+		}
+		else if (value instanceof Boolean) {
+			stream.writeByte(TYPE_BOOLEAN);
+			stream.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof Double) {
+			stream.writeByte(TYPE_DOUBLE);
+			stream.writeDouble((Double) value);
+		}
+		else if (value instanceof Float) {
+			stream.writeByte(TYPE_FLOAT);
+			stream.writeFloat((Float) value);
+		}
+		else if (value instanceof Short) {
+			stream.writeByte(TYPE_SHORT);
+			stream.writeShort((Short) value);
+		}
+		else if (value instanceof Byte) {
+			stream.writeByte(TYPE_BYTE);
+			stream.writeByte((Byte) value);
+		}
+		else if (value instanceof Character) {
+			stream.writeByte(TYPE_CHARACTER);
+			stream.writeChar((Character) value);
+		}
+		else if (value instanceof byte[]) {
+			stream.writeByte(TYPE_BYTES);
+			this.writeBytes(stream, (byte[]) value);
+		}
+		else if (value instanceof UUID) {
+			stream.writeByte(TYPE_UUID);
+			stream.writeLong(((UUID) value).getMostSignificantBits());
+			stream.writeLong(((UUID) value).getLeastSignificantBits());
+		}
+		else {
+			stream.writeByte(TYPE_SERIALIZED);
+			this.writeBytes(stream, this.serializingConverter.convert(value));
+		}
+	}
+
+	private static boolean isNativeType(Object value) {
+		return value instanceof String || value instanceof Integer || value instanceof Long
+				|| value instanceof Boolean || value instanceof Double || value instanceof Float
+				|| value instanceof Short || value instanceof Byte || value instanceof Character
+				|| value instanceof byte[] || value instanceof UUID;
+	}
+
+	private boolean isSerializationAllowed(Object value) {
+		return value instanceof Serializable && this.isAllowed(value.getClass().getName());
+	}
+
+	private boolean isAllowed(String className) {
+		return PatternMatchUtils.simpleMatch(this.allowedSerializableClasses, className);
+	}
+
+	private void writePayload(DataOutputStream stream, Object payload) throws IOException {
+		if (payload instanceof byte[]) {
+			stream.writeByte(TYPE_BYTES);
+			stream.write((byte[]) payload);
+		}
+		else if (payload instanceof String) {
+			stream.writeByte(TYPE_STRING);
+			stream.write(((String) payload).getBytes(UTF_8));
+		}
+		else if (this.isSerializationAllowed(payload)) {
+			stream.writeByte(TYPE_SERIALIZED);
+			stream.write(this.serializingConverter.convert(payload));
+		}
+		else {
+			throw new MessageConversionException("Payload type " + payload.getClass().getName()
+					+ " is not supported; only byte[], String and allowed serializable classes can be converted",
+					null);
+		}
+	}
+
+	private void writeString(DataOutputStream stream, String string) throws IOException {
+		this.writeBytes(stream, string.getBytes(UTF_8));
+	}
+
+	private void writeBytes(DataOutputStream stream, byte[] bytes) throws IOException {
+		stream.writeInt(bytes.length);
+		stream.write(bytes);
+	}
+
+	private String readName(ByteBuffer buffer) {
+		int index = buffer.get() & 0xff;
+		if (index > 0) {
+			Assert.isTrue(index < STANDARD_HEADERS.length, "Unknown header index: " + index);
+			return STANDARD_HEADERS[index];
+		}
+		String name = this.readString(buffer);
+		String interned = this.internedNames.get(name);
+		if (interned != null) {
+			return interned;
+		}
+		if (this.internedNames.size() < MAX_INTERNED_NAMES) {
+			this.internedNames.put(name, name);
+		}
+		return name;
+	}
+
+	private Object readValue(ByteBuffer buffer) {
+		byte type = buffer.get();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_STRING:
+			return this.readString(buffer);
+		case TYPE_INTEGER:
+			return buffer.getInt();
+		case TYPE_LONG:
+			return buffer.getLong();
+		case TYPE_BOOLEAN:
+			return buffer.get() != 0;
+		case TYPE_DOUBLE:
+			return buffer.getDouble();
+		case TYPE_FLOAT:
+			return buffer.getFloat();
+		case TYPE_SHORT:
+			return buffer.getShort();
+		case TYPE_BYTE:
+			return buffer.get();
+		case TYPE_CHARACTER:
+			return buffer.getChar();
+		case TYPE_BYTES:
+			return this.readBytes(buffer);
+		case TYPE_UUID:
+			return new UUID(buffer.getLong(), buffer.getLong());
+		case TYPE_SERIALIZED:
+			return this.deserialize(this.readBytes(buffer));
+		default:
+			throw new IllegalArgumentException("Unknown value type: " + type);
+		}
+	}
+
+	private Object readPayload(ByteBuffer buffer) {
+		byte type = buffer.get();
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		switch (type) {
+		case TYPE_BYTES:
+			return bytes;
+		case TYPE_STRING:
+			return new String(bytes, UTF_8);
+		case TYPE_SERIALIZED:
+			return this.deserialize(bytes);
+		default:
+			throw new IllegalArgumentException("Unknown payload type: " + type);
+		}
+	}
+
+	private String readString(ByteBuffer buffer) {
+		int length = this.readLength(buffer);
+		String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+		buffer.position(buffer.position() + length);
+		return string;
+	}
+
+	private byte[] readBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[this.readLength(buffer)];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Read a length, which cannot exceed the remaining data, so that a corrupt or
+	 * hostile message cannot cause a large allocation.
+	 */
+	private int readLength(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new MessageConversionException("Invalid length " + length + " with " + buffer.remaining()
+					+ " bytes remaining", null);
+		}
+		return length;
+	}
+
+	private Object deserialize(byte[] bytes) {
+		if (this.allowedSerializableClasses.length == 0) {
+			throw new MessageConversionException("The message contains a serialized value, but no classes are allowed"
+					+ " to be deserialized; see 'allowedSerializableClasses'", null);
+		}
+		ObjectInputStream stream = null;
+		try {
+			stream = new AllowedClassesObjectInputStream(new ByteArrayInputStream(bytes),
+					ClassUtils.getDefaultClassLoader());
+			return stream.readObject();
+		}
+		catch (MessageConversionException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new MessageConversionException("Failed to deserialize value", e);
+		}
+		finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				}
+				catch (IOException e) {
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Only resolves classes matching the allowed patterns (and arrays of them, or of
+	 * primitives).
+	 */
+	private class AllowedClassesObjectInputStream extends ConfigurableObjectInputStream {
+
+		public AllowedClassesObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+			super(in, classLoader);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass classDesc) throws IOException, ClassNotFoundException {
+			String name = classDesc.getName();
+			String elementName = name;
+			while (elementName.startsWith("[")) {
+				elementName = elementName.substring(1);
+			}
+			if (elementName.startsWith("L") && elementName.endsWith(";")) {
+				elementName = elementName.substring(1, elementName.length() - 1);
+			}
+			else if (elementName.length() == 1 && !elementName.equals(name)) {
+				// an array of primitives
+				return super.resolveClass(classDesc);
+			}
+			if (!isAllowed(elementName)) {
+				throw new MessageConversionException("Class " + elementName
+						+ " is not allowed to be deserialized; see 'allowedSerializableClasses'", null);
+			}
+			return super.resolveClass(classDesc);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			throw new MessageConversionException("Proxy classes are not allowed to be deserialized", null);
+		}
+
+	}
+
+}
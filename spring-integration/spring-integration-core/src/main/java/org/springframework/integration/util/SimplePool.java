@@ -17,12 +17,15 @@ package org.springframework.integration.util;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,7 +36,12 @@ import org.springframework.util.Assert;
 /**
  * Implementation of {@link Pool} supporting dynamic resizing and a variable
  * timeout when attempting to obtain an item from the pool. Pool grows on
- * demand up to the limit.
+ * demand up to the limit. Threads waiting for an item are served in arrival order.
+ * <p>
+ * Idle items may optionally be discarded when they exceed a maximum idle time or
+ * lifetime. {@link #maintain()} can be invoked periodically (e.g. by a scheduler)
+ * to evict expired or stale idle items in the background and to pre-create items
+ * up to a minimum idle count.
  * @author Gary Russell
  * @since 2.2
  *
@@ -42,7 +50,7 @@ public class SimplePool<T> implements Pool<T> {
 
 	protected final Log logger = LogFactory.getLog(this.getClass());
 
-	private final Semaphore permits = new Semaphore(0);
+	private final Semaphore permits = new Semaphore(0, true);
 
 	private final AtomicInteger poolSize = new AtomicInteger();
 
@@ -56,6 +64,24 @@ public class SimplePool<T> implements Pool<T> {
 
 	private final Set<T> inUse = Collections.synchronizedSet(new HashSet<T>());
 
+	private final Map<T, Long> createdTimes = new ConcurrentHashMap<T, Long>();
+
+	private final Map<T, Long> idleTimes = new ConcurrentHashMap<T, Long>();
+
+	private final AtomicLong borrowedCount = new AtomicLong();
+
+	private final AtomicLong evictedCount = new AtomicLong();
+
+	private final AtomicLong totalWaitTime = new AtomicLong();
+
+	private final AtomicLong maxWaitTime = new AtomicLong();
+
+	private volatile long maxIdleTime;
+
+	private volatile long maxLifetime;
+
+	private volatile int minIdle;
+
 	private final PoolItemCallback<T> callback;
 
 	/**
@@ -136,6 +162,69 @@ public class SimplePool<T> implements Pool<T> {
 		return this.allocated.size();
 	}
 
+	/**
+	 * @return the number of times an item has been obtained from the pool.
+	 * @since 3.0
+	 */
+	public long getBorrowedCount() {
+		return this.borrowedCount.get();
+	}
+
+	/**
+	 * @return the number of items discarded because they were expired or stale.
+	 * @since 3.0
+	 */
+	public long getEvictedCount() {
+		return this.evictedCount.get();
+	}
+
+	/**
+	 * @return the cumulative time (milliseconds) callers have waited for an item.
+	 * @since 3.0
+	 */
+	public long getTotalWaitTime() {
+		return this.totalWaitTime.get();
+	}
+
+	/**
+	 * @return the longest time (milliseconds) a caller has waited for an item.
+	 * @since 3.0
+	 */
+	public long getMaxWaitTime() {
+		return this.maxWaitTime.get();
+	}
+
+	/**
+	 * Set the maximum time (milliseconds) an item may remain idle in the pool before
+	 * it is discarded. Default: 0 (no limit).
+	 * @param maxIdleTime the maximum idle time.
+	 * @since 3.0
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * Set the maximum time (milliseconds) an item is used from its creation; older
+	 * items are discarded instead of being returned to, or taken from, the pool.
+	 * Default: 0 (no limit).
+	 * @param maxLifetime the maximum lifetime.
+	 * @since 3.0
+	 */
+	public void setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * Set the number of idle items {@link #maintain()} attempts to keep available,
+	 * within the pool size. Default: 0.
+	 * @param minIdle the minimum idle count.
+	 * @since 3.0
+	 */
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
 	/**
 	 * Adjusts the wait timeout - the time for which getItem() will wait if no idle
 	 * entries are available.
@@ -154,6 +243,7 @@ public class SimplePool<T> implements Pool<T> {
 	public T getItem() {
 		boolean permitted = false;
 		try {
+			long start = System.currentTimeMillis();
 			try {
 				permitted = this.permits.tryAcquire(this.waitTimeout, TimeUnit.MILLISECONDS);
 			}
@@ -161,10 +251,14 @@ public class SimplePool<T> implements Pool<T> {
 				Thread.currentThread().interrupt();
 				throw new MessagingException("Interrupted awaiting a pooled resource", e);
 			}
+			finally {
+				this.recordWait(System.currentTimeMillis() - start);
+			}
 			if (!permitted) {
 				throw new IllegalStateException("Timed out while waiting to aquire a pool entry.");
 			}
 			T item = doGetItem();
+			this.borrowedCount.incrementAndGet();
 			return item;
 		}
 		catch (Exception e) {
@@ -178,29 +272,61 @@ public class SimplePool<T> implements Pool<T> {
 		}
 	}
 
+	private void recordWait(long waited) {
+		this.totalWaitTime.addAndGet(waited);
+		long max = this.maxWaitTime.get();
+		while (waited > max && !this.maxWaitTime.compareAndSet(max, waited)) {
+			max = this.maxWaitTime.get();
+		}
+	}
+
 	private T doGetItem() {
 		T item = this.available.poll();
 		if (item != null && logger.isDebugEnabled()) {
 			logger.debug("Obtained " + item + " from pool.");
 		}
 		if (item == null) {
-			item = this.callback.createForPool();
+			item = this.createItem();
 			if (logger.isDebugEnabled()) {
 				logger.debug("Obtained new " + item + ".");
 			}
-			allocated.add(item);
 		}
-		else if (this.callback.isStale(item)) {
+		else if (this.isExpired(item, System.currentTimeMillis()) || this.callback.isStale(item)) {
 			if (logger.isDebugEnabled()) {
-				logger.debug("Received a stale item, will attempt to get a new one.");
+				logger.debug("Received an expired or stale item, will attempt to get a new one.");
 			}
+			this.evictedCount.incrementAndGet();
 			doRemoveItem(item);
 			item = doGetItem();
 		}
+		this.idleTimes.remove(item);
 		this.inUse.add(item);
 		return item;
 	}
 
+	private T createItem() {
+		T item = this.callback.createForPool();
+		this.createdTimes.put(item, System.currentTimeMillis());
+		this.allocated.add(item);
+		return item;
+	}
+
+	private boolean isExpired(T item, long now) {
+		if (this.maxLifetime > 0) {
+			Long created = this.createdTimes.get(item);
+			if (created != null && now - created > this.maxLifetime) {
+				return true;
+			}
+		}
+		if (this.maxIdleTime > 0) {
+			Long idleSince = this.idleTimes.get(item);
+			if (idleSince != null && now - idleSince > this.maxIdleTime) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Returns an item to the pool.
 	 */
@@ -215,11 +341,20 @@ public class SimplePool<T> implements Pool<T> {
 					doRemoveItem(item);
 				}
 			}
+			else if (this.maxLifetime > 0 && this.isExpired(item, System.currentTimeMillis())) {
+				if (logger.isDebugEnabled()){
+					logger.debug("Discarding " + item + " - maximum lifetime exceeded");
+				}
+				this.evictedCount.incrementAndGet();
+				doRemoveItem(item);
+				permits.release();
+			}
 			else {
 				if (logger.isDebugEnabled()){
 					logger.debug("Releasing " + item + " back to the pool");
 				}
 				if (item != null) {
+					this.idleTimes.put(item, System.currentTimeMillis());
 					this.available.add(item);
 					this.inUse.remove(item);
 				}
@@ -240,9 +375,79 @@ public class SimplePool<T> implements Pool<T> {
 		}
 	}
 
+	/**
+	 * Discards idle items that have expired or are reported stale by the
+	 * {@link PoolItemCallback#isStale(Object)} (which may also serve to keep
+	 * connections alive), then creates new idle items until the minimum idle
+	 * count is reached, without exceeding the pool size. Intended to be invoked
+	 * periodically.
+	 * @since 3.0
+	 */
+	public void maintain() {
+		long now = System.currentTimeMillis();
+		int idle = this.available.size();
+		for (int i = 0; i < idle; i++) {
+			// an item being checked is accounted for like one obtained by getItem() so
+			// that a concurrent getItem() cannot create an item beyond the pool size
+			if (!this.permits.tryAcquire()) {
+				break;
+			}
+			try {
+				T item = this.available.poll();
+				if (item == null) {
+					break;
+				}
+				boolean discard;
+				try {
+					discard = this.isExpired(item, now) || this.callback.isStale(item);
+				}
+				catch (Exception e) {
+					discard = true;
+				}
+				if (discard) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Evicting idle " + item);
+					}
+					this.evictedCount.incrementAndGet();
+					doRemoveItem(item);
+				}
+				else {
+					this.available.add(item);
+				}
+			}
+			finally {
+				this.permits.release();
+			}
+		}
+		synchronized (this) {
+			while (this.available.size() < this.minIdle
+					&& this.allocated.size() < Math.min(this.poolSize.get(), this.targetPoolSize.get())) {
+				if (!this.permits.tryAcquire()) {
+					break;
+				}
+				try {
+					T item = this.createItem();
+					this.idleTimes.put(item, System.currentTimeMillis());
+					this.available.add(item);
+				}
+				catch (Exception e) {
+					if (logger.isWarnEnabled()) {
+						logger.warn("Failed to create an idle pool item", e);
+					}
+					break;
+				}
+				finally {
+					this.permits.release();
+				}
+			}
+		}
+	}
+
 	private void doRemoveItem(T item) {
 		this.allocated.remove(item);
 		this.inUse.remove(item);
+		this.createdTimes.remove(item);
+		this.idleTimes.remove(item);
 		this.callback.removedFromPool(item);
 	}
 
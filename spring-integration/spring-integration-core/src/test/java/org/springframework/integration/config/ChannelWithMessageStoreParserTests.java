@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@
 package org.springframework.integration.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.util.concurrent.TimeUnit;
 
@@ -27,8 +29,10 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -50,6 +54,10 @@ public class ChannelWithMessageStoreParserTests {
 	@Qualifier("output")
 	private PollableChannel output;
 
+	@Autowired
+	@Qualifier("batched")
+	private PollableChannel batched;
+
 	@Autowired
 	private TestHandler handler;
 
@@ -72,6 +80,23 @@ public class ChannelWithMessageStoreParserTests {
 
 	}
 
+	@Test
+	@DirtiesContext
+	public void testPollBatchSize() {
+		assertEquals(3, TestUtils.getPropertyValue(batched, "queue.pollBatchSize"));
+		for (int i = 0; i < 4; i++) {
+			batched.send(new GenericMessage<Integer>(i));
+		}
+		assertEquals(4, messageGroupStore.getMessageGroup("messageStore:batched").size());
+		for (int i = 0; i < 4; i++) {
+			Message<?> result = batched.receive(100);
+			assertNotNull(result);
+			assertEquals(i, result.getPayload());
+		}
+		assertNull(batched.receive(0));
+		assertEquals(0, messageGroupStore.getMessageGroup("messageStore:batched").size());
+	}
+
 	private static <T> Message<T> createMessage(T payload, Object correlationId, int sequenceSize, int sequenceNumber,
 			MessageChannel outputChannel) {
 		return MessageBuilder.withPayload(payload).setCorrelationId(correlationId).setSequenceSize(sequenceSize)
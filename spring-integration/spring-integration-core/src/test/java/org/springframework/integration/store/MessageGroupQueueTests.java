@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,9 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
@@ -31,10 +33,15 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.integration.Message;
 import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.transaction.PseudoTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -62,6 +69,54 @@ public class MessageGroupQueueTests {
 		assertEquals(0, queue.size());
 	}
 
+	@Test
+	public void testBatchDrain() throws Exception {
+		BatchPollingMessageStore store = new BatchPollingMessageStore();
+		MessageGroupQueue queue = new MessageGroupQueue(store, "FOO");
+		queue.setPollBatchSize(2);
+		for (int i = 0; i < 5; i++) {
+			queue.put(new GenericMessage<Integer>(i));
+		}
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(4, queue.drainTo(drained, 4));
+		assertEquals(0, drained.get(0).getPayload());
+		assertEquals(3, drained.get(3).getPayload());
+		assertEquals(2, store.batchPolls);
+		assertEquals(1, queue.size());
+		assertEquals(1, queue.drainTo(drained));
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testBatchPollInTransaction() throws Exception {
+		BatchPollingMessageStore store = new BatchPollingMessageStore();
+		final MessageGroupQueue queue = new MessageGroupQueue(store, "FOO");
+		queue.setPollBatchSize(3);
+		for (int i = 0; i < 5; i++) {
+			queue.put(new GenericMessage<Integer>(i));
+		}
+		assertEquals(0, queue.poll().getPayload());
+		assertEquals(0, store.batchPolls);
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new PseudoTransactionManager());
+		List<?> received = transactionTemplate.execute(new TransactionCallback<List<?>>() {
+			public List<?> doInTransaction(TransactionStatus status) {
+				List<Object> payloads = new ArrayList<Object>();
+				payloads.add(queue.poll().getPayload());
+				payloads.add(queue.poll().getPayload());
+				return payloads;
+			}
+		});
+		assertEquals(1, received.get(0));
+		assertEquals(2, received.get(1));
+		assertEquals(1, store.batchPolls);
+		// the unconsumed message is returned to the store on commit
+		assertEquals(2, queue.size());
+		assertEquals(4, queue.poll().getPayload());
+		assertEquals(3, queue.poll().getPayload());
+		assertNull(queue.poll());
+	}
+
 	@Test
 	public void testCapacityAfterExpiry() throws Exception {
 		SimpleMessageStore messageGroupStore = new SimpleMessageStore();
@@ -168,4 +223,20 @@ public class MessageGroupQueueTests {
 
 	}
 
+	private static class BatchPollingMessageStore extends SimpleMessageStore implements BatchPollingMessageGroupStore {
+
+		private volatile int batchPolls;
+
+		public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+			this.batchPolls++;
+			List<Message<?>> messages = new ArrayList<Message<?>>();
+			Message<?> message;
+			while (messages.size() < maxMessages && (message = this.pollMessageFromGroup(groupId)) != null) {
+				messages.add(message);
+			}
+			return messages;
+		}
+
+	}
+
 }
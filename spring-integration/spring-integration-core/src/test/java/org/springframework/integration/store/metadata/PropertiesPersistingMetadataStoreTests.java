@@ -17,6 +17,7 @@
 package org.springframework.integration.store.metadata;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -28,6 +29,7 @@ import org.junit.Test;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
 import org.springframework.integration.store.metadata.PropertiesPersistingMetadataStore;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Oleg Zhurakousky
@@ -69,4 +71,35 @@ public class PropertiesPersistingMetadataStoreTests {
 		assertEquals("bar", persistentProperties.get("foo"));
 	}
 
+	@Test
+	public void validateFlushInterval() throws Exception {
+		File file = new File("target/bar" + "/metadata-store.properties");
+		file.delete();
+		file.deleteOnExit();
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		PropertiesPersistingMetadataStore metadataStore = new PropertiesPersistingMetadataStore();
+		metadataStore.setBaseDirectory("target/bar");
+		metadataStore.setFlushInterval(50);
+		metadataStore.setTaskScheduler(scheduler);
+		metadataStore.afterPropertiesSet();
+		metadataStore.put("foo", "bar");
+		Properties persistentProperties = null;
+		int n = 0;
+		while (n++ < 100) {
+			persistentProperties = PropertiesLoaderUtils.loadProperties(new FileSystemResource(file));
+			if (persistentProperties.size() > 0) {
+				break;
+			}
+			Thread.sleep(50);
+		}
+		assertEquals("bar", persistentProperties.get("foo"));
+		assertFalse(new File("target/bar" + "/metadata-store.properties.tmp").exists());
+		metadataStore.put("foo", "baz");
+		metadataStore.destroy();
+		scheduler.destroy();
+		persistentProperties = PropertiesLoaderUtils.loadProperties(new FileSystemResource(file));
+		assertEquals("baz", persistentProperties.get("foo"));
+	}
+
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.support.converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * @since 3.0
+ *
+ */
+public class BinaryMessageConverterTests {
+
+	@Test
+	public void testFromMessageToMessage() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		Date date = new Date();
+		Message<String> message = MessageBuilder.withPayload("fooé")
+				.setCorrelationId("corr")
+				.setSequenceNumber(2)
+				.setSequenceSize(3)
+				.setReplyChannel(new QueueChannel())
+				.setHeader("string", "bar")
+				.setHeader("long", 42L)
+				.setHeader("boolean", true)
+				.setHeader("double", 1.5d)
+				.setHeader("float", 2.5f)
+				.setHeader("short", (short) 3)
+				.setHeader("byte", (byte) 4)
+				.setHeader("char", 'x')
+				.setHeader("bytes", new byte[] {1, 2})
+				.setHeader("uuid", uuid)
+				.setHeader("date", date)
+				.setHeader("null", null)
+				.build();
+		BinaryMessageConverter converter = new BinaryMessageConverter();
+		converter.setAllowedSerializableClasses("java.util.Date");
+		byte[] bytes = (byte[]) converter.fromMessage(message);
+		Message<?> decoded = converter.toMessage(bytes);
+		assertEquals("fooé", decoded.getPayload());
+		assertEquals("corr", decoded.getHeaders().getCorrelationId());
+		assertEquals(Integer.valueOf(2), decoded.getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(3), decoded.getHeaders().getSequenceSize());
+		assertNull(decoded.getHeaders().getReplyChannel());
+		assertEquals("bar", decoded.getHeaders().get("string"));
+		assertEquals(42L, decoded.getHeaders().get("long"));
+		assertEquals(true, decoded.getHeaders().get("boolean"));
+		assertEquals(1.5d, decoded.getHeaders().get("double"));
+		assertEquals(2.5f, decoded.getHeaders().get("float"));
+		assertEquals((short) 3, decoded.getHeaders().get("short"));
+		assertEquals((byte) 4, decoded.getHeaders().get("byte"));
+		assertEquals('x', decoded.getHeaders().get("char"));
+		assertArrayEquals(new byte[] {1, 2}, (byte[]) decoded.getHeaders().get("bytes"));
+		assertEquals(uuid, decoded.getHeaders().get("uuid"));
+		assertEquals(date, decoded.getHeaders().get("date"));
+		assertFalse(message.getHeaders().getId().equals(decoded.getHeaders().getId()));
+
+		Message<?> decodedAgain = converter.toMessage(bytes);
+		String name = null;
+		for (String key : decoded.getHeaders().keySet()) {
+			if (key.equals("string")) {
+				name = key;
+			}
+		}
+		for (String key : decodedAgain.getHeaders().keySet()) {
+			if (key.equals("string")) {
+				assertSame(name, key);
+			}
+		}
+	}
+
+	@Test
+	public void testPayloads() throws Exception {
+		BinaryMessageConverter converter = new BinaryMessageConverter();
+		byte[] payload = new byte[] {0, 1, (byte) 0xff};
+		Message<?> decoded = converter.toMessage(converter.fromMessage(MessageBuilder.withPayload(payload).build()));
+		assertArrayEquals(payload, (byte[]) decoded.getPayload());
+		try {
+			converter.fromMessage(MessageBuilder.withPayload(42L).build());
+			fail("Expected exception");
+		}
+		catch (MessageConversionException e) {
+		}
+		converter.setAllowedSerializableClasses("java.lang.*");
+		decoded = converter.toMessage(converter.fromMessage(MessageBuilder.withPayload(42L).build()));
+		assertEquals(42L, decoded.getPayload());
+		try {
+			converter.fromMessage(MessageBuilder.withPayload(new Object()).build());
+			fail("Expected exception");
+		}
+		catch (MessageConversionException e) {
+		}
+	}
+
+	@Test
+	public void testSerializedValuesAreOptIn() throws Exception {
+		BinaryMessageConverter permissive = new BinaryMessageConverter();
+		permissive.setAllowedSerializableClasses("*");
+		Message<Date> message = MessageBuilder.withPayload(new Date())
+				.setHeader("date", new Date())
+				.build();
+		byte[] bytes = (byte[]) permissive.fromMessage(message);
+		assertEquals(message.getPayload(), permissive.toMessage(bytes).getPayload());
+
+		BinaryMessageConverter converter = new BinaryMessageConverter();
+		// header is dropped
+		Message<?> decoded = converter.toMessage(converter.fromMessage(MessageBuilder.withPayload("foo")
+				.setHeader("date", new Date())
+				.build()));
+		assertFalse(decoded.getHeaders().containsKey("date"));
+		try {
+			converter.toMessage(bytes);
+			fail("Expected exception");
+		}
+		catch (MessageConversionException e) {
+			assertTrue(e.getMessage().contains("allowedSerializableClasses"));
+		}
+		converter.setAllowedSerializableClasses("java.lang.*");
+		try {
+			converter.toMessage(bytes);
+			fail("Expected exception");
+		}
+		catch (MessageConversionException e) {
+			assertTrue(e.getMessage().contains("java.util.Date"));
+		}
+		converter.setAllowedSerializableClasses("java.util.Date");
+		assertEquals(message.getPayload(), converter.toMessage(bytes).getPayload());
+		assertEquals(message.getHeaders().get("date"), converter.toMessage(bytes).getHeaders().get("date"));
+	}
+
+	@Test
+	public void testInvalidLengths() throws Exception {
+		BinaryMessageConverter converter = new BinaryMessageConverter();
+		byte[] bytes = (byte[]) converter.fromMessage(MessageBuilder.withPayload("foo")
+				.setHeader("bar", "baz")
+				.build());
+		// version, header table length, header count, name index (0), then the name length
+		int nameLength = 1 + 4 + 2 + 1;
+		assertEquals(3, ByteBuffer.wrap(bytes, nameLength, 4).getInt());
+		for (int length : new int[] {Integer.MAX_VALUE, -1, bytes.length}) {
+			byte[] corrupt = bytes.clone();
+			ByteBuffer.wrap(corrupt, nameLength, 4).putInt(length);
+			try {
+				converter.toMessage(corrupt);
+				fail("Expected exception");
+			}
+			catch (MessageConversionException e) {
+				assertTrue(e.getMessage().contains("Invalid length"));
+			}
+		}
+		byte[] corrupt = bytes.clone();
+		ByteBuffer.wrap(corrupt, 1, 4).putInt(Integer.MAX_VALUE);
+		try {
+			converter.toMessage(corrupt);
+			fail("Expected exception");
+		}
+		catch (MessageConversionException e) {
+			assertTrue(e.getMessage().contains("Invalid length"));
+		}
+	}
+
+	@Test
+	public void testHeaderNames() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setHeader("bar", "baz")
+				.setHeader("baz", "qux")
+				.build();
+		BinaryMessageConverter converter = new BinaryMessageConverter();
+		byte[] bytes = (byte[]) converter.fromMessage(message);
+		converter.setHeaderNames("bar");
+		byte[] filtered = (byte[]) converter.fromMessage(message);
+		Message<?> decoded = converter.toMessage(filtered);
+		assertEquals("baz", decoded.getHeaders().get("bar"));
+		assertNull(decoded.getHeaders().get("baz"));
+
+		decoded = converter.toMessage(bytes);
+		assertEquals("qux", decoded.getHeaders().get("baz"));
+		converter.setFilterHeadersInToMessage(true);
+		decoded = converter.toMessage(bytes);
+		assertEquals("baz", decoded.getHeaders().get("bar"));
+		assertNull(decoded.getHeaders().get("baz"));
+	}
+
+}
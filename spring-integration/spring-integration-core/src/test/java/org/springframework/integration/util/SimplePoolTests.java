@@ -19,12 +19,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
@@ -148,6 +152,110 @@ public class SimplePoolTests {
 	}
 
 
+	@Test
+	public void testMaintainEvictsAndPrewarms() throws Exception {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(3, strings, stale);
+		pool.setMinIdle(2);
+		pool.maintain();
+		assertEquals(2, pool.getIdleCount());
+		assertEquals(2, strings.size());
+
+		pool.setMaxIdleTime(10);
+		Thread.sleep(50);
+		pool.maintain();
+		// both idle items expired and were replaced
+		assertEquals(2, pool.getEvictedCount());
+		assertEquals(2, pool.getIdleCount());
+		assertEquals(2, strings.size());
+
+		pool.setMaxIdleTime(0);
+		String s1 = pool.getItem();
+		String s2 = pool.getItem();
+		String s3 = pool.getItem();
+		pool.maintain();
+		// pool is full; nothing can be created
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(3, pool.getAllocatedCount());
+		assertEquals(3, pool.getBorrowedCount());
+		pool.releaseItem(s1);
+		pool.releaseItem(s2);
+		pool.releaseItem(s3);
+		stale.set(true);
+		pool.setMinIdle(0);
+		pool.maintain();
+		assertEquals(0, pool.getAllocatedCount());
+	}
+
+	@Test
+	public void testMaintainDoesNotOvercommitWhileChecking() throws Exception {
+		final CountDownLatch checking = new CountDownLatch(1);
+		final CountDownLatch checked = new CountDownLatch(1);
+		final AtomicBoolean slowCheck = new AtomicBoolean();
+		final SimplePool<String> pool = new SimplePool<String>(1, new SimplePool.PoolItemCallback<String>() {
+			public String createForPool() {
+				return new String("foo");
+			}
+			public boolean isStale(String item) {
+				if (slowCheck.get()) {
+					checking.countDown();
+					try {
+						checked.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return false;
+			}
+			public void removedFromPool(String item) {
+			}
+		});
+		String s1 = pool.getItem();
+		pool.releaseItem(s1);
+		slowCheck.set(true);
+		Thread maintainer = new Thread(new Runnable() {
+			public void run() {
+				pool.maintain();
+			}
+		});
+		maintainer.start();
+		assertTrue(checking.await(10, TimeUnit.SECONDS));
+		slowCheck.set(false);
+		final AtomicReference<String> borrowed = new AtomicReference<String>();
+		Thread borrower = new Thread(new Runnable() {
+			public void run() {
+				borrowed.set(pool.getItem());
+			}
+		});
+		borrower.start();
+		borrower.join(200);
+		// the borrower must wait for the item being checked rather than create another
+		assertEquals(1, pool.getAllocatedCount());
+		checked.countDown();
+		borrower.join(10000);
+		maintainer.join(10000);
+		assertSame(s1, borrowed.get());
+		assertEquals(1, pool.getAllocatedCount());
+	}
+
+	@Test
+	public void testMaxLifetime() throws Exception {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(1, strings, stale);
+		pool.setMaxLifetime(10);
+		String s1 = pool.getItem();
+		Thread.sleep(50);
+		pool.releaseItem(s1);
+		assertEquals(0, pool.getAllocatedCount());
+		assertFalse(strings.contains(s1));
+		String s2 = pool.getItem();
+		assertNotSame(s1, s2);
+		assertEquals(1, pool.getEvictedCount());
+	}
+
 	private SimplePool<String> stringPool(int size, final Set<String> strings,
 			final AtomicBoolean stale) {
 		SimplePool<String> pool = new SimplePool<String>(size, new SimplePool.PoolItemCallback<String>() {
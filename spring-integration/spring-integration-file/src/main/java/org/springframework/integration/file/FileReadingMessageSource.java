@@ -17,15 +17,25 @@
 package org.springframework.integration.file;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.PriorityBlockingQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.aggregator.ResequencingMessageGroupProcessor;
@@ -57,6 +67,14 @@ import org.springframework.util.Assert;
  * a {@link ResequencingMessageGroupProcessor}, but in cases where writing files
  * and failure downstream are rare it might be sufficient.
  * <p>
+ * Several directories can be monitored by a single source using
+ * {@link #setDirectories(List)}. The directories are scanned concurrently when a
+ * {@link TaskExecutor} is provided, and files are handed over to the internal
+ * queue at most {@link #setMaxFilesPerDirectory(int) maxFilesPerDirectory} at a
+ * time per directory, so that a single directory with a large backlog cannot
+ * starve the others. The files retained for each directory can be limited with
+ * {@link #setMaxBacklogPerDirectory(int) maxBacklogPerDirectory}.
+ * <p>
  * FileReadingMessageSource is fully thread-safe under concurrent
  * <code>receive()</code> invocations and message delivery callbacks.
  *
@@ -74,6 +92,22 @@ public class FileReadingMessageSource extends IntegrationObjectSupport implement
 
 	private volatile File directory;
 
+	private volatile List<File> directories;
+
+	private volatile TaskExecutor scanExecutor;
+
+	private volatile int maxFilesPerDirectory = Integer.MAX_VALUE;
+
+	private volatile int maxBacklogPerDirectory = Integer.MAX_VALUE;
+
+	/*
+	 * Files that were accepted by the scanner but not yet handed over to
+	 * 'toBeReceived', keyed by directory; only used with multiple directories.
+	 */
+	private final Map<File, DirectoryBacklog> backlogs = new LinkedHashMap<File, DirectoryBacklog>();
+
+	private final Comparator<File> receptionOrderComparator;
+
 	private volatile DirectoryScanner scanner = new DefaultDirectoryScanner();
 
 	private volatile boolean autoCreateDirectory = true;
@@ -132,6 +166,7 @@ public class FileReadingMessageSource extends IntegrationObjectSupport implement
 	 *            queue
 	 */
 	public FileReadingMessageSource(Comparator<File> receptionOrderComparator) {
+		this.receptionOrderComparator = receptionOrderComparator;
 		this.toBeReceived = new PriorityBlockingQueue<File>(
 				DEFAULT_INTERNAL_QUEUE_CAPACITY, receptionOrderComparator);
 	}
@@ -147,6 +182,68 @@ public class FileReadingMessageSource extends IntegrationObjectSupport implement
 		this.directory = directory;
 	}
 
+	/**
+	 * Specify several input directories to be monitored by this source. Mutually
+	 * exclusive with {@link #setDirectory(File)}.
+	 * <p>
+	 * Each poll that needs to refill the internal queue scans the directories
+	 * (concurrently if a {@link #setScanExecutor(TaskExecutor) scanExecutor} is
+	 * provided) and then moves accepted files into the queue, taking up to
+	 * {@link #setMaxFilesPerDirectory(int) maxFilesPerDirectory} files from each
+	 * directory in turn.
+	 *
+	 * @param directories the directories to monitor
+	 */
+	public void setDirectories(List<File> directories) {
+		Assert.notEmpty(directories, "'directories' must not be empty");
+		Assert.noNullElements(directories.toArray(), "'directories' must not contain null elements");
+		this.directories = new ArrayList<File>(directories);
+	}
+
+	/**
+	 * Specify a {@link TaskExecutor} used to scan the directories concurrently
+	 * when multiple {@link #setDirectories(List) directories} are configured. By
+	 * default the directories are scanned one after another on the polling thread.
+	 * The {@link DirectoryScanner} and its filter must be thread safe when an
+	 * executor is used.
+	 *
+	 * @param scanExecutor the executor
+	 */
+	public void setScanExecutor(TaskExecutor scanExecutor) {
+		this.scanExecutor = scanExecutor;
+	}
+
+	/**
+	 * Specify the maximum number of files taken from each directory whenever the
+	 * internal queue is refilled, when multiple {@link #setDirectories(List)
+	 * directories} are configured. Files beyond this limit are retained (in
+	 * reception order) and handed over on subsequent refills, so the internal
+	 * queue never holds more than <code>directories * maxFilesPerDirectory</code>
+	 * files. Unlimited by default.
+	 *
+	 * @param maxFilesPerDirectory the per-directory quota
+	 */
+	public void setMaxFilesPerDirectory(int maxFilesPerDirectory) {
+		Assert.isTrue(maxFilesPerDirectory > 0, "'maxFilesPerDirectory' must be greater than 0");
+		this.maxFilesPerDirectory = maxFilesPerDirectory;
+	}
+
+	/**
+	 * Specify the maximum number of files retained for each directory, when multiple
+	 * {@link #setDirectories(List) directories} are configured, until they are handed
+	 * over to the internal queue. When a scan finds more files, only the first ones
+	 * in reception order are retained; the others are left for a later scan of the
+	 * directory. The scanner must therefore list them again so, as with the
+	 * {@link HeadDirectoryScanner}, this is mutually exclusive with an
+	 * {@link AcceptOnceFileListFilter}. Unlimited by default.
+	 *
+	 * @param maxBacklogPerDirectory the per-directory backlog capacity
+	 */
+	public void setMaxBacklogPerDirectory(int maxBacklogPerDirectory) {
+		Assert.isTrue(maxBacklogPerDirectory > 0, "'maxBacklogPerDirectory' must be greater than 0");
+		this.maxBacklogPerDirectory = maxBacklogPerDirectory;
+	}
+
 	/**
 	 * Optionally specify a custom scanner, for example the
 	 * {@link org.springframework.integration.file.RecursiveLeafOnlyDirectoryScanner}
@@ -230,16 +327,28 @@ public class FileReadingMessageSource extends IntegrationObjectSupport implement
 
 	@Override
 	protected void onInit() {
-		Assert.notNull(directory, "'directory' must not be null");
-		if (!this.directory.exists() && this.autoCreateDirectory) {
-			this.directory.mkdirs();
+		if (this.directories != null) {
+			Assert.isNull(this.directory, "Only one of 'directory' or 'directories' is allowed");
+			for (File dir : this.directories) {
+				this.initDirectory(dir);
+			}
+		}
+		else {
+			Assert.notNull(directory, "'directory' must not be null");
+			this.initDirectory(this.directory);
 		}
-		Assert.isTrue(this.directory.exists(),
+	}
+
+	private void initDirectory(File directory) {
+		if (!directory.exists() && this.autoCreateDirectory) {
+			directory.mkdirs();
+		}
+		Assert.isTrue(directory.exists(),
 				"Source directory [" + directory + "] does not exist.");
-		Assert.isTrue(this.directory.isDirectory(),
-				"Source path [" + this.directory + "] does not point to a directory.");
-		Assert.isTrue(this.directory.canRead(),
-				"Source directory [" + this.directory + "] is not readable.");
+		Assert.isTrue(directory.isDirectory(),
+				"Source path [" + directory + "] does not point to a directory.");
+		Assert.isTrue(directory.canRead(),
+				"Source directory [" + directory + "] is not readable.");
 	}
 
 	public Message<File> receive() throws MessagingException {
@@ -247,7 +356,12 @@ public class FileReadingMessageSource extends IntegrationObjectSupport implement
 
 		// rescan only if needed or explicitly configured
 		if (scanEachPoll || toBeReceived.isEmpty()) {
-			scanInputDirectory();
+			if (this.directories != null) {
+				scanInputDirectories();
+			}
+			else {
+				scanInputDirectory();
+			}
 		}
 
 		File file = toBeReceived.poll();
@@ -283,6 +397,90 @@ public class FileReadingMessageSource extends IntegrationObjectSupport implement
 		}
 	}
 
+	private void scanInputDirectories() {
+		synchronized (this.backlogs) {
+			Map<File, List<File>> scanned = this.scanDirectories();
+			for (Map.Entry<File, List<File>> entry : scanned.entrySet()) {
+				DirectoryBacklog backlog = this.backlogs.get(entry.getKey());
+				if (backlog == null) {
+					backlog = new DirectoryBacklog(this.receptionOrderComparator);
+					this.backlogs.put(entry.getKey(), backlog);
+				}
+				int discarded = backlog.addAll(entry.getValue(), this.maxBacklogPerDirectory);
+				if (discarded > 0 && logger.isDebugEnabled()) {
+					logger.debug("Backlog of [" + entry.getKey() + "] is full; " + discarded
+							+ " files left for a later scan");
+				}
+			}
+			/*
+			 * Hand over up to 'maxFilesPerDirectory' files from each directory,
+			 * so that a flooded directory cannot monopolize the queue.
+			 */
+			List<File> freshFiles = new ArrayList<File>();
+			for (DirectoryBacklog backlog : this.backlogs.values()) {
+				File file;
+				int count = 0;
+				while (count++ < this.maxFilesPerDirectory && (file = backlog.poll()) != null) {
+					freshFiles.add(file);
+				}
+			}
+			if (!freshFiles.isEmpty()) {
+				toBeReceived.addAll(freshFiles);
+				if (logger.isDebugEnabled()) {
+					logger.debug("Added to queue: " + freshFiles);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Only directories with an empty backlog are listed again, unless 'scanEachPoll' is set.
+	 */
+	private Map<File, List<File>> scanDirectories() {
+		Map<File, List<File>> results = new LinkedHashMap<File, List<File>>();
+		List<File> toScan = new ArrayList<File>();
+		for (File dir : this.directories) {
+			DirectoryBacklog backlog = this.backlogs.get(dir);
+			if (this.scanEachPoll || backlog == null || backlog.isEmpty()) {
+				toScan.add(dir);
+			}
+		}
+		if (this.scanExecutor == null || toScan.size() < 2) {
+			for (File dir : toScan) {
+				results.put(dir, this.scanner.listFiles(dir));
+			}
+			return results;
+		}
+		Map<File, FutureTask<List<File>>> futures = new LinkedHashMap<File, FutureTask<List<File>>>();
+		for (final File dir : toScan) {
+			FutureTask<List<File>> future = new FutureTask<List<File>>(new Callable<List<File>>() {
+
+				public List<File> call() throws Exception {
+					return scanner.listFiles(dir);
+				}
+			});
+			futures.put(dir, future);
+			this.scanExecutor.execute(future);
+		}
+		for (Map.Entry<File, FutureTask<List<File>>> entry : futures.entrySet()) {
+			try {
+				results.put(entry.getKey(), entry.getValue().get());
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException("Interrupted while scanning [" + entry.getKey() + "]", e);
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof MessagingException) {
+					throw (MessagingException) cause;
+				}
+				throw new MessagingException("Failed to scan [" + entry.getKey() + "]", cause);
+			}
+		}
+		return results;
+	}
+
 	/**
 	 * Adds the failed message back to the 'toBeReceived' queue if there is room.
 	 *
@@ -309,4 +507,61 @@ public class FileReadingMessageSource extends IntegrationObjectSupport implement
 		}
 	}
 
+	/**
+	 * The files retained for one directory, in reception order; the set avoids a
+	 * linear search of the queue for each scanned file. Guarded by 'backlogs'.
+	 */
+	private static class DirectoryBacklog {
+
+		private final Comparator<File> comparator;
+
+		private final Queue<File> files;
+
+		private final Set<File> members = new HashSet<File>();
+
+		private DirectoryBacklog(Comparator<File> comparator) {
+			this.comparator = comparator;
+			this.files = new PriorityQueue<File>(DEFAULT_INTERNAL_QUEUE_CAPACITY, comparator);
+		}
+
+		/**
+		 * Add the files that are not already retained, then discard the last ones in
+		 * reception order, if there are more than the capacity.
+		 * @return the number of files discarded.
+		 */
+		private int addAll(List<File> scanned, int capacity) {
+			for (File file : scanned) {
+				if (this.members.add(file)) {
+					this.files.add(file);
+				}
+			}
+			int excess = this.files.size() - capacity;
+			if (excess <= 0) {
+				return 0;
+			}
+			List<File> sorted = new ArrayList<File>(this.files);
+			Collections.sort(sorted, this.comparator);
+			this.files.clear();
+			this.members.clear();
+			for (File file : sorted.subList(0, capacity)) {
+				this.files.add(file);
+				this.members.add(file);
+			}
+			return excess;
+		}
+
+		private File poll() {
+			File file = this.files.poll();
+			if (file != null) {
+				this.members.remove(file);
+			}
+			return file;
+		}
+
+		private boolean isEmpty() {
+			return this.files.isEmpty();
+		}
+
+	}
+
 }
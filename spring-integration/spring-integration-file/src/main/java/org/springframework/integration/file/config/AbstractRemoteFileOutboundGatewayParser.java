@@ -55,7 +55,10 @@ public abstract class AbstractRemoteFileOutboundGatewayParser extends AbstractCo
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "local-directory");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "auto-create-local-directory");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "order");
-		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "rename-expression");		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "requires-reply");		return builder;
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "rename-expression");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "transfer-concurrency");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "progress-channel");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "requires-reply");		return builder;
 	}
 
 	protected void configureFilter(BeanDefinitionBuilder builder, Element element, ParserContext parserContext) {
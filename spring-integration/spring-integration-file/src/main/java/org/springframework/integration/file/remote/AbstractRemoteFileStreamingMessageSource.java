@@ -0,0 +1,265 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.remote;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.context.IntegrationObjectSupport;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.Assert;
+
+/**
+ * A message source that produces a message with an {@link InputStream} payload
+ * reading directly from a remote file, without first copying the file to a local
+ * directory.
+ * <p>
+ * The {@link Session} used to open the stream is held until the stream is closed,
+ * so downstream components <b>must</b> close the payload when they are done with
+ * it. When the session factory is a
+ * {@link org.springframework.integration.file.remote.session.CachingSessionFactory},
+ * an unclosed stream keeps its session out of the pool.
+ * <p>
+ * If the stream is closed before it has been read to the end, the transfer cannot be
+ * completed and the session is closed rather than reused.
+ * <p>
+ * Unless a {@link #setFilter(FileListFilter) filter} is provided, each remote
+ * file name is only emitted once while it remains in the remote directory; names
+ * that are no longer listed are forgotten, so a file that is removed and later
+ * written again with the same name is emitted again.
+ *
+ * @since 3.0
+ */
+public abstract class AbstractRemoteFileStreamingMessageSource<F> extends IntegrationObjectSupport
+		implements MessageSource<InputStream> {
+
+	private static final Log logger = LogFactory.getLog(AbstractRemoteFileStreamingMessageSource.class);
+
+	private final SessionFactory<F> sessionFactory;
+
+	private final BlockingQueue<F> toBeReceived = new LinkedBlockingQueue<F>();
+
+	private volatile String remoteDirectory;
+
+	private volatile String remoteFileSeparator = "/";
+
+	private volatile FileListFilter<F> filter = new AcceptOnceByNameFilter();
+
+
+	public AbstractRemoteFileStreamingMessageSource(SessionFactory<F> sessionFactory) {
+		Assert.notNull(sessionFactory, "sessionFactory must not be null");
+		this.sessionFactory = sessionFactory;
+	}
+
+
+	/**
+	 * Specify the full path to the remote directory.
+	 */
+	public void setRemoteDirectory(String remoteDirectory) {
+		this.remoteDirectory = remoteDirectory;
+	}
+
+	public void setRemoteFileSeparator(String remoteFileSeparator) {
+		Assert.notNull(remoteFileSeparator, "'remoteFileSeparator' must not be null");
+		this.remoteFileSeparator = remoteFileSeparator;
+	}
+
+	/**
+	 * A {@link FileListFilter} applied to the remote directory listing. Replaces the
+	 * default filter, which emits each file name only once.
+	 */
+	public void setFilter(FileListFilter<F> filter) {
+		this.filter = filter;
+	}
+
+	@Override
+	protected void onInit() {
+		Assert.notNull(this.remoteDirectory, "remoteDirectory must not be null");
+	}
+
+	public Message<InputStream> receive() {
+		F file = this.toBeReceived.poll();
+		if (file == null) {
+			this.listRemoteFiles();
+			file = this.toBeReceived.poll();
+		}
+		if (file == null) {
+			return null;
+		}
+		String fileName = this.getFilename(file);
+		String remotePath = this.remoteDirectory + this.remoteFileSeparator + fileName;
+		Session<F> session = this.sessionFactory.getSession();
+		Assert.state(session != null, "failed to acquire a Session");
+		InputStream inputStream;
+		try {
+			inputStream = new SessionReleasingInputStream(session.readRaw(remotePath), session, remotePath);
+		}
+		catch (Exception e) {
+			session.close();
+			throw new MessagingException("Failed to open stream for remote file " + remotePath, e);
+		}
+		return MessageBuilder.withPayload(inputStream)
+				.setHeader(FileHeaders.REMOTE_DIRECTORY, this.remoteDirectory)
+				.setHeader(FileHeaders.REMOTE_FILE, fileName)
+				.build();
+	}
+
+	private void listRemoteFiles() {
+		Session<F> session = this.sessionFactory.getSession();
+		Assert.state(session != null, "failed to acquire a Session");
+		try {
+			F[] files = session.list(this.remoteDirectory);
+			// an empty listing is still filtered so the filter can forget removed files
+			if (files != null) {
+				List<F> candidates = new ArrayList<F>();
+				for (F file : files) {
+					if (file != null && this.isFile(file)) {
+						candidates.add(file);
+					}
+				}
+				@SuppressWarnings("unchecked")
+				F[] array = candidates.toArray((F[]) Array.newInstance(
+						files.getClass().getComponentType(), candidates.size()));
+				List<F> filtered = (this.filter != null) ? this.filter.filterFiles(array) : Arrays.asList(array);
+				this.toBeReceived.addAll(filtered);
+			}
+		}
+		catch (IOException e) {
+			throw new MessagingException("Problem occurred while listing remote directory " + this.remoteDirectory, e);
+		}
+		finally {
+			session.close();
+		}
+	}
+
+	protected abstract boolean isFile(F file);
+
+	protected abstract String getFilename(F file);
+
+
+	/**
+	 * Accepts each file name once; only the names in the latest listing are retained.
+	 */
+	private class AcceptOnceByNameFilter implements FileListFilter<F> {
+
+		private final Set<String> seen = new HashSet<String>();
+
+		public synchronized List<F> filterFiles(F[] files) {
+			Set<String> listed = new HashSet<String>();
+			List<F> accepted = new ArrayList<F>();
+			for (F file : files) {
+				String name = getFilename(file);
+				listed.add(name);
+				if (this.seen.add(name)) {
+					accepted.add(file);
+				}
+			}
+			this.seen.retainAll(listed);
+			return accepted;
+		}
+
+	}
+
+	/**
+	 * Releases the {@link Session} when the stream is closed; if the stream was not
+	 * read to the end, the raw transfer is not finalized and the session is closed
+	 * rather than returned to a pool.
+	 */
+	private static class SessionReleasingInputStream extends FilterInputStream {
+
+		private final Session<?> session;
+
+		private final String remotePath;
+
+		private boolean closed;
+
+		private volatile boolean endOfStream;
+
+		private SessionReleasingInputStream(InputStream in, Session<?> session, String remotePath) {
+			super(in);
+			this.session = session;
+			this.remotePath = remotePath;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				this.endOfStream = true;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n < 0) {
+				this.endOfStream = true;
+			}
+			return n;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			try {
+				super.close();
+				if (this.endOfStream) {
+					this.session.finalizeRaw();
+				}
+				else if (logger.isDebugEnabled()) {
+					logger.debug("Stream for " + this.remotePath + " closed before the end; closing the session");
+				}
+			}
+			finally {
+				this.session.close();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Released session after streaming " + this.remotePath);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "InputStream for " + this.remotePath;
+		}
+
+	}
+
+}
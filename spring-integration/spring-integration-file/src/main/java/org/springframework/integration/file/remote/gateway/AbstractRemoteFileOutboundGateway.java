@@ -17,6 +17,7 @@
 package org.springframework.integration.file.remote.gateway;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -28,9 +29,14 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.file.FileHeaders;
 import org.springframework.integration.file.filters.FileListFilter;
@@ -47,6 +53,12 @@ import org.springframework.util.StringUtils;
 
 /**
  * Base class for Outbound Gateways that perform remote file operations.
+ * <p>
+ * The multi-file commands ({@code mget}, {@code mput}, and {@code rm}/{@code mv}
+ * with a wildcard path) can spread their transfers over several sessions (see
+ * {@link #setTransferConcurrency(int)}) and report each completed file to a
+ * {@link #setProgressChannel(MessageChannel) progress channel}; the reply contains
+ * the consolidated result.
  *
  * @author Gary Russell
  * @since 2.1
@@ -78,9 +90,15 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		 */
 		MGET("mget"),
 		/**
-		 * Move (rename) a remote file.
+		 * Move (rename) a remote file; with a wildcard path, move all matching
+		 * files to the directory given by the rename expression.
 		 */
-		MV("mv");
+		MV("mv"),
+		/**
+		 * Send multiple local files (a directory or a collection of files in the
+		 * payload) to a remote directory.
+		 */
+		MPUT("mput");
 
 		private String command;
 
@@ -177,6 +195,12 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 	 */
 	private volatile FileListFilter<F> filter;
 
+	private volatile int transferConcurrency = 1;
+
+	private volatile TaskExecutor taskExecutor;
+
+	private volatile MessageChannel progressChannel;
+
 
 	public AbstractRemoteFileOutboundGateway(SessionFactory<F> sessionFactory, String command,
 			String expression) {
@@ -243,6 +267,43 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		this.filter = filter;
 	}
 
+	/**
+	 * Set the maximum number of files transferred concurrently by the multi-file
+	 * commands; each concurrent transfer uses its own {@link Session}, so the
+	 * session factory would normally be a
+	 * {@link org.springframework.integration.file.remote.session.CachingSessionFactory}.
+	 * Default 1.
+	 * @param transferConcurrency the concurrency.
+	 * @since 3.0
+	 */
+	public void setTransferConcurrency(int transferConcurrency) {
+		Assert.isTrue(transferConcurrency > 0, "'transferConcurrency' must be greater than 0");
+		this.transferConcurrency = transferConcurrency;
+	}
+
+	/**
+	 * Set the {@link TaskExecutor} used for concurrent transfers; default is a
+	 * {@link SimpleAsyncTaskExecutor}.
+	 * @param taskExecutor the task executor.
+	 * @since 3.0
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' must not be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set a channel to which a message is sent for each file processed by a
+	 * multi-file command. The payload is the local {@link File} (mget) or the remote
+	 * path (mput, rm, mv); the correlation id is the request message id and the
+	 * sequence headers indicate progress.
+	 * @param progressChannel the channel.
+	 * @since 3.0
+	 */
+	public void setProgressChannel(MessageChannel progressChannel) {
+		this.progressChannel = progressChannel;
+	}
+
 	public void setRenameExpression(String expression) {
 		Assert.notNull(expression, "'expression' cannot be null");
 		this.renameProcessor = new ExpressionEvaluatingMessageProcessor<String>(
@@ -254,8 +315,8 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		super.onInit();
 		Assert.notNull(this.command, "command must not be null");
 		if (Command.RM.equals(this.command) || Command.MGET.equals(this.command) ||
-				Command.GET.equals(this.command)) {
-			Assert.isNull(this.filter, "Filters are not supported with the rm, get, and mget commands");
+				Command.GET.equals(this.command) || Command.MPUT.equals(this.command)) {
+			Assert.isNull(this.filter, "Filters are not supported with the rm, get, mget and mput commands");
 		}
 		if (Command.GET.equals(this.command)
 				|| Command.MGET.equals(this.command)) {
@@ -304,6 +365,8 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 				return doRm(requestMessage, session);
 			case MV:
 				return doMv(requestMessage, session);
+			case MPUT:
+				return doMput(requestMessage, session);
 			default:
 				return null;
 			}
@@ -348,7 +411,7 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		if (remoteDir.length() == 0) {
 			remoteDir = this.remoteFileSeparator;
 		}
-		List<File> payload = mGet(session, remoteDir, remoteFilename);
+		List<File> payload = mGet(requestMessage, session, remoteDir, remoteFilename);
 		return MessageBuilder.withPayload(payload)
 			.setHeader(FileHeaders.REMOTE_DIRECTORY, remoteDir)
 			.setHeader(FileHeaders.REMOTE_FILE, remoteFilename)
@@ -362,7 +425,13 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		if (remoteDir.length() == 0) {
 			remoteDir = this.remoteFileSeparator;
 		}
-		boolean payload = rm(session, remoteFilePath);
+		Object payload;
+		if (isWildcard(remoteFilename)) {
+			payload = mRm(requestMessage, session, remoteDir, remoteFilename);
+		}
+		else {
+			payload = rm(session, remoteFilePath);
+		}
 		return MessageBuilder.withPayload(payload)
 			.setHeader(FileHeaders.REMOTE_DIRECTORY, remoteDir)
 			.setHeader(FileHeaders.REMOTE_FILE, remoteFilename)
@@ -378,14 +447,60 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		if (remoteDir.length() == 0) {
 			remoteDir = this.remoteFileSeparator;
 		}
-		mv(session, remoteFilePath, remoteFileNewPath);
-		return MessageBuilder.withPayload(Boolean.TRUE)
+		Object payload = Boolean.TRUE;
+		if (isWildcard(remoteFilename)) {
+			payload = mMv(requestMessage, session, remoteDir, remoteFilename, remoteFileNewPath);
+		}
+		else {
+			mv(session, remoteFilePath, remoteFileNewPath);
+		}
+		return MessageBuilder.withPayload(payload)
 			.setHeader(FileHeaders.REMOTE_DIRECTORY, remoteDir)
 			.setHeader(FileHeaders.REMOTE_FILE, remoteFilename)
 			.setHeader(FileHeaders.RENAME_TO, remoteFileNewPath)
 			.build();
 	}
 
+	private Object doMput(Message<?> requestMessage, Session<F> session) throws IOException {
+		String remoteDir = this.fileNameProcessor.processMessage(requestMessage);
+		Assert.hasLength(remoteDir, "Remote directory cannot be empty");
+		List<File> files = this.localFilesFor(requestMessage.getPayload());
+		List<String> payload = mPut(requestMessage, session, remoteDir, files);
+		return MessageBuilder.withPayload(payload)
+			.setHeader(FileHeaders.REMOTE_DIRECTORY, remoteDir)
+			.build();
+	}
+
+	private List<File> localFilesFor(Object payload) {
+		List<File> files = new ArrayList<File>();
+		if (payload instanceof File) {
+			File file = (File) payload;
+			if (file.isDirectory()) {
+				File[] children = file.listFiles();
+				if (children != null) {
+					for (File child : children) {
+						if (child.isFile()) {
+							files.add(child);
+						}
+					}
+				}
+			}
+			else {
+				files.add(file);
+			}
+		}
+		else if (payload instanceof Collection) {
+			for (Object element : (Collection<?>) payload) {
+				Assert.isInstanceOf(File.class, element, "mput requires a collection of File");
+				files.add((File) element);
+			}
+		}
+		else {
+			throw new IllegalArgumentException("mput requires a File (directory) or a collection of File");
+		}
+		return files;
+	}
+
 	protected List<?> ls(Session<F> session, String dir) throws IOException {
 		List<F> lsFiles = new ArrayList<F>();
 		F[] files = session.list(dir);
@@ -503,8 +618,27 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		}
 	}
 
+	/**
+	 * Retrieve the files matching the pattern without a request message; no
+	 * progress messages are correlated to a request.
+	 * @deprecated in favor of {@link #mGet(Message, Session, String, String)}, which
+	 * is the method invoked for the mget command.
+	 */
+	@Deprecated
 	protected List<File> mGet(Session<F> session, String remoteDirectory,
 			String remoteFilename) throws IOException {
+		return mGet(null, session, remoteDirectory, remoteFilename);
+	}
+
+	/**
+	 * Retrieve the files matching the pattern, concurrently if a
+	 * 'transferConcurrency' is set.
+	 * @param requestMessage the request message, used to correlate progress messages;
+	 * may be null.
+	 * @since 3.0
+	 */
+	protected List<File> mGet(Message<?> requestMessage, Session<F> session, String remoteDirectory,
+			String remoteFilename) throws IOException {
 		String path = generateFullPath(remoteDirectory, remoteFilename);
 		String[] fileNames = session.listNames(path);
 		if (fileNames == null) {
@@ -514,22 +648,207 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 			throw new MessagingException("No files found at " + remoteDirectory
 					+ " with pattern " + remoteFilename);
 		}
-		List<File> files = new ArrayList<File>();
+		final List<String> remotePaths = new ArrayList<String>();
+		final List<String> localNames = new ArrayList<String>();
 		for (String fileName : fileNames) {
-			File file;
 			if (fileName.contains(this.remoteFileSeparator) &&
 					fileName.startsWith(remoteDirectory)) { // the server returned the full path
-				file = this.get(session, fileName,
-						fileName.substring(fileName.lastIndexOf(this.remoteFileSeparator)), false);
+				remotePaths.add(fileName);
+				localNames.add(fileName.substring(fileName.lastIndexOf(this.remoteFileSeparator)));
 			}
 			else {
-				file = this.get(session, generateFullPath(remoteDirectory, fileName), fileName, false);
+				remotePaths.add(generateFullPath(remoteDirectory, fileName));
+				localNames.add(fileName);
 			}
-			files.add(file);
+		}
+		List<File> files = new ArrayList<File>();
+		for (Object file : this.forEachPath(requestMessage, session, remotePaths, new PathCallback<F>() {
+
+			public Object doWithPath(Session<F> session, int index) throws IOException {
+				return get(session, remotePaths.get(index), localNames.get(index), false);
+			}
+		})) {
+			files.add((File) file);
 		}
 		return files;
 	}
 
+	protected List<String> mPut(Message<?> requestMessage, Session<F> session, String remoteDirectory,
+			final List<File> files) throws IOException {
+		RemoteFileUtils.makeDirectories(remoteDirectory, session, this.remoteFileSeparator, this.logger);
+		final List<String> remotePaths = new ArrayList<String>();
+		for (File file : files) {
+			remotePaths.add(generateFullPath(remoteDirectory, file.getName()));
+		}
+		this.forEachPath(requestMessage, session, remotePaths, new PathCallback<F>() {
+
+			public Object doWithPath(Session<F> session, int index) throws IOException {
+				put(session, files.get(index), remotePaths.get(index));
+				return remotePaths.get(index);
+			}
+		});
+		return remotePaths;
+	}
+
+	/**
+	 * Send a local file to the remote path, writing to a temporary name first.
+	 * @since 3.0
+	 */
+	protected void put(Session<F> session, File localFile, String remoteFilePath) throws IOException {
+		String tempFilePath = remoteFilePath + this.temporaryFileSuffix;
+		FileInputStream inputStream = new FileInputStream(localFile);
+		try {
+			session.write(inputStream, tempFilePath);
+		}
+		finally {
+			try {
+				inputStream.close();
+			}
+			catch (Exception ignored) {
+			}
+		}
+		session.rename(tempFilePath, remoteFilePath);
+	}
+
+	private List<String> mRm(Message<?> requestMessage, Session<F> session, String remoteDirectory,
+			String remoteFilename) throws IOException {
+		final List<String> remotePaths = this.matchingPaths(session, remoteDirectory, remoteFilename);
+		this.forEachPath(requestMessage, session, remotePaths, new PathCallback<F>() {
+
+			public Object doWithPath(Session<F> session, int index) throws IOException {
+				rm(session, remotePaths.get(index));
+				return remotePaths.get(index);
+			}
+		});
+		return remotePaths;
+	}
+
+	private List<String> mMv(Message<?> requestMessage, Session<F> session, String remoteDirectory,
+			String remoteFilename, String newDirectory) throws IOException {
+		final List<String> remotePaths = this.matchingPaths(session, remoteDirectory, remoteFilename);
+		final List<String> newPaths = new ArrayList<String>();
+		for (String remotePath : remotePaths) {
+			newPaths.add(generateFullPath(newDirectory, getRemoteFilename(remotePath)));
+		}
+		if (!remotePaths.isEmpty()) {
+			RemoteFileUtils.makeDirectories(newDirectory, session, this.remoteFileSeparator, this.logger);
+		}
+		this.forEachPath(requestMessage, session, remotePaths, new PathCallback<F>() {
+
+			public Object doWithPath(Session<F> session, int index) throws IOException {
+				session.rename(remotePaths.get(index), newPaths.get(index));
+				return newPaths.get(index);
+			}
+		});
+		return newPaths;
+	}
+
+	private List<String> matchingPaths(Session<F> session, String remoteDirectory, String remoteFilename)
+			throws IOException {
+		String[] fileNames = session.listNames(generateFullPath(remoteDirectory, remoteFilename));
+		List<String> remotePaths = new ArrayList<String>();
+		if (fileNames != null) {
+			for (String fileName : fileNames) {
+				if (fileName.contains(this.remoteFileSeparator) && fileName.startsWith(remoteDirectory)) {
+					remotePaths.add(fileName);
+				}
+				else {
+					remotePaths.add(generateFullPath(remoteDirectory, fileName));
+				}
+			}
+		}
+		return remotePaths;
+	}
+
+	private boolean isWildcard(String remoteFilename) {
+		return remoteFilename.contains("*") || remoteFilename.contains("?");
+	}
+
+	/**
+	 * Invoke the callback for each path, on the request session or, when
+	 * 'transferConcurrency' is greater than 1, on up to that many sessions
+	 * concurrently. Results are returned in path order.
+	 */
+	private List<Object> forEachPath(final Message<?> requestMessage, Session<F> session,
+			final List<String> paths, final PathCallback<F> callback) throws IOException {
+		final Object[] results = new Object[paths.size()];
+		final AtomicInteger completed = new AtomicInteger();
+		if (this.transferConcurrency < 2 || paths.size() < 2) {
+			for (int i = 0; i < paths.size(); i++) {
+				results[i] = callback.doWithPath(session, i);
+				this.sendProgress(requestMessage, results[i], paths.get(i), completed.incrementAndGet(), paths.size());
+			}
+			return Arrays.asList(results);
+		}
+		final AtomicInteger next = new AtomicInteger();
+		final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+		int workers = Math.min(this.transferConcurrency, paths.size());
+		final CountDownLatch latch = new CountDownLatch(workers);
+		TaskExecutor executor = this.taskExecutor;
+		if (executor == null) {
+			executor = new SimpleAsyncTaskExecutor(this.getClass().getSimpleName() + "-");
+		}
+		for (int i = 0; i < workers; i++) {
+			executor.execute(new Runnable() {
+
+				public void run() {
+					Session<F> workerSession = null;
+					try {
+						workerSession = sessionFactory.getSession();
+						int index;
+						while (failures.isEmpty() && (index = next.getAndIncrement()) < paths.size()) {
+							results[index] = callback.doWithPath(workerSession, index);
+							sendProgress(requestMessage, results[index], paths.get(index),
+									completed.incrementAndGet(), paths.size());
+						}
+					}
+					catch (Exception e) {
+						failures.add(e);
+					}
+					finally {
+						if (workerSession != null) {
+							workerSession.close();
+						}
+						latch.countDown();
+					}
+				}
+			});
+		}
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException(requestMessage, "Interrupted while awaiting transfers", e);
+		}
+		if (!failures.isEmpty()) {
+			Exception failure = failures.get(0);
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			}
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			throw new MessagingException(requestMessage, failure);
+		}
+		return Arrays.asList(results);
+	}
+
+	private void sendProgress(Message<?> requestMessage, Object result, String remotePath, int sequence,
+			int size) {
+		MessageChannel progressChannel = this.progressChannel;
+		if (progressChannel != null) {
+			MessageBuilder<Object> builder = MessageBuilder.withPayload(result)
+					.setHeader(FileHeaders.REMOTE_FILE, getRemoteFilename(remotePath))
+					.setSequenceNumber(sequence)
+					.setSequenceSize(size);
+			if (requestMessage != null) {
+				builder.setCorrelationId(requestMessage.getHeaders().getId());
+			}
+			progressChannel.send(builder.build());
+		}
+	}
+
 	private String generateFullPath(String remoteDirectory, String remoteFilename) {
 		String path;
 		if (this.remoteFileSeparator.equals(remoteDirectory)) {
@@ -573,6 +892,12 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 		session.rename(remoteFilePath, remoteFileNewPath);
 	}
 
+	private interface PathCallback<T> {
+
+		Object doWithPath(Session<T> session, int index) throws IOException;
+
+	}
+
 	abstract protected boolean isDirectory(F file);
 
 	abstract protected boolean isLink(F file);
@@ -19,17 +19,25 @@ package org.springframework.integration.file.remote.session;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.integration.util.SimplePool;
+import org.springframework.scheduling.TaskScheduler;
 
 /**
  * A {@link SessionFactory} implementation that caches Sessions for reuse without
  * requiring reconnection each time the Session is retrieved from the factory.
  * This implementation wraps and delegates to a target SessionFactory instance.
+ * <p>
+ * When a {@link TaskScheduler} is provided, idle sessions are periodically
+ * validated (which, for FTP, also keeps the control connection alive), sessions
+ * exceeding the maximum idle time or lifetime are closed, and the pool is
+ * pre-filled up to the minimum number of idle sessions.
  *
  * @author Josh Long
  * @author Oleg Zhurakousky
@@ -37,7 +45,7 @@ import org.springframework.integration.util.SimplePool;
  * @author Gary Russell
  * @since 2.0
  */
-public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBean {
+public class CachingSessionFactory<F> implements SessionFactory<F>, InitializingBean, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(CachingSessionFactory.class);
 
@@ -45,6 +53,12 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 
 	private final SimplePool<Session<F>> pool;
 
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile long maintenanceInterval = 30000;
+
+	private volatile ScheduledFuture<?> maintenanceTask;
+
 	/**
 	 * Create a CachingSessionFactory with an unlimited number of sessions.
 	 * @param sessionFactory the underlying session factory.
@@ -97,6 +111,92 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 		this.pool.setPoolSize(poolSize);
 	}
 
+	/**
+	 * Set the number of idle sessions to keep open; only applies when a
+	 * {@link #setTaskScheduler(TaskScheduler) taskScheduler} is provided.
+	 * @since 3.0
+	 */
+	public void setMinIdle(int minIdle) {
+		this.pool.setMinIdle(minIdle);
+	}
+
+	/**
+	 * Set the time (milliseconds) after which an idle session is closed.
+	 * Default: no limit.
+	 * @since 3.0
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.pool.setMaxIdleTime(maxIdleTime);
+	}
+
+	/**
+	 * Set the time (milliseconds) after which a session is closed instead of being
+	 * reused, regardless of activity. Default: no limit.
+	 * @since 3.0
+	 */
+	public void setMaxLifetime(long maxLifetime) {
+		this.pool.setMaxLifetime(maxLifetime);
+	}
+
+	/**
+	 * Provide a {@link TaskScheduler} to validate, evict and pre-create idle
+	 * sessions in the background every {@link #setMaintenanceInterval(long)
+	 * maintenanceInterval} milliseconds.
+	 * @since 3.0
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Set the interval (milliseconds) between background maintenance runs.
+	 * Default: 30000.
+	 * @since 3.0
+	 */
+	public void setMaintenanceInterval(long maintenanceInterval) {
+		this.maintenanceInterval = maintenanceInterval;
+	}
+
+	public int getIdleCount() {
+		return this.pool.getIdleCount();
+	}
+
+	public int getActiveCount() {
+		return this.pool.getActiveCount();
+	}
+
+	public long getBorrowedCount() {
+		return this.pool.getBorrowedCount();
+	}
+
+	public long getEvictedCount() {
+		return this.pool.getEvictedCount();
+	}
+
+	public long getTotalWaitTime() {
+		return this.pool.getTotalWaitTime();
+	}
+
+	public long getMaxWaitTime() {
+		return this.pool.getMaxWaitTime();
+	}
+
+	public void afterPropertiesSet() {
+		if (this.taskScheduler != null && this.maintenanceTask == null) {
+			this.maintenanceTask = this.taskScheduler.scheduleWithFixedDelay(new Runnable() {
+
+				public void run() {
+					try {
+						pool.maintain();
+					}
+					catch (Exception e) {
+						logger.error("Session pool maintenance failed", e);
+					}
+				}
+			}, this.maintenanceInterval);
+		}
+	}
+
 	/**
 	 * Get a session from the pool (or block if none available).
 	 */
@@ -108,6 +208,10 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 	 * Remove (close) any unused sessions in the pool.
 	 */
 	public void destroy() {
+		if (this.maintenanceTask != null) {
+			this.maintenanceTask.cancel(true);
+			this.maintenanceTask = null;
+		}
 		this.pool.removeAllIdleItems();
 	}
 
@@ -118,6 +222,8 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 
 		private boolean released;
 
+		private volatile boolean rawReadInProgress;
+
 		private CachedSession(Session<F> targetSession) {
 			this.targetSession = targetSession;
 		}
@@ -129,7 +235,15 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 				}
 			}
 			else {
-				if (logger.isDebugEnabled()){
+				if (this.rawReadInProgress) {
+					// the session is in the middle of a transfer and cannot be reused;
+					// the pool discards it as stale
+					if (logger.isDebugEnabled()){
+						logger.debug("Closing Session with an incomplete raw read.");
+					}
+					this.targetSession.close();
+				}
+				else if (logger.isDebugEnabled()){
 					logger.debug("Releasing Session back to the pool.");
 				}
 				pool.releaseItem(targetSession);
@@ -149,6 +263,10 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 			this.targetSession.read(source, os);
 		}
 
+		public void read(String source, OutputStream os, long offset) throws IOException {
+			this.targetSession.read(source, os, offset);
+		}
+
 		public void write(InputStream inputStream, String destination) throws IOException{
 			this.targetSession.write(inputStream, destination);
 		}
@@ -172,6 +290,21 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 		public String[] listNames(String path) throws IOException {
 			return this.targetSession.listNames(path);
 		}
+
+		public InputStream readRaw(String source) throws IOException {
+			InputStream inputStream = this.targetSession.readRaw(source);
+			this.rawReadInProgress = true;
+			return inputStream;
+		}
+
+		public boolean finalizeRaw() throws IOException {
+			try {
+				return this.targetSession.finalizeRaw();
+			}
+			finally {
+				this.rawReadInProgress = false;
+			}
+		}
 	}
 
 }
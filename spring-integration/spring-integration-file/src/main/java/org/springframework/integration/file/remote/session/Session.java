@@ -38,6 +38,13 @@ public interface Session<T> {
 	
 	void read(String source, OutputStream outputStream) throws IOException;
 
+	/**
+	 * Read the remote file starting at the given byte offset; used to resume
+	 * an interrupted transfer.
+	 * @since 3.0
+	 */
+	void read(String source, OutputStream outputStream, long offset) throws IOException;
+
 	void write(InputStream inputStream, String destination) throws IOException;
 	
 	boolean mkdir(String directory) throws IOException;
@@ -52,4 +59,20 @@ public interface Session<T> {
 
 	String[] listNames(String path) throws IOException;
 
+	/**
+	 * Retrieve a remote file as a raw {@link InputStream}. The session cannot be
+	 * used for other operations until the stream has been closed, after which
+	 * {@link #finalizeRaw()} must be invoked.
+	 * @since 3.0
+	 */
+	InputStream readRaw(String source) throws IOException;
+
+	/**
+	 * Invoke after closing the stream returned by {@link #readRaw(String)}; some
+	 * protocols require the transfer to be completed before the session is reused.
+	 * @return true if the transfer completed successfully.
+	 * @since 3.0
+	 */
+	boolean finalizeRaw() throws IOException;
+
 }
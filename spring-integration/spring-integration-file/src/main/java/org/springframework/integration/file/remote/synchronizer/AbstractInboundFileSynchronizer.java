@@ -20,15 +20,22 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.integration.MessagingException;
@@ -36,7 +43,9 @@ import org.springframework.integration.expression.IntegrationEvaluationContextAw
 import org.springframework.integration.file.filters.FileListFilter;
 import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.store.metadata.MetadataStore;
 import org.springframework.util.Assert;
+import org.springframework.util.FileCopyUtils;
 import org.springframework.util.ObjectUtils;
 
 /**
@@ -46,6 +55,14 @@ import org.springframework.util.ObjectUtils;
  * The implementation should run through any configured
  * {@link org.springframework.integration.file.filters.FileListFilter}s to
  * ensure the file entry is acceptable.
+ * <p>
+ * Files can be transferred concurrently over several sessions (see
+ * {@link #setTransferConcurrency(int)}), in which case the {@link SessionFactory}
+ * would normally be a
+ * {@link org.springframework.integration.file.remote.session.CachingSessionFactory}.
+ * Partially downloaded (temporary) files can be resumed rather than restarted, and
+ * a {@link MetadataStore} can be used to remember which remote files have already
+ * been synchronized, so unchanged files are skipped on subsequent synchronizations.
  *
  * @author Josh Long
  * @author Mark Fisher
@@ -56,6 +73,12 @@ import org.springframework.util.ObjectUtils;
 public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileSynchronizer,
 		InitializingBean, IntegrationEvaluationContextAware {
 
+	/**
+	 * Inserted before the temporary file suffix to name the file that records the
+	 * remote file attributes for a partial transfer.
+	 */
+	private static final String RESUME_FILE_INFIX = ".resume";
+
 	protected final Log logger = LogFactory.getLog(this.getClass());
 
 	private volatile EvaluationContext evaluationContext;
@@ -92,6 +115,16 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 
 	private volatile BeanFactory beanFactory;
 
+	private volatile int transferConcurrency = 1;
+
+	private volatile TaskExecutor taskExecutor;
+
+	private volatile boolean resumeIncompleteTransfers;
+
+	private volatile MetadataStore metadataStore;
+
+	private volatile String metadataKeyPrefix = "";
+
 	/**
 	 * Create a synchronizer with the {@link SessionFactory} used to acquire {@link Session} instances.
 	 */
@@ -130,6 +163,71 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 		this.deleteRemoteFiles = deleteRemoteFiles;
 	}
 
+	/**
+	 * Set the maximum number of files transferred concurrently; each concurrent
+	 * transfer uses its own {@link Session}. Default 1 (files are copied one after
+	 * another over the session used to list the remote directory).
+	 * @param transferConcurrency the number of concurrent transfers.
+	 * @since 3.0
+	 */
+	public void setTransferConcurrency(int transferConcurrency) {
+		Assert.isTrue(transferConcurrency > 0, "'transferConcurrency' must be greater than 0");
+		this.transferConcurrency = transferConcurrency;
+	}
+
+	/**
+	 * Set the {@link TaskExecutor} used to run concurrent transfers when
+	 * {@link #setTransferConcurrency(int) transferConcurrency} is greater than 1.
+	 * Default is a {@link SimpleAsyncTaskExecutor}.
+	 * @param taskExecutor the task executor.
+	 * @since 3.0
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' must not be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * When true, a temporary file left behind by an interrupted transfer is
+	 * completed from its current length instead of being downloaded again.
+	 * The modified time and size of the remote file are recorded in a
+	 * <code>&lt;file&gt;.resume&lt;temporaryFileSuffix&gt;</code> file when a
+	 * transfer starts; the transfer is restarted from the beginning if they have
+	 * changed, are not known (see {@link #getModified(Object)} and
+	 * {@link #getSize(Object)}), or the partial file is larger than the remote
+	 * file. Default false.
+	 * @param resumeIncompleteTransfers true to resume.
+	 * @since 3.0
+	 */
+	public void setResumeIncompleteTransfers(boolean resumeIncompleteTransfers) {
+		this.resumeIncompleteTransfers = resumeIncompleteTransfers;
+	}
+
+	/**
+	 * Set a {@link MetadataStore} used to record the modification time and size
+	 * of each synchronized remote file. Files whose attributes have not changed
+	 * since they were last synchronized are skipped without further processing.
+	 * Use a persistent store to retain this state across restarts.
+	 * @param metadataStore the metadata store.
+	 * @since 3.0
+	 */
+	public void setMetadataStore(MetadataStore metadataStore) {
+		this.metadataStore = metadataStore;
+	}
+
+	/**
+	 * Set a prefix for the keys written to the {@link #setMetadataStore(MetadataStore)
+	 * metadataStore}; the key is this prefix followed by the remote file path.
+	 * Use distinct prefixes when a store is shared by synchronizers for different
+	 * servers. Default "".
+	 * @param metadataKeyPrefix the prefix.
+	 * @since 3.0
+	 */
+	public void setMetadataKeyPrefix(String metadataKeyPrefix) {
+		Assert.notNull(metadataKeyPrefix, "'metadataKeyPrefix' must not be null");
+		this.metadataKeyPrefix = metadataKeyPrefix;
+	}
+
 	@Override
 	public void setIntegrationEvaluationContext(EvaluationContext evaluationContext) {
 		this.evaluationContext = evaluationContext;
@@ -150,6 +248,7 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 
 	public void synchronizeToLocalDirectory(File localDirectory) {
 		Session<F> session = null;
+		List<F> pendingFiles = new ArrayList<F>();
 		try {
 			session = this.sessionFactory.getSession();
 			Assert.state(session != null, "failed to acquire a Session");
@@ -157,29 +256,121 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 			if (!ObjectUtils.isEmpty(files)) {
 				Collection<F> filteredFiles = this.filterFiles(files);
 				for (F file : filteredFiles) {
-					if (file != null) {
-						this.copyFileToLocalDirectory(this.remoteDirectory, file, localDirectory, session);
+					if (file != null && !this.isUnchanged(file)) {
+						pendingFiles.add(file);
 					}
 				}
 			}
+			if (this.transferConcurrency < 2 || pendingFiles.size() < 2) {
+				for (F file : pendingFiles) {
+					this.copyFileToLocalDirectory(this.remoteDirectory, file, localDirectory, session);
+				}
+				pendingFiles.clear();
+			}
 		}
 		catch (IOException e) {
 			throw new MessagingException("Problem occurred while synchronizing remote to local directory", e);
 		}
 		finally {
-			if (session != null) {
-				try {
-					session.close();
-				}
-				catch (Exception ignored) {
-					if (logger.isDebugEnabled()) {
-						logger.debug("failed to close Session", ignored);
+			this.closeSession(session);
+		}
+		if (!pendingFiles.isEmpty()) {
+			this.copyFilesConcurrently(pendingFiles, localDirectory);
+		}
+	}
+
+	private void copyFilesConcurrently(List<F> files, final File localDirectory) {
+		final Queue<F> pendingFiles = new ConcurrentLinkedQueue<F>(files);
+		final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+		int workers = Math.min(this.transferConcurrency, files.size());
+		final CountDownLatch latch = new CountDownLatch(workers);
+		TaskExecutor executor = this.taskExecutor;
+		if (executor == null) {
+			executor = new SimpleAsyncTaskExecutor(this.getClass().getSimpleName() + "-");
+		}
+		for (int i = 0; i < workers; i++) {
+			executor.execute(new Runnable() {
+
+				public void run() {
+					Session<F> session = null;
+					try {
+						session = sessionFactory.getSession();
+						Assert.state(session != null, "failed to acquire a Session");
+						F file;
+						while (failures.isEmpty() && (file = pendingFiles.poll()) != null) {
+							copyFileToLocalDirectory(remoteDirectory, file, localDirectory, session);
+						}
+					}
+					catch (Exception e) {
+						failures.add(e);
+					}
+					finally {
+						closeSession(session);
+						latch.countDown();
 					}
 				}
+			});
+		}
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while synchronizing remote to local directory", e);
+		}
+		if (!failures.isEmpty()) {
+			Exception failure = failures.get(0);
+			if (failure instanceof MessagingException) {
+				throw (MessagingException) failure;
+			}
+			throw new MessagingException("Problem occurred while synchronizing remote to local directory", failure);
+		}
+	}
+
+	private void closeSession(Session<F> session) {
+		if (session != null) {
+			try {
+				session.close();
+			}
+			catch (Exception ignored) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("failed to close Session", ignored);
+				}
+			}
+		}
+	}
+
+	private boolean isUnchanged(F remoteFile) {
+		if (this.metadataStore == null) {
+			return false;
+		}
+		String fingerprint = this.fingerprint(remoteFile);
+		return fingerprint != null
+				&& fingerprint.equals(this.metadataStore.get(this.metadataKey(this.remoteDirectory, remoteFile)));
+	}
+
+	private void recordSynchronized(String remoteDirectoryPath, F remoteFile) {
+		if (this.metadataStore != null) {
+			String fingerprint = this.fingerprint(remoteFile);
+			if (fingerprint != null) {
+				this.metadataStore.put(this.metadataKey(remoteDirectoryPath, remoteFile), fingerprint);
 			}
 		}
 	}
 
+	private String metadataKey(String remoteDirectoryPath, F remoteFile) {
+		return this.metadataKeyPrefix + remoteDirectoryPath + this.remoteFileSeparator + this.getFilename(remoteFile);
+	}
+
+	private String fingerprint(F remoteFile) {
+		long modified = this.getModified(remoteFile);
+		long size = this.getSize(remoteFile);
+		if (modified < 0 && size < 0) {
+			return null;
+		}
+		return modified + ":" + size;
+	}
+
 	private void copyFileToLocalDirectory(String remoteDirectoryPath, F remoteFile, File localDirectory, Session<F> session) throws IOException {
 		String remoteFileName = this.getFilename(remoteFile);
 		String localFileName = this.generateLocalFileName(remoteFileName);
@@ -195,10 +386,27 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 		if (!localFile.exists()) {
 			String tempFileName = localFile.getAbsolutePath() + this.temporaryFileSuffix;
 			File tempFile = new File(tempFileName);
+			File resumeFile = new File(localFile.getAbsolutePath() + RESUME_FILE_INFIX + this.temporaryFileSuffix);
+			String fingerprint = this.resumeIncompleteTransfers ? this.fingerprint(remoteFile) : null;
+			long offset = 0;
+			if (fingerprint != null) {
+				offset = this.resumeOffset(remoteFile, tempFile, resumeFile, fingerprint);
+				if (offset == 0) {
+					FileCopyUtils.copy(fingerprint.getBytes(), resumeFile);
+				}
+			}
 			InputStream inputStream = null;
-			FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+			FileOutputStream fileOutputStream = new FileOutputStream(tempFile, offset > 0);
 			try {
-				session.read(remoteFilePath, fileOutputStream);
+				if (offset > 0) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("resuming transfer of " + remoteFilePath + " at offset " + offset);
+					}
+					session.read(remoteFilePath, fileOutputStream, offset);
+				}
+				else {
+					session.read(remoteFilePath, fileOutputStream);
+				}
 			}
 			catch (Exception e) {
 				if (e instanceof RuntimeException){
@@ -224,14 +432,41 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 			}
 
 			if (tempFile.renameTo(localFile)) {
+				resumeFile.delete();
 				if (this.deleteRemoteFiles) {
 					session.remove(remoteFilePath);
 					if (logger.isDebugEnabled()) {
 						logger.debug("deleted " + remoteFilePath);
 					}
 				}
+				this.recordSynchronized(remoteDirectoryPath, remoteFile);
 			}
 		}
+		else {
+			this.recordSynchronized(remoteDirectoryPath, remoteFile);
+		}
+	}
+
+	/**
+	 * Determine the offset from which to resume the transfer of a remote file. A partial
+	 * (temporary) file is only resumed if it was started for the same version (modified
+	 * time and size) of the remote file, as recorded in the resume file, and is not larger
+	 * than the remote file.
+	 * @return the length of the partial file, or 0 if the transfer must be restarted.
+	 */
+	private long resumeOffset(F remoteFile, File tempFile, File resumeFile, String fingerprint) throws IOException {
+		if (!tempFile.exists() || !resumeFile.exists()) {
+			return 0;
+		}
+		long length = tempFile.length();
+		if (this.getModified(remoteFile) >= 0 && length <= this.getSize(remoteFile)
+				&& fingerprint.equals(new String(FileCopyUtils.copyToByteArray(resumeFile)))) {
+			return length;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("remote file has changed since the partial transfer to " + tempFile + "; restarting");
+		}
+		return 0;
 	}
 
 	private String generateLocalFileName(String remoteFileName){
@@ -245,4 +480,28 @@ public abstract class AbstractInboundFileSynchronizer<F> implements InboundFileS
 
 	protected abstract String getFilename(F file);
 
+	/**
+	 * Return the last modified time of the remote file, used to detect changes
+	 * when a {@link #setMetadataStore(MetadataStore) metadataStore} is provided.
+	 * The default implementation returns -1 (unknown).
+	 * @param file the remote file.
+	 * @return the modified time.
+	 * @since 3.0
+	 */
+	protected long getModified(F file) {
+		return -1;
+	}
+
+	/**
+	 * Return the size of the remote file, used to detect changes when a
+	 * {@link #setMetadataStore(MetadataStore) metadataStore} is provided.
+	 * The default implementation returns -1 (unknown).
+	 * @param file the remote file.
+	 * @return the size.
+	 * @since 3.0
+	 */
+	protected long getSize(F file) {
+		return -1;
+	}
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.Message;
+import org.springframework.integration.file.filters.AcceptAllFileListFilter;
+import org.springframework.integration.test.util.TestUtils;
+
+/**
+ * @since 3.0
+ */
+public class FileReadingMessageSourceMultiDirectoryTests {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private File busy;
+
+	private File quiet;
+
+	@Before
+	public void setUp() throws Exception {
+		this.busy = this.tempFolder.newFolder("busy");
+		this.quiet = this.tempFolder.newFolder("quiet");
+		for (int i = 0; i < 10; i++) {
+			new File(this.busy, "b" + i).createNewFile();
+		}
+		new File(this.quiet, "q0").createNewFile();
+		new File(this.quiet, "q1").createNewFile();
+	}
+
+	@Test
+	public void testFairInterleaving() throws Exception {
+		FileReadingMessageSource source = new FileReadingMessageSource();
+		source.setDirectories(Arrays.asList(this.busy, this.quiet));
+		source.setMaxFilesPerDirectory(2);
+		source.afterPropertiesSet();
+		List<String> firstRound = new ArrayList<String>();
+		for (int i = 0; i < 4; i++) {
+			firstRound.add(source.receive().getPayload().getName());
+		}
+		assertEquals(Arrays.asList("b0", "b1", "q0", "q1"), firstRound);
+		int remaining = 0;
+		while (source.receive() != null) {
+			remaining++;
+		}
+		assertEquals(8, remaining);
+	}
+
+	@Test
+	public void testMaxBacklogPerDirectory() throws Exception {
+		FileReadingMessageSource source = new FileReadingMessageSource();
+		source.setDirectories(Arrays.asList(this.busy, this.quiet));
+		// files left in the directories must be listed again
+		source.setFilter(new AcceptAllFileListFilter<File>());
+		source.setMaxFilesPerDirectory(2);
+		source.setMaxBacklogPerDirectory(4);
+		source.afterPropertiesSet();
+		List<String> received = new ArrayList<String>();
+		Message<File> message;
+		while ((message = source.receive()) != null) {
+			received.add(message.getPayload().getName());
+			assertTrue(message.getPayload().delete());
+			Map<?, ?> backlogs = TestUtils.getPropertyValue(source, "backlogs", Map.class);
+			assertTrue(TestUtils.getPropertyValue(backlogs.get(this.busy), "files", Collection.class).size() <= 4);
+		}
+		assertEquals(Arrays.asList("b0", "b1", "q0", "q1", "b2", "b3", "b4", "b5", "b6", "b7", "b8", "b9"),
+				received);
+	}
+
+	@Test
+	public void testConcurrentScan() throws Exception {
+		FileReadingMessageSource source = new FileReadingMessageSource();
+		source.setDirectories(Arrays.asList(this.busy, this.quiet));
+		source.setScanExecutor(new SimpleAsyncTaskExecutor());
+		source.afterPropertiesSet();
+		Set<File> received = new HashSet<File>();
+		Message<File> message;
+		while ((message = source.receive()) != null) {
+			received.add(message.getPayload());
+		}
+		assertEquals(12, received.size());
+		new File(this.quiet, "q2").createNewFile();
+		assertEquals("q2", source.receive().getPayload().getName());
+		assertNull(source.receive());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDirectoryAndDirectories() throws Exception {
+		FileReadingMessageSource source = new FileReadingMessageSource();
+		source.setDirectory(this.busy);
+		source.setDirectories(Arrays.asList(this.quiet));
+		source.afterPropertiesSet();
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.file.remote.session.CachingSessionFactory;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @since 3.0
+ */
+public class RemoteFileStreamingMessageSourceTests {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testStreamHoldsSessionUntilClosed() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		Session<String> listSession = mock(Session.class);
+		Session<String> readSession = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(listSession, readSession, listSession);
+		when(listSession.list("remote")).thenReturn(new String[] {"foo", "dir/"});
+		when(readSession.readRaw("remote/foo")).thenReturn(new ByteArrayInputStream("bar".getBytes()));
+
+		TestStreamingSource source = new TestStreamingSource(sessionFactory);
+		source.setRemoteDirectory("remote");
+		source.afterPropertiesSet();
+
+		Message<InputStream> message = source.receive();
+		assertEquals("foo", message.getHeaders().get(FileHeaders.REMOTE_FILE));
+		assertEquals("remote", message.getHeaders().get(FileHeaders.REMOTE_DIRECTORY));
+		verify(listSession).close();
+		verify(readSession, never()).close();
+
+		assertEquals("bar", new String(FileCopyUtils.copyToByteArray(message.getPayload())));
+		verify(readSession).finalizeRaw();
+		verify(readSession).close();
+
+		// 'foo' was already emitted and 'dir/' is not a file
+		assertNull(source.receive());
+		verify(listSession, times(2)).close();
+	}
+
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEarlyCloseClosesSessionWithoutFinalizing() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		Session<String> listSession = mock(Session.class);
+		Session<String> readSession = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(listSession, readSession);
+		when(listSession.list("remote")).thenReturn(new String[] {"foo"});
+		when(readSession.readRaw("remote/foo")).thenReturn(new ByteArrayInputStream("bar".getBytes()));
+
+		TestStreamingSource source = new TestStreamingSource(sessionFactory);
+		source.setRemoteDirectory("remote");
+		source.afterPropertiesSet();
+
+		InputStream stream = source.receive().getPayload();
+		assertEquals('b', stream.read());
+		stream.close();
+		stream.close();
+		verify(readSession, never()).finalizeRaw();
+		verify(readSession).close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCachedSessionClosedMidTransferIsNotReused() throws Exception {
+		SessionFactory<String> targetFactory = mock(SessionFactory.class);
+		Session<String> abandoned = mock(Session.class);
+		Session<String> replacement = mock(Session.class);
+		when(targetFactory.getSession()).thenReturn(abandoned, replacement);
+		when(abandoned.list("remote")).thenReturn(new String[] {"foo", "baz"});
+		when(abandoned.readRaw("remote/foo")).thenReturn(new ByteArrayInputStream("bar".getBytes()));
+		final AtomicBoolean abandonedOpen = new AtomicBoolean(true);
+		when(abandoned.isOpen()).thenAnswer(new Answer<Boolean>() {
+
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				return abandonedOpen.get();
+			}
+
+		});
+		doAnswer(new Answer<Void>() {
+
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				abandonedOpen.set(false);
+				return null;
+			}
+
+		}).when(abandoned).close();
+		when(replacement.isOpen()).thenReturn(true);
+		when(replacement.readRaw("remote/baz")).thenReturn(new ByteArrayInputStream("qux".getBytes()));
+
+		CachingSessionFactory<String> cachingFactory = new CachingSessionFactory<String>(targetFactory, 1);
+		TestStreamingSource source = new TestStreamingSource(cachingFactory);
+		source.setRemoteDirectory("remote");
+		source.afterPropertiesSet();
+
+		// the session that listed the directory is reused to read 'foo'
+		Message<InputStream> first = source.receive();
+		assertEquals("foo", first.getHeaders().get(FileHeaders.REMOTE_FILE));
+		first.getPayload().read();
+		first.getPayload().close();
+		verify(abandoned).close();
+		verify(abandoned, never()).finalizeRaw();
+
+		Message<InputStream> second = source.receive();
+		assertEquals("baz", second.getHeaders().get(FileHeaders.REMOTE_FILE));
+		assertEquals("qux", new String(FileCopyUtils.copyToByteArray(second.getPayload())));
+		verify(abandoned, never()).readRaw("remote/baz");
+		verify(replacement).finalizeRaw();
+		verify(replacement, never()).close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testOpenFailureClosesSession() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		Session<String> listSession = mock(Session.class);
+		Session<String> readSession = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(listSession, readSession);
+		when(listSession.list("remote")).thenReturn(new String[] {"foo"});
+		IOException failure = new IOException("no such file");
+		when(readSession.readRaw("remote/foo")).thenThrow(failure);
+
+		TestStreamingSource source = new TestStreamingSource(sessionFactory);
+		source.setRemoteDirectory("remote");
+		source.afterPropertiesSet();
+
+		try {
+			source.receive();
+			fail("expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertSame(failure, e.getCause());
+		}
+		verify(readSession).close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFilterForgetsFilesNoLongerListed() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		Session<String> session = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.list("remote")).thenReturn(new String[] {"foo"}, new String[] {"foo"},
+				new String[0], new String[] {"foo"});
+		when(session.readRaw("remote/foo")).thenReturn(new ByteArrayInputStream("bar".getBytes()),
+				new ByteArrayInputStream("baz".getBytes()));
+
+		TestStreamingSource source = new TestStreamingSource(sessionFactory);
+		source.setRemoteDirectory("remote");
+		source.afterPropertiesSet();
+
+		assertEquals("bar", new String(FileCopyUtils.copyToByteArray(source.receive().getPayload())));
+		assertNull(source.receive());
+		// 'foo' was removed...
+		assertNull(source.receive());
+		// ...and written again
+		assertEquals("baz", new String(FileCopyUtils.copyToByteArray(source.receive().getPayload())));
+	}
+
+
+	private static class TestStreamingSource extends AbstractRemoteFileStreamingMessageSource<String> {
+
+		public TestStreamingSource(SessionFactory<String> sessionFactory) {
+			super(sessionFactory);
+		}
+
+		public String getComponentType() {
+			return "test";
+		}
+
+		@Override
+		protected boolean isFile(String file) {
+			return !file.endsWith("/");
+		}
+
+		@Override
+		protected String getFilename(String file) {
+			return file;
+		}
+
+	}
+
+}
@@ -16,12 +16,16 @@
 package org.springframework.integration.file.remote.gateway;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -30,10 +34,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
@@ -43,6 +50,7 @@ import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.file.FileHeaders;
 import org.springframework.integration.file.filters.AbstractSimplePatternFileListFilter;
 import org.springframework.integration.file.remote.AbstractFileInfo;
@@ -193,6 +201,15 @@ public class RemoteFileOutboundGatewayTests {
 			public boolean exists(String path) throws IOException {
 				return false;
 			}
+			public void read(String source, OutputStream outputStream, long offset)
+					throws IOException {
+			}
+			public InputStream readRaw(String source) throws IOException {
+				return null;
+			}
+			public boolean finalizeRaw() throws IOException {
+				return false;
+			}
 			public String[] listNames(String path) throws IOException {
 				return new String[] {path1, path2};
 			}
@@ -243,6 +260,15 @@ public class RemoteFileOutboundGatewayTests {
 			public boolean exists(String path) throws IOException {
 				return false;
 			}
+			public void read(String source, OutputStream outputStream, long offset)
+					throws IOException {
+			}
+			public InputStream readRaw(String source) throws IOException {
+				return null;
+			}
+			public boolean finalizeRaw() throws IOException {
+				return false;
+			}
 			public String[] listNames(String path) throws IOException {
 				return new String[] {"f1"};
 			}
@@ -294,6 +320,15 @@ public class RemoteFileOutboundGatewayTests {
 			public boolean exists(String path) throws IOException {
 				return false;
 			}
+			public void read(String source, OutputStream outputStream, long offset)
+					throws IOException {
+			}
+			public InputStream readRaw(String source) throws IOException {
+				return null;
+			}
+			public boolean finalizeRaw() throws IOException {
+				return false;
+			}
 			public String[] listNames(String path) throws IOException {
 				return new String[0];
 			}
@@ -601,6 +636,15 @@ public class RemoteFileOutboundGatewayTests {
 			public boolean exists(String path) throws IOException {
 				return true;
 			}
+			public void read(String source, OutputStream outputStream, long offset)
+					throws IOException {
+			}
+			public InputStream readRaw(String source) throws IOException {
+				return null;
+			}
+			public boolean finalizeRaw() throws IOException {
+				return false;
+			}
 			public String[] listNames(String path) throws IOException {
 				return null;
 			}
@@ -661,6 +705,15 @@ public class RemoteFileOutboundGatewayTests {
 			public boolean exists(String path) throws IOException {
 				return true;
 			}
+			public void read(String source, OutputStream outputStream, long offset)
+					throws IOException {
+			}
+			public InputStream readRaw(String source) throws IOException {
+				return null;
+			}
+			public boolean finalizeRaw() throws IOException {
+				return false;
+			}
 			public String[] listNames(String path) throws IOException {
 				return null;
 			}
@@ -719,6 +772,15 @@ public class RemoteFileOutboundGatewayTests {
 			public boolean exists(String path) throws IOException {
 				return true;
 			}
+			public void read(String source, OutputStream outputStream, long offset)
+					throws IOException {
+			}
+			public InputStream readRaw(String source) throws IOException {
+				return null;
+			}
+			public boolean finalizeRaw() throws IOException {
+				return false;
+			}
 			public String[] listNames(String path) throws IOException {
 				return null;
 			}
@@ -749,6 +811,112 @@ public class RemoteFileOutboundGatewayTests {
 				out.getHeaders().get(FileHeaders.REMOTE_FILE));
 	}
 
+	@Test
+	public void testMGetConcurrentWithProgress() throws Exception {
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		Session session = mock(Session.class);
+		TestRemoteFileOutboundGateway gw = new TestRemoteFileOutboundGateway
+			(sessionFactory, "mget", "payload");
+		File localDir = new File(this.tmpDir, "mgetConcurrent");
+		gw.setLocalDirectory(localDir);
+		gw.setTransferConcurrency(3);
+		QueueChannel progress = new QueueChannel();
+		gw.setProgressChannel(progress);
+		gw.afterPropertiesSet();
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.listNames("testremote/*")).thenReturn(new String[] {"f1", "f2", "f3", "f4"});
+		doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((OutputStream) invocation.getArguments()[1]).write("testData".getBytes());
+				return null;
+			}
+		}).when(session).read(anyString(), any(OutputStream.class));
+		Message<String> request = new GenericMessage<String>("testremote/*");
+		try {
+			@SuppressWarnings("unchecked")
+			Message<List<File>> out = (Message<List<File>>) gw.handleRequestMessage(request);
+			assertEquals(4, out.getPayload().size());
+			for (int i = 0; i < 4; i++) {
+				assertEquals("f" + (i + 1), out.getPayload().get(i).getName());
+				assertTrue(out.getPayload().get(i).exists());
+			}
+			// request session plus one session per worker
+			verify(sessionFactory, times(4)).getSession();
+			verify(session, times(4)).close();
+			Set<Integer> sequences = new HashSet<Integer>();
+			for (int i = 0; i < 4; i++) {
+				Message<?> progressMessage = progress.receive(0);
+				assertEquals(request.getHeaders().getId(), progressMessage.getHeaders().getCorrelationId());
+				assertEquals(Integer.valueOf(4), progressMessage.getHeaders().getSequenceSize());
+				sequences.add(progressMessage.getHeaders().getSequenceNumber());
+			}
+			assertEquals(4, sequences.size());
+			assertNull(progress.receive(0));
+		}
+		finally {
+			for (File file : localDir.listFiles()) {
+				file.delete();
+			}
+			localDir.delete();
+		}
+	}
+
+	@Test
+	public void testMPut() throws Exception {
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		Session session = mock(Session.class);
+		TestRemoteFileOutboundGateway gw = new TestRemoteFileOutboundGateway
+			(sessionFactory, "mput", "'testremote/x'");
+		gw.setTransferConcurrency(2);
+		gw.afterPropertiesSet();
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.exists("testremote/x")).thenReturn(Boolean.TRUE);
+		File f1 = File.createTempFile("mput", ".1");
+		File f2 = File.createTempFile("mput", ".2");
+		try {
+			@SuppressWarnings("unchecked")
+			Message<List<String>> out = (Message<List<String>>) gw
+					.handleRequestMessage(new GenericMessage<List<File>>(Arrays.asList(f1, f2)));
+			assertEquals(Arrays.asList("testremote/x/" + f1.getName(), "testremote/x/" + f2.getName()),
+					out.getPayload());
+			verify(session).write(any(InputStream.class), eq("testremote/x/" + f1.getName() + ".writing"));
+			verify(session).rename("testremote/x/" + f1.getName() + ".writing", "testremote/x/" + f1.getName());
+			verify(session).rename("testremote/x/" + f2.getName() + ".writing", "testremote/x/" + f2.getName());
+		}
+		finally {
+			f1.delete();
+			f2.delete();
+		}
+	}
+
+	@Test
+	public void testRmAndMvWildcard() throws Exception {
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		Session session = mock(Session.class);
+		when(sessionFactory.getSession()).thenReturn(session);
+		when(session.listNames("testremote/*.txt")).thenReturn(new String[] {"f1.txt", "f2.txt"});
+		when(session.exists(anyString())).thenReturn(Boolean.TRUE);
+		TestRemoteFileOutboundGateway gw = new TestRemoteFileOutboundGateway
+			(sessionFactory, "rm", "payload");
+		gw.afterPropertiesSet();
+		@SuppressWarnings("unchecked")
+		Message<List<String>> out = (Message<List<String>>) gw
+				.handleRequestMessage(new GenericMessage<String>("testremote/*.txt"));
+		assertEquals(Arrays.asList("testremote/f1.txt", "testremote/f2.txt"), out.getPayload());
+		verify(session).remove("testremote/f1.txt");
+		verify(session).remove("testremote/f2.txt");
+
+		gw = new TestRemoteFileOutboundGateway(sessionFactory, "mv", "payload");
+		gw.setRenameExpression("'archive'");
+		gw.afterPropertiesSet();
+		@SuppressWarnings("unchecked")
+		Message<List<String>> moved = (Message<List<String>>) gw
+				.handleRequestMessage(new GenericMessage<String>("testremote/*.txt"));
+		assertEquals(Arrays.asList("archive/f1.txt", "archive/f2.txt"), moved.getPayload());
+		verify(session).rename("testremote/f1.txt", "archive/f1.txt");
+		verify(session).rename("testremote/f2.txt", "archive/f2.txt");
+	}
+
 }
 
 class TestRemoteFileOutboundGateway extends AbstractRemoteFileOutboundGateway<TestLsEntry> {
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.remote.synchronizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.store.metadata.SimpleMetadataStore;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @since 3.0
+ */
+public class AbstractInboundFileSynchronizerTests {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConcurrentTransfers() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		final Set<Thread> readers = Collections.synchronizedSet(new HashSet<Thread>());
+		Session<String> session = this.mockSession(new String[] {"a", "b", "c", "d"}, readers);
+		when(sessionFactory.getSession()).thenReturn(session);
+		TestSynchronizer synchronizer = new TestSynchronizer(sessionFactory);
+		synchronizer.setTransferConcurrency(2);
+		File local = this.tempFolder.newFolder("local");
+		synchronizer.synchronizeToLocalDirectory(local);
+		for (String name : new String[] {"a", "b", "c", "d"}) {
+			assertEquals("content-remote/" + name, new String(FileCopyUtils.copyToByteArray(new File(local, name))));
+		}
+		// one listing session plus one per worker
+		verify(sessionFactory, times(3)).getSession();
+		verify(session, times(3)).close();
+		assertFalse(readers.contains(Thread.currentThread()));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testResumeAndSnapshot() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		Session<String> session = this.mockSession(new String[] {"a"}, null);
+		when(sessionFactory.getSession()).thenReturn(session);
+		TestSynchronizer synchronizer = new TestSynchronizer(sessionFactory);
+		synchronizer.setResumeIncompleteTransfers(true);
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		synchronizer.setMetadataStore(metadataStore);
+		synchronizer.setMetadataKeyPrefix("test:");
+		File local = this.tempFolder.newFolder("local");
+		FileCopyUtils.copy("partial-".getBytes(), new File(local, "a.writing"));
+		FileCopyUtils.copy("42:15".getBytes(), new File(local, "a.resume.writing"));
+
+		synchronizer.synchronizeToLocalDirectory(local);
+		verify(session).read(eq("remote/a"), any(OutputStream.class), eq(8L));
+		verify(session, never()).read(anyString(), any(OutputStream.class));
+		assertEquals("partial-resumed", new String(FileCopyUtils.copyToByteArray(new File(local, "a"))));
+		assertFalse(new File(local, "a.resume.writing").exists());
+		assertEquals("42:15", metadataStore.get("test:remote/a"));
+
+		new File(local, "a").delete();
+		synchronizer.synchronizeToLocalDirectory(local);
+		assertFalse(new File(local, "a").exists());
+
+		metadataStore.put("test:remote/a", "41:15");
+		synchronizer.synchronizeToLocalDirectory(local);
+		assertTrue(new File(local, "a").exists());
+		verify(session).read(eq("remote/a"), any(OutputStream.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testResumeRestartsWhenRemoteFileChanged() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		Session<String> session = this.mockSession(new String[] {"a"}, null);
+		when(sessionFactory.getSession()).thenReturn(session);
+		TestSynchronizer synchronizer = new TestSynchronizer(sessionFactory);
+		synchronizer.setResumeIncompleteTransfers(true);
+		File local = this.tempFolder.newFolder("local");
+		FileCopyUtils.copy("partial-".getBytes(), new File(local, "a.writing"));
+		FileCopyUtils.copy("41:15".getBytes(), new File(local, "a.resume.writing"));
+
+		synchronizer.synchronizeToLocalDirectory(local);
+		verify(session, never()).read(anyString(), any(OutputStream.class), any(Long.class));
+		assertEquals("content-remote/a", new String(FileCopyUtils.copyToByteArray(new File(local, "a"))));
+		assertFalse(new File(local, "a.resume.writing").exists());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testResumeRestartsWhenPartialFileTooLarge() throws Exception {
+		SessionFactory<String> sessionFactory = mock(SessionFactory.class);
+		Session<String> session = this.mockSession(new String[] {"a"}, null);
+		when(sessionFactory.getSession()).thenReturn(session);
+		TestSynchronizer synchronizer = new TestSynchronizer(sessionFactory);
+		synchronizer.setResumeIncompleteTransfers(true);
+		File local = this.tempFolder.newFolder("local");
+		FileCopyUtils.copy("partial-partial-partial-".getBytes(), new File(local, "a.writing"));
+		FileCopyUtils.copy("42:15".getBytes(), new File(local, "a.resume.writing"));
+
+		synchronizer.synchronizeToLocalDirectory(local);
+		verify(session, never()).read(anyString(), any(OutputStream.class), any(Long.class));
+		assertEquals("content-remote/a", new String(FileCopyUtils.copyToByteArray(new File(local, "a"))));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Session<String> mockSession(String[] files, final Set<Thread> readers) throws Exception {
+		Session<String> session = mock(Session.class);
+		when(session.list("remote")).thenReturn(files);
+		doAnswer(new Answer<Object>() {
+
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				if (readers != null) {
+					readers.add(Thread.currentThread());
+				}
+				((OutputStream) invocation.getArguments()[1]).write(("content-" + invocation.getArguments()[0]).getBytes());
+				return null;
+			}
+		}).when(session).read(anyString(), any(OutputStream.class));
+		doAnswer(new Answer<Object>() {
+
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((OutputStream) invocation.getArguments()[1]).write("resumed".getBytes());
+				return null;
+			}
+		}).when(session).read(anyString(), any(OutputStream.class), eq(8L));
+		return session;
+	}
+
+
+	private static class TestSynchronizer extends AbstractInboundFileSynchronizer<String> {
+
+		public TestSynchronizer(SessionFactory<String> sessionFactory) {
+			super(sessionFactory);
+			this.setRemoteDirectory("remote");
+			this.setIntegrationEvaluationContext(ExpressionUtils.createStandardEvaluationContext());
+			this.afterPropertiesSet();
+		}
+
+		@Override
+		protected boolean isFile(String file) {
+			return true;
+		}
+
+		@Override
+		protected String getFilename(String file) {
+			return file;
+		}
+
+		@Override
+		protected long getModified(String file) {
+			return 42;
+		}
+
+		@Override
+		protected long getSize(String file) {
+			return 15;
+		}
+
+	}
+
+}
@@ -50,4 +50,14 @@ public class FtpInboundFileSynchronizer extends AbstractInboundFileSynchronizer<
 		return (file != null ? file.getName() : null);
 	}
 
+	@Override
+	protected long getModified(FTPFile file) {
+		return (file != null && file.getTimestamp() != null) ? file.getTimestamp().getTimeInMillis() : -1;
+	}
+
+	@Override
+	protected long getSize(FTPFile file) {
+		return file != null ? file.getSize() : -1;
+	}
+
 }
@@ -78,6 +78,42 @@ public class FtpSession implements Session<FTPFile> {
 		logger.info("File has been successfully transfered from: " + path);
 	}
 
+	public void read(String path, OutputStream fos, long offset) throws IOException {
+		Assert.hasText(path, "path must not be null");
+		Assert.notNull(fos, "outputStream must not be null");
+		this.client.setRestartOffset(offset);
+		try {
+			boolean completed = this.client.retrieveFile(path, fos);
+			if (!completed) {
+				throw new IOException("Failed to copy '" + path + "' from offset " + offset +
+						". Server replied with: " + this.client.getReplyString());
+			}
+		}
+		finally {
+			this.client.setRestartOffset(0);
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("File has been successfully transfered from: " + path + " (offset " + offset + ")");
+		}
+	}
+
+	public InputStream readRaw(String source) throws IOException {
+		Assert.hasText(source, "source must not be null");
+		InputStream inputStream = this.client.retrieveFileStream(source);
+		if (inputStream == null) {
+			throw new IOException("Failed to obtain InputStream for remote file " + source + ": "
+					+ this.client.getReplyCode());
+		}
+		return inputStream;
+	}
+
+	public boolean finalizeRaw() throws IOException {
+		if (!this.client.completePendingCommand()) {
+			throw new IOException("Failed to complete raw read. Server replied with: " + this.client.getReplyString());
+		}
+		return true;
+	}
+
 	public void write(InputStream inputStream, String path) throws IOException {
 		Assert.notNull(inputStream, "inputStream must not be null");
 		Assert.hasText(path, "path must not be null");
@@ -69,6 +69,28 @@ public abstract class IpAdapterParserUtils {
 
 	static final String USING_DIRECT_BUFFERS = "using-direct-buffers";
 
+	static final String DECODE_FROM_READ_BUFFER = "decode-from-read-buffer";
+
+	static final String BYTE_BUFFER_POOL = "byte-buffer-pool";
+
+	static final String WRITE_QUEUE_CAPACITY = "write-queue-capacity";
+
+	static final String WRITE_BATCH_MAX_BYTES = "write-batch-max-bytes";
+
+	static final String WRITE_BATCH_MAX_DELAY = "write-batch-max-delay";
+
+	static final String MULTI_REACTOR = "multi-reactor";
+
+	static final String REACTOR_COUNT = "reactor-count";
+
+	static final String PROCESS_ON_SELECTOR_THREAD = "process-on-selector-thread";
+
+	static final String MAX_CONNECTIONS = "max-connections";
+
+	static final String IDLE_TIMEOUT = "idle-timeout";
+
+	static final String STATISTICS_INTERVAL = "statistics-interval";
+
 	static final String MESSAGE_FORMAT = "message-format";
 
 	static final String SO_LINGER = "so-linger";
@@ -43,6 +43,7 @@ import org.springframework.integration.ip.tcp.connection.TcpSSLContextSupport;
 import org.springframework.integration.ip.tcp.connection.TcpSocketFactorySupport;
 import org.springframework.integration.ip.tcp.connection.TcpSocketSupport;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.util.ByteBufferPool;
 import org.springframework.util.Assert;
 
 /**
@@ -89,6 +90,12 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 
 	private volatile int backlog = 5;
 
+	private volatile int maxConnections;
+
+	private volatile long idleTimeout;
+
+	private volatile long statisticsInterval;
+
 	private volatile TcpConnectionInterceptorFactoryChain interceptorFactoryChain;
 
 	private volatile boolean lookupHost = true;
@@ -99,6 +106,22 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile boolean decodeFromReadBuffer;
+
+	private volatile ByteBufferPool byteBufferPool;
+
+	private volatile int writeQueueCapacity;
+
+	private volatile int writeBatchMaxBytes = 64 * 1024;
+
+	private volatile long writeBatchMaxDelay;
+
+	private volatile boolean multiReactor;
+
+	private volatile int reactorCount = Runtime.getRuntime().availableProcessors();
+
+	private volatile boolean processOnSelectorThread;
+
 	private volatile String beanName;
 
 	private volatile boolean applySequence;
@@ -127,6 +150,14 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 				this.setCommonAttributes(connectionFactory);
 				this.setServerAttributes(connectionFactory);
 				connectionFactory.setUsingDirectBuffers(this.usingDirectBuffers);
+				connectionFactory.setDecodeFromReadBuffer(this.decodeFromReadBuffer);
+				connectionFactory.setByteBufferPool(this.byteBufferPool);
+				connectionFactory.setWriteQueueCapacity(this.writeQueueCapacity);
+				connectionFactory.setWriteBatchMaxBytes(this.writeBatchMaxBytes);
+				connectionFactory.setWriteBatchMaxDelay(this.writeBatchMaxDelay);
+				connectionFactory.setMultiReactor(this.multiReactor);
+				connectionFactory.setReactorCount(this.reactorCount);
+				connectionFactory.setProcessOnSelectorThread(this.processOnSelectorThread);
 				connectionFactory.setTcpNioConnectionSupport(this.obtainNioConnectionSupport());
 				this.connectionFactory = connectionFactory;
 			} else {
@@ -134,6 +165,11 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 						this.host, this.port);
 				this.setCommonAttributes(connectionFactory);
 				connectionFactory.setUsingDirectBuffers(this.usingDirectBuffers);
+				connectionFactory.setDecodeFromReadBuffer(this.decodeFromReadBuffer);
+				connectionFactory.setByteBufferPool(this.byteBufferPool);
+				connectionFactory.setWriteQueueCapacity(this.writeQueueCapacity);
+				connectionFactory.setWriteBatchMaxBytes(this.writeBatchMaxBytes);
+				connectionFactory.setWriteBatchMaxDelay(this.writeBatchMaxDelay);
 				connectionFactory.setTcpNioConnectionSupport(this.obtainNioConnectionSupport());
 				this.connectionFactory = connectionFactory;
 			}
@@ -179,6 +215,9 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 	private void setServerAttributes(AbstractServerConnectionFactory factory) {
 		factory.setLocalAddress(this.localAddress);
 		factory.setBacklog(this.backlog);
+		factory.setMaxConnections(this.maxConnections);
+		factory.setIdleTimeout(this.idleTimeout);
+		factory.setStatisticsInterval(this.statisticsInterval);
 	}
 
 	private TcpSocketFactorySupport obtainSocketFactorySupport() {
@@ -322,6 +361,78 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * @param decodeFromReadBuffer
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setDecodeFromReadBuffer(boolean)
+	 * @since 3.0
+	 */
+	public void setDecodeFromReadBuffer(boolean decodeFromReadBuffer) {
+		this.decodeFromReadBuffer = decodeFromReadBuffer;
+	}
+
+	/**
+	 * @param byteBufferPool
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setByteBufferPool(ByteBufferPool)
+	 * @since 3.0
+	 */
+	public void setByteBufferPool(ByteBufferPool byteBufferPool) {
+		this.byteBufferPool = byteBufferPool;
+	}
+
+	/**
+	 * @param writeQueueCapacity
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setWriteQueueCapacity(int)
+	 * @since 3.0
+	 */
+	public void setWriteQueueCapacity(int writeQueueCapacity) {
+		this.writeQueueCapacity = writeQueueCapacity;
+	}
+
+	/**
+	 * @param writeBatchMaxBytes
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setWriteBatchMaxBytes(int)
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxBytes(int writeBatchMaxBytes) {
+		this.writeBatchMaxBytes = writeBatchMaxBytes;
+	}
+
+	/**
+	 * @param writeBatchMaxDelay
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setWriteBatchMaxDelay(long)
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxDelay(long writeBatchMaxDelay) {
+		this.writeBatchMaxDelay = writeBatchMaxDelay;
+	}
+
+	/**
+	 * @param multiReactor
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setMultiReactor(boolean)
+	 * @since 3.0
+	 */
+	public void setMultiReactor(boolean multiReactor) {
+		this.multiReactor = multiReactor;
+	}
+
+	/**
+	 * @param reactorCount
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setReactorCount(int)
+	 * @since 3.0
+	 */
+	public void setReactorCount(int reactorCount) {
+		this.reactorCount = reactorCount;
+	}
+
+	/**
+	 * @param processOnSelectorThread
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setProcessOnSelectorThread(boolean)
+	 * @since 3.0
+	 */
+	public void setProcessOnSelectorThread(boolean processOnSelectorThread) {
+		this.processOnSelectorThread = processOnSelectorThread;
+	}
+
 	/**
 	 * @param taskExecutor
 	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setTaskExecutor(java.util.concurrent.Executor)
@@ -374,6 +485,30 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		this.backlog = backlog;
 	}
 
+	/**
+	 * @param maxConnections
+	 * @see AbstractServerConnectionFactory#setMaxConnections(int)
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * @param idleTimeout
+	 * @see AbstractServerConnectionFactory#setIdleTimeout(long)
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @param statisticsInterval
+	 * @see AbstractServerConnectionFactory#setStatisticsInterval(long)
+	 */
+	public void setStatisticsInterval(long statisticsInterval) {
+		this.statisticsInterval = statisticsInterval;
+	}
+
 	/**
 	 * @param interceptorFactoryChain
 	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setInterceptorFactoryChain(org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain)
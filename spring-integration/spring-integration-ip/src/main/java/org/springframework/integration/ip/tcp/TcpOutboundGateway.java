@@ -16,9 +16,13 @@
 
 package org.springframework.integration.ip.tcp;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -27,6 +31,7 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageTimeoutException;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
@@ -35,14 +40,25 @@ import org.springframework.integration.ip.tcp.connection.TcpConnection;
 import org.springframework.integration.ip.tcp.connection.TcpListener;
 import org.springframework.integration.ip.tcp.connection.TcpSender;
 import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 
 /**
  * TCP outbound gateway that uses a client connection factory. If the factory is configured
  * for single-use connections, each request is sent on a new connection; if the factory does not use
  * single use connections, each request is blocked until the previous response is received
- * (or times out). Asynchronous requests/responses over the same connection are not
- * supported - use a pair of outbound/inbound adapters for that use case.
+ * (or times out).
+ * <p>
+ * When a {@link CorrelationStrategy} is provided and the factory does not use single use
+ * connections, the gateway operates in <em>pipelined</em> mode: up to
+ * {@link #setMaxInFlight(int) maxInFlight} requests may be outstanding on each connection
+ * and replies are matched to requests using the correlation key the strategy extracts
+ * from both the request and the reply. The server must echo that key in each reply, but
+ * may reply in any order. In pipelined mode, {@link #setAsync(boolean) async} replies
+ * may be enabled, in which case the sending thread does not wait for the reply; the
+ * reply is sent to the output channel (or the request's reply channel) by the thread
+ * that receives it, and remote timeouts are detected by a single periodic task.
  * <p>
  * {@link SmartLifecycle} methods delegate to the underlying {@link AbstractConnectionFactory}
  *
@@ -68,6 +84,21 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 
 	private volatile int phase;
 
+	private volatile CorrelationStrategy correlationStrategy;
+
+	private volatile int maxInFlight = 100;
+
+	private volatile boolean async;
+
+	private volatile long timeoutCheckInterval = 1000;
+
+	private final ConcurrentMap<String, PipelinedConnection> pipelinedConnections =
+			new ConcurrentHashMap<String, PipelinedConnection>();
+
+	private volatile MessageChannel replyChannel;
+
+	private volatile ScheduledFuture<?> timeoutChecker;
+
 	/**
 	 * @param requestTimeout the requestTimeout to set
 	 */
@@ -96,10 +127,70 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		}
 	}
 
+	/**
+	 * Set the strategy used to extract a correlation key from requests and replies;
+	 * enables pipelined requests on shared connections.
+	 * @param correlationStrategy the correlationStrategy to set
+	 * @since 3.0
+	 */
+	public void setCorrelationStrategy(CorrelationStrategy correlationStrategy) {
+		this.correlationStrategy = correlationStrategy;
+	}
+
+	/**
+	 * The maximum number of outstanding requests per connection in pipelined mode;
+	 * further requests wait up to the request timeout for a slot. Default 100.
+	 * @param maxInFlight the maxInFlight to set
+	 * @since 3.0
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		Assert.isTrue(maxInFlight > 0, "'maxInFlight' must be greater than 0");
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * When true (pipelined mode only), return to the caller as soon as the request
+	 * is sent; the reply is emitted by the thread that receives it. When a remote timeout
+	 * occurs, a {@link MessageTimeoutException} is sent to the request's error channel,
+	 * if any. Do not combine with {@link #setRequiresReply(boolean) requiresReply}.
+	 * @param async the async to set
+	 * @since 3.0
+	 */
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	/**
+	 * How often to check for async requests whose remote timeout has expired.
+	 * Default 1000 milliseconds. The checks run on the 'taskScheduler' bean.
+	 * @param timeoutCheckInterval the timeoutCheckInterval to set
+	 * @since 3.0
+	 */
+	public void setTimeoutCheckInterval(long timeoutCheckInterval) {
+		this.timeoutCheckInterval = timeoutCheckInterval;
+	}
+
+	@Override
+	public void setOutputChannel(MessageChannel outputChannel) {
+		super.setOutputChannel(outputChannel);
+		this.replyChannel = outputChannel;
+	}
+
+	@Override
+	protected void onInit() {
+		super.onInit();
+		if (this.async) {
+			Assert.state(this.correlationStrategy != null, "'async' requires a 'correlationStrategy'");
+		}
+	}
+
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
 		Assert.notNull(connectionFactory, this.getClass().getName() +
 				" requires a client connection factory");
+		if (this.correlationStrategy != null && !this.connectionFactory.isSingleUse()) {
+			return this.handlePipelinedRequestMessage(requestMessage);
+		}
 		boolean haveSemaphore = false;
 		String connectionId = null;
 		try {
@@ -156,6 +247,80 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		}
 	}
 
+	private Object handlePipelinedRequestMessage(Message<?> requestMessage) {
+		PipelinedConnection pipelined = null;
+		Object key = null;
+		PendingRequest pending = null;
+		try {
+			key = this.correlationStrategy.getCorrelationKey(requestMessage);
+			Assert.state(key != null, "The correlation strategy returned a null key for " + requestMessage);
+			TcpConnection connection = this.connectionFactory.getConnection();
+			pipelined = this.pipelinedConnectionFor(connection.getConnectionId());
+			if (!pipelined.window.tryAcquire(this.requestTimeout, TimeUnit.MILLISECONDS)) {
+				throw new MessageTimeoutException(requestMessage, "Timed out waiting for an in-flight slot");
+			}
+			pending = new PendingRequest(requestMessage, this.async ? null : new AsyncReply());
+			synchronized (pipelined) {
+				// the connection may have failed since we looked it up; failPending() has then
+				// already released its requests and would never release this one
+				if (pipelined.closed) {
+					pipelined.window.release();
+					pending = null;
+					throw new MessagingException(requestMessage, "Connection " + connection.getConnectionId()
+							+ " was closed");
+				}
+				if (pipelined.pending.putIfAbsent(key, pending) != null) {
+					pipelined.window.release();
+					pending = null;
+					throw new MessagingException(requestMessage, "A request with correlation key '" + key
+							+ "' is already in flight on connection " + connection.getConnectionId());
+				}
+			}
+			connection.send(requestMessage);
+			if (this.async) {
+				// the pending request is now owned by the reply or timeout processing
+				pending = null;
+				return null;
+			}
+			Message<?> replyMessage = pending.reply.getReply();
+			if (replyMessage == null) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Remote Timeout on " + connection.getConnectionId() + " for key " + key);
+				}
+				// other requests may be in flight; a late reply will be discarded
+				throw new MessageTimeoutException(requestMessage, "Timed out waiting for response");
+			}
+			return replyMessage;
+		}
+		catch (Exception e) {
+			logger.error("Tcp Gateway exception", e);
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			if (e instanceof MessagingException) {
+				throw (MessagingException) e;
+			}
+			throw new MessagingException("Failed to send or receive", e);
+		}
+		finally {
+			if (pending != null && pipelined.pending.remove(key, pending)) {
+				pipelined.window.release();
+			}
+		}
+	}
+
+	private PipelinedConnection pipelinedConnectionFor(String connectionId) {
+		PipelinedConnection pipelined = this.pipelinedConnections.get(connectionId);
+		if (pipelined == null) {
+			pipelined = new PipelinedConnection(this.maxInFlight);
+			PipelinedConnection existing = this.pipelinedConnections.putIfAbsent(connectionId, pipelined);
+			if (existing != null) {
+				pipelined = existing;
+			}
+		}
+		return pipelined;
+	}
+
 	public boolean onMessage(Message<?> message) {
 		String connectionId = (String) message.getHeaders().get(IpHeaders.CONNECTION_ID);
 		if (connectionId == null) {
@@ -165,6 +330,11 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		if (logger.isTraceEnabled()) {
 			logger.trace("onMessage: " + connectionId + "(" + message + ")");
 		}
+		PipelinedConnection pipelined = this.pipelinedConnections.get(connectionId);
+		if (pipelined != null) {
+			this.onPipelinedMessage(connectionId, pipelined, message);
+			return false;
+		}
 		AsyncReply reply = pendingReplies.get(connectionId);
 		if (reply == null) {
 			if (message instanceof ErrorMessage) {
@@ -192,12 +362,131 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		connectionFactory.registerSender(this);
 	}
 
+	private void onPipelinedMessage(String connectionId, PipelinedConnection pipelined, Message<?> message) {
+		if (message instanceof ErrorMessage) {
+			this.failPending(connectionId, (ErrorMessage) message);
+			return;
+		}
+		Object key;
+		try {
+			key = this.correlationStrategy.getCorrelationKey(message);
+		}
+		catch (Exception e) {
+			logger.error("Cannot correlate response - failed to extract a correlation key", e);
+			return;
+		}
+		PendingRequest pending = key == null ? null : pipelined.pending.remove(key);
+		if (pending == null) {
+			logger.error("Cannot correlate response - no pending reply for key " + key);
+			return;
+		}
+		pipelined.window.release();
+		if (pending.reply != null) {
+			pending.reply.setReply(message);
+		}
+		else {
+			this.sendAsyncReply(pending.request, message);
+		}
+	}
+
+	private void sendAsyncReply(Message<?> request, Message<?> reply) {
+		Message<?> replyMessage = MessageBuilder.fromMessage(reply)
+				.copyHeadersIfAbsent(request.getHeaders())
+				.build();
+		try {
+			if (this.replyChannel != null) {
+				this.getMessagingTemplate().send(this.replyChannel, replyMessage);
+			}
+			else {
+				Object replyChannelHeader = request.getHeaders().getReplyChannel();
+				if (replyChannelHeader instanceof MessageChannel) {
+					this.getMessagingTemplate().send((MessageChannel) replyChannelHeader, replyMessage);
+				}
+				else if (replyChannelHeader instanceof String) {
+					this.getMessagingTemplate().send((String) replyChannelHeader, replyMessage);
+				}
+				else {
+					logger.error("No output-channel or replyChannel header available for reply " + replyMessage);
+				}
+			}
+		}
+		catch (Exception e) {
+			logger.error("Failed to send async reply " + replyMessage, e);
+		}
+	}
+
+	private void sendAsyncError(Message<?> request, MessagingException exception) {
+		Object errorChannelHeader = request.getHeaders().getErrorChannel();
+		ErrorMessage errorMessage = new ErrorMessage(exception);
+		try {
+			if (errorChannelHeader instanceof MessageChannel) {
+				this.getMessagingTemplate().send((MessageChannel) errorChannelHeader, errorMessage);
+				return;
+			}
+			else if (errorChannelHeader instanceof String) {
+				this.getMessagingTemplate().send((String) errorChannelHeader, errorMessage);
+				return;
+			}
+		}
+		catch (Exception e) {
+			logger.error("Failed to send async error " + errorMessage, e);
+			return;
+		}
+		logger.error("No errorChannel header available for async request failure", exception);
+	}
+
+	/**
+	 * Release all requests pending on a connection that has failed or closed.
+	 */
+	private void failPending(String connectionId, ErrorMessage errorMessage) {
+		PipelinedConnection pipelined = this.pipelinedConnections.remove(connectionId);
+		if (pipelined == null) {
+			return;
+		}
+		synchronized (pipelined) {
+			pipelined.closed = true;
+		}
+		for (Iterator<Entry<Object, PendingRequest>> iterator = pipelined.pending.entrySet().iterator();
+				iterator.hasNext();) {
+			PendingRequest pending = iterator.next().getValue();
+			iterator.remove();
+			pipelined.window.release();
+			if (pending.reply != null) {
+				pending.reply.setError(errorMessage);
+			}
+			else {
+				this.sendAsyncError(pending.request, new MessagingException(pending.request,
+						"Connection " + connectionId + " closed while awaiting reply", errorMessage.getPayload()));
+			}
+		}
+	}
+
+	private void checkTimeouts() {
+		long now = System.currentTimeMillis();
+		for (PipelinedConnection pipelined : this.pipelinedConnections.values()) {
+			for (Entry<Object, PendingRequest> entry : pipelined.pending.entrySet()) {
+				PendingRequest pending = entry.getValue();
+				if (pending.reply == null && now - pending.timestamp > this.remoteTimeout
+						&& pipelined.pending.remove(entry.getKey(), pending)) {
+					pipelined.window.release();
+					if (logger.isDebugEnabled()) {
+						logger.debug("Remote Timeout for key " + entry.getKey());
+					}
+					this.sendAsyncError(pending.request,
+							new MessageTimeoutException(pending.request, "Timed out waiting for response"));
+				}
+			}
+		}
+	}
+
 	public void addNewConnection(TcpConnection connection) {
-		// do nothing - no asynchronous multiplexing supported
+		// do nothing - pipelined connection state is created on first use
 	}
 
 	public void removeDeadConnection(TcpConnection connection) {
-		// do nothing - no asynchronous multiplexing supported
+		String connectionId = connection.getConnectionId();
+		this.failPending(connectionId, new ErrorMessage(
+				new MessagingException("Connection " + connectionId + " was closed")));
 	}
 
 	/**
@@ -214,12 +503,29 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 
 	public void start() {
 		this.connectionFactory.start();
+		if (this.async && this.timeoutChecker == null) {
+			TaskScheduler taskScheduler = this.getTaskScheduler();
+			Assert.state(taskScheduler != null, "'async' requires a TaskScheduler");
+			this.timeoutChecker = taskScheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					checkTimeouts();
+				}
+			}, this.timeoutCheckInterval);
+		}
 	}
 
 	public void stop() {
+		this.cancelTimeoutChecker();
 		this.connectionFactory.stop();
 	}
 
+	private void cancelTimeoutChecker() {
+		if (this.timeoutChecker != null) {
+			this.timeoutChecker.cancel(true);
+			this.timeoutChecker = null;
+		}
+	}
+
 	public boolean isRunning() {
 		return this.connectionFactory.isRunning();
 	}
@@ -233,6 +539,7 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 	}
 
 	public void stop(Runnable callback) {
+		this.cancelTimeoutChecker();
 		this.connectionFactory.stop(callback);
 	}
 
@@ -320,6 +627,53 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 				this.secondChanceLatch.countDown();
 			}
 		}
+
+		/**
+		 * Wake the waiting thread with an error when no reply can follow it (the request
+		 * is no longer pending), without waiting for a second chance.
+		 * @param error the error.
+		 */
+		public void setError(ErrorMessage error) {
+			this.reply = error;
+			this.latch.countDown();
+			this.secondChanceLatch.countDown();
+		}
+	}
+
+	/**
+	 * The in-flight window and outstanding requests for a connection in pipelined mode.
+	 */
+	private static class PipelinedConnection {
+
+		private final Semaphore window;
+
+		private final ConcurrentMap<Object, PendingRequest> pending = new ConcurrentHashMap<Object, PendingRequest>();
+
+		// guarded by this; no requests are registered once the connection is closed
+		private boolean closed;
+
+		private PipelinedConnection(int maxInFlight) {
+			this.window = new Semaphore(maxInFlight);
+		}
+
+	}
+
+	/**
+	 * A request awaiting its reply in pipelined mode; the reply is null for async requests.
+	 */
+	private static class PendingRequest {
+
+		private final Message<?> request;
+
+		private final AsyncReply reply;
+
+		private final long timestamp = System.currentTimeMillis();
+
+		private PendingRequest(Message<?> request, AsyncReply reply) {
+			this.request = request;
+			this.reply = reply;
+		}
+
 	}
 
 }
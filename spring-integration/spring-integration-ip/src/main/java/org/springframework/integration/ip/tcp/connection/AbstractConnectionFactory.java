@@ -38,6 +38,8 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
@@ -103,11 +105,13 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 
 	private volatile List<TcpConnectionSupport> connections = new LinkedList<TcpConnectionSupport>();
 
+	private final AtomicInteger openConnectionCount = new AtomicInteger();
+
 	private volatile TcpSocketSupport tcpSocketSupport = new DefaultTcpSocketSupport();
 
 	protected final Object lifecycleMonitor = new Object();
 
-	private volatile long nextCheckForClosedNioConnections;
+	private final AtomicLong nextCheckForClosedNioConnections = new AtomicLong();
 
 	private volatile int nioHarvestInterval = DEFAULT_NIO_HARVEST_INTERVAL;
 
@@ -408,6 +412,14 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		this.nioHarvestInterval = nioHarvestInterval;
 	}
 
+	/**
+	 * @return the interval at which NIO connections are checked for closure.
+	 * @since 3.0
+	 */
+	protected int getNioHarvestInterval() {
+		return this.nioHarvestInterval;
+	}
+
 	/**
 	 * Closes the server.
 	 */
@@ -516,11 +528,31 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 	 */
 	protected void processNioSelections(int selectionCount, final Selector selector, ServerSocketChannel server,
 			Map<SocketChannel, TcpNioConnection> connections) throws IOException {
+		this.processNioSelections(selectionCount, selector, server, connections, this.nextCheckForClosedNioConnections);
+	}
+
+	/**
+	 * As {@link #processNioSelections(int, Selector, ServerSocketChannel, Map)}, for a
+	 * selector with its own set of connections; each such selector must track when its
+	 * connections are next checked for closure, so that selectors do not defer each
+	 * other's checks.
+	 *
+	 * @param selectionCount Number of IO Events, if 0 we were probably woken up by a close.
+	 * @param selector The selector
+	 * @param connections Map of connections
+	 * @param nextCheckForClosedConnections The time the connections are next checked
+	 * for closure; updated when they are checked.
+	 * @throws IOException
+	 * @since 3.0
+	 */
+	protected void processNioSelections(int selectionCount, final Selector selector, ServerSocketChannel server,
+			Map<SocketChannel, TcpNioConnection> connections, AtomicLong nextCheckForClosedConnections)
+			throws IOException {
 		long now = System.currentTimeMillis();
 		if (this.soTimeout > 0 ||
-				now >= this.nextCheckForClosedNioConnections ||
+				now >= nextCheckForClosedConnections.get() ||
 				selectionCount == 0) {
-			this.nextCheckForClosedNioConnections = now + this.nioHarvestInterval;
+			nextCheckForClosedConnections.set(now + this.nioHarvestInterval);
 			Iterator<Entry<SocketChannel, TcpNioConnection>> it = connections.entrySet().iterator();
 			while (it.hasNext()) {
 				SocketChannel channel = it.next().getKey();
@@ -580,7 +612,8 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 						final TcpNioConnection connection;
 						connection = (TcpNioConnection) key.attachment();
 						connection.setLastRead(System.currentTimeMillis());
-						this.taskExecutor.execute(new Runnable() {
+						final boolean inline = this.isProcessOnSelectorThread();
+						Runnable reader = new Runnable() {
 							public void run() {
 								try {
 									connection.readPacket();
@@ -596,12 +629,20 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 								}
 								if (key.channel().isOpen()) {
 									key.interestOps(SelectionKey.OP_READ);
-									selector.wakeup();
+									if (!inline) {
+										selector.wakeup();
+									}
 								}
 								else {
 									connection.sendExceptionToListener(new EOFException("Connection is closed"));
 								}
-							}});
+							}};
+						if (inline) {
+							reader.run();
+						}
+						else {
+							this.taskExecutor.execute(reader);
+						}
 					}
 					else if (key.isAcceptable()) {
 						try {
@@ -624,6 +665,17 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		}
 	}
 
+	/**
+	 * When true, data is read (and, depending on the connection, messages are assembled
+	 * and dispatched) on the selector thread rather than being handed off to the task
+	 * executor.
+	 * @return false by default.
+	 * @since 3.0
+	 */
+	protected boolean isProcessOnSelectorThread() {
+		return false;
+	}
+
 	/**
 	 * @param selector
 	 * @param now
@@ -658,6 +710,15 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 			}
 			this.connections.add(connection);
 		}
+		this.unwrap(connection).countOpenConnection(this.openConnectionCount);
+	}
+
+	private TcpConnectionSupport unwrap(TcpConnectionSupport connection) {
+		TcpConnectionSupport theConnection = connection;
+		while (theConnection instanceof TcpConnectionInterceptorSupport) {
+			theConnection = ((TcpConnectionInterceptorSupport) theConnection).getTheConnection();
+		}
+		return theConnection;
 	}
 
 	/**
@@ -669,9 +730,11 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 			List<String> openConnectionIds = new ArrayList<String>();
 			Iterator<TcpConnectionSupport> iterator = this.connections.iterator();
 			while (iterator.hasNext()) {
-				TcpConnection connection = iterator.next();
+				TcpConnectionSupport connection = iterator.next();
 				if (!connection.isOpen()) {
 					iterator.remove();
+					// in case the socket was closed without closing the connection
+					this.unwrap(connection).releaseOpenConnectionCount();
 				}
 				else {
 					openConnectionIds.add(connection.getConnectionId());
@@ -681,6 +744,30 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		}
 	}
 
+	/**
+	 * Cleans up this.connections by removing any closed connections.
+	 * @return a snapshot of the open connections.
+	 * @since 3.0
+	 */
+	protected List<TcpConnectionSupport> getOpenConnections() {
+		synchronized (this.connections) {
+			this.removeClosedConnectionsAndReturnOpenConnectionIds();
+			return new ArrayList<TcpConnectionSupport>(this.connections);
+		}
+	}
+
+	/**
+	 * Connections are counted when they are added and until they are closed, so this
+	 * does not scan the connections; a connection whose socket was closed without
+	 * closing the connection is only discounted when closed connections are next
+	 * {@link #harvestClosedConnections() harvested}.
+	 * @return the number of open connections.
+	 * @since 3.0
+	 */
+	protected int getOpenConnectionCount() {
+		return this.openConnectionCount.get();
+	}
+
 	/**
 	 * Cleans up this.connections by removing any closed connections.
 	 */
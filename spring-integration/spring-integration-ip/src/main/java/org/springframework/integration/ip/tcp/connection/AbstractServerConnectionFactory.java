@@ -19,23 +19,48 @@ package org.springframework.integration.ip.tcp.connection;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.integration.context.OrderlyShutdownCapable;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.util.Assert;
 
 /**
  * Base class for all server connection factories. Server connection factories
  * listen on a port for incoming connections and create new TcpConnection objects
  * for each new connection.
+ * <p>
+ * The number of open connections can be limited with {@link #setMaxConnections(int)};
+ * when the limit is reached, the factory stops accepting until a connection closes,
+ * leaving new connections in the server socket backlog. Connections with no
+ * traffic for {@link #setIdleTimeout(long) idleTimeout} are closed, and
+ * {@link TcpConnectionStatisticsEvent}s are published every
+ * {@link #setStatisticsInterval(long) statisticsInterval}; both are performed by a
+ * single housekeeping thread that scans the open connections. The bytes read and
+ * written by each connection are only recorded when one of these is set.
  *
  * @author Gary Russell
  * @since 2.0
  */
+@ManagedResource
 public abstract class AbstractServerConnectionFactory
 		extends AbstractConnectionFactory implements Runnable, OrderlyShutdownCapable {
 
 	private static final int DEFAULT_BACKLOG = 5;
 
+	/**
+	 * How often (milliseconds) the connection count is checked while accepting is paused
+	 * because of the connection limit.
+	 */
+	protected static final int ACCEPT_PAUSE_INTERVAL = 100;
+
 	private volatile boolean listening;
 
 	private volatile String localAddress;
@@ -44,6 +69,22 @@ public abstract class AbstractServerConnectionFactory
 
 	private volatile boolean shuttingDown;
 
+	private volatile int maxConnections;
+
+	private volatile long idleTimeout;
+
+	private volatile long statisticsInterval;
+
+	private volatile ScheduledExecutorService housekeepingExecutor;
+
+	private volatile long nextStatisticsPublication;
+
+	private final AtomicLong acceptPauseCount = new AtomicLong();
+
+	private final AtomicLong idleCloseCount = new AtomicLong();
+
+	private volatile boolean acceptPaused;
+
 
 	/**
 	 * The port on which the factory will listen.
@@ -59,12 +100,112 @@ public abstract class AbstractServerConnectionFactory
 			if (!this.isActive()) {
 				this.setActive(true);
 				this.shuttingDown = false;
+				this.startHousekeeping();
 				this.getTaskExecutor().execute(this);
 			}
 		}
 		super.start();
 	}
 
+	@Override
+	public void stop() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.housekeepingExecutor != null) {
+				this.housekeepingExecutor.shutdownNow();
+				this.housekeepingExecutor = null;
+			}
+		}
+		super.stop();
+	}
+
+	private void startHousekeeping() {
+		long period = 0;
+		if (this.idleTimeout > 0) {
+			period = Math.max(this.idleTimeout / 2, 1);
+		}
+		if (this.statisticsInterval > 0) {
+			period = period > 0 ? Math.min(period, this.statisticsInterval) : this.statisticsInterval;
+		}
+		if (period == 0) {
+			return;
+		}
+		final String threadName = (this.getComponentName() == null ? "" : this.getComponentName() + "-")
+				+ "housekeeping";
+		this.housekeepingExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.nextStatisticsPublication = System.currentTimeMillis() + this.statisticsInterval;
+		this.housekeepingExecutor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					housekeep();
+				}
+				catch (Exception e) {
+					logger.error("Housekeeping failed", e);
+				}
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Closes idle connections and publishes statistics events, when due.
+	 */
+	private void housekeep() {
+		long now = System.currentTimeMillis();
+		boolean publishStatistics = this.statisticsInterval > 0 && now >= this.nextStatisticsPublication;
+		if (publishStatistics) {
+			this.nextStatisticsPublication = now + this.statisticsInterval;
+		}
+		for (TcpConnectionSupport connection : this.getOpenConnections()) {
+			if (this.idleTimeout > 0 && now - connection.getLastActivity() >= this.idleTimeout) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Closing idle connection " + connection.getConnectionId());
+				}
+				this.idleCloseCount.incrementAndGet();
+				connection.close();
+			}
+			else if (publishStatistics) {
+				TcpConnectionSupport theConnection = connection;
+				while (theConnection instanceof TcpConnectionInterceptorSupport) {
+					theConnection = ((TcpConnectionInterceptorSupport) theConnection).getTheConnection();
+				}
+				theConnection.publishEvent(new TcpConnectionStatisticsEvent(theConnection,
+						this.getComponentName(), theConnection.getStatistics()));
+			}
+		}
+	}
+
+	/**
+	 * Called by the accepting thread before accepting a new connection.
+	 * @return true if the factory has {@link #setMaxConnections(int) maxConnections}
+	 * open connections, in which case new connections should not be accepted.
+	 * @since 3.0
+	 */
+	protected boolean isAtConnectionLimit() {
+		if (this.maxConnections <= 0) {
+			return false;
+		}
+		boolean atLimit = this.getOpenConnectionCount() >= this.maxConnections;
+		if (atLimit) {
+			// discount connections whose sockets were closed without closing the connection
+			this.harvestClosedConnections();
+			atLimit = this.getOpenConnectionCount() >= this.maxConnections;
+		}
+		if (atLimit && !this.acceptPaused) {
+			this.acceptPauseCount.incrementAndGet();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Connection limit " + this.maxConnections + " reached; pausing accept on port "
+						+ this.getPort());
+			}
+		}
+		this.acceptPaused = atLimit;
+		return atLimit;
+	}
+
 	/**
 	 * Not supported because the factory manages multiple connections and this
 	 * method cannot discriminate.
@@ -109,6 +250,7 @@ public abstract class AbstractServerConnectionFactory
 		connection.setDeserializer(this.getDeserializer());
 		connection.setSerializer(this.getSerializer());
 		connection.setSingleUse(this.isSingleUse());
+		connection.setStatisticsEnabled(this.idleTimeout > 0 || this.statisticsInterval > 0);
 		/*
 		 * If we are configured
 		 * for single use; need to enforce a timeout on the socket so we will close
@@ -165,6 +307,109 @@ public abstract class AbstractServerConnectionFactory
 		this.backlog = backlog;
 	}
 
+	/**
+	 * The maximum number of open connections; when reached, no more connections are
+	 * accepted until one closes. Default 0 (unlimited).
+	 * @param maxConnections the maxConnections to set
+	 * @since 3.0
+	 */
+	public void setMaxConnections(int maxConnections) {
+		Assert.isTrue(maxConnections >= 0, "'maxConnections' cannot be negative");
+		this.maxConnections = maxConnections;
+	}
+
+	@ManagedAttribute
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Connections with no reads or writes for this number of milliseconds are closed;
+	 * connections are checked every idleTimeout/2 milliseconds. Unlike soTimeout, applies
+	 * to writes as well as reads. Default 0 (idle connections are not closed).
+	 * Takes effect when the factory is next started; when set, the bytes read and
+	 * written by new connections are recorded.
+	 * @param idleTimeout the idleTimeout to set
+	 * @since 3.0
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		Assert.isTrue(idleTimeout >= 0, "'idleTimeout' cannot be negative");
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * When greater than 0, a {@link TcpConnectionStatisticsEvent} is published for each open
+	 * connection every statisticsInterval milliseconds. Default 0. Takes effect when the
+	 * factory is next started; when set, the bytes read and written by new connections
+	 * are recorded.
+	 * @param statisticsInterval the statisticsInterval to set
+	 * @since 3.0
+	 */
+	public void setStatisticsInterval(long statisticsInterval) {
+		Assert.isTrue(statisticsInterval >= 0, "'statisticsInterval' cannot be negative");
+		this.statisticsInterval = statisticsInterval;
+	}
+
+	/**
+	 * @return the number of open connections.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public int getConnectionCount() {
+		return this.getOpenConnectionCount();
+	}
+
+	/**
+	 * @return the number of times accepting was paused because the connection limit was reached.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getAcceptPauseCount() {
+		return this.acceptPauseCount.get();
+	}
+
+	/**
+	 * @return the number of connections closed because they were idle.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getIdleCloseCount() {
+		return this.idleCloseCount.get();
+	}
+
+	/**
+	 * Byte counts are only recorded when {@link #setStatisticsInterval(long) statisticsInterval}
+	 * or {@link #setIdleTimeout(long) idleTimeout} is set.
+	 * @return the statistics of each open connection, keyed by connection id.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public Map<String, TcpConnectionStatistics> getConnectionStatistics() {
+		Map<String, TcpConnectionStatistics> statistics = new HashMap<String, TcpConnectionStatistics>();
+		for (TcpConnectionSupport connection : this.getOpenConnections()) {
+			statistics.put(connection.getConnectionId(), connection.getStatistics());
+		}
+		return statistics;
+	}
+
+	/**
+	 * @return the combined statistics of the open connections from each remote host,
+	 * keyed by host address.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public Map<String, TcpConnectionStatistics> getHostStatistics() {
+		Map<String, TcpConnectionStatistics> statistics = new HashMap<String, TcpConnectionStatistics>();
+		for (TcpConnectionSupport connection : this.getOpenConnections()) {
+			String host = connection.getHostAddress();
+			TcpConnectionStatistics hostStatistics = statistics.get(host);
+			TcpConnectionStatistics connectionStatistics = connection.getStatistics();
+			statistics.put(host, hostStatistics == null ? connectionStatistics
+					: hostStatistics.add(connectionStatistics));
+		}
+		return statistics;
+	}
+
 	public int beforeShutdown() {
 		this.shuttingDown = true;
 		return 0;
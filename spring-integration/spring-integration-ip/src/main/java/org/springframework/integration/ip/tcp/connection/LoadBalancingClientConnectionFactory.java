@@ -0,0 +1,657 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.ip.tcp.connection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * Given a list of connection factories, one for each endpoint in a cluster, serves
+ * up {@link TcpConnection}s that spread requests across the endpoints. To pool
+ * connections to each endpoint, wrap each factory in a
+ * {@link CachingClientConnectionFactory}.
+ * <p>
+ * The endpoint is selected according to the {@link SelectionStrategy}, using the
+ * number of outstanding requests (sent, but not yet replied to) and the average
+ * reply latency for each endpoint. With single-use connections (such as when
+ * used with a {@link TcpOutboundGateway} and caching delegates), the endpoint is
+ * selected when the connection is obtained; with shared connections, it is
+ * selected for each send. A request is outstanding from when it is sent until
+ * a message is received on the same connection, so these strategies assume
+ * request/reply traffic; when there is no listener, a request is only outstanding
+ * while it is being sent.
+ * <p>
+ * When a connection cannot be established, or a send fails, to an endpoint
+ * {@link #setFailureThreshold(int) failureThreshold} consecutive times, the
+ * endpoint is ejected for a backoff period that doubles (from
+ * {@link #setInitialBackoff(long) initialBackoff} up to
+ * {@link #setMaxBackoff(long) maxBackoff}) with each further failure, and the
+ * request is tried on another endpoint. Once the backoff expires, the endpoint
+ * is eligible again; a success resets the backoff. If all endpoints are ejected,
+ * the one whose backoff expires first is tried.
+ *
+ * @since 3.0
+ *
+ */
+@ManagedResource
+public class LoadBalancingClientConnectionFactory extends AbstractClientConnectionFactory {
+
+	/**
+	 * How an endpoint is selected for a request.
+	 */
+	public enum SelectionStrategy {
+
+		/**
+		 * The endpoint with the fewest outstanding requests.
+		 */
+		LEAST_OUTSTANDING,
+
+		/**
+		 * The endpoint with fewer outstanding requests of two chosen at random;
+		 * avoids all clients converging on the same endpoint.
+		 */
+		POWER_OF_TWO_CHOICES,
+
+		/**
+		 * The endpoint with the lowest average latency, weighted by the number of
+		 * outstanding requests.
+		 */
+		LATENCY_WEIGHTED
+
+	}
+
+	private final List<Endpoint> endpoints = new ArrayList<Endpoint>();
+
+	private final Random random = new Random();
+
+	private final AtomicInteger nextIndex = new AtomicInteger();
+
+	private volatile SelectionStrategy selectionStrategy = SelectionStrategy.LEAST_OUTSTANDING;
+
+	private volatile int failureThreshold = 1;
+
+	private volatile long initialBackoff = 1000;
+
+	private volatile long maxBackoff = 30000;
+
+	public LoadBalancingClientConnectionFactory(List<AbstractClientConnectionFactory> factories) {
+		super("", 0);
+		Assert.notEmpty(factories, "At least one factory is required");
+		for (AbstractClientConnectionFactory factory : factories) {
+			this.endpoints.add(new Endpoint(factory));
+		}
+	}
+
+	public void setSelectionStrategy(SelectionStrategy selectionStrategy) {
+		Assert.notNull(selectionStrategy, "'selectionStrategy' cannot be null");
+		this.selectionStrategy = selectionStrategy;
+	}
+
+	/**
+	 * The number of consecutive failures after which an endpoint is ejected; default 1.
+	 * @param failureThreshold the failureThreshold to set
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		Assert.isTrue(failureThreshold > 0, "'failureThreshold' must be greater than 0");
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * The time (milliseconds) an endpoint is first ejected for; default 1000.
+	 * @param initialBackoff the initialBackoff to set
+	 */
+	public void setInitialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+	}
+
+	/**
+	 * The maximum time (milliseconds) an endpoint is ejected for; default 30000.
+	 * @param maxBackoff the maxBackoff to set
+	 */
+	public void setMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		for (Endpoint endpoint : this.endpoints) {
+			Assert.state(!(this.isSingleUse() ^ endpoint.factory.isSingleUse()),
+				"Inconsistent singleUse - delegate factories must match this one");
+		}
+	}
+
+	/**
+	 * Delegate factories need a listener so that they run their listening logic;
+	 * each {@link LoadBalancedTcpConnection} registers itself as the listener for
+	 * its delegate connections, and passes messages to the real listener supplied
+	 * here. See {@link FailoverClientConnectionFactory#registerListener(TcpListener)}.
+	 */
+	@Override
+	public void registerListener(TcpListener listener) {
+		super.registerListener(listener);
+		for (Endpoint endpoint : this.endpoints) {
+			endpoint.factory.registerListener(new TcpListener() {
+				public boolean onMessage(Message<?> message) {
+					if (!(message instanceof ErrorMessage)) {
+						throw new UnsupportedOperationException("This should never be called");
+					}
+					return false;
+				}
+			});
+		}
+	}
+
+	@Override
+	public void registerSender(TcpSender sender) {
+		for (Endpoint endpoint : this.endpoints) {
+			endpoint.factory.registerSender(sender);
+		}
+	}
+
+	@Override
+	protected TcpConnectionSupport obtainConnection() throws Exception {
+		TcpConnectionSupport connection = this.getTheConnection();
+		if (connection != null && connection.isOpen()) {
+			return connection;
+		}
+		LoadBalancedTcpConnection loadBalancedConnection = new LoadBalancedTcpConnection();
+		loadBalancedConnection.registerListener(this.getListener());
+		return loadBalancedConnection;
+	}
+
+	/**
+	 * Selects an endpoint that is not ejected, according to the strategy. If all the
+	 * endpoints not yet tried for this request are ejected, returns the one whose
+	 * backoff expires first.
+	 * @param tried endpoints already tried for this request.
+	 * @return the endpoint, or null if all have been tried.
+	 */
+	private Endpoint select(Set<Endpoint> tried) {
+		long now = System.currentTimeMillis();
+		List<Endpoint> candidates = new ArrayList<Endpoint>(this.endpoints.size());
+		Endpoint soonest = null;
+		for (Endpoint endpoint : this.endpoints) {
+			if (tried.contains(endpoint)) {
+				continue;
+			}
+			if (endpoint.ejectedUntil <= now) {
+				candidates.add(endpoint);
+			}
+			else if (soonest == null || endpoint.ejectedUntil < soonest.ejectedUntil) {
+				soonest = endpoint;
+			}
+		}
+		if (candidates.isEmpty()) {
+			return soonest;
+		}
+		int size = candidates.size();
+		if (size == 1) {
+			return candidates.get(0);
+		}
+		switch (this.selectionStrategy) {
+		case POWER_OF_TWO_CHOICES:
+			int first = this.random.nextInt(size);
+			int second = this.random.nextInt(size - 1);
+			if (second >= first) {
+				second++;
+			}
+			Endpoint a = candidates.get(first);
+			Endpoint b = candidates.get(second);
+			return a.outstanding.get() <= b.outstanding.get() ? a : b;
+		case LATENCY_WEIGHTED:
+			Endpoint fastest = null;
+			double lowestCost = Double.MAX_VALUE;
+			for (Endpoint endpoint : candidates) {
+				double cost = (endpoint.outstanding.get() + 1) * (endpoint.latency.get() + 1.0);
+				if (cost < lowestCost) {
+					lowestCost = cost;
+					fastest = endpoint;
+				}
+			}
+			return fastest;
+		default:
+			// start at a rotating index so that ties are spread
+			int start = (this.nextIndex.getAndIncrement() & Integer.MAX_VALUE) % size;
+			Endpoint least = null;
+			for (int i = 0; i < size; i++) {
+				Endpoint endpoint = candidates.get((start + i) % size);
+				if (least == null || endpoint.outstanding.get() < least.outstanding.get()) {
+					least = endpoint;
+				}
+			}
+			return least;
+		}
+	}
+
+	/**
+	 * @return the number of outstanding requests for each endpoint, in the
+	 * order the factories were provided.
+	 */
+	@ManagedAttribute
+	public int[] getOutstandingRequests() {
+		int[] outstanding = new int[this.endpoints.size()];
+		for (int i = 0; i < outstanding.length; i++) {
+			outstanding[i] = this.endpoints.get(i).outstanding.get();
+		}
+		return outstanding;
+	}
+
+	/**
+	 * @return the average latency (microseconds) for each endpoint, in the
+	 * order the factories were provided.
+	 */
+	@ManagedAttribute
+	public long[] getAverageLatencies() {
+		long[] latencies = new long[this.endpoints.size()];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = this.endpoints.get(i).latency.get();
+		}
+		return latencies;
+	}
+
+	/**
+	 * @return the number of endpoints currently ejected.
+	 */
+	@ManagedAttribute
+	public int getEjectedCount() {
+		long now = System.currentTimeMillis();
+		int count = 0;
+		for (Endpoint endpoint : this.endpoints) {
+			if (endpoint.ejectedUntil > now) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void close() {
+		for (Endpoint endpoint : this.endpoints) {
+			endpoint.factory.close();
+		}
+	}
+
+	@Override
+	public void start() {
+		for (Endpoint endpoint : this.endpoints) {
+			endpoint.factory.start();
+		}
+		this.setActive(true);
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+		this.setActive(false);
+		for (Endpoint endpoint : this.endpoints) {
+			endpoint.factory.stop();
+		}
+	}
+
+	/**
+	 * Returns true if all factories are running
+	 */
+	@Override
+	public boolean isRunning() {
+		boolean isRunning = true;
+		for (Endpoint endpoint : this.endpoints) {
+			isRunning = !isRunning ? false : endpoint.factory.isRunning();
+		}
+		return isRunning;
+	}
+
+
+	/**
+	 * The state of one endpoint.
+	 */
+	private class Endpoint {
+
+		private final AbstractClientConnectionFactory factory;
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		/*
+		 * Exponentially weighted moving average, microseconds.
+		 */
+		private final AtomicLong latency = new AtomicLong();
+
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+		private volatile long backoff;
+
+		private volatile long ejectedUntil;
+
+		private Endpoint(AbstractClientConnectionFactory factory) {
+			this.factory = factory;
+		}
+
+		private void recordLatency(long nanos) {
+			long sample = nanos / 1000;
+			long current;
+			long updated;
+			do {
+				current = this.latency.get();
+				updated = current == 0 ? sample : current + (sample - current) / 5;
+			}
+			while (!this.latency.compareAndSet(current, updated));
+		}
+
+		private void succeeded() {
+			if (this.consecutiveFailures.get() > 0) {
+				this.consecutiveFailures.set(0);
+				this.backoff = 0;
+			}
+		}
+
+		private synchronized void failed(Exception e) {
+			if (this.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+				this.backoff = this.backoff == 0 ? initialBackoff : Math.min(this.backoff * 2, maxBackoff);
+				this.ejectedUntil = System.currentTimeMillis() + this.backoff;
+				if (logger.isWarnEnabled()) {
+					logger.warn("Ejecting " + this + " for " + this.backoff + "ms after "
+							+ this.consecutiveFailures.get() + " consecutive failure(s): " + e.getMessage());
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "endpoint " + this.factory.getHost() + ":" + this.factory.getPort();
+		}
+
+	}
+
+	/**
+	 * A connection to one of the endpoints, obtained from its factory, with the send
+	 * times of requests that have not yet been replied to.
+	 */
+	private static class Delegate {
+
+		private final Endpoint endpoint;
+
+		private final TcpConnectionSupport connection;
+
+		private final Queue<Long> sendTimes = new ConcurrentLinkedQueue<Long>();
+
+		private Delegate(Endpoint endpoint, TcpConnectionSupport connection) {
+			this.endpoint = endpoint;
+			this.connection = connection;
+		}
+
+	}
+
+	/**
+	 * Wraps connections to one or more endpoints; selects the endpoint for each send
+	 * (or, for single-use connections, once), and replaces the connection id in
+	 * received messages with its own, so that replies can be correlated.
+	 */
+	private class LoadBalancedTcpConnection extends TcpConnectionSupport implements TcpListener {
+
+		private final String connectionId = UUID.randomUUID().toString();
+
+		private final Map<Endpoint, Delegate> delegates = new ConcurrentHashMap<Endpoint, Delegate>();
+
+		private volatile Delegate current;
+
+		private volatile boolean open = true;
+
+		public LoadBalancedTcpConnection() throws Exception {
+			this.current = this.selectDelegate(new HashSet<Endpoint>());
+		}
+
+		/**
+		 * Selects an endpoint and obtains a connection to it, ejecting endpoints that
+		 * fail and trying others until all have been tried.
+		 */
+		private Delegate selectDelegate(Set<Endpoint> tried) throws Exception {
+			Exception lastException = null;
+			Endpoint endpoint;
+			while ((endpoint = select(tried)) != null) {
+				tried.add(endpoint);
+				try {
+					return this.delegateFor(endpoint);
+				}
+				catch (Exception e) {
+					lastException = e;
+					endpoint.failed(e);
+				}
+			}
+			this.open = false;
+			if (lastException == null) {
+				throw new IOException("All endpoints have been tried");
+			}
+			throw lastException;
+		}
+
+		private synchronized Delegate delegateFor(Endpoint endpoint) throws Exception {
+			Delegate delegate = this.delegates.get(endpoint);
+			if (delegate == null || !delegate.connection.isOpen()) {
+				if (delegate != null) {
+					this.discard(delegate);
+				}
+				TcpConnectionSupport connection = endpoint.factory.getConnection();
+				connection.registerListener(this);
+				if (!connection.isOpen()) {
+					throw new IOException("Connection to " + endpoint + " is not open");
+				}
+				delegate = new Delegate(endpoint, connection);
+				this.delegates.put(endpoint, delegate);
+			}
+			return delegate;
+		}
+
+		/**
+		 * Sends to the selected endpoint; if it fails, the endpoint is charged with the
+		 * failure and the send is attempted on another endpoint. If the send fails on
+		 * every endpoint, we give up.
+		 */
+		public void send(Message<?> message) throws Exception {
+			Set<Endpoint> tried = new HashSet<Endpoint>();
+			Delegate delegate = this.isSingleUse() ? this.current : this.selectDelegate(tried);
+			boolean expectReply = this.getListener() != null;
+			while (true) {
+				Endpoint endpoint = delegate.endpoint;
+				tried.add(endpoint);
+				long start = System.nanoTime();
+				endpoint.outstanding.incrementAndGet();
+				if (expectReply) {
+					delegate.sendTimes.add(start);
+				}
+				try {
+					delegate.connection.send(message);
+					endpoint.succeeded();
+					if (!expectReply) {
+						endpoint.outstanding.decrementAndGet();
+						endpoint.recordLatency(System.nanoTime() - start);
+					}
+					this.current = delegate;
+					return;
+				}
+				catch (IOException e) {
+					endpoint.failed(e);
+					this.discard(delegate);
+					if (logger.isDebugEnabled()) {
+						logger.debug("Send to " + endpoint + " failed; selecting another endpoint", e);
+					}
+					delegate = this.selectDelegate(tried);
+				}
+			}
+		}
+
+		/**
+		 * Closes the delegate connection and releases its outstanding requests.
+		 */
+		private void discard(Delegate delegate) {
+			this.delegates.remove(delegate.endpoint);
+			while (delegate.sendTimes.poll() != null) {
+				delegate.endpoint.outstanding.decrementAndGet();
+			}
+			delegate.connection.close();
+		}
+
+		/**
+		 * We have to intercept the message to replace the connectionId header with
+		 * ours so the listener can correlate a response with a request. We supply
+		 * the actual connectionId in another header for convenience and tracing
+		 * purposes. A reply completes the oldest outstanding request on the connection
+		 * it arrived on.
+		 */
+		public boolean onMessage(Message<?> message) {
+			Object actualConnectionId = message.getHeaders().get(IpHeaders.CONNECTION_ID);
+			Delegate source = null;
+			for (Delegate delegate : this.delegates.values()) {
+				if (delegate.connection.getConnectionId().equals(actualConnectionId)) {
+					source = delegate;
+					break;
+				}
+			}
+			if (source == null || this.getListener() == null) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Message from defunct connection ignored " + message);
+				}
+				return false;
+			}
+			if (message instanceof ErrorMessage) {
+				source.endpoint.failed((Exception) ((ErrorMessage) message).getPayload());
+			}
+			else {
+				Long sendTime = source.sendTimes.poll();
+				if (sendTime != null) {
+					source.endpoint.outstanding.decrementAndGet();
+					source.endpoint.recordLatency(System.nanoTime() - sendTime);
+				}
+			}
+			MessageBuilder<?> messageBuilder = MessageBuilder.fromMessage(message)
+					.setHeader(IpHeaders.CONNECTION_ID, this.getConnectionId());
+			if (message.getHeaders().get(IpHeaders.ACTUAL_CONNECTION_ID) == null) {
+				messageBuilder.setHeader(IpHeaders.ACTUAL_CONNECTION_ID, actualConnectionId);
+			}
+			return this.getListener().onMessage(messageBuilder.build());
+		}
+
+		@Override
+		public void close() {
+			for (Delegate delegate : this.delegates.values()) {
+				this.discard(delegate);
+			}
+			this.open = false;
+		}
+
+		public boolean isOpen() {
+			return this.open;
+		}
+
+		public Object getPayload() throws Exception {
+			return this.current.connection.getPayload();
+		}
+
+		public void run() {
+			throw new UnsupportedOperationException("Not supported on LoadBalancedTcpConnection");
+		}
+
+		@Override
+		public String getHostName() {
+			return this.current.connection.getHostName();
+		}
+
+		@Override
+		public String getHostAddress() {
+			return this.current.connection.getHostAddress();
+		}
+
+		public int getPort() {
+			return this.current.connection.getPort();
+		}
+
+		public Object getDeserializerStateKey() {
+			return this.current.connection.getDeserializerStateKey();
+		}
+
+		@Override
+		public void registerSender(TcpSender sender) {
+			this.current.connection.registerSender(sender);
+		}
+
+		@Override
+		public String getConnectionId() {
+			return this.connectionId;
+		}
+
+		@Override
+		public void setSingleUse(boolean singleUse) {
+			this.current.connection.setSingleUse(singleUse);
+		}
+
+		@Override
+		public boolean isSingleUse() {
+			return this.current.connection.isSingleUse();
+		}
+
+		@Override
+		public boolean isServer() {
+			return false;
+		}
+
+		@Override
+		public void setMapper(TcpMessageMapper mapper) {
+			this.current.connection.setMapper(mapper);
+		}
+
+		@Override
+		public Deserializer<?> getDeserializer() {
+			return this.current.connection.getDeserializer();
+		}
+
+		@Override
+		public void setDeserializer(Deserializer<?> deserializer) {
+			this.current.connection.setDeserializer(deserializer);
+		}
+
+		@Override
+		public Serializer<?> getSerializer() {
+			return this.current.connection.getSerializer();
+		}
+
+		@Override
+		public void setSerializer(Serializer<?> serializer) {
+			this.current.connection.setSerializer(serializer);
+		}
+
+	}
+
+}
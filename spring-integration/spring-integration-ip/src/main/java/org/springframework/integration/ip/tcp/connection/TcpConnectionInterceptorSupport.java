@@ -187,6 +187,26 @@ public abstract class TcpConnectionInterceptorSupport extends TcpConnectionSuppo
 		return this.theConnection.incrementAndGetConnectionSequence();
 	}
 
+	@Override
+	public void setStatisticsEnabled(boolean statisticsEnabled) {
+		this.theConnection.setStatisticsEnabled(statisticsEnabled);
+	}
+
+	@Override
+	public boolean isStatisticsEnabled() {
+		return this.theConnection.isStatisticsEnabled();
+	}
+
+	@Override
+	public long getLastActivity() {
+		return this.theConnection.getLastActivity();
+	}
+
+	@Override
+	public TcpConnectionStatistics getStatistics() {
+		return this.theConnection.getStatistics();
+	}
+
 	@Override
 	public TcpSender getSender() {
 		return this.tcpSender;
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.ip.tcp.connection;
+
+import java.io.Serializable;
+
+/**
+ * An immutable snapshot of the traffic on one or more connections.
+ *
+ * @since 3.0
+ *
+ */
+public class TcpConnectionStatistics implements Serializable {
+
+	private static final long serialVersionUID = -3462711353457425217L;
+
+	private final int connectionCount;
+
+	private final long bytesReceived;
+
+	private final long bytesSent;
+
+	private final long messagesReceived;
+
+	private final long messagesSent;
+
+	private final long lastActivity;
+
+	public TcpConnectionStatistics(int connectionCount, long bytesReceived, long bytesSent,
+			long messagesReceived, long messagesSent, long lastActivity) {
+		this.connectionCount = connectionCount;
+		this.bytesReceived = bytesReceived;
+		this.bytesSent = bytesSent;
+		this.messagesReceived = messagesReceived;
+		this.messagesSent = messagesSent;
+		this.lastActivity = lastActivity;
+	}
+
+	/**
+	 * @return the number of connections included in these statistics.
+	 */
+	public int getConnectionCount() {
+		return connectionCount;
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	public long getMessagesReceived() {
+		return messagesReceived;
+	}
+
+	public long getMessagesSent() {
+		return messagesSent;
+	}
+
+	/**
+	 * @return the time (milliseconds since the epoch) of the most recent read or write.
+	 */
+	public long getLastActivity() {
+		return lastActivity;
+	}
+
+	/**
+	 * @param other the statistics to add.
+	 * @return new statistics combining these and the other statistics.
+	 */
+	public TcpConnectionStatistics add(TcpConnectionStatistics other) {
+		return new TcpConnectionStatistics(this.connectionCount + other.connectionCount,
+				this.bytesReceived + other.bytesReceived,
+				this.bytesSent + other.bytesSent,
+				this.messagesReceived + other.messagesReceived,
+				this.messagesSent + other.messagesSent,
+				Math.max(this.lastActivity, other.lastActivity));
+	}
+
+	@Override
+	public String toString() {
+		return "[connections=" + this.connectionCount +
+				", bytesReceived=" + this.bytesReceived +
+				", bytesSent=" + this.bytesSent +
+				", messagesReceived=" + this.messagesReceived +
+				", messagesSent=" + this.messagesSent +
+				", lastActivity=" + this.lastActivity + "]";
+	}
+
+}
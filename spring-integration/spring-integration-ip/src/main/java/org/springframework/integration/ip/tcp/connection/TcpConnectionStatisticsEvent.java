@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.ip.tcp.connection;
+
+
+/**
+ * ApplicationEvent carrying the traffic statistics of a {@link TcpConnection};
+ * published periodically by server connection factories when a statistics
+ * interval is set.
+ * @since 3.0
+ *
+ */
+public class TcpConnectionStatisticsEvent extends TcpConnectionEvent {
+
+	private static final long serialVersionUID = -5226421830127251924L;
+
+	private final TcpConnectionStatistics statistics;
+
+	public TcpConnectionStatisticsEvent(TcpConnection connection, String connectionFactoryName,
+			TcpConnectionStatistics statistics) {
+		super(connection, connectionFactoryName);
+		this.statistics = statistics;
+	}
+
+	public TcpConnectionStatistics getStatistics() {
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + " " + this.statistics;
+	}
+
+}
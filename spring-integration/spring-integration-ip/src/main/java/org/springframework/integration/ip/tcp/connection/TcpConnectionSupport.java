@@ -16,14 +16,24 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Collections;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,6 +44,7 @@ import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.FramingSerializer;
 import org.springframework.integration.message.ErrorMessage;
 import org.springframework.util.Assert;
 
@@ -86,6 +97,20 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 
 	private final AtomicBoolean exceptionSent = new AtomicBoolean();
 
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	private final AtomicLong messagesReceived = new AtomicLong();
+
+	private final AtomicLong messagesSent = new AtomicLong();
+
+	private volatile long lastActivity = System.currentTimeMillis();
+
+	private volatile boolean statisticsEnabled;
+
+	private final AtomicReference<AtomicInteger> openConnectionCounter = new AtomicReference<AtomicInteger>();
+
 	public TcpConnectionSupport() {
 		this.server = false;
 		this.applicationEventPublisher = null;
@@ -132,6 +157,8 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 	}
 
 	public void afterSend(Message<?> message) throws Exception {
+		this.messagesSent.incrementAndGet();
+		this.lastActivity = System.currentTimeMillis();
 		if (logger.isDebugEnabled()) {
 			logger.debug("Message sent " + message);
 		}
@@ -153,6 +180,7 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 		if (this.sender != null) {
 			this.sender.removeDeadConnection(this);
 		}
+		this.releaseOpenConnectionCount();
 		// close() may be called multiple times; only publish once
 		if (!this.closePublished.getAndSet(true)) {
 			this.publishConnectionCloseEvent();
@@ -308,6 +336,227 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 		return this.connectionId;
 	}
 
+	/**
+	 * @param payload The message payload.
+	 * @return true if the serializer is a {@link FramingSerializer} and the payload is
+	 * a {@link File}, {@link FileChannel} or {@link ByteBuffer}, which are written
+	 * directly to the socket by {@link #writeFramedBody(Object, WritableByteChannel)}
+	 * instead of being mapped and serialized.
+	 * @since 3.0
+	 */
+	protected boolean isFramedBody(Object payload) {
+		return this.serializer instanceof FramingSerializer
+				&& (payload instanceof File || payload instanceof FileChannel || payload instanceof ByteBuffer);
+	}
+
+	/**
+	 * Writes the payload to the channel between the frame header and trailer, without
+	 * copying it to a byte[]. Files are written using {@link FileChannel#transferTo},
+	 * which avoids copying the data through user space when the channel is a socket
+	 * channel; buffers are written with a gathering write. A {@link FileChannel} payload
+	 * is written from its current position, which is advanced, and is not closed;
+	 * a {@link ByteBuffer} payload is not modified.
+	 * @param payload The payload.
+	 * @param channel The channel.
+	 * @throws IOException
+	 * @since 3.0
+	 */
+	protected void writeFramedBody(Object payload, WritableByteChannel channel) throws IOException {
+		FramingSerializer framing = (FramingSerializer) this.serializer;
+		if (payload instanceof ByteBuffer) {
+			ByteBuffer body = ((ByteBuffer) payload).duplicate();
+			this.writeFully(channel, ByteBuffer.wrap(framing.frameHeader(body.remaining())), body,
+					ByteBuffer.wrap(framing.frameTrailer()));
+			return;
+		}
+		FileInputStream fileInputStream = null;
+		FileChannel fileChannel;
+		if (payload instanceof File) {
+			fileInputStream = new FileInputStream((File) payload);
+			fileChannel = fileInputStream.getChannel();
+		}
+		else {
+			fileChannel = (FileChannel) payload;
+		}
+		try {
+			long position = fileChannel.position();
+			long count = fileChannel.size() - position;
+			this.writeFully(channel, ByteBuffer.wrap(framing.frameHeader(count)));
+			long transferred = 0;
+			while (transferred < count) {
+				long n = fileChannel.transferTo(position + transferred, count - transferred, channel);
+				if (channel instanceof SocketChannel) {
+					this.bytesSent(n);
+				}
+				if (n == 0) {
+					if (position + transferred >= fileChannel.size()) {
+						throw new IOException("File truncated after " + transferred + " of " + count + " bytes");
+					}
+					this.awaitWritable();
+				}
+				transferred += n;
+			}
+			fileChannel.position(position + count);
+			this.writeFully(channel, ByteBuffer.wrap(framing.frameTrailer()));
+		}
+		finally {
+			if (fileInputStream != null) {
+				fileInputStream.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes all the buffers to the channel, using a gathering write if the channel
+	 * supports it, calling {@link #awaitWritable()} whenever no progress is made.
+	 * Bytes written directly to a {@link SocketChannel} are included in the statistics;
+	 * other channels are expected to write through a stream that records them.
+	 * @param channel The channel.
+	 * @param buffers The buffers.
+	 * @throws IOException
+	 * @since 3.0
+	 */
+	protected final void writeFully(WritableByteChannel channel, ByteBuffer... buffers) throws IOException {
+		boolean socket = channel instanceof SocketChannel;
+		if (channel instanceof GatheringByteChannel) {
+			while (hasRemaining(buffers)) {
+				long n = ((GatheringByteChannel) channel).write(buffers);
+				if (n == 0) {
+					this.awaitWritable();
+				}
+				else if (socket) {
+					this.bytesSent(n);
+				}
+			}
+		}
+		else {
+			for (ByteBuffer buffer : buffers) {
+				while (buffer.hasRemaining()) {
+					int n = channel.write(buffer);
+					if (n == 0) {
+						this.awaitWritable();
+					}
+					else if (socket) {
+						this.bytesSent(n);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean hasRemaining(ByteBuffer[] buffers) {
+		for (ByteBuffer buffer : buffers) {
+			if (buffer.hasRemaining()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Called when a write of a framed body made no progress; connections
+	 * using non-blocking channels must wait until the channel is writable.
+	 * @throws IOException
+	 * @since 3.0
+	 */
+	protected void awaitWritable() throws IOException {
+	}
+
+	/**
+	 * Counts this connection in the counter until it is closed.
+	 * @param counter the connection factory's count of open connections.
+	 */
+	void countOpenConnection(AtomicInteger counter) {
+		counter.incrementAndGet();
+		this.openConnectionCounter.set(counter);
+		if (this.closePublished.get() || !this.isOpen()) {
+			this.releaseOpenConnectionCount();
+		}
+	}
+
+	/**
+	 * Removes this connection from the counter of open connections, if it is
+	 * still counted.
+	 */
+	void releaseOpenConnectionCount() {
+		AtomicInteger counter = this.openConnectionCounter.getAndSet(null);
+		if (counter != null) {
+			counter.decrementAndGet();
+		}
+	}
+
+	/**
+	 * When true, the bytes read and written are recorded in the
+	 * {@link #getStatistics() statistics} and update the
+	 * {@link #getLastActivity() lastActivity}; otherwise only messages are recorded.
+	 * Default false.
+	 * @param statisticsEnabled the statisticsEnabled to set.
+	 * @since 3.0
+	 */
+	public void setStatisticsEnabled(boolean statisticsEnabled) {
+		this.statisticsEnabled = statisticsEnabled;
+	}
+
+	/**
+	 * @return true if bytes read and written are recorded.
+	 * @since 3.0
+	 */
+	public boolean isStatisticsEnabled() {
+		return this.statisticsEnabled;
+	}
+
+	/**
+	 * Records bytes read from the socket, if statistics are enabled.
+	 * @param count the number of bytes.
+	 * @since 3.0
+	 */
+	protected void bytesReceived(long count) {
+		if (this.statisticsEnabled) {
+			this.bytesReceived.addAndGet(count);
+			this.lastActivity = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Records bytes written to the socket, if statistics are enabled.
+	 * @param count the number of bytes.
+	 * @since 3.0
+	 */
+	protected void bytesSent(long count) {
+		if (this.statisticsEnabled) {
+			this.bytesSent.addAndGet(count);
+			this.lastActivity = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Records a message received on this connection; messages sent are
+	 * recorded by {@link #afterSend(Message)}.
+	 * @since 3.0
+	 */
+	protected void messageReceived() {
+		this.messagesReceived.incrementAndGet();
+		this.lastActivity = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the time (milliseconds since the epoch) of the most recent read or write,
+	 * or of the creation of this connection if there have been none.
+	 * @since 3.0
+	 */
+	public long getLastActivity() {
+		return this.lastActivity;
+	}
+
+	/**
+	 * @return a snapshot of the traffic on this connection.
+	 * @since 3.0
+	 */
+	public TcpConnectionStatistics getStatistics() {
+		return new TcpConnectionStatistics(1, this.bytesReceived.get(), this.bytesSent.get(),
+				this.messagesReceived.get(), this.messagesSent.get(), this.lastActivity);
+	}
+
 	protected final void sendExceptionToListener(Exception e) {
 		if (!this.exceptionSent.getAndSet(true) && this.getListener() != null) {
 			Map<String, Object> headers = Collections.singletonMap(IpHeaders.CONNECTION_ID,
@@ -16,9 +16,17 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.serializer.Deserializer;
@@ -43,6 +51,14 @@ public class TcpNetConnection extends TcpConnectionSupport {
 
 	private volatile long lastSend;
 
+	private volatile InputStream inputStream;
+
+	private volatile OutputStream outputStream;
+
+	private volatile CountingInputStream countingInputStream;
+
+	private volatile CountingOutputStream countingOutputStream;
+
 	/**
 	 * Constructs a TcpNetConnection for the socket.
 	 * @param socket the socket
@@ -82,6 +98,7 @@ public class TcpNetConnection extends TcpConnectionSupport {
 	@Override
 	public void close() {
 		this.noReadErrorOnClose = true;
+		this.releaseOpenConnectionCount();
 		try {
 			this.socket.close();
 		} catch (Exception e) {}
@@ -94,10 +111,19 @@ public class TcpNetConnection extends TcpConnectionSupport {
 
 	@SuppressWarnings("unchecked")
 	public synchronized void send(Message<?> message) throws Exception {
-		Object object = this.getMapper().fromMessage(message);
+		boolean framedBody = this.isFramedBody(message.getPayload());
+		Object object = framedBody ? message.getPayload() : this.getMapper().fromMessage(message);
 		this.lastSend = System.currentTimeMillis();
 		try {
-			((Serializer<Object>) this.getSerializer()).serialize(object, this.socket.getOutputStream());
+			if (framedBody) {
+				this.writeFramedBody(object, this.getFramedBodyChannel());
+			}
+			else {
+				((Serializer<Object>) this.getSerializer()).serialize(object, this.getOutputStream());
+				if (this.countingOutputStream != null) {
+					this.countingOutputStream.record();
+				}
+			}
 		}
 		catch (Exception e) {
 			this.publishConnectionExceptionEvent(e);
@@ -106,8 +132,55 @@ public class TcpNetConnection extends TcpConnectionSupport {
 		this.afterSend(message);
 	}
 
+	/**
+	 * Uses the socket's channel, if it has one, so that file payloads are transferred
+	 * without copying; otherwise, framed bodies are written through the socket's
+	 * output stream.
+	 */
+	private WritableByteChannel getFramedBodyChannel() throws IOException {
+		SocketChannel channel = this.socket.getChannel();
+		if (channel != null && channel.isBlocking()) {
+			return channel;
+		}
+		return Channels.newChannel(this.getOutputStream());
+	}
+
 	public Object getPayload() throws Exception {
-		return this.getDeserializer().deserialize(this.socket.getInputStream());
+		return this.getDeserializer().deserialize(this.getInputStream());
+	}
+
+	/**
+	 * @return the socket's input stream, wrapped to record the bytes read if
+	 * statistics are enabled.
+	 */
+	private InputStream getInputStream() throws IOException {
+		if (this.inputStream == null) {
+			if (this.isStatisticsEnabled()) {
+				this.countingInputStream = new CountingInputStream(this.socket.getInputStream());
+				this.inputStream = this.countingInputStream;
+			}
+			else {
+				this.inputStream = this.socket.getInputStream();
+			}
+		}
+		return this.inputStream;
+	}
+
+	/**
+	 * @return the socket's output stream, wrapped to record the bytes written if
+	 * statistics are enabled.
+	 */
+	private OutputStream getOutputStream() throws IOException {
+		if (this.outputStream == null) {
+			if (this.isStatisticsEnabled()) {
+				this.countingOutputStream = new CountingOutputStream(this.socket.getOutputStream());
+				this.outputStream = this.countingOutputStream;
+			}
+			else {
+				this.outputStream = this.socket.getOutputStream();
+			}
+		}
+		return this.outputStream;
 	}
 
 	public int getPort() {
@@ -150,6 +223,9 @@ public class TcpNetConnection extends TcpConnectionSupport {
 			try {
 				message = this.getMapper().toMessage(this);
 				this.lastRead = System.currentTimeMillis();
+				if (message != null) {
+					this.messageReceived();
+				}
 			}
 			catch (Exception e) {
 				this.publishConnectionExceptionEvent(e);
@@ -157,6 +233,11 @@ public class TcpNetConnection extends TcpConnectionSupport {
 					okToRun = false;
 				}
 			}
+			finally {
+				if (this.countingInputStream != null) {
+					this.countingInputStream.record();
+				}
+			}
 			if (okToRun && message != null) {
 				if (logger.isDebugEnabled()) {
 					logger.debug("Message received " + message);
@@ -255,4 +336,80 @@ public class TcpNetConnection extends TcpConnectionSupport {
 		return doClose;
 	}
 
+	/**
+	 * Records the bytes read by each bulk read; single bytes (read by some deserializers)
+	 * are accumulated and recorded with the next bulk read, or when the message
+	 * has been read. Only used by the reading thread.
+	 */
+	private class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		public CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				this.count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				this.count += n;
+				this.record();
+			}
+			return n;
+		}
+
+		private void record() {
+			if (this.count > 0) {
+				bytesReceived(this.count);
+				this.count = 0;
+			}
+		}
+
+	}
+
+	/**
+	 * Records the bytes written by each bulk write; single bytes are accumulated
+	 * and recorded with the next bulk write, or when the message has been written.
+	 * Only used while sending, which is synchronized.
+	 */
+	private class CountingOutputStream extends FilterOutputStream {
+
+		private long count;
+
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count += len;
+			this.record();
+		}
+
+		private void record() {
+			if (this.count > 0) {
+				bytesSent(this.count);
+				this.count = 0;
+			}
+		}
+
+	}
+
 }
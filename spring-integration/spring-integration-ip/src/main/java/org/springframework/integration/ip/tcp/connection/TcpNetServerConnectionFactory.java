@@ -78,6 +78,9 @@ public class TcpNetServerConnectionFactory extends AbstractServerConnectionFacto
 				 *  User hooks in the TcpSocketSupport may have set the server socket SO_TIMEOUT.
 				 *  Not fatal.
 				 */
+				while (this.isAtConnectionLimit() && this.isActive()) {
+					Thread.sleep(ACCEPT_PAUSE_INTERVAL);
+				}
 				try {
 					socket = serverSocket.accept();
 				} catch (SocketTimeoutException ste) {
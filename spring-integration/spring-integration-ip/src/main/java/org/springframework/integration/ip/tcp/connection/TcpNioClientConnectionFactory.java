@@ -30,6 +30,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import org.springframework.integration.ip.util.ByteBufferPool;
 import org.springframework.util.Assert;
 
 
@@ -44,6 +45,16 @@ public class TcpNioClientConnectionFactory extends
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile boolean decodeFromReadBuffer;
+
+	private volatile ByteBufferPool byteBufferPool;
+
+	private volatile int writeQueueCapacity;
+
+	private volatile int writeBatchMaxBytes = 64 * 1024;
+
+	private volatile long writeBatchMaxDelay;
+
 	private volatile Selector selector;
 
 	private final Map<SocketChannel, TcpNioConnection> channelMap = new ConcurrentHashMap<SocketChannel, TcpNioConnection>();
@@ -91,6 +102,11 @@ public class TcpNioClientConnectionFactory extends
 		TcpNioConnection connection = this.tcpNioConnectionSupport.createNewConnection(
 				socketChannel, false, this.isLookupHost(), this.getApplicationEventPublisher(), this.getComponentName());
 		connection.setUsingDirectBuffers(this.usingDirectBuffers);
+		connection.setDecodeFromReadBuffer(this.decodeFromReadBuffer);
+		connection.setByteBufferPool(this.byteBufferPool);
+		connection.setWriteQueueCapacity(this.writeQueueCapacity);
+		connection.setWriteBatchMaxBytes(this.writeBatchMaxBytes);
+		connection.setWriteBatchMaxDelay(this.writeBatchMaxDelay);
 		connection.setTaskExecutor(this.getTaskExecutor());
 		TcpConnectionSupport wrappedConnection = wrapConnection(connection);
 		initializeConnection(wrappedConnection, socketChannel.socket());
@@ -114,6 +130,56 @@ public class TcpNioClientConnectionFactory extends
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * When set to true, connections created by this factory decode frames directly
+	 * from the read buffer if the deserializer is a
+	 * {@link org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer}.
+	 * @param decodeFromReadBuffer the decodeFromReadBuffer to set
+	 * @see TcpNioConnection#setDecodeFromReadBuffer(boolean)
+	 * @since 3.0
+	 */
+	public void setDecodeFromReadBuffer(boolean decodeFromReadBuffer) {
+		this.decodeFromReadBuffer = decodeFromReadBuffer;
+	}
+
+	/**
+	 * Set a pool from which connections created by this factory borrow read buffers.
+	 * @param byteBufferPool the byteBufferPool to set
+	 * @see TcpNioConnection#setByteBufferPool(ByteBufferPool)
+	 * @since 3.0
+	 */
+	public void setByteBufferPool(ByteBufferPool byteBufferPool) {
+		this.byteBufferPool = byteBufferPool;
+	}
+
+	/**
+	 * Set the capacity of each connection's write queue; 0 (default) disables queueing.
+	 * @param writeQueueCapacity the writeQueueCapacity to set
+	 * @see TcpNioConnection#setWriteQueueCapacity(int)
+	 * @since 3.0
+	 */
+	public void setWriteQueueCapacity(int writeQueueCapacity) {
+		this.writeQueueCapacity = writeQueueCapacity;
+	}
+
+	/**
+	 * @param writeBatchMaxBytes the writeBatchMaxBytes to set
+	 * @see TcpNioConnection#setWriteBatchMaxBytes(int)
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxBytes(int writeBatchMaxBytes) {
+		this.writeBatchMaxBytes = writeBatchMaxBytes;
+	}
+
+	/**
+	 * @param writeBatchMaxDelay the writeBatchMaxDelay to set
+	 * @see TcpNioConnection#setWriteBatchMaxDelay(long)
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxDelay(long writeBatchMaxDelay) {
+		this.writeBatchMaxDelay = writeBatchMaxDelay;
+	}
+
 	public void setTcpNioConnectionSupport(TcpNioConnectionSupport tcpNioSupport) {
 		Assert.notNull(tcpNioSupport, "TcpNioSupport must not be null");
 		this.tcpNioConnectionSupport = tcpNioSupport;
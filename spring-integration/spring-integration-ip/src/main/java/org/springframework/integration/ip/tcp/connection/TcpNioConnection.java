@@ -16,6 +16,7 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -25,19 +26,28 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
+import org.springframework.integration.ip.util.ByteBufferPool;
 import org.springframework.util.Assert;
 
 /**
@@ -61,7 +71,7 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	private volatile Executor taskExecutor;
 
-	private volatile ByteBuffer rawBuffer;
+	private final AtomicReference<ByteBuffer> rawBuffer = new AtomicReference<ByteBuffer>();
 
 	private volatile int maxMessageSize = 60 * 1024;
 
@@ -75,6 +85,24 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	private volatile long pipeTimeout = DEFAULT_PIPE_TIMEOUT;
 
+	private volatile boolean decodeFromReadBuffer;
+
+	private volatile ByteBufferDeserializer<?> bufferDeserializer;
+
+	private final AtomicReference<ByteBuffer> partialFrame = new AtomicReference<ByteBuffer>();
+
+	private volatile ByteBufferPool byteBufferPool;
+
+	private volatile Object decodedFrame;
+
+	private volatile BlockingQueue<ByteBuffer> writeQueue;
+
+	private volatile int writeBatchMaxBytes = 64 * 1024;
+
+	private volatile long writeBatchMaxDelay;
+
+	private final ReentrantLock writeLock = new ReentrantLock();
+
 	/**
 	 * Constructs a TcpNetConnection for the SocketChannel.
 	 * @param socketChannel the socketChannel
@@ -116,12 +144,19 @@ public class TcpNioConnection extends TcpConnectionSupport {
 	}
 
 	private void doClose() {
+		this.releaseOpenConnectionCount();
 		try {
 			channelInputStream.close();
 		} catch (IOException e) {}
 		try {
 			this.socketChannel.close();
 		} catch (Exception e) {}
+		this.releaseBuffer(this.rawBuffer.getAndSet(null));
+		this.releaseBuffer(this.partialFrame.getAndSet(null));
+		BlockingQueue<ByteBuffer> writeQueue = this.writeQueue;
+		if (writeQueue != null) {
+			writeQueue.clear();
+		}
 		super.close();
 	}
 
@@ -131,11 +166,24 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	@SuppressWarnings("unchecked")
 	public void send(Message<?> message) throws Exception {
+		if (this.writeQueue != null) {
+			this.sendQueued(message);
+			return;
+		}
 		synchronized(this.getMapper()) {
-			Object object = this.getMapper().fromMessage(message);
+			boolean framedBody = this.isFramedBody(message.getPayload());
+			Object object = framedBody ? message.getPayload() : this.getMapper().fromMessage(message);
 			this.lastSend = System.currentTimeMillis();
 			try {
-				((Serializer<Object>) this.getSerializer()).serialize(object, this.getChannelOutputStream());
+				if (framedBody) {
+					ChannelOutputStream channelOutputStream = this.getChannelOutputStream();
+					synchronized (channelOutputStream) {
+						this.writeFramedBody(object, this.getWriteChannel());
+					}
+				}
+				else {
+					((Serializer<Object>) this.getSerializer()).serialize(object, this.getChannelOutputStream());
+				}
 			}
 			catch (Exception e) {
 				this.publishConnectionExceptionEvent(e);
@@ -145,10 +193,188 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		}
 	}
 
+	/**
+	 * Serializes the frame and adds it to the write queue, blocking for up to the
+	 * socket timeout if the queue is full, then writes queued frames unless another
+	 * thread is already doing so. Framed bodies are written directly, after the
+	 * queued frames.
+	 */
+	@SuppressWarnings("unchecked")
+	private void sendQueued(Message<?> message) throws Exception {
+		try {
+			if (this.isFramedBody(message.getPayload())) {
+				this.lastSend = System.currentTimeMillis();
+				this.writeLock.lock();
+				try {
+					while (!this.writeQueue.isEmpty()) {
+						this.writeBatch();
+					}
+					ChannelOutputStream channelOutputStream = this.getChannelOutputStream();
+					synchronized (channelOutputStream) {
+						this.writeFramedBody(message.getPayload(), this.getWriteChannel());
+					}
+				}
+				finally {
+					this.writeLock.unlock();
+				}
+				// frames queued by other threads while the body was being written
+				this.drainWriteQueue();
+			}
+			else {
+				ByteArrayOutputStream frame = new ByteArrayOutputStream();
+				synchronized (this.getMapper()) {
+					Object object = this.getMapper().fromMessage(message);
+					((Serializer<Object>) this.getSerializer()).serialize(object, frame);
+				}
+				this.lastSend = System.currentTimeMillis();
+				this.enqueue(ByteBuffer.wrap(frame.toByteArray()));
+				this.drainWriteQueue();
+			}
+		}
+		catch (Exception e) {
+			this.publishConnectionExceptionEvent(e);
+			throw e;
+		}
+		this.afterSend(message);
+	}
+
+	private void enqueue(ByteBuffer frame) throws IOException, InterruptedException {
+		int soTimeout = this.socketChannel.socket().getSoTimeout();
+		if (soTimeout > 0) {
+			if (!this.writeQueue.offer(frame, soTimeout, TimeUnit.MILLISECONDS)) {
+				throw new SocketTimeoutException("Timeout waiting for space in the write queue");
+			}
+		}
+		else {
+			this.writeQueue.put(frame);
+		}
+	}
+
+	/**
+	 * The queue is checked again after the lock is released, in case a frame was
+	 * queued by a thread that failed to obtain the lock just before it was released.
+	 */
+	private void drainWriteQueue() throws IOException {
+		while (!this.writeQueue.isEmpty() && this.writeLock.tryLock()) {
+			try {
+				while (!this.writeQueue.isEmpty()) {
+					this.writeBatch();
+				}
+			}
+			finally {
+				this.writeLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Writes queued frames, up to writeBatchMaxBytes, waiting up to writeBatchMaxDelay
+	 * for more frames to arrive if the batch is not full.
+	 */
+	private void writeBatch() throws IOException {
+		List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+		int bytes = 0;
+		long deadline = System.currentTimeMillis() + this.writeBatchMaxDelay;
+		ByteBuffer frame = this.writeQueue.poll();
+		while (frame != null) {
+			batch.add(frame);
+			bytes += frame.remaining();
+			if (bytes >= this.writeBatchMaxBytes) {
+				break;
+			}
+			frame = this.writeQueue.poll();
+			if (frame == null && this.writeBatchMaxDelay > 0) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait > 0) {
+					try {
+						frame = this.writeQueue.poll(wait, TimeUnit.MILLISECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug(this.getConnectionId() + " writing " + batch.size() + " frames, " + bytes + " bytes");
+		}
+		ChannelOutputStream channelOutputStream = this.getChannelOutputStream();
+		try {
+			synchronized (channelOutputStream) {
+				this.writeFully(this.getWriteChannel(), batch.toArray(new ByteBuffer[batch.size()]));
+			}
+		}
+		catch (IOException e) {
+			// frames queued by other threads cannot be written either
+			this.writeQueue.clear();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of frames waiting to be written, or 0 if the
+	 * write queue is not enabled.
+	 * @since 3.0
+	 */
+	public int getWriteQueueDepth() {
+		BlockingQueue<ByteBuffer> writeQueue = this.writeQueue;
+		return writeQueue == null ? 0 : writeQueue.size();
+	}
+
+	/**
+	 * @return the channel to which framed bodies and coalesced frames are written;
+	 * the socket channel itself, so that file payloads are transferred without copying
+	 * and batches are written with a single gathering write.
+	 * @since 3.0
+	 */
+	protected WritableByteChannel getWriteChannel() {
+		return this.socketChannel;
+	}
+
+	@Override
+	protected void awaitWritable() throws IOException {
+		this.channelOutputStream.awaitWritable();
+	}
+
 	public Object getPayload() throws Exception {
+		if (this.bufferDeserializer != null) {
+			return this.decodedFrame;
+		}
 		return this.getDeserializer().deserialize(this.channelInputStream);
 	}
 
+	@Override
+	public void setDeserializer(Deserializer<?> deserializer) {
+		super.setDeserializer(deserializer);
+		this.configureBufferDeserializer();
+	}
+
+	/**
+	 * If true, and the deserializer is a {@link ByteBufferDeserializer}, frames are
+	 * decoded directly from the read buffer on the reading thread and dispatched in
+	 * order, bypassing the internal pipe and assembler threads. Incomplete frames are
+	 * retained until more data is read.
+	 * @param decodeFromReadBuffer the decodeFromReadBuffer to set
+	 * @since 3.0
+	 */
+	public void setDecodeFromReadBuffer(boolean decodeFromReadBuffer) {
+		this.decodeFromReadBuffer = decodeFromReadBuffer;
+		this.configureBufferDeserializer();
+	}
+
+	private void configureBufferDeserializer() {
+		Deserializer<?> deserializer = this.getDeserializer();
+		if (this.decodeFromReadBuffer && deserializer instanceof ByteBufferDeserializer) {
+			this.bufferDeserializer = (ByteBufferDeserializer<?>) deserializer;
+		}
+		else {
+			this.bufferDeserializer = null;
+		}
+	}
+
 	public int getPort() {
 		return this.socketChannel.socket().getPort();
 	}
@@ -158,12 +384,16 @@ public class TcpNioConnection extends TcpConnectionSupport {
 	}
 
 	/**
-	 * Allocates a ByteBuffer of the requested length using normal or
-	 * direct buffers, depending on the usingDirectBuffers field.
+	 * Allocates a ByteBuffer of the requested length from the {@link ByteBufferPool}, if
+	 * provided, otherwise using normal or direct buffers, depending on the
+	 * usingDirectBuffers field.
 	 */
 	protected ByteBuffer allocate(int length) {
 		ByteBuffer buffer;
-		if (this.usingDirectBuffers) {
+		if (this.byteBufferPool != null) {
+			buffer = this.byteBufferPool.acquire(length);
+		}
+		else if (this.usingDirectBuffers) {
 			buffer = ByteBuffer.allocateDirect(length);
 		} else {
 			buffer = ByteBuffer.allocate(length);
@@ -277,6 +507,7 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		boolean intercepted = false;
 		try {
 			if (message != null) {
+				this.messageReceived();
 				intercepted = getListener().onMessage(message);
 			}
 		} catch (Exception e) {
@@ -306,11 +537,32 @@ public class TcpNioConnection extends TcpConnectionSupport {
 	}
 
 	private void doRead() throws Exception {
-		if (this.rawBuffer == null) {
-			this.rawBuffer = allocate(maxMessageSize);
+		final ByteBuffer rawBuffer = this.takeBuffer(this.rawBuffer, this.maxMessageSize);
+		if (this.bufferDeserializer != null) {
+			try {
+				this.doReadAndDecode(rawBuffer);
+			}
+			finally {
+				this.retainBuffer(this.rawBuffer, rawBuffer);
+			}
 		}
+		else {
+			this.doReadToPipe(rawBuffer);
+		}
+	}
 
+	/**
+	 * Takes ownership of the buffer; it is retained, or released, on every path.
+	 */
+	private void doReadToPipe(final ByteBuffer rawBuffer) throws Exception {
 		this.writingToPipe = true;
+		final CountDownLatch latch = new CountDownLatch(1);
+		/*
+		 * After a pipe timeout, the pipe writer may still be using the buffer; whichever
+		 * of this thread and the writer is the last to finish with it disposes of it.
+		 */
+		final AtomicBoolean firstDone = new AtomicBoolean();
+		boolean submitted = false;
 		try {
 			if (this.taskExecutor == null) {
 				this.taskExecutor = Executors.newCachedThreadPool();
@@ -318,24 +570,26 @@ public class TcpNioConnection extends TcpConnectionSupport {
 			// If there is no assembler running, start one
 			checkForAssembler();
 			if (logger.isTraceEnabled()) {
-				logger.trace("Before read:" + this.rawBuffer.position() + "/" + this.rawBuffer.limit());
+				logger.trace("Before read:" + rawBuffer.position() + "/" + rawBuffer.limit());
+			}
+			int len = this.socketChannel.read(rawBuffer);
+			if (len > 0) {
+				this.bytesReceived(len);
 			}
-			int len = this.socketChannel.read(this.rawBuffer);
 			if (len < 0) {
 				this.writingToPipe = false;
 				this.closeConnection();
 			}
 			if (logger.isTraceEnabled()) {
-				logger.trace("After read:" + this.rawBuffer.position() + "/" + this.rawBuffer.limit());
+				logger.trace("After read:" + rawBuffer.position() + "/" + rawBuffer.limit());
 			}
-			this.rawBuffer.flip();
+			rawBuffer.flip();
 			if (logger.isTraceEnabled()) {
-				logger.trace("After flip:" + this.rawBuffer.position() + "/" + this.rawBuffer.limit());
+				logger.trace("After flip:" + rawBuffer.position() + "/" + rawBuffer.limit());
 			}
 			if (logger.isDebugEnabled()) {
 				logger.debug("Read " + rawBuffer.limit() + " into raw buffer");
 			}
-			final CountDownLatch latch = new CountDownLatch(1);
 			/*
 			 * If there are insufficient threads, either to run the
 			 * write to the pipe, or to assemble the data, we need
@@ -351,8 +605,14 @@ public class TcpNioConnection extends TcpConnectionSupport {
 					catch (Exception e) {
 						logger.error(getConnectionId() + " Failed to write to pipe", e);
 					}
+					finally {
+						if (!firstDone.compareAndSet(false, true)) {
+							TcpNioConnection.this.releaseBuffer(rawBuffer);
+						}
+					}
 				}
 			});
+			submitted = true;
 			if (!latch.await(this.pipeTimeout , TimeUnit.MILLISECONDS)) {
 				this.close();
 				throw new MessagingException("Timed out writing to ChannelInputStream, probably due to insufficient threads in " +
@@ -365,15 +625,183 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		}
 		finally {
 			this.writingToPipe = false;
+			if (!submitted || latch.getCount() == 0 || !firstDone.compareAndSet(false, true)) {
+				this.retainBuffer(this.rawBuffer, rawBuffer);
+			}
+		}
+	}
+
+	/**
+	 * Reads and decodes on the current thread; used when decoding from the read buffer.
+	 */
+	private void doReadAndDecode(ByteBuffer rawBuffer) throws Exception {
+		try {
+			int len = this.socketChannel.read(rawBuffer);
+			if (len > 0) {
+				this.bytesReceived(len);
+			}
+			if (len < 0) {
+				this.decodeAtEndOfStream();
+				this.closeConnection();
+				return;
+			}
+			rawBuffer.flip();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Read " + rawBuffer.limit() + " into raw buffer");
+			}
+			this.sendToPipe(rawBuffer);
+		}
+		catch (Exception e) {
+			this.publishConnectionExceptionEvent(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decode and dispatch complete frames in the data; any incomplete frame
+	 * is retained until more data is available.
+	 */
+	private void decodeFrames(ByteBuffer data) throws Exception {
+		ByteBuffer partial = this.partialFrame.getAndSet(null);
+		try {
+			ByteBuffer source = data;
+			if (partial != null && partial.position() > 0) {
+				if (partial.remaining() < data.remaining()) {
+					partial = this.grow(partial, data.remaining());
+				}
+				partial.put(data);
+				partial.flip();
+				source = partial;
+			}
+			Object frame;
+			while (source.hasRemaining() && (frame = this.bufferDeserializer.deserialize(source, false)) != null) {
+				this.dispatchFrame(frame);
+			}
+			if (source == partial) {
+				partial.compact();
+			}
+			else if (source.hasRemaining()) {
+				if (partial == null || partial.capacity() < source.remaining()) {
+					this.releaseBuffer(partial);
+					partial = this.allocate(Math.max(source.remaining() * 2, 1024));
+				}
+				partial.clear();
+				partial.put(source);
+			}
+		}
+		catch (Exception e) {
+			this.releaseBuffer(partial);
+			throw e;
+		}
+		this.retainBuffer(this.partialFrame, partial);
+	}
+
+	private void decodeAtEndOfStream() throws Exception {
+		ByteBuffer partial = this.partialFrame.getAndSet(null);
+		if (partial == null) {
+			return;
+		}
+		try {
+			partial.flip();
+			Object frame;
+			while ((frame = this.bufferDeserializer.deserialize(partial, true)) != null) {
+				this.dispatchFrame(frame);
+			}
+		}
+		finally {
+			this.releaseBuffer(partial);
+		}
+	}
+
+	private ByteBuffer grow(ByteBuffer buffer, int needed) {
+		ByteBuffer larger = this.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+		buffer.flip();
+		larger.put(buffer);
+		this.releaseBuffer(buffer);
+		return larger;
+	}
+
+	/**
+	 * Take ownership of a retained buffer, or allocate a new one.
+	 */
+	private ByteBuffer takeBuffer(AtomicReference<ByteBuffer> holder, int size) {
+		ByteBuffer buffer = holder.getAndSet(null);
+		if (buffer == null) {
+			buffer = this.allocate(size);
+		}
+		return buffer;
+	}
+
+	/**
+	 * When pooling, empty buffers are returned to the pool; otherwise the buffer is
+	 * retained for the next read. If the connection was closed meanwhile, a retained
+	 * buffer is released; whichever of this and {@link #close()} gets the buffer from
+	 * the holder releases it.
+	 */
+	private void retainBuffer(AtomicReference<ByteBuffer> holder, ByteBuffer buffer) {
+		if (buffer == null) {
+			return;
+		}
+		if (this.byteBufferPool != null && buffer.position() == 0) {
+			this.byteBufferPool.release(buffer);
+			return;
+		}
+		holder.set(buffer);
+		if (!this.isOpen()) {
+			this.releaseBuffer(holder.getAndSet(null));
+		}
+	}
+
+	private void releaseBuffer(ByteBuffer buffer) {
+		if (buffer != null && this.byteBufferPool != null) {
+			this.byteBufferPool.release(buffer);
+		}
+	}
+
+	private void dispatchFrame(Object frame) throws Exception {
+		if (this.getListener() == null && !this.isSingleUse()) {
+			logger.debug("Discarding frame - no listener and not single use");
+			return;
+		}
+		Message<?> message;
+		this.decodedFrame = frame;
+		try {
+			message = this.getMapper().toMessage(this);
+		}
+		finally {
+			this.decodedFrame = null;
+		}
+		if (message != null) {
+			this.sendToChannel(message);
 		}
 	}
 
 	protected void sendToPipe(ByteBuffer rawBuffer) throws IOException {
 		Assert.notNull(rawBuffer, "rawBuffer cannot be null");
+		if (this.bufferDeserializer != null) {
+			try {
+				this.decodeFrames(rawBuffer);
+			}
+			catch (IOException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new IOException("Failed to decode frame", e);
+			}
+			rawBuffer.clear();
+			return;
+		}
 		if (logger.isTraceEnabled()) {
 			logger.trace(this.getConnectionId() + " Sending " + rawBuffer.limit() + " to pipe");
 		}
-		this.channelInputStream.write(rawBuffer.array(), rawBuffer.limit());
+		if (rawBuffer.hasArray()) {
+			this.channelInputStream.write(rawBuffer.array(), rawBuffer.arrayOffset(), rawBuffer.limit());
+		}
+		else {
+			byte[] bytes = new byte[rawBuffer.limit()];
+			rawBuffer.get(bytes);
+			this.channelInputStream.write(bytes, 0, bytes.length);
+		}
 		rawBuffer.clear();
 	}
 
@@ -442,6 +870,62 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		return usingDirectBuffers;
 	}
 
+	/**
+	 * Set a pool from which read buffers are borrowed; buffers are only held by the
+	 * connection while a read is in progress or a partial frame is retained.
+	 * When set, {@link #setUsingDirectBuffers(boolean) usingDirectBuffers} is ignored
+	 * in favor of the pool's configuration.
+	 * @param byteBufferPool the byteBufferPool to set
+	 * @since 3.0
+	 */
+	public void setByteBufferPool(ByteBufferPool byteBufferPool) {
+		this.byteBufferPool = byteBufferPool;
+	}
+
+	protected ByteBufferPool getByteBufferPool() {
+		return this.byteBufferPool;
+	}
+
+	/**
+	 * When greater than zero, sent frames are serialized and added to a write queue of
+	 * this capacity instead of being written immediately; the sending thread then
+	 * writes all queued frames, coalesced into gathering writes of up to
+	 * {@link #setWriteBatchMaxBytes(int) writeBatchMaxBytes}, unless another thread
+	 * is already writing, in which case that thread writes the new frame too.
+	 * When the queue is full, senders block for up to the socket timeout, applying
+	 * back-pressure to the producer. Note that, with the queue enabled, a send may
+	 * return before its frame is written, and a write failure is reported to the
+	 * thread that was writing. Default 0 (disabled).
+	 * @param writeQueueCapacity the writeQueueCapacity to set
+	 * @since 3.0
+	 */
+	public void setWriteQueueCapacity(int writeQueueCapacity) {
+		this.writeQueue = writeQueueCapacity > 0 ? new LinkedBlockingQueue<ByteBuffer>(writeQueueCapacity) : null;
+	}
+
+	/**
+	 * The maximum number of bytes coalesced into a single write when the write queue is
+	 * enabled; a frame larger than this is written on its own. Default 64KiB.
+	 * @param writeBatchMaxBytes the writeBatchMaxBytes to set
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxBytes(int writeBatchMaxBytes) {
+		Assert.isTrue(writeBatchMaxBytes > 0, "'writeBatchMaxBytes' must be greater than 0");
+		this.writeBatchMaxBytes = writeBatchMaxBytes;
+	}
+
+	/**
+	 * How long (milliseconds) the writing thread waits for more frames before writing
+	 * a batch smaller than {@link #setWriteBatchMaxBytes(int) writeBatchMaxBytes}, when
+	 * the write queue is enabled. Trades latency for fewer, larger writes. Default 0
+	 * (write whatever is queued).
+	 * @param writeBatchMaxDelay the writeBatchMaxDelay to set
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxDelay(long writeBatchMaxDelay) {
+		this.writeBatchMaxDelay = writeBatchMaxDelay;
+	}
+
 	protected ChannelOutputStream getChannelOutputStream() {
 		return channelOutputStream;
 	}
@@ -512,25 +996,29 @@ public class TcpNioConnection extends TcpConnectionSupport {
 			if (logger.isDebugEnabled()) {
 				logger.debug(getConnectionId() + " writing " + buffer.remaining());
 			}
+			int count = buffer.remaining();
 			socketChannel.write(buffer);
-			int remaining = buffer.remaining();
-			if (remaining == 0) {
-				return;
+			while (buffer.hasRemaining()) {
+				this.awaitWritable();
+				socketChannel.write(buffer);
 			}
+			bytesSent(count);
+		}
+
+		/**
+		 * Waits for the socket to become writable, up to the socket timeout.
+		 */
+		protected synchronized void awaitWritable() throws IOException {
 			if (this.selector == null) {
 				this.selector = Selector.open();
 				this.soTimeout = socketChannel.socket().getSoTimeout();
 			}
 			socketChannel.register(selector, SelectionKey.OP_WRITE);
-			while (remaining > 0) {
-				int selectionCount = this.selector.select(this.soTimeout);
-				if (selectionCount == 0) {
-					throw new SocketTimeoutException("Timeout on write");
-				}
-				selector.selectedKeys().clear();
-				socketChannel.write(buffer);
-				remaining = buffer.remaining();
+			int selectionCount = this.selector.select(this.soTimeout);
+			if (selectionCount == 0) {
+				throw new SocketTimeoutException("Timeout on write");
 			}
+			selector.selectedKeys().clear();
 		}
 
 	}
@@ -628,9 +1116,20 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		 * @throws IOException
 		 */
 		public void write(byte[] array, int bytesToWrite) throws IOException {
+			this.write(array, 0, bytesToWrite);
+		}
+
+		/**
+		 * Blocks if the blocking queue already contains 5 buffers.
+		 * @param array
+		 * @param offset
+		 * @param bytesToWrite
+		 * @throws IOException
+		 */
+		public void write(byte[] array, int offset, int bytesToWrite) throws IOException {
 			if (bytesToWrite > 0) {
 				byte[] buffer = new byte[bytesToWrite];
-				System.arraycopy(array, 0, buffer, 0, bytesToWrite);
+				System.arraycopy(array, offset, buffer, 0, bytesToWrite);
 				this.available.addAndGet(bytesToWrite);
 				try {
 					if (!this.buffers.offer(buffer, pipeTimeout, TimeUnit.MILLISECONDS)) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@ package org.springframework.integration.ip.tcp.connection;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +31,7 @@ import javax.net.ssl.SSLException;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.ip.util.ByteBufferPool;
 import org.springframework.util.Assert;
 
 /**
@@ -101,10 +104,25 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 			logger.debug("sendToPipe " + sslEngine.getHandshakeStatus() + ", remaining:" + networkBuffer.remaining());
 		}
 		SSLEngineResult result = null;
-		while (!this.needMoreNetworkData) {
-			result = decode(networkBuffer);
-			if (logger.isDebugEnabled()) {
-				logger.debug("result " + resultToString(result) + ", remaining:" + networkBuffer.remaining());
+		ByteBufferPool pool = this.getByteBufferPool();
+		ByteBuffer pooled = null;
+		if (pool != null) {
+			// only hold an application buffer while decrypting
+			pooled = pool.acquire(this.sslEngine.getSession().getApplicationBufferSize());
+			this.decoded = pooled;
+		}
+		try {
+			while (!this.needMoreNetworkData) {
+				result = decode(networkBuffer);
+				if (logger.isDebugEnabled()) {
+					logger.debug("result " + resultToString(result) + ", remaining:" + networkBuffer.remaining());
+				}
+			}
+		}
+		finally {
+			if (pooled != null) {
+				this.decoded = null;
+				pool.release(pooled);
 			}
 		}
 		this.needMoreNetworkData = false;
@@ -262,6 +280,15 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 		}
 	}
 
+	/**
+	 * Framed bodies and coalesced frames must be encrypted, so are written through
+	 * the {@link SSLChannelOutputStream}, a buffer at a time.
+	 */
+	@Override
+	protected WritableByteChannel getWriteChannel() {
+		return Channels.newChannel(this.getChannelOutputStream());
+	}
+
 	protected SSLChannelOutputStream getSSLChannelOutputStream() {
 		if (this.sslChannelOutputStream == null) {
 			return (SSLChannelOutputStream) this.getChannelOutputStream();
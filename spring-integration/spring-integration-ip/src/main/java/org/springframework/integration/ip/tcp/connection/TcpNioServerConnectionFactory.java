@@ -29,13 +29,27 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.integration.ip.util.ByteBufferPool;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.util.Assert;
 
 /**
 /**
  * Implements a server connection factory that produces {@link TcpNioConnection}s using
  * a {@link ServerSocketChannel}. Must have a {@link TcpListener} registered.
+ * <p>
+ * By default, a single selector thread accepts new connections and detects readable
+ * connections. In {@link #setMultiReactor(boolean) multi-reactor} mode, the selector
+ * thread only accepts connections, and distributes them across
+ * {@link #setReactorCount(int) reactorCount} additional selector (reactor) threads;
+ * each new connection is assigned to the reactor with the fewest connections. The
+ * reactor threads run on the task executor, which must have sufficient threads available.
  * @author Gary Russell
  * @since 2.0
  *
@@ -46,12 +60,30 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile boolean decodeFromReadBuffer;
+
+	private volatile ByteBufferPool byteBufferPool;
+
+	private volatile int writeQueueCapacity;
+
+	private volatile int writeBatchMaxBytes = 64 * 1024;
+
+	private volatile long writeBatchMaxDelay;
+
 	private final Map<SocketChannel, TcpNioConnection> channelMap = new HashMap<SocketChannel, TcpNioConnection>();
 
 	private volatile Selector selector;
 
 	private volatile TcpNioConnectionSupport tcpNioConnectionSupport = new DefaultTcpNioConnectionSupport();
 
+	private volatile boolean multiReactor;
+
+	private volatile int reactorCount = Runtime.getRuntime().availableProcessors();
+
+	private volatile boolean processOnSelectorThread;
+
+	private volatile Reactor[] reactors;
+
 	/**
 	 * Listens for incoming connections on the port.
 	 * @param port The port.
@@ -90,6 +122,9 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 			}
 			final Selector selector = Selector.open();
 			this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			if (this.multiReactor) {
+				this.startReactors();
+			}
 			this.setListening(true);
 			this.selector = selector;
 			doSelect(this.serverChannel, selector);
@@ -103,7 +138,39 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		finally {
 			this.setListening(false);
 			this.setActive(false);
+			this.wakeReactors();
+			this.reactors = null;
+		}
+	}
+
+	private void startReactors() throws IOException {
+		Reactor[] reactors = new Reactor[this.reactorCount];
+		for (int i = 0; i < reactors.length; i++) {
+			reactors[i] = new Reactor(i);
+		}
+		for (Reactor reactor : reactors) {
+			this.getTaskExecutor().execute(reactor);
+		}
+		this.reactors = reactors;
+	}
+
+	private void wakeReactors() {
+		Reactor[] reactors = this.reactors;
+		if (reactors != null) {
+			for (Reactor reactor : reactors) {
+				reactor.selector.wakeup();
+			}
+		}
+	}
+
+	private Reactor leastLoadedReactor(Reactor[] reactors) {
+		Reactor leastLoaded = reactors[0];
+		for (int i = 1; i < reactors.length; i++) {
+			if (reactors[i].connectionCount.get() < leastLoaded.connectionCount.get()) {
+				leastLoaded = reactors[i];
+			}
 		}
+		return leastLoaded;
 	}
 
 	/**
@@ -124,9 +191,13 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 			throws IOException, ClosedChannelException, SocketException {
 		while (this.isActive()) {
 			int soTimeout = this.getSoTimeout();
+			int selectTimeout = soTimeout < 0 ? 0 : soTimeout;
+			if (this.pauseAcceptAtConnectionLimit(server, selector)) {
+				selectTimeout = selectTimeout > 0 ? Math.min(selectTimeout, ACCEPT_PAUSE_INTERVAL) : ACCEPT_PAUSE_INTERVAL;
+			}
 			int selectionCount = 0;
 			try {
-				selectionCount = selector.select(soTimeout < 0 ? 0 : soTimeout);
+				selectionCount = selector.select(selectTimeout);
 			} catch (CancelledKeyException cke) {
 				if (logger.isDebugEnabled()) {
 					logger.debug("CancelledKeyException during Selector.select()");
@@ -136,6 +207,20 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		}
 	}
 
+	/**
+	 * Removes the accept interest while the connection limit is reached, so that new
+	 * connections wait in the backlog.
+	 * @return true if accepting is paused.
+	 */
+	private boolean pauseAcceptAtConnectionLimit(ServerSocketChannel server, Selector selector) {
+		boolean atLimit = this.isAtConnectionLimit();
+		SelectionKey acceptKey = server.keyFor(selector);
+		if (acceptKey != null && acceptKey.isValid()) {
+			acceptKey.interestOps(atLimit ? 0 : SelectionKey.OP_ACCEPT);
+		}
+		return atLimit;
+	}
+
 	/**
 	 * @param selector
 	 * @param server
@@ -166,8 +251,14 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 				}
 				connection.setTaskExecutor(this.getTaskExecutor());
 				connection.setLastRead(now);
-				this.channelMap.put(channel, connection);
-				channel.register(selector, SelectionKey.OP_READ, connection);
+				Reactor[] reactors = this.reactors;
+				if (reactors != null) {
+					this.leastLoadedReactor(reactors).register(channel, connection);
+				}
+				else {
+					this.channelMap.put(channel, connection);
+					channel.register(selector, SelectionKey.OP_READ, connection);
+				}
 			}
 			catch (Exception e) {
 				logger.error("Exception accepting new connection", e);
@@ -182,6 +273,11 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 					.createNewConnection(socketChannel, true,
 							this.isLookupHost(), this.getApplicationEventPublisher(), this.getComponentName());
 			connection.setUsingDirectBuffers(this.usingDirectBuffers);
+			connection.setDecodeFromReadBuffer(this.decodeFromReadBuffer);
+			connection.setByteBufferPool(this.byteBufferPool);
+			connection.setWriteQueueCapacity(this.writeQueueCapacity);
+			connection.setWriteBatchMaxBytes(this.writeBatchMaxBytes);
+			connection.setWriteBatchMaxDelay(this.writeBatchMaxDelay);
 			TcpConnectionSupport wrappedConnection = wrapConnection(connection);
 			this.initializeConnection(wrappedConnection, socketChannel.socket());
 			return connection;
@@ -196,6 +292,7 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		if (this.selector != null) {
 			this.selector.wakeup();
 		}
+		this.wakeReactors();
 		if (this.serverChannel == null) {
 			return;
 		}
@@ -209,6 +306,131 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * When set to true, connections created by this factory decode frames directly
+	 * from the read buffer if the deserializer is a
+	 * {@link org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer}.
+	 * @param decodeFromReadBuffer the decodeFromReadBuffer to set
+	 * @see TcpNioConnection#setDecodeFromReadBuffer(boolean)
+	 * @since 3.0
+	 */
+	public void setDecodeFromReadBuffer(boolean decodeFromReadBuffer) {
+		this.decodeFromReadBuffer = decodeFromReadBuffer;
+	}
+
+	/**
+	 * Set a pool from which connections created by this factory borrow read buffers.
+	 * @param byteBufferPool the byteBufferPool to set
+	 * @see TcpNioConnection#setByteBufferPool(ByteBufferPool)
+	 * @since 3.0
+	 */
+	public void setByteBufferPool(ByteBufferPool byteBufferPool) {
+		this.byteBufferPool = byteBufferPool;
+	}
+
+	/**
+	 * Set the capacity of each connection's write queue; 0 (default) disables queueing.
+	 * @param writeQueueCapacity the writeQueueCapacity to set
+	 * @see TcpNioConnection#setWriteQueueCapacity(int)
+	 * @since 3.0
+	 */
+	public void setWriteQueueCapacity(int writeQueueCapacity) {
+		this.writeQueueCapacity = writeQueueCapacity;
+	}
+
+	/**
+	 * @param writeBatchMaxBytes the writeBatchMaxBytes to set
+	 * @see TcpNioConnection#setWriteBatchMaxBytes(int)
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxBytes(int writeBatchMaxBytes) {
+		this.writeBatchMaxBytes = writeBatchMaxBytes;
+	}
+
+	/**
+	 * @param writeBatchMaxDelay the writeBatchMaxDelay to set
+	 * @see TcpNioConnection#setWriteBatchMaxDelay(long)
+	 * @since 3.0
+	 */
+	public void setWriteBatchMaxDelay(long writeBatchMaxDelay) {
+		this.writeBatchMaxDelay = writeBatchMaxDelay;
+	}
+
+	/**
+	 * When true, the selector thread only accepts connections; reads are detected by
+	 * {@link #setReactorCount(int) reactorCount} reactor threads. Default false.
+	 * @param multiReactor the multiReactor to set
+	 * @since 3.0
+	 */
+	public void setMultiReactor(boolean multiReactor) {
+		this.multiReactor = multiReactor;
+	}
+
+	/**
+	 * The number of reactor threads in multi-reactor mode; default is the number of
+	 * available processors.
+	 * @param reactorCount the reactorCount to set
+	 * @since 3.0
+	 */
+	public void setReactorCount(int reactorCount) {
+		Assert.isTrue(reactorCount > 0, "'reactorCount' must be greater than 0");
+		this.reactorCount = reactorCount;
+	}
+
+	/**
+	 * When true, readable connections are read on the selector (or reactor) thread
+	 * instead of the task executor, avoiding a thread handoff per read. Only suitable
+	 * when message handling is cheap; best combined with
+	 * {@link #setDecodeFromReadBuffer(boolean) decodeFromReadBuffer}, so that the
+	 * messages are also assembled and dispatched on that thread. Default false.
+	 * @param processOnSelectorThread the processOnSelectorThread to set
+	 * @since 3.0
+	 */
+	public void setProcessOnSelectorThread(boolean processOnSelectorThread) {
+		this.processOnSelectorThread = processOnSelectorThread;
+	}
+
+	@Override
+	protected boolean isProcessOnSelectorThread() {
+		return this.processOnSelectorThread;
+	}
+
+	/**
+	 * @return the number of connections assigned to each reactor, or an empty array if
+	 * not running in multi-reactor mode.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public int[] getReactorConnectionCounts() {
+		Reactor[] reactors = this.reactors;
+		if (reactors == null) {
+			return new int[0];
+		}
+		int[] counts = new int[reactors.length];
+		for (int i = 0; i < reactors.length; i++) {
+			counts[i] = reactors[i].connectionCount.get();
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the number of ready keys each reactor has processed, or an empty array if
+	 * not running in multi-reactor mode.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long[] getReactorSelectionCounts() {
+		Reactor[] reactors = this.reactors;
+		if (reactors == null) {
+			return new long[0];
+		}
+		long[] counts = new long[reactors.length];
+		for (int i = 0; i < reactors.length; i++) {
+			counts[i] = reactors[i].selectionCount.get();
+		}
+		return counts;
+	}
+
 	public void setTcpNioConnectionSupport(TcpNioConnectionSupport tcpNioSupport) {
 		Assert.notNull(tcpNioSupport, "TcpNioSupport must not be null");
 		this.tcpNioConnectionSupport = tcpNioSupport;
@@ -229,10 +451,130 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 	}
 
 	/**
-	 * @return the connections
+	 * @return the connections; in multi-reactor mode, a snapshot of the connections
+	 * held by all the reactors.
 	 */
 	protected Map<SocketChannel, TcpNioConnection> getConnections() {
-		return channelMap;
+		Reactor[] reactors = this.reactors;
+		if (reactors == null) {
+			return this.channelMap;
+		}
+		Map<SocketChannel, TcpNioConnection> connections = new HashMap<SocketChannel, TcpNioConnection>();
+		for (Reactor reactor : reactors) {
+			connections.putAll(reactor.channelMap);
+		}
+		return connections;
+	}
+
+	/**
+	 * A selector loop that detects readable connections for a subset of the
+	 * connections in multi-reactor mode.
+	 */
+	private class Reactor implements Runnable {
+
+		private final int index;
+
+		private final Selector selector;
+
+		/*
+		 * Only modified on the reactor thread.
+		 */
+		private final Map<SocketChannel, TcpNioConnection> channelMap =
+				new ConcurrentHashMap<SocketChannel, TcpNioConnection>();
+
+		private final Queue<Registration> registrations = new ConcurrentLinkedQueue<Registration>();
+
+		private final AtomicInteger connectionCount = new AtomicInteger();
+
+		private final AtomicLong selectionCount = new AtomicLong();
+
+		private final AtomicLong nextCheckForClosedConnections = new AtomicLong();
+
+		private Reactor(int index) throws IOException {
+			this.index = index;
+			this.selector = Selector.open();
+		}
+
+		/**
+		 * Channels must be registered on the reactor thread, because
+		 * registration blocks while a select is in progress.
+		 */
+		private void register(SocketChannel channel, TcpNioConnection connection) {
+			this.registrations.add(new Registration(channel, connection));
+			this.connectionCount.incrementAndGet();
+			this.selector.wakeup();
+		}
+
+		public void run() {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Reactor " + this.index + " started on port " + getPort());
+			}
+			try {
+				while (isActive()) {
+					/*
+					 * Wake at least every harvest interval so that closed channels are
+					 * removed and the connection count used for balancing stays current.
+					 */
+					int soTimeout = getSoTimeout();
+					int selectTimeout = soTimeout > 0 ? soTimeout : getNioHarvestInterval();
+					int selectionCount = 0;
+					try {
+						selectionCount = this.selector.select(selectTimeout);
+					}
+					catch (CancelledKeyException cke) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("CancelledKeyException during Selector.select()");
+						}
+					}
+					this.registerNewConnections();
+					this.selectionCount.addAndGet(selectionCount);
+					processNioSelections(selectionCount, this.selector, null, this.channelMap,
+							this.nextCheckForClosedConnections);
+					this.connectionCount.set(this.channelMap.size() + this.registrations.size());
+				}
+			}
+			catch (IOException e) {
+				if (isActive()) {
+					logger.error("Error on reactor " + this.index, e);
+				}
+			}
+			finally {
+				try {
+					this.selector.close();
+				}
+				catch (IOException e) {}
+				if (logger.isDebugEnabled()) {
+					logger.debug("Reactor " + this.index + " stopped on port " + getPort());
+				}
+			}
+		}
+
+		private void registerNewConnections() {
+			Registration registration;
+			while ((registration = this.registrations.poll()) != null) {
+				try {
+					registration.channel.register(this.selector, SelectionKey.OP_READ, registration.connection);
+					this.channelMap.put(registration.channel, registration.connection);
+				}
+				catch (ClosedChannelException e) {
+					logger.debug("Channel closed before registration");
+				}
+			}
+		}
+
+	}
+
+	private static class Registration {
+
+		private final SocketChannel channel;
+
+		private final TcpNioConnection connection;
+
+		private Registration(SocketChannel channel, TcpNioConnection connection) {
+			this.channel = channel;
+			this.connection = connection;
+		}
+
 	}
 
 }
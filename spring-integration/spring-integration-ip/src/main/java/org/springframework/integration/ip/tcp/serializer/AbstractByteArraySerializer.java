@@ -17,6 +17,7 @@
 package org.springframework.integration.ip.tcp.serializer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -80,4 +81,69 @@ public abstract class AbstractByteArraySerializer implements
 		return assembledData;
 	}
 
+	/**
+	 * Find the first occurrence of a byte in a buffer, examining 8 bytes at a time.
+	 * @param buffer The buffer; its position is not changed.
+	 * @param from The absolute index at which to start searching.
+	 * @param target The byte to find.
+	 * @return The absolute index of the byte, or -1 if it is not found before the limit.
+	 * @since 3.0
+	 */
+	protected int indexOf(ByteBuffer buffer, int from, byte target) {
+		int limit = buffer.limit();
+		int i = from;
+		long pattern = (target & 0xffL) * 0x0101010101010101L;
+		while (i + 8 <= limit) {
+			// a zero byte in 'word' marks a match; see "Bit Twiddling Hacks"
+			long word = buffer.getLong(i) ^ pattern;
+			if (((word - 0x0101010101010101L) & ~word & 0x8080808080808080L) != 0) {
+				break;
+			}
+			i += 8;
+		}
+		for (; i < limit; i++) {
+			if (buffer.get(i) == target) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Copy length bytes from the buffer's position into a new array, and advance
+	 * the position to skip those bytes plus the trailing framing bytes.
+	 * @param buffer The buffer.
+	 * @param length The number of data bytes.
+	 * @param skip The number of trailing framing bytes.
+	 * @return The data.
+	 * @since 3.0
+	 */
+	protected byte[] extract(ByteBuffer buffer, int length, int skip) {
+		byte[] assembledData = new byte[length];
+		buffer.get(assembledData);
+		buffer.position(buffer.position() + skip);
+		return assembledData;
+	}
+
+	/**
+	 * Check for an incomplete frame; at the end of the stream, a partial frame is an error.
+	 * @param buffer The buffer.
+	 * @param endOfStream true if the stream has ended.
+	 * @param terminatorDescription Used in the exception message if the frame is too long.
+	 * @return null, to indicate more data is needed.
+	 * @throws IOException if the frame is too long, or the stream ended part way through a frame.
+	 * @since 3.0
+	 */
+	protected byte[] incompleteFrame(ByteBuffer buffer, boolean endOfStream, String terminatorDescription)
+			throws IOException {
+		if (buffer.remaining() >= this.maxMessageSize) {
+			throw new IOException(terminatorDescription + " not found before max message length: "
+					+ this.maxMessageSize);
+		}
+		if (endOfStream && buffer.hasRemaining()) {
+			this.checkClosure(-1);
+		}
+		return null;
+	}
+
 }
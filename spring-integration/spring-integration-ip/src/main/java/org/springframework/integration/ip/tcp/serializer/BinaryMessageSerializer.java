@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.support.converter.BinaryMessageConverter;
+import org.springframework.integration.support.converter.MessageConversionException;
+import org.springframework.util.Assert;
+
+/**
+ * Serializes a {@link Message}, including its headers, using a
+ * {@link BinaryMessageConverter}; a compact alternative to a {@link MapJsonSerializer}.
+ * <p>
+ * The binary form can contain any byte, so another (de)serializer is used to
+ * apply structure to the stream. By default, this is a
+ * {@link ByteArrayLengthHeaderSerializer}, which inserts/expects a 4 byte length
+ * before each message.
+ * <p>
+ * When used on a connection factory, the {@code TcpMessageMapper} must pass the
+ * message through unchanged; alternatively, use a {@code MessageConvertingTcpMessageMapper}
+ * with a {@link BinaryMessageConverter}, and a {@link ByteArrayLengthHeaderSerializer}
+ * as the connection factory's (de)serializer.
+ * <p>
+ * By default, only header values and payloads of the types the converter encodes
+ * natively are carried; see
+ * {@link BinaryMessageConverter#setAllowedSerializableClasses(String...)} before
+ * allowing Java serialization of data received from the network.
+ *
+ * @since 3.0
+ */
+public class BinaryMessageSerializer implements Serializer<Message<?>>, Deserializer<Message<?>> {
+
+	private volatile BinaryMessageConverter messageConverter = new BinaryMessageConverter();
+
+	private volatile Deserializer<byte[]> packetDeserializer = new ByteArrayLengthHeaderSerializer();
+
+	private volatile Serializer<byte[]> packetSerializer = new ByteArrayLengthHeaderSerializer();
+
+	/**
+	 * The {@link BinaryMessageConverter} used to encode and decode messages; set
+	 * one if you wish to limit the headers that are converted, or to allow
+	 * serializable classes.
+	 * @param messageConverter the messageConverter.
+	 */
+	public void setMessageConverter(BinaryMessageConverter messageConverter) {
+		Assert.notNull(messageConverter, "'messageConverter' cannot be null");
+		this.messageConverter = messageConverter;
+	}
+
+	/**
+	 * A {@link Deserializer} that will construct the full encoded message from
+	 * the stream which is then passed to the converter. Default is
+	 * {@link ByteArrayLengthHeaderSerializer}.
+	 * @param packetDeserializer the packetDeserializer
+	 */
+	public void setPacketDeserializer(Deserializer<byte[]> packetDeserializer) {
+		Assert.notNull(packetDeserializer, "'packetDeserializer' cannot be null");
+		this.packetDeserializer = packetDeserializer;
+	}
+
+	/**
+	 * A {@link Serializer} that will delimit the full encoded message in
+	 * the stream. Default is
+	 * {@link ByteArrayLengthHeaderSerializer}.
+	 * @param packetSerializer the packetSerializer
+	 */
+	public void setPacketSerializer(Serializer<byte[]> packetSerializer) {
+		Assert.notNull(packetSerializer, "'packetSerializer' cannot be null");
+		this.packetSerializer = packetSerializer;
+	}
+
+	public Message<?> deserialize(InputStream inputStream) throws IOException {
+		byte[] bytes = this.packetDeserializer.deserialize(inputStream);
+		try {
+			return this.messageConverter.toMessage(bytes);
+		}
+		catch (MessageConversionException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public void serialize(Message<?> message, OutputStream outputStream) throws IOException {
+		byte[] bytes;
+		try {
+			bytes = (byte[]) this.messageConverter.fromMessage(message);
+		}
+		catch (MessageConversionException e) {
+			throw new IOException(e);
+		}
+		this.packetSerializer.serialize(bytes, outputStream);
+		outputStream.flush();
+	}
+
+}
@@ -19,19 +19,25 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Reads data in an InputStream to a byte[]; data must be terminated by \r\n
  * (not included in resulting byte[]).
  * Writes a byte[] to an OutputStream and adds \r\n.
+ * Also decodes frames directly from a {@link ByteBuffer}, and supplies its framing
+ * for bodies written directly by the connection.
  *
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
+public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer<byte[]>,
+		FramingSerializer {
 
 	private static final byte[] CRLF = "\r\n".getBytes();
 
+	private static final byte[] EMPTY = new byte[0];
+
 	/**
 	 * Reads the data in the inputstream to a byte[]. Data must be terminated
 	 * by CRLF (\r\n). Throws a {@link SoftEndOfStreamException} if the stream
@@ -71,6 +77,26 @@ public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
 		return n-1; // trim \r
 	}
 
+	/**
+	 * Decodes the next frame terminated by CRLF (\r\n) from the buffer.
+	 * @since 3.0
+	 */
+	public byte[] deserialize(ByteBuffer buffer, boolean endOfStream) throws IOException {
+		int start = buffer.position();
+		int from = start + 1;
+		int lf;
+		while ((lf = this.indexOf(buffer, from, (byte) '\n')) > 0) {
+			if (lf - start > this.maxMessageSize) {
+				break;
+			}
+			if (buffer.get(lf - 1) == '\r') {
+				return this.extract(buffer, lf - 1 - start, 2);
+			}
+			from = lf + 1;
+		}
+		return this.incompleteFrame(buffer, endOfStream, "CRLF");
+	}
+
 	/**
 	 * Writes the byte[] to the stream and appends \r\n.
 	 */
@@ -80,4 +106,18 @@ public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
 		outputStream.flush();
 	}
 
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameHeader(long length) {
+		return EMPTY;
+	}
+
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameTrailer() {
+		return CRLF.clone();
+	}
+
 }
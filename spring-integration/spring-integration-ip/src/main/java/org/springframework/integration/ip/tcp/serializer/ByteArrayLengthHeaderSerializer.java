@@ -16,6 +16,7 @@
 
 package org.springframework.integration.ip.tcp.serializer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -42,7 +43,8 @@ import org.apache.commons.logging.LogFactory;
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer {
+public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
+		implements ByteBufferDeserializer<byte[]>, FramingSerializer {
 
 
 	/**
@@ -60,6 +62,8 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 	 */
 	public static final int HEADER_SIZE_UNSIGNED_SHORT = 2;
 
+	private static final byte[] EMPTY = new byte[0];
+
 	private final int headerSize;
 
 	private final Log logger = LogFactory.getLog(this.getClass());
@@ -107,6 +111,47 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		return messagePart;
 	}
 
+	/**
+	 * Decodes the next length-prefixed frame from the buffer.
+	 * @since 3.0
+	 */
+	public byte[] deserialize(ByteBuffer buffer, boolean endOfStream) throws IOException {
+		int start = buffer.position();
+		if (buffer.remaining() >= this.headerSize) {
+			int messageLength;
+			switch (this.headerSize) {
+			case HEADER_SIZE_INT:
+				messageLength = buffer.getInt(start);
+				if (messageLength < 0) {
+					throw new IllegalArgumentException("Length header:"
+							+ messageLength
+							+ " is negative");
+				}
+				break;
+			case HEADER_SIZE_UNSIGNED_BYTE:
+				messageLength = buffer.get(start) & 0xff;
+				break;
+			case HEADER_SIZE_UNSIGNED_SHORT:
+				messageLength = buffer.getShort(start) & 0xffff;
+				break;
+			default:
+				throw new IllegalArgumentException("Bad header size:" + headerSize);
+			}
+			if (messageLength > this.maxMessageSize) {
+				throw new IOException("Message length " + messageLength +
+						" exceeds max message length: " + this.maxMessageSize);
+			}
+			if (buffer.remaining() - this.headerSize >= messageLength) {
+				buffer.position(start + this.headerSize);
+				return this.extract(buffer, messageLength, 0);
+			}
+		}
+		if (endOfStream && buffer.hasRemaining()) {
+			throw new IOException("Stream closed after " + buffer.remaining() + " bytes of a message");
+		}
+		return null;
+	}
+
 	/**
 	 * Writes the byte[] to the output stream, preceded by a 4 byte
 	 * length in network byte order (big endian).
@@ -117,6 +162,26 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		outputStream.flush();
 	}
 
+	/**
+	 * Returns the bytes written by {@link #writeHeader(OutputStream, int)}.
+	 * @since 3.0
+	 */
+	public byte[] frameHeader(long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Message length " + length + " too large for a length header");
+		}
+		ByteArrayOutputStream header = new ByteArrayOutputStream(this.headerSize);
+		this.writeHeader(header, (int) length);
+		return header.toByteArray();
+	}
+
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameTrailer() {
+		return EMPTY;
+	}
+
 	/**
 	 * Reads data from the socket and puts the data in buffer. Blocks until
 	 * buffer is full or a socket timeout occurs.
@@ -18,6 +18,7 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A byte array (de)serializer that does nothing with the payload; sends it raw.
@@ -33,7 +34,10 @@ import java.io.OutputStream;
  * @since 2.0.3
  *
  */
-public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
+public class ByteArrayRawSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer<byte[]>,
+		FramingSerializer {
+
+	private static final byte[] EMPTY = new byte[0];
 
 	public void serialize(byte[] bytes, OutputStream outputStream)
 			throws IOException {
@@ -41,6 +45,20 @@ public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
 		outputStream.flush();
 	}
 
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameHeader(long length) {
+		return EMPTY;
+	}
+
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameTrailer() {
+		return EMPTY;
+	}
+
 	public byte[] deserialize(InputStream inputStream) throws IOException {
 		byte[] buffer = new byte[this.maxMessageSize];
 		int n = 0;
@@ -67,4 +85,19 @@ public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
 		return assembledData;
 	}
 
+	/**
+	 * A frame is complete only when the stream ends; returns all the remaining data.
+	 * @since 3.0
+	 */
+	public byte[] deserialize(ByteBuffer buffer, boolean endOfStream) throws IOException {
+		if (buffer.remaining() >= this.maxMessageSize) {
+			throw new IOException("Socket was not closed before max message length: "
+					+ this.maxMessageSize);
+		}
+		if (!endOfStream || !buffer.hasRemaining()) {
+			return null;
+		}
+		return this.extract(buffer, buffer.remaining(), 0);
+	}
+
 }
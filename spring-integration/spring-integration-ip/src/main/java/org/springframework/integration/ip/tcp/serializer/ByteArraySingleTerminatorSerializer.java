@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,16 +19,22 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Reads data in an InputStream to a byte[]; data must be terminated by a single
  * byte (not included in resulting byte[]).
  * Writes a byte[] to an OutputStream and adds the terminator.
+ * Also decodes frames directly from a {@link ByteBuffer}, and supplies its framing
+ * for bodies written directly by the connection.
  *
  * @author Gary Russell
  * @since 2.2
  */
-public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerializer {
+public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerializer
+		implements ByteBufferDeserializer<byte[]>, FramingSerializer {
+
+	private static final byte[] EMPTY = new byte[0];
 
 	private final byte terminator;
 
@@ -70,6 +76,20 @@ public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerial
 		return assembledData;
 	}
 
+	/**
+	 * Decodes the next frame terminated by the terminator byte from the buffer. As with
+	 * {@link #deserialize(InputStream)}, a terminator in the first position is treated as data.
+	 * @since 3.0
+	 */
+	public byte[] deserialize(ByteBuffer buffer, boolean endOfStream) throws IOException {
+		int start = buffer.position();
+		int end = this.indexOf(buffer, start + 1, this.terminator);
+		if (end > 0 && end - start < this.maxMessageSize) {
+			return this.extract(buffer, end - start, 1);
+		}
+		return this.incompleteFrame(buffer, endOfStream, "Terminator");
+	}
+
 	/**
 	 * Writes the byte[] to the stream and appends the terminator.
 	 */
@@ -79,4 +99,18 @@ public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerial
 		outputStream.flush();
 	}
 
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameHeader(long length) {
+		return EMPTY;
+	}
+
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameTrailer() {
+		return new byte[] {this.terminator};
+	}
+
 }
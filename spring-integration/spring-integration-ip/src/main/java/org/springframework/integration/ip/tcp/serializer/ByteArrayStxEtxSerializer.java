@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.springframework.integration.mapping.MessageMappingException;
 
@@ -26,11 +27,13 @@ import org.springframework.integration.mapping.MessageMappingException;
  * Reads data in an InputStream to a byte[]; data must be prefixed by &lt;stx&gt; and
  * terminated by &lt;etx&gt; (not included in resulting byte[]). 
  * Writes a byte[] to an OutputStream prefixed by &lt;stx&gt; terminated by &lt;etx&gt;
+ * Also decodes frames directly from a {@link ByteBuffer}.
  * 
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
+public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer<byte[]>,
+		FramingSerializer {
 
 	public static final int STX = 0x02;
 	
@@ -67,6 +70,26 @@ public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
 		return assembledData;
 	}
 
+	/**
+	 * Decodes the next STX/ETX delimited frame from the buffer.
+	 * @since 3.0
+	 */
+	public byte[] deserialize(ByteBuffer buffer, boolean endOfStream) throws IOException {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+		int start = buffer.position();
+		if (buffer.get(start) != STX) {
+			throw new MessageMappingException("Expected STX to begin message");
+		}
+		int etx = this.indexOf(buffer, start + 1, (byte) ETX);
+		if (etx > 0 && etx - start <= this.maxMessageSize) {
+			buffer.position(start + 1);
+			return this.extract(buffer, etx - start - 1, 1);
+		}
+		return this.incompleteFrame(buffer, endOfStream, "ETX");
+	}
+
 	/**
 	 * Writes the byte[] to the stream, prefixed by an ASCII STX character and
 	 * terminated with an ASCII ETX character.
@@ -78,4 +101,18 @@ public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
 		outputStream.flush();
 	}
 
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameHeader(long length) {
+		return new byte[] {STX};
+	}
+
+	/**
+	 * @since 3.0
+	 */
+	public byte[] frameTrailer() {
+		return new byte[] {ETX};
+	}
+
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A deserializer that decodes frames directly from a {@link ByteBuffer} holding
+ * data read from a socket, instead of reading from an InputStream. Used by
+ * {@link org.springframework.integration.ip.tcp.connection.TcpNioConnection} when
+ * decoding from the read buffer is enabled.
+ * <p>
+ * Implementations must be stateless (they are shared by all connections).
+ *
+ * @since 3.0
+ *
+ */
+public interface ByteBufferDeserializer<T> {
+
+	/**
+	 * Decode the next frame from the buffer's remaining bytes. If a complete frame
+	 * is present, the buffer's position is advanced past it (including any framing
+	 * bytes) and the frame is returned. Otherwise, the position is unchanged and null
+	 * is returned; the caller retains the remaining bytes and calls again when more
+	 * data has been read.
+	 * @param buffer The buffer, positioned at the start of the next frame.
+	 * @param endOfStream true if the socket has been closed and no more data will arrive.
+	 * @return The frame, or null if more data is needed or, at end of stream, there
+	 * is no data remaining.
+	 * @throws IOException if the data is invalid, a frame exceeds the maximum size,
+	 * or the stream ended part way through a frame.
+	 */
+	T deserialize(ByteBuffer buffer, boolean endOfStream) throws IOException;
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.io.IOException;
+
+/**
+ * A serializer that can describe its framing separately from the data, so that a
+ * connection can write a large body (such as a {@link java.io.File} or
+ * {@link java.nio.ByteBuffer} payload) directly to the socket, between the
+ * frame header and trailer, without first copying it to a byte[].
+ * <p>
+ * Implementations must be stateless (they are shared by all connections).
+ *
+ * @since 3.0
+ *
+ */
+public interface FramingSerializer {
+
+	/**
+	 * @param length The length of the body that follows.
+	 * @return The bytes to write before the body; may be empty.
+	 * @throws IOException if the length cannot be represented by this framing.
+	 */
+	byte[] frameHeader(long length) throws IOException;
+
+	/**
+	 * @return The bytes to write after the body; may be empty.
+	 */
+	byte[] frameTrailer();
+
+}
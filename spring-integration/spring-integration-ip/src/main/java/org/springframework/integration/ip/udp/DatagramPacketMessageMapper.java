@@ -18,6 +18,7 @@ package org.springframework.integration.ip.udp;
 
 import java.io.UnsupportedEncodingException;
 import java.net.DatagramPacket;
+import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -167,38 +168,52 @@ public class DatagramPacketMessageMapper implements InboundMessageMapper<Datagra
 	}
 
 	public Message<byte[]> toMessage(DatagramPacket packet) throws Exception {
-		int offset = packet.getOffset();
-		int length = packet.getLength();
+		ByteBuffer buffer = ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength());
+		return this.toMessage(buffer, packet.getAddress(), packet.getPort());
+	}
+
+	/**
+	 * Converts the remaining bytes of a buffer containing a received datagram to a
+	 * message; the payload is copied, so the buffer can be reused once this method
+	 * returns.
+	 * @param buffer The buffer, positioned at the start of the datagram.
+	 * @param address The address of the sender.
+	 * @param port The port of the sender.
+	 * @return The message, or null if the datagram has no payload.
+	 * @throws Exception
+	 * @since 3.0
+	 */
+	public Message<byte[]> toMessage(ByteBuffer buffer, InetAddress address, int port) throws Exception {
+		int length = buffer.remaining();
 		byte[] payload;
-		ByteBuffer buffer = ByteBuffer.wrap(packet.getData(), offset, length);
 		Message<byte[]> message = null;
 		if (this.lengthCheck) {
 			int declaredLength = buffer.getInt();
 			if (declaredLength != (length - 4)) {
 				throw new MessageMappingException("Incorrect length; expected " + (declaredLength + 4) + ", received " + length);
 			}
-			offset += 4;
 			length -= 4;
 		}
-		String hostAddress = packet.getAddress().getHostAddress();
+		String hostAddress = address.getHostAddress();
 		String hostName;
 		if (this.lookupHost) {
-			hostName = packet.getAddress().getHostName();
+			hostName = address.getHostName();
 		} else {
 			hostName = hostAddress;
 		}
-		int port = packet.getPort();
 		// Peek at the message in case they didn't configure us for ack but the sending
 		// side expects it.
 		if (this.acknowledge || startsWith(buffer, IpHeaders.ACK_ADDRESS)) {
 			try {
-				String headers = new String(packet.getData(), offset, length, this.charset);
+				byte[] data = new byte[length];
+				buffer.duplicate().get(data);
+				String headers = new String(data, this.charset);
 				Matcher matcher = udpHeadersPattern.matcher(headers);
 				if (matcher.find()) {
 					// Strip off the ack headers and put in Message headers
 					length = length - matcher.end();
 					payload = new byte[length];
-					System.arraycopy(packet.getData(), offset + matcher.end(), payload, 0, length);
+					System.arraycopy(data, matcher.end(), payload, 0, length);
 					message = MessageBuilder.withPayload(payload)
 							.setHeader(IpHeaders.ACK_ID, UUID.fromString(matcher.group(2)))
 							.setHeader(IpHeaders.ACK_ADDRESS, matcher.group(1))
@@ -214,7 +229,7 @@ public class DatagramPacketMessageMapper implements InboundMessageMapper<Datagra
 		}
 		if (message == null) {
 			payload = new byte[length];
-			System.arraycopy(packet.getData(), offset, payload, 0, length);
+			buffer.get(payload);
 			if (payload.length > 0) {
 				message = MessageBuilder.withPayload(payload)
 						.setHeader(IpHeaders.HOSTNAME, hostName)
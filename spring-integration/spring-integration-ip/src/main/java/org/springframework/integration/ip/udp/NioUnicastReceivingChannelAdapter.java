@@ -0,0 +1,354 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.ip.util.ByteBufferPool;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * A channel adapter to receive incoming UDP packets using a non-blocking
+ * {@link DatagramChannel}, for high packet rates.
+ * <p>
+ * Each of {@link #setReceiverCount(int) receiverCount} receiving threads waits for
+ * the channel to become readable, then drains up to
+ * {@link #setBatchSize(int) batchSize} datagrams, mapping each directly from a
+ * direct buffer that the thread reuses (borrowed from a {@link ByteBufferPool}, if
+ * provided), so the only per-packet allocation is the payload itself. Each batch
+ * of messages is then dispatched to the task executor as a single task. The task
+ * executor must have enough threads for the receivers as well as the dispatch
+ * tasks; when it rejects a batch (for example a bounded executor that is
+ * saturated), the batch is dropped and counted as an overrun.
+ * <p>
+ * Datagrams longer than the {@link #setReceiveBufferSize(int) receiveBufferSize}
+ * are dropped, rather than delivered truncated. Since messages are mapped on the
+ * receiving threads, consider disabling {@link #setLookupHost(boolean) lookupHost}.
+ *
+ * @since 3.0
+ */
+@ManagedResource
+public class NioUnicastReceivingChannelAdapter extends UnicastReceivingChannelAdapter {
+
+	private volatile DatagramChannel channel;
+
+	private volatile int receiverCount = 1;
+
+	private volatile int batchSize = 64;
+
+	private volatile ByteBufferPool byteBufferPool;
+
+	private final List<Selector> selectors = new CopyOnWriteArrayList<Selector>();
+
+	private final AtomicLong receivedCount = new AtomicLong();
+
+	private final AtomicLong batchCount = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final AtomicLong truncatedCount = new AtomicLong();
+
+	private final AtomicLong overrunCount = new AtomicLong();
+
+
+	/**
+	 * Constructs a NioUnicastReceivingChannelAdapter that listens on the specified port.
+	 * @param port
+	 */
+	public NioUnicastReceivingChannelAdapter(int port) {
+		super(port);
+	}
+
+	/**
+	 * Constructs a NioUnicastReceivingChannelAdapter that listens for packets on
+	 * the specified port. Enables setting the lengthCheck option, which expects
+	 * a length to precede the incoming packets.
+	 * @param port The port.
+	 * @param lengthCheck If true, enables the lengthCheck Option.
+	 */
+	public NioUnicastReceivingChannelAdapter(int port, boolean lengthCheck) {
+		super(port, lengthCheck);
+	}
+
+
+	/**
+	 * The number of threads receiving from the channel; default 1.
+	 * @param receiverCount the receiverCount to set
+	 */
+	public void setReceiverCount(int receiverCount) {
+		Assert.isTrue(receiverCount > 0, "'receiverCount' must be greater than 0");
+		this.receiverCount = receiverCount;
+	}
+
+	/**
+	 * The maximum number of datagrams received before the batch is dispatched;
+	 * default 64.
+	 * @param batchSize the batchSize to set
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * A pool from which the receiving threads borrow their buffers.
+	 * @param byteBufferPool the byteBufferPool to set
+	 */
+	public void setByteBufferPool(ByteBufferPool byteBufferPool) {
+		this.byteBufferPool = byteBufferPool;
+	}
+
+	@Override
+	public void run() {
+		try {
+			this.channel = this.openChannel();
+		}
+		catch (IOException e) {
+			this.doStop();
+			throw new MessagingException("failed to create DatagramChannel", e);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("NIO UDP Receiver running on port:" + this.getPort() + " with "
+					+ this.receiverCount + " receiver(s)");
+		}
+		for (int i = 1; i < this.receiverCount; i++) {
+			this.getTaskExecutor().execute(new Runnable() {
+				public void run() {
+					receiveLoop();
+				}
+			});
+		}
+		this.setListening(true);
+		try {
+			this.receiveLoop();
+		}
+		finally {
+			this.setListening(false);
+		}
+	}
+
+	private DatagramChannel openChannel() throws IOException {
+		DatagramChannel channel = DatagramChannel.open();
+		String localAddress = this.getLocalAddress();
+		InetSocketAddress address = localAddress == null ? new InetSocketAddress(this.getPort())
+				: new InetSocketAddress(localAddress, this.getPort());
+		int soReceiveBufferSize = this.getSoReceiveBufferSize();
+		if (soReceiveBufferSize > 0) {
+			channel.socket().setReceiveBufferSize(soReceiveBufferSize);
+		}
+		channel.socket().bind(address);
+		channel.configureBlocking(false);
+		return channel;
+	}
+
+	private void receiveLoop() {
+		DatagramChannel channel = this.channel;
+		if (channel == null) {
+			return;
+		}
+		Selector selector = null;
+		// one extra byte so that truncation can be detected
+		int bufferSize = this.getReceiveBufferSize() + 1;
+		ByteBuffer buffer = this.byteBufferPool != null ? this.byteBufferPool.acquire(bufferSize)
+				: ByteBuffer.allocateDirect(bufferSize);
+		try {
+			selector = Selector.open();
+			this.selectors.add(selector);
+			channel.register(selector, SelectionKey.OP_READ);
+			int soTimeout = this.getSoTimeout();
+			while (this.isActive()) {
+				selector.select(soTimeout < 0 ? 0 : soTimeout);
+				selector.selectedKeys().clear();
+				List<Message<byte[]>> batch = new ArrayList<Message<byte[]>>();
+				do {
+					batch.clear();
+					this.receiveBatch(channel, buffer, bufferSize, batch);
+					if (batch.size() > 0) {
+						this.dispatch(batch);
+					}
+				}
+				while (batch.size() == this.batchSize && this.isActive());
+			}
+		}
+		catch (IOException e) {
+			if (this.isActive()) {
+				logger.error("Error receiving datagram on port " + this.getPort(), e);
+				this.doStop();
+			}
+		}
+		finally {
+			if (selector != null) {
+				this.selectors.remove(selector);
+				try {
+					selector.close();
+				}
+				catch (IOException e) {}
+			}
+			if (this.byteBufferPool != null) {
+				this.byteBufferPool.release(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Receives datagrams until none are available, or the batch is full.
+	 */
+	private void receiveBatch(DatagramChannel channel, ByteBuffer buffer, int bufferSize,
+			List<Message<byte[]>> batch) throws IOException {
+		while (batch.size() < this.batchSize) {
+			buffer.clear();
+			buffer.limit(bufferSize);
+			InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+			if (source == null) {
+				return;
+			}
+			this.receivedCount.incrementAndGet();
+			buffer.flip();
+			if (buffer.remaining() == bufferSize) {
+				this.truncatedCount.incrementAndGet();
+				this.droppedCount.incrementAndGet();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Dropped datagram from " + source + " larger than " + this.getReceiveBufferSize());
+				}
+				continue;
+			}
+			try {
+				Message<byte[]> message = this.getMapper().toMessage(buffer, source.getAddress(), source.getPort());
+				if (message != null) {
+					batch.add(message);
+				}
+			}
+			catch (Exception e) {
+				this.droppedCount.incrementAndGet();
+				logger.error("Failed to map packet to message ", e);
+			}
+		}
+	}
+
+	private void dispatch(List<Message<byte[]>> batch) {
+		final List<Message<byte[]>> messages = new ArrayList<Message<byte[]>>(batch);
+		try {
+			this.getTaskExecutor().execute(new Runnable() {
+				public void run() {
+					for (Message<byte[]> message : messages) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("Received:" + message);
+						}
+						try {
+							if (message.getHeaders().containsKey(IpHeaders.ACK_ADDRESS)) {
+								sendAck(message);
+							}
+							sendMessage(message);
+						}
+						catch (Exception e) {
+							logger.error("Failed to send message " + message, e);
+						}
+					}
+				}
+			});
+			this.batchCount.incrementAndGet();
+		}
+		catch (RejectedExecutionException e) {
+			this.overrunCount.incrementAndGet();
+			this.droppedCount.addAndGet(messages.size());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Dispatch rejected; dropped " + messages.size() + " messages");
+			}
+		}
+	}
+
+	@Override
+	protected void doStop() {
+		super.doStop();
+		for (Selector selector : this.selectors) {
+			selector.wakeup();
+		}
+		DatagramChannel channel = this.channel;
+		this.channel = null;
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * @return the number of datagrams received.
+	 */
+	@ManagedAttribute
+	public long getReceivedCount() {
+		return this.receivedCount.get();
+	}
+
+	/**
+	 * @return the number of batches dispatched.
+	 */
+	@ManagedAttribute
+	public long getBatchCount() {
+		return this.batchCount.get();
+	}
+
+	/**
+	 * @return the number of datagrams received but not dispatched, because they were
+	 * truncated, could not be mapped, or their batch was rejected.
+	 */
+	@ManagedAttribute
+	public long getDroppedCount() {
+		return this.droppedCount.get();
+	}
+
+	/**
+	 * @return the number of datagrams dropped because they were larger than the
+	 * receive buffer.
+	 */
+	@ManagedAttribute
+	public long getTruncatedCount() {
+		return this.truncatedCount.get();
+	}
+
+	/**
+	 * @return the number of batches dropped because the task executor rejected them.
+	 */
+	@ManagedAttribute
+	public long getOverrunCount() {
+		return this.overrunCount.get();
+	}
+
+	@Override
+	public String getComponentType(){
+		return "ip:udp-inbound-channel-adapter";
+	}
+
+}
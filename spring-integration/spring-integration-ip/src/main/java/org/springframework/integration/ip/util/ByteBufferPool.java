@@ -0,0 +1,280 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.util;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * A pool of {@link ByteBuffer}s in power-of-two size classes, shared by many
+ * connections so that memory is only committed to a connection while it has data
+ * in flight. Buffers are carved from larger slabs (direct memory by default); once
+ * {@link #getMaxPooledBytes() maxPooledBytes} have been allocated, or for requests
+ * larger than the largest size class, unpooled buffers are returned and are simply
+ * discarded on release.
+ * <p>
+ * Buffers are returned by {@link #acquire(int)} cleared, with a capacity of at least
+ * the requested size; the limit is set to the requested size. Callers must not use
+ * a buffer after releasing it.
+ *
+ * @since 3.0
+ *
+ */
+@ManagedResource
+public class ByteBufferPool {
+
+	private final SizeClass[] sizeClasses;
+
+	private final int slabSize;
+
+	private final long maxPooledBytes;
+
+	private final boolean direct;
+
+	private final AtomicLong pooledBytes = new AtomicLong();
+
+	private final AtomicLong acquireCount = new AtomicLong();
+
+	private final AtomicLong unpooledCount = new AtomicLong();
+
+	/**
+	 * Create a pool of direct buffers from 512 bytes to 64KiB, allocated in
+	 * 1MiB slabs, up to 64MiB in total.
+	 */
+	public ByteBufferPool() {
+		this(512, 64 * 1024, 1024 * 1024, 64L * 1024 * 1024, true);
+	}
+
+	/**
+	 * @param minBufferSize The smallest size class (rounded up to a power of two).
+	 * @param maxBufferSize The largest size class (rounded up to a power of two).
+	 * @param slabSize The size of each allocation from which buffers are carved; at
+	 * least one buffer of the size class is allocated if the class is larger.
+	 * @param maxPooledBytes The maximum memory the pool will allocate.
+	 * @param direct true to use direct buffers.
+	 */
+	public ByteBufferPool(int minBufferSize, int maxBufferSize, int slabSize, long maxPooledBytes,
+			boolean direct) {
+		Assert.isTrue(minBufferSize > 0, "'minBufferSize' must be greater than 0");
+		Assert.isTrue(maxBufferSize >= minBufferSize, "'maxBufferSize' must not be less than 'minBufferSize'");
+		int min = roundUp(minBufferSize);
+		int max = roundUp(maxBufferSize);
+		int classes = Integer.numberOfTrailingZeros(max) - Integer.numberOfTrailingZeros(min) + 1;
+		this.sizeClasses = new SizeClass[classes];
+		for (int i = 0; i < classes; i++) {
+			this.sizeClasses[i] = new SizeClass(min << i);
+		}
+		this.slabSize = slabSize;
+		this.maxPooledBytes = maxPooledBytes;
+		this.direct = direct;
+	}
+
+	private static int roundUp(int size) {
+		int highest = Integer.highestOneBit(size);
+		return highest == size ? size : highest << 1;
+	}
+
+	/**
+	 * Obtain a buffer with a capacity of at least size bytes.
+	 * @param size The required size.
+	 * @return The buffer, with position 0 and limit size.
+	 */
+	public ByteBuffer acquire(int size) {
+		this.acquireCount.incrementAndGet();
+		SizeClass sizeClass = this.classFor(size);
+		ByteBuffer buffer = null;
+		if (sizeClass != null) {
+			buffer = sizeClass.free.pollFirst();
+			if (buffer == null) {
+				buffer = this.allocateSlab(sizeClass);
+			}
+		}
+		if (buffer == null) {
+			this.unpooledCount.incrementAndGet();
+			buffer = this.allocate(size);
+		}
+		else {
+			sizeClass.lent.put(buffer, Boolean.TRUE);
+			sizeClass.inUse.incrementAndGet();
+		}
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+	/**
+	 * Return a buffer to the pool; buffers that are not currently lent out by the
+	 * pool (unpooled buffers, foreign buffers, or buffers already released) are
+	 * discarded.
+	 * @param buffer The buffer.
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null) {
+			return;
+		}
+		SizeClass sizeClass = this.classFor(buffer.capacity());
+		if (sizeClass != null && sizeClass.lent.remove(buffer) != null) {
+			sizeClass.inUse.decrementAndGet();
+			sizeClass.free.offerFirst(buffer);
+		}
+	}
+
+	private SizeClass classFor(int size) {
+		for (SizeClass sizeClass : this.sizeClasses) {
+			if (sizeClass.size >= size) {
+				return sizeClass;
+			}
+		}
+		return null;
+	}
+
+	private ByteBuffer allocateSlab(SizeClass sizeClass) {
+		synchronized (sizeClass) {
+			ByteBuffer buffer = sizeClass.free.pollFirst();
+			if (buffer != null) {
+				return buffer;
+			}
+			int count = Math.max(1, this.slabSize / sizeClass.size);
+			long bytes = (long) count * sizeClass.size;
+			if (this.pooledBytes.addAndGet(bytes) > this.maxPooledBytes) {
+				this.pooledBytes.addAndGet(-bytes);
+				return null;
+			}
+			ByteBuffer slab = this.allocate((int) bytes);
+			for (int i = 0; i < count; i++) {
+				slab.limit((i + 1) * sizeClass.size);
+				slab.position(i * sizeClass.size);
+				ByteBuffer slice = slab.slice();
+				if (i == 0) {
+					buffer = slice;
+				}
+				else {
+					sizeClass.free.offer(slice);
+				}
+			}
+			return buffer;
+		}
+	}
+
+	private ByteBuffer allocate(int size) {
+		return this.direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+
+	@ManagedAttribute
+	public long getMaxPooledBytes() {
+		return this.maxPooledBytes;
+	}
+
+	/**
+	 * @return The memory allocated to the pool so far.
+	 */
+	@ManagedAttribute
+	public long getPooledBytes() {
+		return this.pooledBytes.get();
+	}
+
+	/**
+	 * @return The memory currently lent out from the pool.
+	 */
+	@ManagedAttribute
+	public long getBytesInUse() {
+		long bytes = 0;
+		for (SizeClass sizeClass : this.sizeClasses) {
+			bytes += (long) sizeClass.inUse.get() * sizeClass.size;
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return The number of pooled buffers currently lent out.
+	 */
+	@ManagedAttribute
+	public int getBuffersInUse() {
+		int count = 0;
+		for (SizeClass sizeClass : this.sizeClasses) {
+			count += sizeClass.inUse.get();
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of pooled buffers available.
+	 */
+	@ManagedAttribute
+	public int getFreeBuffers() {
+		int count = 0;
+		for (SizeClass sizeClass : this.sizeClasses) {
+			count += sizeClass.free.size();
+		}
+		return count;
+	}
+
+	@ManagedAttribute
+	public long getAcquireCount() {
+		return this.acquireCount.get();
+	}
+
+	/**
+	 * @return The number of requests satisfied with an unpooled buffer, because
+	 * the pool was exhausted or the request exceeded the largest size class.
+	 */
+	@ManagedAttribute
+	public long getUnpooledCount() {
+		return this.unpooledCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ByteBufferPool [pooledBytes=" + this.getPooledBytes() + ", bytesInUse=" + this.getBytesInUse()
+				+ ", freeBuffers=" + this.getFreeBuffers() + ", unpooledCount=" + this.getUnpooledCount() + "]";
+	}
+
+
+	private static class SizeClass {
+
+		private final int size;
+
+		/*
+		 * Used as a stack, so that recently used (cache-warm) buffers are reused first.
+		 */
+		private final BlockingDeque<ByteBuffer> free = new LinkedBlockingDeque<ByteBuffer>();
+
+		private final AtomicInteger inUse = new AtomicInteger();
+
+		/*
+		 * Buffers lent out, by identity; ByteBuffer equality depends on the content.
+		 */
+		private final Map<ByteBuffer, Boolean> lent =
+				Collections.synchronizedMap(new IdentityHashMap<ByteBuffer, Boolean>());
+
+		private SizeClass(int size) {
+			this.size = size;
+		}
+
+	}
+
+}
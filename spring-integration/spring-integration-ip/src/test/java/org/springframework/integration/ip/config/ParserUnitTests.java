@@ -518,7 +518,13 @@ public class ParserUnitTests {
 		assertEquals(true, dfa.getPropertyValue("singleUse"));
 		assertSame(taskExecutor, dfa.getPropertyValue("taskExecutor"));
 		assertEquals(123, dfa.getPropertyValue("backlog"));
+		assertEquals(10, dfa.getPropertyValue("maxConnections"));
+		assertEquals(60000L, dfa.getPropertyValue("idleTimeout"));
+		assertEquals(30000L, dfa.getPropertyValue("statisticsInterval"));
 		assertEquals(true, dfa.getPropertyValue("usingDirectBuffers"));
+		assertEquals(true, dfa.getPropertyValue("multiReactor"));
+		assertEquals(2, dfa.getPropertyValue("reactorCount"));
+		assertEquals(true, dfa.getPropertyValue("processOnSelectorThread"));
 		assertNotNull(dfa.getPropertyValue("interceptorFactoryChain"));
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,10 +26,13 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
@@ -43,6 +46,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -53,11 +57,16 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.core.serializer.DefaultDeserializer;
 import org.springframework.core.serializer.DefaultSerializer;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
 import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.core.PollableChannel;
 import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
@@ -67,10 +76,12 @@ import org.springframework.integration.ip.tcp.connection.FailoverClientConnectio
 import org.springframework.integration.ip.tcp.connection.TcpConnectionSupport;
 import org.springframework.integration.ip.tcp.connection.TcpNetClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioClientConnectionFactory;
+import org.springframework.integration.message.ErrorMessage;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.SocketUtils;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Gary Russell
@@ -686,4 +697,280 @@ public class TcpOutboundGatewayTests {
 		done.set(true);
 		ccf.getConnection();
 	}
+
+	@Test
+	public void testPipelinedOutOfOrderReplies() throws Exception {
+		final int port = SocketUtils.findAvailableServerSocket();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+			public void run() {
+				try {
+					ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+					latch.countDown();
+					Socket socket = server.accept();
+					BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+					OutputStream os = socket.getOutputStream();
+					while (true) {
+						// reply to each pair of requests in reverse order
+						String first = reader.readLine();
+						String second = reader.readLine();
+						os.write((second + ":reply\r\n" + first + ":reply\r\n").getBytes());
+						os.flush();
+					}
+				}
+				catch (Exception e) {
+					if (!done.get()) {
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+		AbstractConnectionFactory ccf = new TcpNetClientConnectionFactory("localhost", port);
+		ccf.setSingleUse(false);
+		ccf.start();
+		assertTrue(latch.await(10000, TimeUnit.MILLISECONDS));
+		final TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setCorrelationStrategy(new KeyPrefixCorrelationStrategy());
+		gateway.setMaxInFlight(10);
+		gateway.setRemoteTimeout(10000);
+		final QueueChannel replyChannel = new QueueChannel();
+		gateway.setOutputChannel(replyChannel);
+		gateway.afterPropertiesSet();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 10; i++) {
+			final int n = i;
+			futures.add(Executors.newSingleThreadExecutor().submit(new Runnable() {
+				public void run() {
+					gateway.handleMessage(MessageBuilder.withPayload("key" + n).build());
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		Set<String> replies = new HashSet<String>();
+		for (int i = 0; i < 10; i++) {
+			Message<?> reply = replyChannel.receive(10000);
+			assertNotNull(reply);
+			replies.add(new String((byte[]) reply.getPayload()));
+		}
+		for (int i = 0; i < 10; i++) {
+			assertTrue(replies.contains("key" + i + ":reply"));
+		}
+		done.set(true);
+		gateway.stop();
+	}
+
+	@Test
+	public void testPipelinedAsyncWithTimeout() throws Exception {
+		final int port = SocketUtils.findAvailableServerSocket();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+			public void run() {
+				try {
+					ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+					latch.countDown();
+					Socket socket = server.accept();
+					BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+					OutputStream os = socket.getOutputStream();
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!line.startsWith("drop")) {
+							os.write((line + ":reply\r\n").getBytes());
+							os.flush();
+						}
+					}
+				}
+				catch (Exception e) {
+					if (!done.get()) {
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+		AbstractConnectionFactory ccf = new TcpNetClientConnectionFactory("localhost", port);
+		ccf.setSingleUse(false);
+		ccf.start();
+		assertTrue(latch.await(10000, TimeUnit.MILLISECONDS));
+		TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setCorrelationStrategy(new KeyPrefixCorrelationStrategy());
+		gateway.setAsync(true);
+		gateway.setRemoteTimeout(500);
+		gateway.setTimeoutCheckInterval(100);
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("taskScheduler", scheduler);
+		gateway.setBeanFactory(beanFactory);
+		QueueChannel replyChannel = new QueueChannel();
+		gateway.setOutputChannel(replyChannel);
+		gateway.afterPropertiesSet();
+		gateway.start();
+		QueueChannel errorChannel = new QueueChannel();
+		gateway.handleMessage(MessageBuilder.withPayload("drop1").setErrorChannel(errorChannel).build());
+		gateway.handleMessage(MessageBuilder.withPayload("key1").setErrorChannel(errorChannel).build());
+		gateway.handleMessage(MessageBuilder.withPayload("key2").setErrorChannel(errorChannel).build());
+		Set<String> replies = new HashSet<String>();
+		for (int i = 0; i < 2; i++) {
+			Message<?> reply = replyChannel.receive(10000);
+			assertNotNull(reply);
+			replies.add(new String((byte[]) reply.getPayload()));
+		}
+		assertTrue(replies.contains("key1:reply"));
+		assertTrue(replies.contains("key2:reply"));
+		Message<?> error = errorChannel.receive(10000);
+		assertNotNull(error);
+		assertTrue(error instanceof ErrorMessage);
+		assertTrue(error.getPayload() instanceof MessageTimeoutException);
+		assertEquals("drop1", ((MessagingException) error.getPayload()).getFailedMessage().getPayload());
+		done.set(true);
+		gateway.stop();
+		scheduler.destroy();
+	}
+
+	@Test
+	public void testPipelinedNullKeyDoesNotLeakSlot() throws Exception {
+		AbstractClientConnectionFactory ccf = mock(AbstractClientConnectionFactory.class);
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		when(connection.getConnectionId()).thenReturn("conn1");
+		when(ccf.getConnection()).thenReturn(connection);
+		TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setCorrelationStrategy(new CorrelationStrategy() {
+
+			public Object getCorrelationKey(Message<?> message) {
+				return "none".equals(message.getPayload()) ? null : message.getPayload();
+			}
+
+		});
+		gateway.setAsync(true);
+		gateway.setMaxInFlight(1);
+		gateway.setRequestTimeout(100);
+		gateway.setOutputChannel(new QueueChannel());
+		gateway.afterPropertiesSet();
+		for (int i = 0; i < 2; i++) {
+			try {
+				gateway.handleMessage(new GenericMessage<String>("none"));
+				fail("Expected exception");
+			}
+			catch (MessagingException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		// the only slot must still be available
+		gateway.handleMessage(new GenericMessage<String>("foo"));
+		verify(connection).send(Mockito.any(Message.class));
+		Map<?, ?> pipelined = TestUtils.getPropertyValue(gateway, "pipelinedConnections", Map.class);
+		assertEquals(0, TestUtils.getPropertyValue(pipelined.get("conn1"), "window", Semaphore.class)
+				.availablePermits());
+	}
+
+	@Test
+	public void testPipelinedDeadConnectionWakesWaiter() throws Exception {
+		AbstractClientConnectionFactory ccf = mock(AbstractClientConnectionFactory.class);
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		when(connection.getConnectionId()).thenReturn("conn1");
+		when(ccf.getConnection()).thenReturn(connection);
+		final TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setCorrelationStrategy(new KeyPrefixCorrelationStrategy());
+		gateway.setRemoteTimeout(20000);
+		gateway.setOutputChannel(new QueueChannel());
+		gateway.afterPropertiesSet();
+		final CountDownLatch sent = new CountDownLatch(1);
+		Mockito.doAnswer(new Answer<Void>() {
+
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				sent.countDown();
+				return null;
+			}
+
+		}).when(connection).send(Mockito.any(Message.class));
+		Future<Exception> result = Executors.newSingleThreadExecutor().submit(new Callable<Exception>() {
+
+			public Exception call() throws Exception {
+				try {
+					gateway.handleMessage(new GenericMessage<String>("foo"));
+					return null;
+				}
+				catch (Exception e) {
+					return e;
+				}
+			}
+
+		});
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		gateway.removeDeadConnection(connection);
+		// well before the remote timeout
+		Exception e = result.get(5, TimeUnit.SECONDS);
+		assertNotNull(e);
+		assertTrue(e instanceof MessagingException);
+		assertTrue(e.getMessage().contains("conn1"));
+	}
+
+	@Test
+	public void testPipelinedRequestRacingDeadConnectionDoesNotLeakSlot() throws Exception {
+		AbstractClientConnectionFactory ccf = mock(AbstractClientConnectionFactory.class);
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		when(connection.getConnectionId()).thenReturn("conn1");
+		when(ccf.getConnection()).thenReturn(connection);
+		final TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setCorrelationStrategy(new KeyPrefixCorrelationStrategy());
+		gateway.setAsync(true);
+		gateway.setMaxInFlight(1);
+		gateway.setRequestTimeout(10000);
+		gateway.setOutputChannel(new QueueChannel());
+		gateway.afterPropertiesSet();
+		gateway.handleMessage(new GenericMessage<String>("foo"));
+		Map<?, ?> pipelinedConnections = TestUtils.getPropertyValue(gateway, "pipelinedConnections", Map.class);
+		Object pipelined = pipelinedConnections.get("conn1");
+		Semaphore window = TestUtils.getPropertyValue(pipelined, "window", Semaphore.class);
+		// the second request waits for the only slot on the connection
+		Future<Exception> result = Executors.newSingleThreadExecutor().submit(new Callable<Exception>() {
+
+			public Exception call() throws Exception {
+				try {
+					gateway.handleMessage(new GenericMessage<String>("bar"));
+					return null;
+				}
+				catch (Exception e) {
+					return e;
+				}
+			}
+
+		});
+		int n = 0;
+		while (!window.hasQueuedThreads() && n++ < 1000) {
+			Thread.sleep(10);
+		}
+		assertTrue(window.hasQueuedThreads());
+		// releases the slot of the first request; the second one must not register on the dead connection
+		gateway.removeDeadConnection(connection);
+		Exception e = result.get(10, TimeUnit.SECONDS);
+		assertNotNull(e);
+		assertTrue(e.getMessage().contains("conn1 was closed"));
+		assertEquals(0, TestUtils.getPropertyValue(pipelined, "pending", Map.class).size());
+		assertEquals(1, window.availablePermits());
+		verify(connection).send(Mockito.any(Message.class));
+	}
+
+	/**
+	 * Correlates on the text before the first ':', or the whole payload.
+	 */
+	private static class KeyPrefixCorrelationStrategy implements CorrelationStrategy {
+
+		public Object getCorrelationKey(Message<?> message) {
+			Object payload = message.getPayload();
+			String text = payload instanceof byte[] ? new String((byte[]) payload) : payload.toString();
+			int colon = text.indexOf(':');
+			return colon < 0 ? text : text.substring(0, colon);
+		}
+
+	}
+
 }
@@ -16,6 +16,8 @@
 package org.springframework.integration.ip.tcp.connection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
@@ -23,6 +25,8 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 
+import java.io.InputStream;
+import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -36,6 +40,7 @@ import org.mockito.stubbing.Answer;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.integration.Message;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 import org.springframework.integration.ip.util.TestingUtilities;
 import org.springframework.integration.test.util.SocketUtils;
@@ -112,6 +117,114 @@ public class ConnectionFactoryTests {
 		}
 	}
 
+	@Test
+	public void testNetConnectionLimit() throws Exception {
+		this.testConnectionLimit(new TcpNetServerConnectionFactory(SocketUtils.findAvailableServerSocket()));
+	}
+
+	@Test
+	public void testNioConnectionLimit() throws Exception {
+		this.testConnectionLimit(new TcpNioServerConnectionFactory(SocketUtils.findAvailableServerSocket()));
+	}
+
+	private void testConnectionLimit(AbstractServerConnectionFactory serverFactory) throws Exception {
+		serverFactory.setMaxConnections(1);
+		TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
+		adapter.setConnectionFactory(serverFactory);
+		QueueChannel channel = new QueueChannel();
+		adapter.setOutputChannel(channel);
+		adapter.start();
+		TestingUtilities.waitListening(serverFactory, null);
+		Socket socket1 = new Socket("localhost", serverFactory.getPort());
+		socket1.getOutputStream().write("foo\r\n".getBytes());
+		assertNotNull(channel.receive(10000));
+		Socket socket2 = new Socket("localhost", serverFactory.getPort());
+		socket2.getOutputStream().write("bar\r\n".getBytes());
+		assertNull(channel.receive(500));
+		assertEquals(1, serverFactory.getConnectionCount());
+		assertTrue(serverFactory.getAcceptPauseCount() > 0);
+		socket1.close();
+		Message<?> message = channel.receive(10000);
+		assertNotNull(message);
+		assertEquals("bar", new String((byte[]) message.getPayload()));
+		socket2.close();
+		adapter.stop();
+	}
+
+	@Test
+	public void testIdleTimeoutAndStatistics() throws Exception {
+		final List<TcpConnectionStatisticsEvent> events =
+				Collections.synchronizedList(new ArrayList<TcpConnectionStatisticsEvent>());
+		ApplicationEventPublisher publisher = new ApplicationEventPublisher() {
+			public void publishEvent(ApplicationEvent event) {
+				if (event instanceof TcpConnectionStatisticsEvent) {
+					events.add((TcpConnectionStatisticsEvent) event);
+				}
+			}
+		};
+		TcpNetServerConnectionFactory serverFactory = new TcpNetServerConnectionFactory(
+				SocketUtils.findAvailableServerSocket());
+		serverFactory.setApplicationEventPublisher(publisher);
+		serverFactory.setLookupHost(false);
+		serverFactory.setIdleTimeout(1000);
+		serverFactory.setStatisticsInterval(100);
+		TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
+		adapter.setConnectionFactory(serverFactory);
+		QueueChannel channel = new QueueChannel();
+		adapter.setOutputChannel(channel);
+		adapter.start();
+		TestingUtilities.waitListening(serverFactory, null);
+		Socket socket = new Socket("localhost", serverFactory.getPort());
+		socket.getOutputStream().write("foo\r\n".getBytes());
+		assertNotNull(channel.receive(10000));
+		TcpConnectionStatistics hostStatistics = serverFactory.getHostStatistics().get("127.0.0.1");
+		assertNotNull(hostStatistics);
+		assertEquals(1, hostStatistics.getConnectionCount());
+		assertEquals(5, hostStatistics.getBytesReceived());
+		assertEquals(1, hostStatistics.getMessagesReceived());
+		int n = 0;
+		while (n++ < 100 && events.size() == 0) {
+			Thread.sleep(100);
+		}
+		assertTrue(events.size() > 0);
+		assertEquals(5, events.get(events.size() - 1).getStatistics().getBytesReceived());
+		socket.setSoTimeout(10000);
+		InputStream inputStream = socket.getInputStream();
+		assertEquals(-1, inputStream.read());
+		assertEquals(1, serverFactory.getIdleCloseCount());
+		assertEquals(0, serverFactory.getConnectionCount());
+		socket.close();
+		adapter.stop();
+	}
+
+	@Test
+	public void testBytesNotCountedByDefault() throws Exception {
+		TcpNetServerConnectionFactory serverFactory = new TcpNetServerConnectionFactory(
+				SocketUtils.findAvailableServerSocket());
+		serverFactory.setLookupHost(false);
+		TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
+		adapter.setConnectionFactory(serverFactory);
+		QueueChannel channel = new QueueChannel();
+		adapter.setOutputChannel(channel);
+		adapter.start();
+		TestingUtilities.waitListening(serverFactory, null);
+		Socket socket = new Socket("localhost", serverFactory.getPort());
+		socket.getOutputStream().write("foo\r\n".getBytes());
+		assertNotNull(channel.receive(10000));
+		TcpConnectionStatistics hostStatistics = serverFactory.getHostStatistics().get("127.0.0.1");
+		assertNotNull(hostStatistics);
+		assertEquals(0, hostStatistics.getBytesReceived());
+		assertEquals(1, hostStatistics.getMessagesReceived());
+		assertEquals(1, serverFactory.getConnectionCount());
+		socket.close();
+		int n = 0;
+		while (n++ < 100 && serverFactory.getConnectionCount() > 0) {
+			Thread.sleep(100);
+		}
+		assertEquals(0, serverFactory.getConnectionCount());
+		adapter.stop();
+	}
+
 	@SuppressWarnings("serial")
 	private class FooEvent extends TcpConnectionOpenEvent {
 
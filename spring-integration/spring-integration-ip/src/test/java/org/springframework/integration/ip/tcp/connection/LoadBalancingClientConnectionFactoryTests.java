@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.ip.tcp.TcpInboundGateway;
+import org.springframework.integration.ip.tcp.TcpOutboundGateway;
+import org.springframework.integration.ip.tcp.connection.LoadBalancingClientConnectionFactory.SelectionStrategy;
+import org.springframework.integration.ip.util.TestingUtilities;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.test.util.SocketUtils;
+
+/**
+ * @since 3.0
+ *
+ */
+public class LoadBalancingClientConnectionFactoryTests {
+
+	@Test
+	public void testLeastOutstanding() throws Exception {
+		this.testBalanced(SelectionStrategy.LEAST_OUTSTANDING);
+	}
+
+	@Test
+	public void testPowerOfTwoChoices() throws Exception {
+		this.testBalanced(SelectionStrategy.POWER_OF_TWO_CHOICES);
+	}
+
+	@Test
+	public void testLatencyWeighted() throws Exception {
+		this.testBalanced(SelectionStrategy.LATENCY_WEIGHTED);
+	}
+
+	private void testBalanced(SelectionStrategy strategy) throws Exception {
+		List<Integer> ports = SocketUtils.findAvailableServerSockets(SocketUtils.getRandomSeedPort(), 2);
+		AtomicInteger count1 = new AtomicInteger();
+		AtomicInteger count2 = new AtomicInteger();
+		TcpInboundGateway server1 = this.startServer(ports.get(0), count1);
+		TcpInboundGateway server2 = this.startServer(ports.get(1), count2);
+		LoadBalancingClientConnectionFactory factory = this.createFactory(ports.get(0), ports.get(1));
+		factory.setSelectionStrategy(strategy);
+		factory.afterPropertiesSet();
+		TcpOutboundGateway outGateway = new TcpOutboundGateway();
+		outGateway.setConnectionFactory(factory);
+		QueueChannel replyChannel = new QueueChannel();
+		outGateway.setReplyChannel(replyChannel);
+		outGateway.start();
+		for (int i = 0; i < 20; i++) {
+			outGateway.handleMessage(new GenericMessage<String>("foo" + i));
+			Message<?> reply = replyChannel.receive(10000);
+			assertNotNull(reply);
+			assertEquals("foo" + i, new String((byte[]) reply.getPayload()));
+		}
+		assertEquals(20, count1.get() + count2.get());
+		assertTrue(count1.get() > 0);
+		assertTrue(count2.get() > 0);
+		int[] outstanding = factory.getOutstandingRequests();
+		assertEquals(0, outstanding[0]);
+		assertEquals(0, outstanding[1]);
+		assertEquals(0, factory.getEjectedCount());
+		outGateway.stop();
+		server1.stop();
+		server2.stop();
+	}
+
+	@Test
+	public void testEjection() throws Exception {
+		List<Integer> ports = SocketUtils.findAvailableServerSockets(SocketUtils.getRandomSeedPort(), 2);
+		AtomicInteger count = new AtomicInteger();
+		// nothing listening on the first port
+		TcpInboundGateway server = this.startServer(ports.get(1), count);
+		LoadBalancingClientConnectionFactory factory = this.createFactory(ports.get(0), ports.get(1));
+		factory.setInitialBackoff(60000);
+		factory.afterPropertiesSet();
+		TcpOutboundGateway outGateway = new TcpOutboundGateway();
+		outGateway.setConnectionFactory(factory);
+		QueueChannel replyChannel = new QueueChannel();
+		outGateway.setReplyChannel(replyChannel);
+		outGateway.start();
+		for (int i = 0; i < 5; i++) {
+			outGateway.handleMessage(new GenericMessage<String>("foo"));
+			assertNotNull(replyChannel.receive(10000));
+		}
+		assertEquals(5, count.get());
+		assertEquals(1, factory.getEjectedCount());
+		outGateway.stop();
+		server.stop();
+	}
+
+	private LoadBalancingClientConnectionFactory createFactory(int port1, int port2) {
+		List<AbstractClientConnectionFactory> factories = new ArrayList<AbstractClientConnectionFactory>();
+		for (int port : new int[] {port1, port2}) {
+			AbstractClientConnectionFactory client = new TcpNetClientConnectionFactory("localhost", port);
+			client.setSingleUse(true);
+			factories.add(client);
+		}
+		LoadBalancingClientConnectionFactory factory = new LoadBalancingClientConnectionFactory(factories);
+		factory.setSingleUse(true);
+		return factory;
+	}
+
+	private TcpInboundGateway startServer(int port, final AtomicInteger count) throws Exception {
+		AbstractServerConnectionFactory server = new TcpNetServerConnectionFactory(port);
+		TcpInboundGateway gateway = new TcpInboundGateway();
+		gateway.setConnectionFactory(server);
+		DirectChannel channel = new DirectChannel();
+		channel.subscribe(new MessageHandler() {
+			public void handleMessage(Message<?> message) throws MessagingException {
+				count.incrementAndGet();
+				((MessageChannel) message.getHeaders().getReplyChannel()).send(message);
+			}
+		});
+		gateway.setRequestChannel(channel);
+		gateway.start();
+		TestingUtilities.waitListening(server, null);
+		return gateway;
+	}
+
+}
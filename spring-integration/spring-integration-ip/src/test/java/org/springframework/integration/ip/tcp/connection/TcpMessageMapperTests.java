@@ -33,8 +33,10 @@ import org.springframework.core.serializer.DefaultDeserializer;
 import org.springframework.core.serializer.DefaultSerializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
 import org.springframework.integration.ip.tcp.serializer.MapJsonSerializer;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.converter.BinaryMessageConverter;
 import org.springframework.integration.support.converter.MapMessageConverter;
 
 /**
@@ -281,4 +283,31 @@ public class TcpMessageMapperTests {
 		assertEquals("someId", message.getHeaders().get(IpHeaders.CONNECTION_ID));
 	}
 
+	@Test
+	public void testBinaryMessageConvertingBothWays() throws Exception {
+		Message<String> outMessage = MessageBuilder.withPayload("foo")
+				.setHeader("bar", "baz")
+				.setHeader("qux", 42)
+				.build();
+		MessageConvertingTcpMessageMapper mapper = new MessageConvertingTcpMessageMapper(new BinaryMessageConverter());
+		byte[] bytes = (byte[]) mapper.fromMessage(outMessage);
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		serializer.serialize(bytes, baos);
+
+		bytes = serializer.deserialize(new ByteArrayInputStream(baos.toByteArray()));
+		TcpConnection connection = mock(TcpConnection.class);
+		when(connection.getPayload()).thenReturn(bytes);
+		when(connection.getHostName()).thenReturn("someHost");
+		when(connection.getHostAddress()).thenReturn("1.1.1.1");
+		when(connection.getPort()).thenReturn(1234);
+		when(connection.getConnectionId()).thenReturn("someId");
+		Message<?> message = mapper.toMessage(connection);
+		assertEquals("foo", message.getPayload());
+		assertEquals("baz", message.getHeaders().get("bar"));
+		assertEquals(42, message.getHeaders().get("qux"));
+		assertEquals("someHost", message.getHeaders().get(IpHeaders.HOSTNAME));
+		assertEquals("someId", message.getHeaders().get(IpHeaders.CONNECTION_ID));
+	}
+
 }
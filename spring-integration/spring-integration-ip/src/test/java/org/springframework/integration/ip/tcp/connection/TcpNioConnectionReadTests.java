@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -37,6 +38,7 @@ import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerial
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayStxEtxSerializer;
+import org.springframework.integration.ip.util.ByteBufferPool;
 import org.springframework.integration.ip.util.SocketTestUtils;
 import org.springframework.integration.ip.util.TestingUtilities;
 import org.springframework.integration.test.util.SocketUtils;
@@ -56,7 +58,11 @@ public class TcpNioConnectionReadTests {
 
 	private AbstractServerConnectionFactory getConnectionFactory(int port,
 			AbstractByteArraySerializer serializer, TcpListener listener, TcpSender sender) throws Exception {
-		AbstractServerConnectionFactory scf = new TcpNioServerConnectionFactory(port);
+		return getConnectionFactory(new TcpNioServerConnectionFactory(port), serializer, listener, sender);
+	}
+
+	private AbstractServerConnectionFactory getConnectionFactory(AbstractServerConnectionFactory scf,
+			AbstractByteArraySerializer serializer, TcpListener listener, TcpSender sender) throws Exception {
 		scf.setSerializer(serializer);
 		scf.setDeserializer(serializer);
 		scf.registerListener(listener);
@@ -102,6 +108,148 @@ public class TcpNioConnectionReadTests {
 
 
 
+	@Test
+	public void testDecodeFromReadBuffer() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		final List<String> responses = new ArrayList<String>();
+		final Semaphore semaphore = new Semaphore(0);
+		TcpNioServerConnectionFactory factory = new TcpNioServerConnectionFactory(port);
+		factory.setDecodeFromReadBuffer(true);
+		AbstractServerConnectionFactory scf = getConnectionFactory(factory, new ByteArrayCrLfSerializer(),
+				new TcpListener() {
+					public boolean onMessage(Message<?> message) {
+						if (message.getPayload() instanceof byte[]) {
+							responses.add(new String((byte[]) message.getPayload()));
+							semaphore.release();
+						}
+						return false;
+					}
+				}, null);
+		Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+		OutputStream os = socket.getOutputStream();
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			data.append("frame").append(i).append("\r\n");
+		}
+		byte[] bytes = data.toString().getBytes();
+		// write in chunks that split frames and terminators
+		for (int i = 0; i < bytes.length; i += 7) {
+			os.write(bytes, i, Math.min(7, bytes.length - i));
+			if (i % 700 == 0) {
+				os.flush();
+				Thread.sleep(5);
+			}
+		}
+		os.flush();
+		assertTrue(semaphore.tryAcquire(1000, 10000, TimeUnit.MILLISECONDS));
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("frame" + i, responses.get(i));
+		}
+		socket.close();
+		scf.close();
+	}
+
+	@Test
+	public void testPooledBuffers() throws Exception {
+		this.testPooledBuffers(false);
+		this.testPooledBuffers(true);
+	}
+
+	private void testPooledBuffers(boolean decodeFromReadBuffer) throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		final Semaphore semaphore = new Semaphore(0);
+		ByteBufferPool pool = new ByteBufferPool();
+		TcpNioServerConnectionFactory factory = new TcpNioServerConnectionFactory(port);
+		factory.setByteBufferPool(pool);
+		factory.setDecodeFromReadBuffer(decodeFromReadBuffer);
+		AbstractServerConnectionFactory scf = getConnectionFactory(factory, new ByteArrayCrLfSerializer(),
+				new TcpListener() {
+					public boolean onMessage(Message<?> message) {
+						if (message.getPayload() instanceof byte[]) {
+							semaphore.release();
+						}
+						return false;
+					}
+				}, null);
+		Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+		OutputStream os = socket.getOutputStream();
+		for (int i = 0; i < 100; i++) {
+			os.write(("message" + i + "\r\n").getBytes());
+		}
+		os.write("partial".getBytes());
+		os.flush();
+		assertTrue(semaphore.tryAcquire(100, 10000, TimeUnit.MILLISECONDS));
+		assertTrue(pool.getAcquireCount() > 0);
+		if (decodeFromReadBuffer) {
+			// only the partial frame is retained
+			int n = 0;
+			while (n++ < 100 && pool.getBuffersInUse() != 1) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, pool.getBuffersInUse());
+		}
+		socket.close();
+		int n = 0;
+		while (n++ < 100 && pool.getBuffersInUse() > 0) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, pool.getBuffersInUse());
+		scf.close();
+	}
+
+	@Test
+	public void testMultiReactor() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		final Semaphore semaphore = new Semaphore(0);
+		TcpNioServerConnectionFactory factory = new TcpNioServerConnectionFactory(port);
+		factory.setMultiReactor(true);
+		factory.setReactorCount(2);
+		factory.setDecodeFromReadBuffer(true);
+		factory.setProcessOnSelectorThread(true);
+		AbstractServerConnectionFactory scf = getConnectionFactory(factory, new ByteArrayCrLfSerializer(),
+				new TcpListener() {
+					public boolean onMessage(Message<?> message) {
+						if (message.getPayload() instanceof byte[]) {
+							semaphore.release();
+						}
+						return false;
+					}
+				}, null);
+		List<Socket> sockets = new ArrayList<Socket>();
+		for (int i = 0; i < 4; i++) {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+			sockets.add(socket);
+			OutputStream os = socket.getOutputStream();
+			for (int j = 0; j < 10; j++) {
+				os.write(("message" + i + "-" + j + "\r\n").getBytes());
+			}
+			os.flush();
+			assertTrue(semaphore.tryAcquire(10, 10000, TimeUnit.MILLISECONDS));
+		}
+		int[] connectionCounts = factory.getReactorConnectionCounts();
+		assertEquals(2, connectionCounts.length);
+		assertEquals(2, connectionCounts[0]);
+		assertEquals(2, connectionCounts[1]);
+		long[] selectionCounts = factory.getReactorSelectionCounts();
+		assertTrue(selectionCounts[0] > 0);
+		assertTrue(selectionCounts[1] > 0);
+		assertEquals(4, factory.getConnections().size());
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+		// each reactor removes its own closed channels
+		int n = 0;
+		while (n++ < 100 && (factory.getConnections().size() > 0
+				|| factory.getReactorConnectionCounts()[0] > 0 || factory.getReactorConnectionCounts()[1] > 0)) {
+			Thread.sleep(100);
+		}
+		assertEquals(0, factory.getConnections().size());
+		connectionCounts = factory.getReactorConnectionCounts();
+		assertEquals(0, connectionCounts[0]);
+		assertEquals(0, connectionCounts[1]);
+		scf.close();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testFragmented() throws Exception {
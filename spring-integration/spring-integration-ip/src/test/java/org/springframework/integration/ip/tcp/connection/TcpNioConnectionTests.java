@@ -29,6 +29,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -61,9 +62,11 @@ import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
 import org.springframework.integration.ip.tcp.connection.TcpNioConnection.ChannelInputStream;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
 import org.springframework.integration.ip.tcp.serializer.MapJsonSerializer;
+import org.springframework.integration.ip.util.ByteBufferPool;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.support.converter.MapMessageConverter;
 import org.springframework.integration.test.util.SocketUtils;
@@ -306,6 +309,46 @@ public class TcpNioConnectionTests {
 		}
 	}
 
+	@Test
+	public void testInsufficientThreadsReleasesPooledBuffer() throws Exception {
+		final ExecutorService exec = Executors.newFixedThreadPool(2);
+		SocketChannel channel = mock(SocketChannel.class);
+		Socket socket = mock(Socket.class);
+		Mockito.when(channel.socket()).thenReturn(socket);
+		doAnswer(new Answer<Integer>() {
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+				buffer.position(1);
+				return 1;
+			}
+		}).when(channel).read(Mockito.any(ByteBuffer.class));
+		when(socket.getReceiveBufferSize()).thenReturn(1024);
+		TcpNioConnection connection = new TcpNioConnection(channel, false, false, null, null);
+		ByteBufferPool pool = new ByteBufferPool();
+		connection.setByteBufferPool(pool);
+		connection.setTaskExecutor(exec);
+		connection.setPipeTimeout(200);
+		Method method = TcpNioConnection.class.getDeclaredMethod("doRead");
+		method.setAccessible(true);
+		// Nobody reading, should timeout on 6th write.
+		try {
+			for (int i = 0; i < 6; i++) {
+				method.invoke(connection);
+			}
+			fail("Expected exception");
+		}
+		catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof MessagingException);
+		}
+		// the pipe writer gives up too, and returns the buffer
+		int n = 0;
+		while (pool.getBuffersInUse() > 0 && n++ < 100) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, pool.getBuffersInUse());
+		exec.shutdownNow();
+	}
+
 	@Test
 	public void testSufficientThreads() throws Exception {
 		final ExecutorService exec = Executors.newFixedThreadPool(3);
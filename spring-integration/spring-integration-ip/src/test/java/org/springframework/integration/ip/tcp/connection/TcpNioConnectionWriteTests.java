@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,25 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ServerSocketFactory;
 
@@ -33,6 +45,7 @@ import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSe
 import org.springframework.integration.ip.tcp.serializer.ByteArrayStxEtxSerializer;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.integration.test.util.TestUtils;
 
 /**
  * @author Gary Russell
@@ -255,6 +268,171 @@ public class TcpNioConnectionWriteTests {
 	 * @param is
 	 * @param buff
 	 */
+	@Test
+	public void testWriteFramedBodies() throws Exception {
+		final File file = File.createTempFile("framed", ".bin");
+		file.deleteOnExit();
+		final byte[] data = new byte[1024 * 1024];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(data);
+		fos.close();
+		for (final boolean nio : new boolean[] {true, false}) {
+			final int port = SocketUtils.findAvailableServerSocket();
+			ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+			server.setSoTimeout(10000);
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					try {
+						ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+						AbstractClientConnectionFactory ccf = nio
+								? new TcpNioClientConnectionFactory("localhost", port)
+								: new TcpNetClientConnectionFactory("localhost", port);
+						ccf.setSerializer(serializer);
+						ccf.setDeserializer(serializer);
+						ccf.setSoTimeout(10000);
+						ccf.start();
+						TcpConnection connection = ccf.getConnection();
+						connection.send(MessageBuilder.withPayload(file).build());
+						ByteBuffer buffer = ByteBuffer.wrap(data, 10, 100);
+						connection.send(MessageBuilder.withPayload(buffer).build());
+						Thread.sleep(1000000000L);
+					}
+					catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			});
+			t.setDaemon(true);
+			t.start();
+			Socket socket = server.accept();
+			socket.setSoTimeout(5000);
+			DataInputStream is = new DataInputStream(socket.getInputStream());
+			assertEquals(data.length, is.readInt());
+			byte[] buff = new byte[data.length];
+			is.readFully(buff);
+			assertArrayEquals(data, buff);
+			assertEquals(100, is.readInt());
+			buff = new byte[100];
+			is.readFully(buff);
+			for (int i = 0; i < 100; i++) {
+				assertEquals(data[i + 10], buff[i]);
+			}
+			server.close();
+		}
+	}
+
+	@Test
+	public void testWriteQueue() throws Exception {
+		final int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		server.setSoTimeout(10000);
+		TcpNioClientConnectionFactory ccf = new TcpNioClientConnectionFactory("localhost", port);
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		ccf.setSerializer(serializer);
+		ccf.setDeserializer(serializer);
+		ccf.setSoTimeout(10000);
+		ccf.setWriteQueueCapacity(10);
+		ccf.setWriteBatchMaxBytes(100);
+		ccf.setWriteBatchMaxDelay(1);
+		ccf.start();
+		final TcpConnection connection = ccf.getConnection();
+		Socket socket = server.accept();
+		socket.setSoTimeout(10000);
+		final int threads = 4;
+		final int messages = 250;
+		final AtomicInteger failures = new AtomicInteger();
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			final int thread = i;
+			exec.execute(new Runnable() {
+				public void run() {
+					for (int j = 0; j < messages; j++) {
+						try {
+							connection.send(MessageBuilder.withPayload(thread + ":" + j).build());
+						}
+						catch (Exception e) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+		int[] next = new int[threads];
+		for (int i = 0; i < threads * messages; i++) {
+			String[] line = reader.readLine().split(":");
+			int thread = Integer.parseInt(line[0]);
+			// frames from each thread arrive in order
+			assertEquals(next[thread]++, Integer.parseInt(line[1]));
+		}
+		exec.shutdown();
+		assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(0, failures.get());
+		assertEquals(0, ((TcpNioConnection) connection).getWriteQueueDepth());
+		socket.close();
+		server.close();
+		ccf.stop();
+	}
+
+	@Test
+	public void testWriteQueueDrainedAfterFramedBody() throws Exception {
+		final File file = File.createTempFile("framed", ".bin");
+		file.deleteOnExit();
+		final byte[] data = new byte[16 * 1024 * 1024];
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(data);
+		fos.close();
+		final int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		server.setSoTimeout(10000);
+		TcpNioClientConnectionFactory ccf = new TcpNioClientConnectionFactory("localhost", port);
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		ccf.setSerializer(serializer);
+		ccf.setDeserializer(serializer);
+		ccf.setSoTimeout(10000);
+		ccf.setWriteQueueCapacity(10);
+		ccf.start();
+		final TcpConnection connection = ccf.getConnection();
+		Socket socket = server.accept();
+		socket.setSoTimeout(10000);
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		exec.execute(new Runnable() {
+			public void run() {
+				try {
+					connection.send(MessageBuilder.withPayload(file).build());
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		// the file cannot be written completely until the peer reads
+		ReentrantLock writeLock = TestUtils.getPropertyValue(connection, "writeLock", ReentrantLock.class);
+		int n = 0;
+		while (n++ < 100 && !writeLock.isLocked()) {
+			Thread.sleep(100);
+		}
+		assertTrue(writeLock.isLocked());
+		connection.send(MessageBuilder.withPayload("foo").build());
+		assertEquals(1, ((TcpNioConnection) connection).getWriteQueueDepth());
+		DataInputStream is = new DataInputStream(socket.getInputStream());
+		assertEquals(data.length, is.readInt());
+		is.readFully(new byte[data.length]);
+		// the queued frame is written when the file is done, without another send
+		assertEquals(3, is.readInt());
+		byte[] buff = new byte[3];
+		is.readFully(buff);
+		assertEquals("foo", new String(buff));
+		exec.shutdown();
+		assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+		socket.close();
+		server.close();
+		ccf.stop();
+	}
+
 	private void readFully(InputStream is, byte[] buff) throws IOException {
 		for (int i = 0; i < buff.length; i++) {
 			buff[i] = (byte) is.read();
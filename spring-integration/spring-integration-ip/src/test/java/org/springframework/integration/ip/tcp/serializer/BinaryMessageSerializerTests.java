@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.ip.tcp.serializer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * @since 3.0
+ *
+ */
+public class BinaryMessageSerializerTests {
+
+	@Test
+	public void multi() throws Exception {
+		BinaryMessageSerializer serializer = new BinaryMessageSerializer();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		serializer.serialize(MessageBuilder.withPayload("foo").setHeader("bar", "baz").build(), baos);
+		serializer.serialize(MessageBuilder.withPayload("qux".getBytes()).setHeader("bar", 1L).build(), baos);
+		ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+		Message<?> message = serializer.deserialize(bais);
+		assertEquals("foo", message.getPayload());
+		assertEquals("baz", message.getHeaders().get("bar"));
+		message = serializer.deserialize(bais);
+		assertEquals("qux", new String((byte[]) message.getPayload()));
+		assertEquals(1L, message.getHeaders().get("bar"));
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,11 +17,13 @@
 package org.springframework.integration.ip.tcp.serializer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import javax.net.ServerSocketFactory;
 
@@ -228,4 +230,57 @@ public class DeserializationTests {
 		server.close();
 	}
 
+	@Test
+	public void testBufferCrLf() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap("\r\nabc\ndefghijklmnop\r\nxyz\r".getBytes());
+		assertEquals("", new String(serializer.deserialize(buffer, false)));
+		assertEquals("abc\ndefghijklmnop", new String(serializer.deserialize(buffer, false)));
+		assertNull(serializer.deserialize(buffer, false));
+		assertEquals(4, buffer.remaining());
+		try {
+			serializer.deserialize(buffer, true);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertEquals("Socket closed during message assembly", e.getMessage());
+		}
+		serializer.setMaxMessageSize(4);
+		try {
+			serializer.deserialize(ByteBuffer.wrap("abcdefghijkl\r\n".getBytes()), false);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertEquals("CRLF not found before max message length: 4", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBufferOtherFormats() throws Exception {
+		ByteArrayLfSerializer lf = new ByteArrayLfSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap("0123456789abcdef\nxy".getBytes());
+		assertEquals("0123456789abcdef", new String(lf.deserialize(buffer, false)));
+		assertNull(lf.deserialize(buffer, false));
+		assertEquals(2, buffer.remaining());
+
+		ByteArrayStxEtxSerializer stxEtx = new ByteArrayStxEtxSerializer();
+		buffer = ByteBuffer.wrap("\u0002hello\u0003\u0002wor".getBytes());
+		assertEquals("hello", new String(stxEtx.deserialize(buffer, false)));
+		assertNull(stxEtx.deserialize(buffer, false));
+		assertEquals(4, buffer.remaining());
+
+		ByteArrayLengthHeaderSerializer length = new ByteArrayLengthHeaderSerializer(
+				ByteArrayLengthHeaderSerializer.HEADER_SIZE_UNSIGNED_SHORT);
+		buffer = ByteBuffer.wrap(new byte[] {0, 2, 'h', 'i', 0, 3, 'x'});
+		assertEquals("hi", new String(length.deserialize(buffer, false)));
+		assertNull(length.deserialize(buffer, false));
+		assertEquals(3, buffer.remaining());
+
+		ByteArrayRawSerializer raw = new ByteArrayRawSerializer();
+		buffer = ByteBuffer.wrap("raw data".getBytes());
+		assertNull(raw.deserialize(buffer, false));
+		assertEquals("raw data", new String(raw.deserialize(buffer, true)));
+		assertNull(raw.deserialize(buffer, true));
+	}
+
 }
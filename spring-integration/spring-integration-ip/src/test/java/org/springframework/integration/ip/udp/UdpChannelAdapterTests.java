@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.springframework.integration.ip.udp;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -24,6 +25,8 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -119,6 +122,50 @@ public class UdpChannelAdapterTests {
 		assertEquals(replyString, new String(answerPacket.getData(), 0, answerPacket.getLength()));
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testNioUnicastReceiver() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		int port = SocketUtils.findAvailableUdpSocket();
+		NioUnicastReceivingChannelAdapter adapter = new NioUnicastReceivingChannelAdapter(port);
+		adapter.setOutputChannel(channel);
+		adapter.setReceiverCount(2);
+		adapter.setReceiveBufferSize(10);
+		adapter.setLookupHost(false);
+		adapter.start();
+		SocketTestUtils.waitListening(adapter);
+
+		DatagramSocket socket = new DatagramSocket(SocketUtils.findAvailableUdpSocket());
+		InetSocketAddress address = new InetSocketAddress("localhost", port);
+		for (int i = 0; i < 10; i++) {
+			byte[] payload = ("ABCD" + i).getBytes();
+			socket.send(new DatagramPacket(payload, payload.length, address));
+		}
+		byte[] tooLong = "ABCDEFGHIJK".getBytes();
+		socket.send(new DatagramPacket(tooLong, tooLong.length, address));
+		Set<String> received = new HashSet<String>();
+		for (int i = 0; i < 10; i++) {
+			Message<byte[]> receivedMessage = (Message<byte[]>) channel.receive(10000);
+			assertNotNull(receivedMessage);
+			received.add(new String(receivedMessage.getPayload()));
+			assertEquals(socket.getLocalPort(), receivedMessage.getHeaders().get(IpHeaders.PORT));
+		}
+		for (int i = 0; i < 10; i++) {
+			assertTrue(received.contains("ABCD" + i));
+		}
+		int n = 0;
+		while (n++ < 100 && adapter.getReceivedCount() < 11) {
+			Thread.sleep(100);
+		}
+		assertEquals(11, adapter.getReceivedCount());
+		assertEquals(1, adapter.getTruncatedCount());
+		assertEquals(1, adapter.getDroppedCount());
+		assertEquals(0, adapter.getOverrunCount());
+		assertNull(channel.receive(100));
+		socket.close();
+		adapter.stop();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testUnicastSender() throws Exception {
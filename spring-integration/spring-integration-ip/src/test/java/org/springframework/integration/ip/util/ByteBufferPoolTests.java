@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * @since 3.0
+ */
+public class ByteBufferPoolTests {
+
+	@Test
+	public void testSizeClassesAndReuse() {
+		ByteBufferPool pool = new ByteBufferPool(500, 4000, 8192, 16384, true);
+		ByteBuffer small = pool.acquire(100);
+		assertTrue(small.isDirect());
+		assertEquals(512, small.capacity());
+		assertEquals(100, small.limit());
+		assertEquals(8192, pool.getPooledBytes());
+		assertEquals(15, pool.getFreeBuffers());
+		assertEquals(512, pool.getBytesInUse());
+		pool.release(small);
+		assertEquals(0, pool.getBuffersInUse());
+		ByteBuffer again = pool.acquire(512);
+		assertSame(small, again);
+		assertEquals(512, again.limit());
+		pool.release(again);
+
+		ByteBuffer large = pool.acquire(3000);
+		assertEquals(4096, large.capacity());
+		assertEquals(16384, pool.getPooledBytes());
+		// the pool is now at its limit; a new size class cannot be allocated
+		ByteBuffer unpooled = pool.acquire(1024);
+		assertEquals(1024, unpooled.capacity());
+		assertEquals(1, pool.getUnpooledCount());
+		// over the largest size class
+		ByteBuffer huge = pool.acquire(10000);
+		assertEquals(10000, huge.capacity());
+		assertEquals(2, pool.getUnpooledCount());
+		pool.release(unpooled);
+		pool.release(huge);
+		pool.release(large);
+		assertEquals(0, pool.getBytesInUse());
+		assertEquals(5, pool.getAcquireCount());
+	}
+
+	@Test
+	public void testNotDirect() {
+		ByteBufferPool pool = new ByteBufferPool(512, 512, 512, 1024, false);
+		ByteBuffer buffer = pool.acquire(10);
+		assertTrue(buffer.hasArray());
+		pool.release(ByteBuffer.allocateDirect(512));
+		assertEquals(1, pool.getBuffersInUse());
+		pool.release(buffer);
+		assertEquals(0, pool.getBuffersInUse());
+	}
+
+	@Test
+	public void testOnlyLentBuffersAreReturned() {
+		ByteBufferPool pool = new ByteBufferPool(512, 512, 512, 1024, true);
+		ByteBuffer pooled1 = pool.acquire(512);
+		ByteBuffer pooled2 = pool.acquire(512);
+		// the pool is exhausted; this buffer has the capacity of the size class
+		ByteBuffer overflow = pool.acquire(512);
+		assertEquals(512, overflow.capacity());
+		assertEquals(1, pool.getUnpooledCount());
+		pool.release(pooled1);
+		pool.release(overflow);
+		pool.release(ByteBuffer.allocateDirect(512));
+		assertEquals(1, pool.getBuffersInUse());
+		assertEquals(1, pool.getFreeBuffers());
+		// released twice
+		pool.release(pooled1);
+		assertEquals(1, pool.getBuffersInUse());
+		assertEquals(1, pool.getFreeBuffers());
+		pool.release(pooled2);
+		assertEquals(0, pool.getBuffersInUse());
+		assertEquals(2, pool.getFreeBuffers());
+		assertEquals(1024, pool.getPooledBytes());
+	}
+
+}
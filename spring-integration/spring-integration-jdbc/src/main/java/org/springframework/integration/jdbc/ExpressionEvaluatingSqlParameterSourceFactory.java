@@ -17,11 +17,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionException;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.util.AbstractExpressionEvaluator;
 import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
@@ -46,6 +50,13 @@ public class ExpressionEvaluatingSqlParameterSourceFactory extends AbstractExpre
 
 	private volatile Map<String, String> parameterExpressions;
 
+	private final ExpressionParser parser = new SpelExpressionParser();
+
+	/**
+	 * Parsed expressions, so each expression is only parsed once rather than for every parameter source.
+	 */
+	private final Map<String, Expression> expressionCache = new ConcurrentHashMap<String, Expression>();
+
 	public ExpressionEvaluatingSqlParameterSourceFactory() {
 		this.staticParameters = Collections.unmodifiableMap(new HashMap<String, Object>());
 		this.parameterExpressions = Collections.unmodifiableMap(new HashMap<String, String>());
@@ -113,6 +124,15 @@ public class ExpressionEvaluatingSqlParameterSourceFactory extends AbstractExpre
 		this.getEvaluationContext().setVariable("staticParameters", this.staticParameters);
 	}
 
+	private Expression getExpression(String expressionString) {
+		Expression expression = this.expressionCache.get(expressionString);
+		if (expression == null) {
+			expression = this.parser.parseExpression(expressionString);
+			this.expressionCache.put(expressionString, expression);
+		}
+		return expression;
+	}
+
 	private final class ExpressionEvaluatingSqlParameterSource extends AbstractSqlParameterSource {
 
 		private final Object input;
@@ -139,7 +159,7 @@ public class ExpressionEvaluatingSqlParameterSourceFactory extends AbstractExpre
 			if (input instanceof Collection<?>) {
 				expression = "#root.![" + expression + "]";
 			}
-			Object value = evaluateExpression(expression, input);
+			Object value = evaluateExpression(getExpression(expression), input);
 			values.put(paramName, value);
 			if (logger.isDebugEnabled()) {
 				logger.debug("Resolved expression " + expression + " to " + value);
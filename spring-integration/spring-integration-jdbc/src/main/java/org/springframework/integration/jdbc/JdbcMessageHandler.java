@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -19,6 +19,7 @@ import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageDeliveryException;
 import org.springframework.integration.MessageHandlingException;
@@ -31,6 +32,9 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedCaseInsensitiveMap;
 
 /**
@@ -44,11 +48,19 @@ import org.springframework.util.LinkedCaseInsensitiveMap;
  *
  * N.B. do not use quotes to escape the header keys. The default SQL parameter source (from Spring JDBC) can also handle
  * headers with dotted names (e.g. <code>business.id</code>)
+ * <p>
+ * When the {@link #setBatchSize(int) batchSize} is greater than 1, messages are accumulated and the updates are
+ * executed with a single JDBC batch when the batch is full (by count or, optionally, by payload size). When a message
+ * is handled within a transaction, it is added to a batch bound to that transaction, which is executed, at the latest,
+ * just before the transaction commits (and discarded if it rolls back). Otherwise, messages are added to a batch shared
+ * by all threads; a {@link #setBatchTimeout(long) batchTimeout} bounds the time a message waits in that batch. When
+ * a shared batch fails, senders that have already returned are notified by sending a {@link MessageHandlingException}
+ * for each of their messages to the message's error channel (or the default 'errorChannel').
  *
  * @author Dave Syer
  * @since 2.0
  */
-public class JdbcMessageHandler extends AbstractMessageHandler {
+public class JdbcMessageHandler extends AbstractMessageHandler implements DisposableBean {
 
 	private final NamedParameterJdbcOperations jdbcOperations;
 
@@ -58,6 +70,14 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 
 	private volatile boolean keysGenerated;
 
+	private final MessageBatcher batcher = new MessageBatcher(this, new MessageBatcher.BatchExecutor() {
+
+		public void executeBatch(List<Message<?>> messages) {
+			JdbcMessageHandler.this.executeBatch(messages);
+		}
+
+	});
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be obtained and the select query to
 	 * execute to retrieve new rows.
@@ -98,11 +118,54 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 		this.sqlParameterSourceFactory = sqlParameterSourceFactory;
 	}
 
+	/**
+	 * The number of messages to accumulate before executing the updates as a JDBC batch.
+	 * Default 1 (no batching). Batching cannot be used with {@link #setKeysGenerated(boolean) keysGenerated}.
+	 * @param batchSize the batchSize to set
+	 * @since 3.0
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batcher.setBatchSize(batchSize);
+	}
+
+	/**
+	 * When batching, also execute the batch when the total size of the accumulated payloads
+	 * reaches this number of bytes. Only <code>byte[]</code> and <code>String</code> payloads
+	 * (2 bytes per character) are counted. Default 0 (no limit).
+	 * @param batchMaxBytes the batchMaxBytes to set
+	 * @since 3.0
+	 */
+	public void setBatchMaxBytes(long batchMaxBytes) {
+		this.batcher.setBatchMaxBytes(batchMaxBytes);
+	}
+
+	/**
+	 * When batching outside of a transaction, the maximum time (milliseconds) a message waits
+	 * before the batch is executed, even if it is not full. Requires a task scheduler.
+	 * Default 0 (wait until the batch is full, or {@link #flush()} is called).
+	 * @param batchTimeout the batchTimeout to set
+	 * @since 3.0
+	 */
+	public void setBatchTimeout(long batchTimeout) {
+		this.batcher.setBatchTimeout(batchTimeout);
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		Assert.state(!(this.batcher.isBatching() && this.keysGenerated), "Batching cannot be used with 'keysGenerated'");
+		this.batcher.initialize(this.getTaskScheduler(), this.getBeanFactory());
+	}
+
 	/**
 	 * Executes the update, passing the message into the {@link SqlParameterSourceFactory}.
 	 */
 	protected void handleMessageInternal(Message<?> message) throws MessageRejectedException, MessageHandlingException,
 			MessageDeliveryException {
+		if (this.batcher.isBatching()) {
+			this.batcher.add(message);
+			return;
+		}
 		List<? extends Map<String, Object>> keys = executeUpdateQuery(message, keysGenerated);
 		if (logger.isDebugEnabled() && !keys.isEmpty()) {
 			logger.debug("Generated keys: "+keys);
@@ -110,10 +173,7 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 	}
 
 	protected List<? extends Map<String, Object>> executeUpdateQuery(Object obj, boolean keysGenerated) {
-		SqlParameterSource updateParameterSource = new MapSqlParameterSource();
-		if (this.sqlParameterSourceFactory != null) {
-			updateParameterSource = this.sqlParameterSourceFactory.createParameterSource(obj);
-		}
+		SqlParameterSource updateParameterSource = this.createParameterSource(obj);
 		if (keysGenerated) {
 			KeyHolder keyHolder = new GeneratedKeyHolder();
 			this.jdbcOperations.update(this.updateSql, updateParameterSource,
@@ -129,4 +189,90 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 
 	}
 
+	private SqlParameterSource createParameterSource(Object obj) {
+		if (this.sqlParameterSourceFactory != null) {
+			return this.sqlParameterSourceFactory.createParameterSource(obj);
+		}
+		return new MapSqlParameterSource();
+	}
+
+	/**
+	 * Execute the updates for any messages accumulated in the batch shared by non-transactional
+	 * senders. Messages in batches bound to transactions are not affected.
+	 * @since 3.0
+	 */
+	@ManagedOperation
+	public void flush() {
+		this.batcher.flush();
+	}
+
+	private void executeBatch(List<Message<?>> messages) {
+		SqlParameterSource[] parameterSources = new SqlParameterSource[messages.size()];
+		for (int i = 0; i < parameterSources.length; i++) {
+			parameterSources[i] = this.createParameterSource(messages.get(i));
+		}
+		this.jdbcOperations.batchUpdate(this.updateSql, parameterSources);
+	}
+
+	/**
+	 * Executes any messages remaining in the shared batch.
+	 */
+	public void destroy() throws Exception {
+		this.flush();
+	}
+
+	/**
+	 * @return the number of batches executed.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getBatchCount() {
+		return this.batcher.getBatchCount();
+	}
+
+	/**
+	 * @return the number of messages written by batches.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getBatchedMessageCount() {
+		return this.batcher.getBatchedMessageCount();
+	}
+
+	/**
+	 * @return the number of batches that failed.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getBatchFailureCount() {
+		return this.batcher.getBatchFailureCount();
+	}
+
+	/**
+	 * @return the number of messages in the last batch executed.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public int getLastBatchSize() {
+		return this.batcher.getLastBatchSize();
+	}
+
+	/**
+	 * @return the time (milliseconds) taken to execute the last batch.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getLastBatchDuration() {
+		return this.batcher.getLastBatchDuration();
+	}
+
+	/**
+	 * @return the number of messages waiting in the batch shared by non-transactional senders.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public int getPendingBatchSize() {
+		return this.batcher.getPendingBatchSize();
+	}
+
 }
@@ -19,12 +19,16 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.DataSource;
@@ -40,6 +44,7 @@ import org.springframework.dao.DuplicateKeyException;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.jdbc.store.CompactMessageSerializer;
 import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
 import org.springframework.integration.store.AbstractMessageGroupStore;
 import org.springframework.integration.store.MessageGroup;
@@ -47,6 +52,7 @@ import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
@@ -57,6 +63,8 @@ import org.springframework.jdbc.support.lob.DefaultLobHandler;
 import org.springframework.jdbc.support.lob.LobHandler;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -110,11 +118,11 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 				"from %PREFIX%MESSAGE where MESSAGE_ID in (select MESSAGE_ID from %PREFIX%GROUP_TO_MESSAGE where GROUP_KEY=? and REGION=?) " +
 				"ORDER BY CREATED_DATE"),
 
-		LIST_MESSAGES_BY_GROUP_KEY("SELECT MESSAGE_ID, MESSAGE_BYTES, CREATED_DATE " +
+		LIST_MESSAGES_BY_GROUP_KEY("SELECT MESSAGE_ID, MESSAGE_BYTES%INLINE_COLUMN%, CREATED_DATE " +
 				"from %PREFIX%MESSAGE where MESSAGE_ID in (SELECT MESSAGE_ID from %PREFIX%GROUP_TO_MESSAGE where GROUP_KEY = ?) and REGION=? " +
 				"ORDER BY CREATED_DATE"),
 
-		POLL_FROM_GROUP("SELECT %PREFIX%MESSAGE.MESSAGE_ID, %PREFIX%MESSAGE.MESSAGE_BYTES from %PREFIX%MESSAGE " +
+		POLL_FROM_GROUP("SELECT %PREFIX%MESSAGE.MESSAGE_ID, %PREFIX%MESSAGE.MESSAGE_BYTES%INLINE_COLUMN% from %PREFIX%MESSAGE " +
 				"where %PREFIX%MESSAGE.MESSAGE_ID = " +
 				"(SELECT min(m.MESSAGE_ID) from %PREFIX%MESSAGE m " +
 				"join %PREFIX%GROUP_TO_MESSAGE on m.MESSAGE_ID = %PREFIX%GROUP_TO_MESSAGE.MESSAGE_ID " +
@@ -129,7 +137,11 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		GET_GROUP_INFO("SELECT COMPLETE, LAST_RELEASED_SEQUENCE, CREATED_DATE, UPDATED_DATE" +
 				" from %PREFIX%MESSAGE_GROUP where GROUP_KEY = ? and REGION=?"),
 
-		GET_MESSAGE("SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES from %PREFIX%MESSAGE where MESSAGE_ID=? and REGION=?"),
+		GET_GROUP_METADATA("SELECT g.COMPLETE, g.LAST_RELEASED_SEQUENCE, g.CREATED_DATE, g.UPDATED_DATE, " +
+				"(SELECT COUNT(MESSAGE_ID) from %PREFIX%GROUP_TO_MESSAGE where GROUP_KEY = g.GROUP_KEY and REGION = g.REGION) as MESSAGE_COUNT" +
+				" from %PREFIX%MESSAGE_GROUP g where g.GROUP_KEY = ? and g.REGION=?"),
+
+		GET_MESSAGE("SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES%INLINE_COLUMN% from %PREFIX%MESSAGE where MESSAGE_ID=? and REGION=?"),
 
 		GET_GROUP_CREATED_DATE("SELECT CREATED_DATE from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=?"),
 
@@ -137,8 +149,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 		DELETE_MESSAGE("DELETE from %PREFIX%MESSAGE where MESSAGE_ID=? and REGION=?"),
 
-		CREATE_MESSAGE("INSERT into %PREFIX%MESSAGE(MESSAGE_ID, REGION, CREATED_DATE, MESSAGE_BYTES)"
-				+ " values (?, ?, ?, ?)"),
+		CREATE_MESSAGE("INSERT into %PREFIX%MESSAGE(MESSAGE_ID, REGION, CREATED_DATE, MESSAGE_BYTES%INLINE_COLUMN%)"
+				+ " values (?, ?, ?, ?%INLINE_PARAMETER%)"),
 
 		COUNT_ALL_GROUPS("SELECT COUNT(GROUP_KEY) from %PREFIX%MESSAGE_GROUP where REGION=?"),
 
@@ -192,10 +204,18 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	private volatile LobHandler lobHandler = new DefaultLobHandler();
 
+	private volatile int maxInlineSize;
+
 	private volatile MessageMapper mapper = new MessageMapper();
 
 	private volatile Map<Query, String> queryCache = new HashMap<Query, String>();
 
+	private volatile boolean lazyLoadMessageGroups;
+
+	private volatile boolean cacheGroupMetadata;
+
+	private final ConcurrentMap<String, GroupMetadata> groupMetadataCache = new ConcurrentHashMap<String, GroupMetadata>();
+
 	/**
 	 * Convenient constructor for configuration use.
 	 */
@@ -266,7 +286,9 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	}
 
 	/**
-	 * A converter for serializing messages to byte arrays for storage.
+	 * A converter for serializing messages to byte arrays for storage. By default, Java serialization is used;
+	 * consider a {@link CompactMessageSerializer}, also set as the {@link #setDeserializer(Deserializer) deserializer},
+	 * for smaller stored messages.
 	 *
 	 * @param serializer the serializer to set
 	 */
@@ -285,6 +307,54 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		this.deserializer = new DeserializingConverter((Deserializer) deserializer);
 	}
 
+	/**
+	 * Store serialized messages no larger than this number of bytes in the <code>MESSAGE_INLINE</code>
+	 * (<code>VARBINARY</code> or equivalent) column, rather than as a large object in the
+	 * <code>MESSAGE_BYTES</code> column. The column must exist (it is included in the 3.0 schema
+	 * scripts) and be at least this size. Default 0 (all messages are stored in
+	 * <code>MESSAGE_BYTES</code>).
+	 *
+	 * @param maxInlineSize the maxInlineSize to set
+	 * @since 3.0
+	 */
+	public void setMaxInlineSize(int maxInlineSize) {
+		this.maxInlineSize = maxInlineSize;
+	}
+
+	/**
+	 * When true, {@link #getMessageGroup(Object)} returns a group that only reads the
+	 * group's metadata (timestamps, completion, last released sequence and size);
+	 * the messages are read, and deserialized, the first time they are requested
+	 * from the group. This allows release strategies and the reaper to examine
+	 * groups without reading all their messages. Note that a lazy group does not
+	 * read its messages until they are requested, so callers that need a snapshot
+	 * must request them before modifying the group. Default false.
+	 *
+	 * @param lazyLoadMessageGroups true to load message groups lazily.
+	 * @since 3.0
+	 */
+	public void setLazyLoadMessageGroups(boolean lazyLoadMessageGroups) {
+		this.lazyLoadMessageGroups = lazyLoadMessageGroups;
+	}
+
+	/**
+	 * When true, the metadata read for lazily loaded groups (and for
+	 * {@link #messageGroupSize(Object)}) is cached in memory and updated as this store
+	 * modifies the groups, so subsequent reads do not need to query the database.
+	 * Only enable this when this store is the only writer of its region; changes made
+	 * by other stores (or other applications) will not be visible while a group's
+	 * metadata is cached. Default false.
+	 *
+	 * @param cacheGroupMetadata true to cache group metadata.
+	 * @since 3.0
+	 */
+	public void setCacheGroupMetadata(boolean cacheGroupMetadata) {
+		this.cacheGroupMetadata = cacheGroupMetadata;
+		if (!cacheGroupMetadata) {
+			this.groupMetadataCache.clear();
+		}
+	}
+
 	/**
 	 * Check mandatory properties (data source and incrementer).
 	 *
@@ -324,50 +394,148 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	}
 
 	@Override
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public <T> Message<T> addMessage(final Message<T> message) {
+		Message<T> result = this.prepareMessageForInsert(message);
+		if (result == null) {
+			return message;
+		}
+
+		final long createdDate = (Long) result.getHeaders().get(CREATED_DATE_KEY);
+		final String messageId = getKey(result.getHeaders().getId());
+		final byte[] messageBytes = serializer.convert(result);
+
+		jdbcTemplate.update(getQuery(Query.CREATE_MESSAGE), new PreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps) throws SQLException {
+				if (logger.isDebugEnabled()){
+					logger.debug("Inserting message with id key=" + messageId);
+				}
+				ps.setString(1, messageId);
+				ps.setString(2, region);
+				ps.setTimestamp(3, new Timestamp(createdDate));
+				setMessageBytes(ps, messageBytes);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Return the message to be stored, with the saved and created date headers, or null
+	 * if the message has already been stored.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private <T> Message<T> prepareMessageForInsert(Message<T> message) {
 		if (message.getHeaders().containsKey(SAVED_KEY)) {
 			Message<T> saved = (Message<T>) getMessage(message.getHeaders().getId());
 			if (saved != null) {
 				if (saved.equals(message)) {
-					return message;
+					return null;
 				} // We need to save it under its own id
 			}
 		}
 
-		final long createdDate = System.currentTimeMillis();
+		long createdDate = System.currentTimeMillis();
 		Message<T> result = MessageBuilder.fromMessage(message).setHeader(SAVED_KEY, Boolean.TRUE)
 				.setHeader(CREATED_DATE_KEY, new Long(createdDate)).build();
 
 		Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
 		// using reflection to set ID since it is immutable through MessageHeaders
 		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		return result;
+	}
 
-		final String messageId = getKey(result.getHeaders().getId());
-		final byte[] messageBytes = serializer.convert(result);
+	@Override
+	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		final String groupKey = getKey(groupId);
+		final String messageId = getKey(message.getHeaders().getId());
+		final Timestamp updatedDate = new Timestamp(System.currentTimeMillis());
+		final Timestamp createdDate = this.createOrUpdateMessageGroup(groupKey, updatedDate);
 
-		jdbcTemplate.update(getQuery(Query.CREATE_MESSAGE), new PreparedStatementSetter() {
+		this.addMessage(message);
+
+		jdbcTemplate.update(getQuery(Query.CREATE_GROUP_TO_MESSAGE), new PreparedStatementSetter() {
 			@Override
 			public void setValues(PreparedStatement ps) throws SQLException {
 				if (logger.isDebugEnabled()){
-					logger.debug("Inserting message with id key=" + messageId);
+					logger.debug("Inserting message with id key=" + messageId + " and created date=" + createdDate);
 				}
-				ps.setString(1, messageId);
-				ps.setString(2, region);
-				ps.setTimestamp(3, new Timestamp(createdDate));
-				lobHandler.getLobCreator().setBlobAsBytes(ps, 4, messageBytes);
+				ps.setString(1, groupKey);
+				ps.setString(2, messageId);
+				ps.setString(3, region);
 			}
 		});
-		return result;
+		this.updateCachedMetadata(groupKey, 1, updatedDate.getTime(), null, null);
+		return getMessageGroup(groupId);
+
 	}
 
-	@Override
-	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+	/**
+	 * Add several messages to a group; the group is created or updated once and the
+	 * messages, and their group associations, are each inserted with a single JDBC batch.
+	 * Messages that have already been stored are not inserted again.
+	 * @param groupId The group id.
+	 * @param messages The messages.
+	 * @return The message group.
+	 * @since 3.0
+	 */
+	public MessageGroup addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages) {
 		final String groupKey = getKey(groupId);
-		final String messageId = getKey(message.getHeaders().getId());
-		boolean groupNotExist = jdbcTemplate.queryForInt(this.getQuery(Query.GROUP_EXISTS), groupKey, region) < 1;
+		Timestamp updatedDate = new Timestamp(System.currentTimeMillis());
+		this.createOrUpdateMessageGroup(groupKey, updatedDate);
+
+		final List<Message<?>> toInsert = new ArrayList<Message<?>>();
+		final List<String> messageIds = new ArrayList<String>();
+		for (Message<?> message : messages) {
+			Message<?> result = this.prepareMessageForInsert(message);
+			if (result != null) {
+				toInsert.add(result);
+			}
+			messageIds.add(getKey(message.getHeaders().getId()));
+		}
 
-		final Timestamp updatedDate = new Timestamp(System.currentTimeMillis());
+		if (toInsert.size() > 0) {
+			jdbcTemplate.batchUpdate(getQuery(Query.CREATE_MESSAGE), new BatchPreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					Message<?> message = toInsert.get(i);
+					ps.setString(1, getKey(message.getHeaders().getId()));
+					ps.setString(2, region);
+					ps.setTimestamp(3, new Timestamp((Long) message.getHeaders().get(CREATED_DATE_KEY)));
+					setMessageBytes(ps, serializer.convert(message));
+				}
+
+				@Override
+				public int getBatchSize() {
+					return toInsert.size();
+				}
+			});
+		}
+		if (logger.isDebugEnabled()){
+			logger.debug("Inserting " + messageIds.size() + " messages into group with key=" + groupKey);
+		}
+		jdbcTemplate.batchUpdate(getQuery(Query.CREATE_GROUP_TO_MESSAGE), new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setString(1, groupKey);
+				ps.setString(2, messageIds.get(i));
+				ps.setString(3, region);
+			}
+
+			@Override
+			public int getBatchSize() {
+				return messageIds.size();
+			}
+		});
+		this.updateCachedMetadata(groupKey, messageIds.size(), updatedDate.getTime(), null, null);
+		return getMessageGroup(groupId);
+	}
+
+	/**
+	 * Create the group if it does not exist, otherwise update its updated date.
+	 * @return the group's created date.
+	 */
+	private Timestamp createOrUpdateMessageGroup(String groupKey, Timestamp updatedDate) {
+		boolean groupNotExist = jdbcTemplate.queryForInt(this.getQuery(Query.GROUP_EXISTS), groupKey, region) < 1;
 
 		final Timestamp createdDate = groupNotExist ?
 				updatedDate :
@@ -384,22 +552,7 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		else {
 			this.doUpdateMessageGroup(groupKey, updatedDate);
 		}
-
-		this.addMessage(message);
-
-		jdbcTemplate.update(getQuery(Query.CREATE_GROUP_TO_MESSAGE), new PreparedStatementSetter() {
-			@Override
-			public void setValues(PreparedStatement ps) throws SQLException {
-				if (logger.isDebugEnabled()){
-					logger.debug("Inserting message with id key=" + messageId + " and created date=" + createdDate);
-				}
-				ps.setString(1, groupKey);
-				ps.setString(2, messageId);
-				ps.setString(3, region);
-			}
-		});
-		return getMessageGroup(groupId);
-
+		return createdDate;
 	}
 
 	@Override
@@ -418,12 +571,23 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	@ManagedAttribute
 	public int messageGroupSize(Object groupId) {
 		String key = getKey(groupId);
+		if (this.cacheGroupMetadata) {
+			GroupMetadata metadata = this.getGroupMetadata(key);
+			return metadata == null ? 0 : metadata.size;
+		}
 		return jdbcTemplate.queryForInt(getQuery(Query.COUNT_ALL_MESSAGES_IN_GROUP), key, region);
 	}
 
 	@Override
 	public MessageGroup getMessageGroup(Object groupId) {
 		String key = getKey(groupId);
+		if (this.lazyLoadMessageGroups) {
+			GroupMetadata metadata = this.getGroupMetadata(key);
+			if (metadata == null) {
+				return new SimpleMessageGroup(groupId);
+			}
+			return new LazyMessageGroup(groupId, key, metadata);
+		}
 		final AtomicReference<Date> createDate = new AtomicReference<Date>();
 		final AtomicReference<Date> updateDate = new AtomicReference<Date>();
 		final AtomicReference<Boolean> completeFlag = new AtomicReference<Boolean>();
@@ -471,7 +635,7 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		final String groupKey = getKey(groupId);
 		final String messageId = getKey(messageToRemove.getHeaders().getId());
 
-		jdbcTemplate.update(getQuery(Query.REMOVE_MESSAGE_FROM_GROUP), new PreparedStatementSetter() {
+		int removed = jdbcTemplate.update(getQuery(Query.REMOVE_MESSAGE_FROM_GROUP), new PreparedStatementSetter() {
 			@Override
 			public void setValues(PreparedStatement ps) throws SQLException {
 				if (logger.isDebugEnabled()){
@@ -483,7 +647,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 			}
 		});
 		this.removeMessage(messageToRemove.getHeaders().getId());
-		this.updateMessageGroup(groupKey);
+		long updatedDate = this.updateMessageGroup(groupKey);
+		this.updateCachedMetadata(groupKey, -removed, updatedDate, null, null);
 		return getMessageGroup(groupId);
 	}
 
@@ -517,6 +682,7 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 				ps.setString(2, region);
 			}
 		});
+		this.evictCachedMetadata(groupKey);
 	}
 
 	@Override
@@ -535,6 +701,7 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 				ps.setString(3, region);
 			}
 		});
+		this.updateCachedMetadata(groupKey, 0, updatedDate, Boolean.TRUE, null);
 	}
 
 	@Override
@@ -555,7 +722,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 				ps.setString(4, region);
 			}
 		});
-		this.updateMessageGroup(groupKey);
+		long lastModified = this.updateMessageGroup(groupKey);
+		this.updateCachedMetadata(groupKey, 0, lastModified, null, sequenceNumber);
 	}
 
 	@Override
@@ -607,12 +775,33 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 		if (query == null) {
 			query = StringUtils.replace(base.getSql(), "%PREFIX%", tablePrefix);
+			boolean inline = this.maxInlineSize > 0;
+			query = StringUtils.replace(query, "%INLINE_COLUMN%", inline ? ", MESSAGE_INLINE" : "");
+			query = StringUtils.replace(query, "%INLINE_PARAMETER%", inline ? ", ?" : "");
 			queryCache.put(base, query);
 		}
 
 		return query;
 	}
 
+	/**
+	 * Set the serialized message as parameter 4 (<code>MESSAGE_BYTES</code>) or, if it is small
+	 * enough, parameter 5 (<code>MESSAGE_INLINE</code>).
+	 */
+	private void setMessageBytes(PreparedStatement ps, byte[] messageBytes) throws SQLException {
+		if (this.maxInlineSize <= 0) {
+			lobHandler.getLobCreator().setBlobAsBytes(ps, 4, messageBytes);
+		}
+		else if (messageBytes.length <= this.maxInlineSize) {
+			lobHandler.getLobCreator().setBlobAsBytes(ps, 4, null);
+			ps.setBytes(5, messageBytes);
+		}
+		else {
+			lobHandler.getLobCreator().setBlobAsBytes(ps, 4, messageBytes);
+			ps.setNull(5, Types.VARBINARY);
+		}
+	}
+
 	/**
 	 * To be used to get a reference to JdbcOperations
 	 * in case this class is subclassed
@@ -668,18 +857,129 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		});
 	}
 
-	private void updateMessageGroup(final String groupId){
+	/**
+	 * Update the group's updated date.
+	 * @return the updated date.
+	 */
+	private long updateMessageGroup(final String groupId){
+		final long updatedDate = System.currentTimeMillis();
 		jdbcTemplate.update(getQuery(Query.UPDATE_GROUP), new PreparedStatementSetter() {
 			@Override
 			public void setValues(PreparedStatement ps) throws SQLException {
 				if (logger.isDebugEnabled()){
 					logger.debug("Updating MessageGroup: " + groupId);
 				}
-				ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+				ps.setTimestamp(1, new Timestamp(updatedDate));
 				ps.setString(2, groupId);
 				ps.setString(3, region);
 			}
 		});
+		return updatedDate;
+	}
+
+	/**
+	 * Return the group's metadata, from the cache if enabled, or null if the group
+	 * does not exist. Before reading the database, a placeholder is cached; the metadata
+	 * read only replaces it if no change was made to the group in the meantime.
+	 */
+	private GroupMetadata getGroupMetadata(String groupKey) {
+		GroupMetadata placeholder = null;
+		if (this.cacheGroupMetadata) {
+			GroupMetadata metadata = this.groupMetadataCache.get(groupKey);
+			if (metadata != null && !metadata.placeholder) {
+				return metadata;
+			}
+			if (metadata == null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+				GroupMetadata newPlaceholder = new GroupMetadata();
+				if (this.groupMetadataCache.putIfAbsent(groupKey, newPlaceholder) == null) {
+					placeholder = newPlaceholder;
+				}
+			}
+		}
+		GroupMetadata metadata = null;
+		try {
+			List<GroupMetadata> list = jdbcTemplate.query(getQuery(Query.GET_GROUP_METADATA),
+					new Object[] { groupKey, region }, new RowMapper<GroupMetadata>() {
+						@Override
+						public GroupMetadata mapRow(ResultSet rs, int rowNum) throws SQLException {
+							return new GroupMetadata(rs.getTimestamp("CREATED_DATE").getTime(),
+									rs.getTimestamp("UPDATED_DATE").getTime(), rs.getInt("COMPLETE") > 0,
+									rs.getInt("LAST_RELEASED_SEQUENCE"), rs.getInt("MESSAGE_COUNT"));
+						}
+					});
+			if (!list.isEmpty()) {
+				metadata = list.get(0);
+			}
+		}
+		finally {
+			if (placeholder != null) {
+				if (metadata != null) {
+					this.groupMetadataCache.replace(groupKey, placeholder, metadata);
+				}
+				else {
+					this.groupMetadataCache.remove(groupKey, placeholder);
+				}
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * Apply a change made by this store to the group's cached metadata, if present; a
+	 * placeholder for a concurrent read is discarded, so the (possibly stale) metadata
+	 * read is not cached. Within a transaction, the cached metadata is discarded, because
+	 * the change is not visible to other readers until the transaction commits.
+	 */
+	private void updateCachedMetadata(final String groupKey, int sizeDelta, long lastModified, Boolean complete,
+			Integer lastReleasedSequence) {
+		if (!this.cacheGroupMetadata) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()
+				&& TransactionSynchronizationManager.isActualTransactionActive()) {
+			this.evictCachedMetadata(groupKey);
+			return;
+		}
+		GroupMetadata metadata = this.groupMetadataCache.get(groupKey);
+		while (metadata != null) {
+			if (metadata.placeholder) {
+				if (this.groupMetadataCache.remove(groupKey, metadata)) {
+					break;
+				}
+			}
+			else {
+				GroupMetadata updated = new GroupMetadata(metadata.timestamp, lastModified,
+						complete == null ? metadata.complete : complete,
+						lastReleasedSequence == null ? metadata.lastReleasedSequence : lastReleasedSequence,
+						Math.max(0, metadata.size + sizeDelta));
+				if (this.groupMetadataCache.replace(groupKey, metadata, updated)) {
+					break;
+				}
+			}
+			metadata = this.groupMetadataCache.get(groupKey);
+		}
+	}
+
+	/**
+	 * Discard the group's cached metadata and, within a transaction, discard it again
+	 * when the transaction completes, in case it was read before the commit.
+	 */
+	private void evictCachedMetadata(final String groupKey) {
+		if (!this.cacheGroupMetadata) {
+			return;
+		}
+		this.groupMetadataCache.remove(groupKey);
+		if (TransactionSynchronizationManager.isSynchronizationActive()
+				&& TransactionSynchronizationManager.isActualTransactionActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					groupMetadataCache.remove(groupKey);
+				}
+
+			});
+		}
 	}
 
 	private List<UUID> getMessageIdsForGroup(Object groupId){
@@ -703,6 +1003,149 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		return input == null ? null : UUIDConverter.getUUID(input).toString();
 	}
 
+	/**
+	 * A snapshot of a group's row in the group table, and its size.
+	 */
+	private static class GroupMetadata {
+
+		private final long timestamp;
+
+		private final long lastModified;
+
+		private final boolean complete;
+
+		private final int lastReleasedSequence;
+
+		private final int size;
+
+		private final boolean placeholder;
+
+		private GroupMetadata(long timestamp, long lastModified, boolean complete, int lastReleasedSequence, int size) {
+			this.timestamp = timestamp;
+			this.lastModified = lastModified;
+			this.complete = complete;
+			this.lastReleasedSequence = lastReleasedSequence;
+			this.size = size;
+			this.placeholder = false;
+		}
+
+		/**
+		 * Create a placeholder, cached while the metadata is being read.
+		 */
+		private GroupMetadata() {
+			this.timestamp = 0;
+			this.lastModified = 0;
+			this.complete = false;
+			this.lastReleasedSequence = 0;
+			this.size = 0;
+			this.placeholder = true;
+		}
+
+	}
+
+	/**
+	 * A {@link MessageGroup} created from the group's metadata; the messages are only
+	 * read from the database when they are first requested.
+	 */
+	private class LazyMessageGroup implements MessageGroup {
+
+		private final Object groupId;
+
+		private final String groupKey;
+
+		private final GroupMetadata metadata;
+
+		private volatile boolean complete;
+
+		private volatile Collection<Message<?>> messages;
+
+		private volatile Message<?> one;
+
+		private LazyMessageGroup(Object groupId, String groupKey, GroupMetadata metadata) {
+			this.groupId = groupId;
+			this.groupKey = groupKey;
+			this.metadata = metadata;
+			this.complete = metadata.complete;
+		}
+
+		public boolean canAdd(Message<?> message) {
+			return true;
+		}
+
+		public Collection<Message<?>> getMessages() {
+			if (this.messages == null) {
+				if (this.metadata.size == 0) {
+					this.messages = Collections.emptyList();
+				}
+				else {
+					List<Message<?>> messages = jdbcTemplate.query(getQuery(Query.LIST_MESSAGES_BY_GROUP_KEY),
+							new Object[] { this.groupKey, region }, mapper);
+					this.messages = Collections.unmodifiableCollection(messages);
+				}
+			}
+			return this.messages;
+		}
+
+		public Object getGroupId() {
+			return this.groupId;
+		}
+
+		public int getLastReleasedMessageSequenceNumber() {
+			return this.metadata.lastReleasedSequence;
+		}
+
+		public boolean isComplete() {
+			return this.complete;
+		}
+
+		public void complete() {
+			this.complete = true;
+		}
+
+		public int getSequenceSize() {
+			if (size() == 0) {
+				return 0;
+			}
+			Message<?> one = getOne();
+			return one == null ? 0 : one.getHeaders().getSequenceSize();
+		}
+
+		public int size() {
+			Collection<Message<?>> messages = this.messages;
+			return messages == null ? this.metadata.size : messages.size();
+		}
+
+		public Message<?> getOne() {
+			Collection<Message<?>> messages = this.messages;
+			if (messages != null) {
+				return messages.isEmpty() ? null : messages.iterator().next();
+			}
+			if (this.one == null && this.metadata.size > 0) {
+				this.one = doPollForMessage(this.groupKey);
+			}
+			return this.one;
+		}
+
+		public long getTimestamp() {
+			return this.metadata.timestamp;
+		}
+
+		public long getLastModified() {
+			return this.metadata.lastModified;
+		}
+
+		@Override
+		public String toString() {
+			return "LazyMessageGroup{" +
+					"groupId=" + this.groupId +
+					", size=" + size() +
+					", timestamp=" + this.metadata.timestamp +
+					", lastModified=" + this.metadata.lastModified +
+					'}';
+		}
+
+	}
+
 	/**
 	 * Convenience class to be used to unpack a message from a result set row. Uses column named in the result set to
 	 * extract the required data, so that select clause ordering is unimportant.
@@ -713,7 +1156,14 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 		@Override
 		public Message<?> mapRow(ResultSet rs, int rowNum) throws SQLException {
-			Message<?> message = (Message<?>) deserializer.convert(lobHandler.getBlobAsBytes(rs, "MESSAGE_BYTES"));
+			byte[] messageBytes = null;
+			if (maxInlineSize > 0) {
+				messageBytes = rs.getBytes("MESSAGE_INLINE");
+			}
+			if (messageBytes == null) {
+				messageBytes = lobHandler.getBlobAsBytes(rs, "MESSAGE_BYTES");
+			}
+			Message<?> message = (Message<?>) deserializer.convert(messageBytes);
 			return message;
 		}
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,31 +16,63 @@
 
 package org.springframework.integration.jdbc;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.dao.DataAccessException;
 import org.springframework.integration.Message;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.store.metadata.MetadataStore;
+import org.springframework.integration.store.metadata.SimpleMetadataStore;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 /**
  * A polling channel adapter that creates messages from the payload returned by
  * executing a select query. Optionally an update can be executed after the
  * select in order to update processed rows.
+ * <p>
+ * Alternatively, rows can be tracked with a keyset: when a {@link #setKeysetColumn(String)
+ * keysetColumn} is provided, the select query must order the rows by that column and
+ * restrict them to those after the <code>:lastKey</code> parameter, for example
+ * <code>SELECT * FROM ITEMS WHERE ID > :lastKey ORDER BY ID</code>. The value of the column
+ * in the last row read is kept as a high-water mark in a {@link MetadataStore}, so each
+ * poll reads the next page of rows (up to {@link #setMaxRowsPerPoll(int) maxRowsPerPoll})
+ * without an update query, and polling resumes from the mark after a restart. When the
+ * poll runs in a transaction, the mark is stored when the transaction commits, and
+ * reverts if it rolls back; keyset polls are therefore serialized: a poll waits until the
+ * transaction of the previous poll has completed. The keyset column must be unique; rows
+ * that share a value with the last row of a page would otherwise be skipped, so duplicate
+ * values in a page are rejected with an {@link IllegalStateException}.
  *
  * @author Jonas Partner
  * @author Dave Syer
@@ -48,6 +80,11 @@ import org.springframework.jdbc.core.namedparam.SqlParameterSource;
  */
 public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implements MessageSource<Object> {
 
+	/**
+	 * The named parameter bound to the high-water mark when using a keyset.
+	 */
+	public static final String LAST_KEY_PARAMETER = "lastKey";
+
 	private final NamedParameterJdbcOperations jdbcOperations;
 
 	private final String selectQuery;
@@ -66,6 +103,20 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 
 	private volatile int maxRowsPerPoll = 0;
 
+	private volatile int fetchSize;
+
+	private volatile String keysetColumn;
+
+	private volatile Object keysetInitialValue;
+
+	private volatile MetadataStore metadataStore;
+
+	private volatile String metadataKey;
+
+	private volatile Object highWaterMark;
+
+	private final ReentrantLock keysetLock = new ReentrantLock();
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be
 	 * obtained and the select query to execute to retrieve new rows.
@@ -127,6 +178,63 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.maxRowsPerPoll = maxRows;
 	}
 
+	/**
+	 * The JDBC fetch size hint for the select query, allowing large results to be
+	 * read from the cursor in batches rather than all at once. Default 0 (the
+	 * driver's default).
+	 *
+	 * @param fetchSize the fetch size to set
+	 * @since 3.0
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * The column that orders the rows returned by the select query; its value in the
+	 * last row read is bound to the <code>:lastKey</code> parameter of the next poll.
+	 *
+	 * @param keysetColumn the keyset column to set
+	 * @since 3.0
+	 */
+	public void setKeysetColumn(String keysetColumn) {
+		this.keysetColumn = keysetColumn;
+	}
+
+	/**
+	 * The value bound to <code>:lastKey</code> until a row has been read. Stored marks are
+	 * converted to the type of this value when they are read back from the {@link MetadataStore}.
+	 *
+	 * @param keysetInitialValue the initial value to set
+	 * @since 3.0
+	 */
+	public void setKeysetInitialValue(Object keysetInitialValue) {
+		this.keysetInitialValue = keysetInitialValue;
+	}
+
+	/**
+	 * The {@link MetadataStore} in which the keyset high-water mark is kept. By default, the
+	 * context's <code>metadataStore</code> bean is used, or an in-memory store if there is none.
+	 *
+	 * @param metadataStore the metadata store to set
+	 * @since 3.0
+	 */
+	public void setMetadataStore(MetadataStore metadataStore) {
+		Assert.notNull(metadataStore, "metadataStore must not be null");
+		this.metadataStore = metadataStore;
+	}
+
+	/**
+	 * The key of the high-water mark in the {@link MetadataStore}. Defaults to the component
+	 * type and name, and the keyset column.
+	 *
+	 * @param metadataKey the metadata key to set
+	 * @since 3.0
+	 */
+	public void setMetadataKey(String metadataKey) {
+		this.metadataKey = metadataKey;
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		super.onInit();
@@ -134,6 +242,40 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 			((ExpressionEvaluatingSqlParameterSourceFactory)this.sqlParameterSourceFactory)
 				.setBeanFactory(this.getBeanFactory());
 		}
+		if (StringUtils.hasText(this.keysetColumn)) {
+			Assert.notNull(this.keysetInitialValue, "A 'keysetInitialValue' is required when using a 'keysetColumn'");
+			if (this.metadataStore == null) {
+				BeanFactory beanFactory = this.getBeanFactory();
+				if (beanFactory != null) {
+					this.metadataStore = IntegrationContextUtils.getMetadataStore(beanFactory);
+				}
+				if (this.metadataStore == null) {
+					this.metadataStore = new SimpleMetadataStore();
+				}
+			}
+			if (this.metadataKey == null) {
+				StringBuilder metadataKeyBuilder = new StringBuilder(this.getComponentType() + ".");
+				if (StringUtils.hasText(this.getComponentName())) {
+					metadataKeyBuilder.append(this.getComponentName() + ".");
+				}
+				else if (logger.isWarnEnabled()) {
+					logger.warn("JdbcPollingChannelAdapter has no name. MetadataStore key might not be unique.");
+				}
+				metadataKeyBuilder.append(this.keysetColumn);
+				this.metadataKey = metadataKeyBuilder.toString();
+			}
+			String storedMark = this.metadataStore.get(this.metadataKey);
+			if (StringUtils.hasText(storedMark)) {
+				ConversionService conversionService = this.getConversionService();
+				if (conversionService == null) {
+					conversionService = new DefaultConversionService();
+				}
+				this.highWaterMark = conversionService.convert(storedMark, this.keysetInitialValue.getClass());
+			}
+			else {
+				this.highWaterMark = this.keysetInitialValue;
+			}
+		}
 	}
 
 	/**
@@ -156,6 +298,9 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	 * mapped results are returned.
 	 */
 	private Object poll() {
+		if (this.keysetColumn != null) {
+			return this.pollKeyset();
+		}
 		List<?> payload = doPoll(this.sqlQueryParameterSource);
 		if (payload.size() < 1) {
 			payload = null;
@@ -178,19 +323,73 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.jdbcOperations.update(this.updateSql, updateParamaterSource);
 	}
 
+	/**
+	 * Select the rows after the high-water mark and advance the mark to the last row read.
+	 * Within a transaction, the lock is held until the transaction completes, so that
+	 * concurrent polls cannot read the same page or store each other's marks.
+	 */
+	private Object pollKeyset() {
+		boolean transactional = TransactionSynchronizationManager.isSynchronizationActive()
+				&& TransactionSynchronizationManager.isActualTransactionActive();
+		boolean locked = false;
+		if (!transactional || !TransactionSynchronizationManager.hasResource(this)) {
+			this.keysetLock.lock();
+			locked = true;
+		}
+		boolean holdUntilCompletion = false;
+		try {
+			final Object lastKey = this.highWaterMark;
+			SqlParameterSource parameterSource = new KeysetSqlParameterSource(this.sqlQueryParameterSource, lastKey);
+			final List<Object> keys = new ArrayList<Object>();
+			List<?> payload = this.doPoll(parameterSource, this.createResultSetExtractor(keys));
+			if (payload.size() < 1) {
+				return null;
+			}
+			final Object newMark = keys.get(keys.size() - 1);
+			if (transactional) {
+				if (locked) {
+					TransactionSynchronizationManager.bindResource(this, lastKey);
+					TransactionSynchronizationManager.registerSynchronization(new HighWaterMarkSynchronization());
+					holdUntilCompletion = true;
+				}
+			}
+			else {
+				this.metadataStore.put(this.metadataKey, newMark.toString());
+			}
+			this.highWaterMark = newMark;
+			return payload;
+		}
+		finally {
+			if (locked && !holdUntilCompletion) {
+				this.keysetLock.unlock();
+			}
+		}
+	}
+
 	protected List<?> doPoll(SqlParameterSource sqlQueryParameterSource) {
+		return this.doPoll(sqlQueryParameterSource, this.createResultSetExtractor(null));
+	}
 
-		List<?> payload = null;
+	/**
+	 * Create an extractor that maps up to {@link #maxRowsPerPoll} rows and, if a list
+	 * is provided, adds the value of the keyset column of each row to it.
+	 */
+	private ResultSetExtractor<List<Object>> createResultSetExtractor(final List<Object> keys) {
 		final RowMapper<?> rowMapper = this.rowMapper == null ? new ColumnMapRowMapper() : this.rowMapper;
-		ResultSetExtractor<List<Object>> resultSetExtractor;
-
-		if (maxRowsPerPoll > 0) {
-			resultSetExtractor = new ResultSetExtractor<List<Object>>() {
+		if (maxRowsPerPoll > 0 || keys != null) {
+			return new ResultSetExtractor<List<Object>>() {
 				public List<Object> extractData(ResultSet rs) throws SQLException, DataAccessException {
-					List<Object> results = new ArrayList<Object>(maxRowsPerPoll);
+					List<Object> results = new ArrayList<Object>();
 					int rowNum = 0;
-					while (rs.next() && rowNum < maxRowsPerPoll) {
+					while ((maxRowsPerPoll <= 0 || rowNum < maxRowsPerPoll) && rs.next()) {
 						results.add(rowMapper.mapRow(rs, rowNum++));
+						if (keys != null) {
+							Object key = rs.getObject(keysetColumn);
+							Assert.state(key != null, "The keyset column '" + keysetColumn + "' cannot be null");
+							Assert.state(keys.isEmpty() || !key.equals(keys.get(keys.size() - 1)),
+									"The keyset column '" + keysetColumn + "' must be unique; duplicate value: " + key);
+							keys.add(key);
+						}
 					}
 					return results;
 				}
@@ -200,22 +399,134 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 			@SuppressWarnings("unchecked")
 			ResultSetExtractor<List<Object>> temp = new RowMapperResultSetExtractor<Object>(
 					(RowMapper<Object>) rowMapper);
-			resultSetExtractor = temp;
+			return temp;
 		}
+	}
+
+	private List<?> doPoll(SqlParameterSource sqlQueryParameterSource,
+			final ResultSetExtractor<List<Object>> resultSetExtractor) {
 
-		if (sqlQueryParameterSource != null) {
-			payload = this.jdbcOperations.query(this.selectQuery,
+		if (this.fetchSize > 0 || this.maxRowsPerPoll > 0) {
+			String sql = this.selectQuery;
+			Object[] parameters = new Object[0];
+			if (sqlQueryParameterSource != null) {
+				ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(this.selectQuery);
+				sql = NamedParameterUtils.substituteNamedParameters(parsedSql, sqlQueryParameterSource);
+				parameters = NamedParameterUtils.buildValueArray(parsedSql, sqlQueryParameterSource, null);
+			}
+			final Object[] args = parameters;
+			return this.jdbcOperations.getJdbcOperations().execute(sql, new PreparedStatementCallback<List<Object>>() {
+				public List<Object> doInPreparedStatement(PreparedStatement ps) throws SQLException {
+					// max rows before fetch size; some drivers require fetchSize <= maxRows
+					if (maxRowsPerPoll > 0) {
+						ps.setMaxRows(maxRowsPerPoll);
+					}
+					if (fetchSize > 0) {
+						ps.setFetchSize(maxRowsPerPoll > 0 ? Math.min(fetchSize, maxRowsPerPoll) : fetchSize);
+					}
+					for (int i = 0; i < args.length; i++) {
+						StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, args[i]);
+					}
+					ResultSet rs = ps.executeQuery();
+					try {
+						return resultSetExtractor.extractData(rs);
+					}
+					finally {
+						JdbcUtils.closeResultSet(rs);
+					}
+				}
+			});
+		}
+		else if (sqlQueryParameterSource != null) {
+			return this.jdbcOperations.query(this.selectQuery,
 					sqlQueryParameterSource, resultSetExtractor);
 		}
 		else {
-			payload = this.jdbcOperations.getJdbcOperations().query(this.selectQuery, resultSetExtractor);
+			return this.jdbcOperations.getJdbcOperations().query(this.selectQuery, resultSetExtractor);
 		}
+	}
 
-		return payload;
+	/**
+	 * @return the current keyset high-water mark, or null if a keyset is not being used.
+	 * @since 3.0
+	 */
+	public Object getHighWaterMark() {
+		return this.highWaterMark;
 	}
+
 	@Override
 	public String getComponentType(){
 		return "jdbc:inbound-channel-adapter";
 	}
 
+	/**
+	 * Adds the high-water mark to the select query's parameters.
+	 */
+	private static class KeysetSqlParameterSource implements SqlParameterSource {
+
+		private final SqlParameterSource delegate;
+
+		private final Object lastKey;
+
+		public KeysetSqlParameterSource(SqlParameterSource delegate, Object lastKey) {
+			this.delegate = delegate;
+			this.lastKey = lastKey;
+		}
+
+		public boolean hasValue(String paramName) {
+			return LAST_KEY_PARAMETER.equals(paramName)
+					|| (this.delegate != null && this.delegate.hasValue(paramName));
+		}
+
+		public Object getValue(String paramName) throws IllegalArgumentException {
+			if (LAST_KEY_PARAMETER.equals(paramName)) {
+				return this.lastKey;
+			}
+			if (this.delegate == null) {
+				throw new IllegalArgumentException("No value registered for key '" + paramName + "'");
+			}
+			return this.delegate.getValue(paramName);
+		}
+
+		public int getSqlType(String paramName) {
+			if (LAST_KEY_PARAMETER.equals(paramName) || this.delegate == null) {
+				return TYPE_UNKNOWN;
+			}
+			return this.delegate.getSqlType(paramName);
+		}
+
+		public String getTypeName(String paramName) {
+			if (LAST_KEY_PARAMETER.equals(paramName) || this.delegate == null) {
+				return null;
+			}
+			return this.delegate.getTypeName(paramName);
+		}
+
+	}
+
+	/**
+	 * Stores the high-water mark when the transaction commits; restores the mark from
+	 * the start of the transaction if it rolls back. Then allows the next poll.
+	 */
+	private class HighWaterMarkSynchronization extends TransactionSynchronizationAdapter {
+
+		@Override
+		public void afterCompletion(int status) {
+			Object markBeforeTransaction = TransactionSynchronizationManager
+					.unbindResourceIfPossible(JdbcPollingChannelAdapter.this);
+			try {
+				if (status == TransactionSynchronization.STATUS_COMMITTED) {
+					metadataStore.put(metadataKey, highWaterMark.toString());
+				}
+				else if (markBeforeTransaction != null) {
+					highWaterMark = markBeforeTransaction;
+				}
+			}
+			finally {
+				keysetLock.unlock();
+			}
+		}
+
+	}
+
 }
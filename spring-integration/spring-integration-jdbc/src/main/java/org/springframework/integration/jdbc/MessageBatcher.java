@@ -0,0 +1,337 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.support.channel.ChannelResolver;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Accumulates messages for the batching message handlers of this package and passes
+ * them to a {@link BatchExecutor} when the batch is full (by count or, optionally, by
+ * payload size).
+ * <p>
+ * When a message is added within a transaction, it goes to a batch bound to that
+ * transaction, which is executed, at the latest, just before the transaction commits
+ * (and discarded if it rolls back); a failure is thrown to the sender and rolls the
+ * transaction back. Otherwise, messages are added to a batch shared by all threads and
+ * a batch timeout bounds the time a message waits in it. The sender of a message that
+ * is in a failed shared batch may already have returned, so the failure is sent, for
+ * each such message, to the message's error channel (or the default 'errorChannel')
+ * as a {@link MessageHandlingException}; it is only logged if that is not possible.
+ *
+ * @since 3.0
+ */
+class MessageBatcher {
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final Object resourceKey;
+
+	private final BatchExecutor executor;
+
+	private volatile MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+
+	private volatile int batchSize = 1;
+
+	private volatile long batchMaxBytes;
+
+	private volatile long batchTimeout;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private final Batch sharedBatch = new Batch();
+
+	private final AtomicLong batchCount = new AtomicLong();
+
+	private final AtomicLong batchedMessageCount = new AtomicLong();
+
+	private final AtomicLong batchFailureCount = new AtomicLong();
+
+	private volatile int lastBatchSize;
+
+	private volatile long lastBatchDuration;
+
+	/**
+	 * @param resourceKey the key used to bind batches to transactions (the handler).
+	 * @param executor the executor.
+	 */
+	MessageBatcher(Object resourceKey, BatchExecutor executor) {
+		this.resourceKey = resourceKey;
+		this.executor = executor;
+	}
+
+	void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	void setBatchMaxBytes(long batchMaxBytes) {
+		this.batchMaxBytes = batchMaxBytes;
+	}
+
+	void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	boolean isBatching() {
+		return this.batchSize > 1;
+	}
+
+	/**
+	 * Complete the configuration; call from the handler's {@code onInit()}.
+	 * @param taskScheduler the scheduler for timed flushes.
+	 * @param beanFactory the bean factory used to resolve error channels; may be null.
+	 */
+	void initialize(TaskScheduler taskScheduler, BeanFactory beanFactory) {
+		if (this.batchSize > 1 && this.batchTimeout > 0) {
+			Assert.notNull(taskScheduler, "A task scheduler is required when using a 'batchTimeout'");
+		}
+		this.taskScheduler = taskScheduler;
+		if (beanFactory != null) {
+			this.errorHandler = new MessagePublishingErrorHandler(new OptionalChannelResolver(beanFactory));
+		}
+	}
+
+	void add(Message<?> message) {
+		long bytes = this.batchMaxBytes > 0 ? this.sizeOf(message.getPayload()) : 0;
+		if (TransactionSynchronizationManager.isSynchronizationActive()
+				&& TransactionSynchronizationManager.isActualTransactionActive()) {
+			Batch batch = (Batch) TransactionSynchronizationManager.getResource(this.resourceKey);
+			if (batch == null) {
+				batch = new Batch();
+				TransactionSynchronizationManager.bindResource(this.resourceKey, batch);
+				TransactionSynchronizationManager.registerSynchronization(new BatchSynchronization(batch));
+			}
+			batch.add(message, bytes);
+			if (this.isFull(batch)) {
+				this.execute(batch.drain());
+			}
+			return;
+		}
+		List<Message<?>> batchToExecute = null;
+		synchronized (this.sharedBatch) {
+			this.sharedBatch.add(message, bytes);
+			if (this.isFull(this.sharedBatch)) {
+				batchToExecute = this.sharedBatch.drain();
+			}
+			else if (this.sharedBatch.size() == 1 && this.batchTimeout > 0) {
+				this.taskScheduler.schedule(new Runnable() {
+					public void run() {
+						try {
+							flush();
+						}
+						catch (Exception e) {
+							// already sent to the error channel(s)
+						}
+					}
+				}, new Date(System.currentTimeMillis() + this.batchTimeout));
+			}
+		}
+		if (batchToExecute != null) {
+			this.executeShared(batchToExecute, message);
+		}
+	}
+
+	/**
+	 * Execute the shared batch; the failure is sent to the error channel(s) and rethrown.
+	 */
+	void flush() {
+		List<Message<?>> batchToExecute;
+		synchronized (this.sharedBatch) {
+			batchToExecute = this.sharedBatch.drain();
+		}
+		if (batchToExecute.size() > 0) {
+			this.executeShared(batchToExecute, null);
+		}
+	}
+
+	private void executeShared(List<Message<?>> messages, Message<?> currentMessage) {
+		try {
+			this.execute(messages);
+		}
+		catch (RuntimeException e) {
+			for (Message<?> message : messages) {
+				if (message != currentMessage) {
+					this.handleError(message, e);
+				}
+			}
+			throw e;
+		}
+	}
+
+	private void handleError(Message<?> message, RuntimeException e) {
+		try {
+			this.errorHandler.handleError(new MessageHandlingException(message, "Failed to execute batch", e));
+		}
+		catch (RuntimeException e2) {
+			logger.error("Failed to execute batch, and could not send the failure for message: " + message, e);
+		}
+	}
+
+	private void execute(List<Message<?>> messages) {
+		long start = System.currentTimeMillis();
+		try {
+			this.executor.executeBatch(messages);
+		}
+		catch (RuntimeException e) {
+			this.batchFailureCount.incrementAndGet();
+			throw e;
+		}
+		this.lastBatchDuration = System.currentTimeMillis() - start;
+		this.lastBatchSize = messages.size();
+		this.batchCount.incrementAndGet();
+		this.batchedMessageCount.addAndGet(messages.size());
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executed batch of " + messages.size() + " messages in " + this.lastBatchDuration + "ms");
+		}
+	}
+
+	private boolean isFull(Batch batch) {
+		return batch.size() >= this.batchSize || (this.batchMaxBytes > 0 && batch.bytes >= this.batchMaxBytes);
+	}
+
+	private long sizeOf(Object payload) {
+		if (payload instanceof byte[]) {
+			return ((byte[]) payload).length;
+		}
+		else if (payload instanceof String) {
+			return ((String) payload).length() * 2;
+		}
+		return 0;
+	}
+
+	long getBatchCount() {
+		return this.batchCount.get();
+	}
+
+	long getBatchedMessageCount() {
+		return this.batchedMessageCount.get();
+	}
+
+	long getBatchFailureCount() {
+		return this.batchFailureCount.get();
+	}
+
+	int getLastBatchSize() {
+		return this.lastBatchSize;
+	}
+
+	long getLastBatchDuration() {
+		return this.lastBatchDuration;
+	}
+
+	int getPendingBatchSize() {
+		synchronized (this.sharedBatch) {
+			return this.sharedBatch.size();
+		}
+	}
+
+	/**
+	 * Executes a batch of messages.
+	 */
+	interface BatchExecutor {
+
+		void executeBatch(List<Message<?>> messages);
+
+	}
+
+	/**
+	 * Resolves channel names to null, rather than failing, when there is no such channel
+	 * (for example, when there is no 'errorChannel'), so that the error channel header of
+	 * a message is still honored.
+	 */
+	private static class OptionalChannelResolver implements ChannelResolver {
+
+		private final BeanFactory beanFactory;
+
+		public OptionalChannelResolver(BeanFactory beanFactory) {
+			this.beanFactory = beanFactory;
+		}
+
+		public MessageChannel resolveChannelName(String name) {
+			if (this.beanFactory.containsBean(name)) {
+				return this.beanFactory.getBean(name, MessageChannel.class);
+			}
+			return null;
+		}
+
+	}
+
+	private static class Batch {
+
+		private List<Message<?>> messages = new ArrayList<Message<?>>();
+
+		private long bytes;
+
+		void add(Message<?> message, long bytes) {
+			this.messages.add(message);
+			this.bytes += bytes;
+		}
+
+		int size() {
+			return this.messages.size();
+		}
+
+		List<Message<?>> drain() {
+			List<Message<?>> drained = this.messages;
+			this.messages = new ArrayList<Message<?>>();
+			this.bytes = 0;
+			return drained;
+		}
+
+	}
+
+	/**
+	 * Executes a transaction's batch just before the transaction commits.
+	 */
+	private class BatchSynchronization extends TransactionSynchronizationAdapter {
+
+		private final Batch batch;
+
+		public BatchSynchronization(Batch batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			List<Message<?>> batchToExecute = this.batch.drain();
+			if (batchToExecute.size() > 0) {
+				execute(batchToExecute);
+			}
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(resourceKey);
+		}
+
+	}
+
+}
@@ -13,10 +13,13 @@
 
 package org.springframework.integration.jdbc;
 
+import java.sql.CallableStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -26,6 +29,7 @@ import javax.sql.DataSource;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.expression.BeanResolver;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
@@ -35,11 +39,13 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.jdbc.storedproc.ProcedureParameter;
+import org.springframework.jdbc.core.CallableStatementCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SqlInOutParameter;
 import org.springframework.jdbc.core.SqlOutParameter;
 import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcCall;
 import org.springframework.jdbc.core.simple.SimpleJdbcCallOperations;
@@ -228,7 +234,7 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 
 	private SimpleJdbcCall createSimpleJdbcCall(String storedProcedureName) {
 
-		final SimpleJdbcCall simpleJdbcCall = new SimpleJdbcCall(this.dataSource);
+		final SimpleJdbcCall simpleJdbcCall = new BatchSimpleJdbcCall(this.dataSource);
 
 		if (this.ignoreColumnMetaData) {
 			simpleJdbcCall.withoutProcedureColumnMetaDataAccess();
@@ -279,20 +285,59 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 	public Map<String, Object> executeStoredProcedure(Message<?> message) {
 
 		Assert.notNull(message, "The message parameter must not be null.");
-		Assert.notNull(usePayloadAsParameterSource, "Property usePayloadAsParameterSource "
-												  + "was Null. Did you call afterPropertiesSet()?");
 
-		final Object input;
+		return executeStoredProcedureInternal(getParameterSourceInput(message), evaluateExpression(message));
+
+	}
 
-		if (usePayloadAsParameterSource) {
-			input = message.getPayload();
+	/**
+	 * Execute a Stored Procedure once for each {@link Message}, using a single JDBC
+	 * batch for each procedure name. Only Stored Procedures with just IN parameters, and
+	 * that return no results, can be executed in a batch.
+	 *
+	 * @param messages The messages used to extract parameters for the stored procedure.
+	 * @return The update counts, in the same order as the messages.
+	 * @since 3.0
+	 */
+	public int[] executeStoredProcedureBatch(List<Message<?>> messages) {
+
+		Assert.notNull(messages, "The messages parameter must not be null.");
+		Assert.state(!this.isFunction && !this.returnValueRequired && this.returningResultSetRowMappers.isEmpty(),
+				"Stored Functions, return values and result sets cannot be used with a batch.");
+
+		final Map<String, List<Integer>> indexesByProcedureName = new LinkedHashMap<String, List<Integer>>();
+		for (int i = 0; i < messages.size(); i++) {
+			String storedProcedureName = evaluateExpression(messages.get(i));
+			List<Integer> indexes = indexesByProcedureName.get(storedProcedureName);
+			if (indexes == null) {
+				indexes = new ArrayList<Integer>();
+				indexesByProcedureName.put(storedProcedureName, indexes);
+			}
+			indexes.add(i);
 		}
-		else {
-			input = message;
+
+		int[] updateCounts = new int[messages.size()];
+		for (Entry<String, List<Integer>> entry : indexesByProcedureName.entrySet()) {
+			List<SqlParameterSource> parameterSources = new ArrayList<SqlParameterSource>(entry.getValue().size());
+			for (Integer index : entry.getValue()) {
+				parameterSources.add(sqlParameterSourceFactory.createParameterSource(
+						getParameterSourceInput(messages.get(index))));
+			}
+			BatchSimpleJdbcCall batchJdbcCall =
+					(BatchSimpleJdbcCall) this.jdbcCallOperationsCache.getUnchecked(entry.getKey());
+			int[] batchUpdateCounts = batchJdbcCall.executeBatch(parameterSources);
+			for (int i = 0; i < batchUpdateCounts.length; i++) {
+				updateCounts[entry.getValue().get(i)] = batchUpdateCounts[i];
+			}
 		}
+		return updateCounts;
 
-		return executeStoredProcedureInternal(input, evaluateExpression(message));
+	}
 
+	private Object getParameterSourceInput(Message<?> message) {
+		Assert.notNull(usePayloadAsParameterSource, "Property usePayloadAsParameterSource "
+												  + "was Null. Did you call afterPropertiesSet()?");
+		return usePayloadAsParameterSource ? message.getPayload() : message;
 	}
 
 	private String evaluateExpression(Message<?> message) {
@@ -599,6 +644,27 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 		return Collections.unmodifiableMap(cacheStatistics);
 	}
 
+	/**
+	 * @return the number of times a {@link SimpleJdbcCallOperations} (and its procedure
+	 * metadata) was found in the {@link StoredProcExecutor#jdbcCallOperationsCache}.
+	 * @since 3.0
+	 */
+	@ManagedMetric
+	public long getJdbcCallOperationsCacheHitCount() {
+		return this.jdbcCallOperationsCache.stats().hitCount();
+	}
+
+	/**
+	 * @return the number of times a {@link SimpleJdbcCallOperations} had to be created,
+	 * and its procedure metadata resolved, because it was not in the
+	 * {@link StoredProcExecutor#jdbcCallOperationsCache}.
+	 * @since 3.0
+	 */
+	@ManagedMetric
+	public long getJdbcCallOperationsCacheMissCount() {
+		return this.jdbcCallOperationsCache.stats().missCount();
+	}
+
 	/**
 	 * Defines the maximum number of {@link SimpleJdbcCallOperations}
 	 * ({@link SimpleJdbcCall}) instances to be held by
@@ -626,4 +692,50 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 		this.beanFactory = beanFactory;
 	}
 
+	/**
+	 * A {@link SimpleJdbcCall} that can also execute the call for several sets of
+	 * parameters with a single JDBC batch on one {@link CallableStatement}.
+	 */
+	private static class BatchSimpleJdbcCall extends SimpleJdbcCall {
+
+		public BatchSimpleJdbcCall(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		public int[] executeBatch(List<SqlParameterSource> parameterSources) {
+			checkCompiled();
+			final List<SqlParameter> callParameters = getCallParameters();
+			for (SqlParameter callParameter : callParameters) {
+				if (callParameter instanceof SqlOutParameter || callParameter.isResultsParameter()) {
+					throw new InvalidDataAccessApiUsageException("Stored Procedure '" + getProcedureName()
+							+ "' cannot be executed in a batch because it has the OUT parameter '"
+							+ callParameter.getName() + "'");
+				}
+			}
+			final List<Map<String, Object>> parameterValues = new ArrayList<Map<String, Object>>(parameterSources.size());
+			for (SqlParameterSource parameterSource : parameterSources) {
+				parameterValues.add(matchInParameterValuesWithCallParameters(parameterSource));
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Executing batch of " + parameterValues.size() + " calls: " + getCallString());
+			}
+			return getJdbcTemplate().execute(getCallString(), new CallableStatementCallback<int[]>() {
+
+				public int[] doInCallableStatement(CallableStatement cs) throws SQLException {
+					for (Map<String, Object> values : parameterValues) {
+						for (int i = 0; i < callParameters.size(); i++) {
+							SqlParameter callParameter = callParameters.get(i);
+							StatementCreatorUtils.setParameterValue(cs, i + 1, callParameter,
+									values.get(callParameter.getName()));
+						}
+						cs.addBatch();
+					}
+					return cs.executeBatch();
+				}
+
+			});
+		}
+
+	}
+
 }
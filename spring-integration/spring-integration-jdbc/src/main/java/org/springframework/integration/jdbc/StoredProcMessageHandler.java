@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -18,6 +18,7 @@ import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.expression.Expression;
 import org.springframework.integration.Message;
@@ -26,6 +27,8 @@ import org.springframework.integration.jdbc.storedproc.ProcedureParameter;
 import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.simple.SimpleJdbcCall;
 import org.springframework.jdbc.core.simple.SimpleJdbcCallOperations;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.util.Assert;
 
 
@@ -48,13 +51,25 @@ import org.springframework.util.Assert;
  * SQL function calls. If you believe there are valid use-cases for that, please file a
  * feature request at http://jira.springsource.org.
  *
+ * When the {@link #setBatchSize(int) batchSize} is greater than 1, messages are accumulated
+ * and the Stored Procedure is called for all of them with a single JDBC batch when the batch
+ * is full, in the same way as {@link JdbcMessageHandler} executes its updates.
+ *
  * @author Gunnar Hillert
  * @since 2.1
  */
-public class StoredProcMessageHandler extends AbstractMessageHandler implements InitializingBean {
+public class StoredProcMessageHandler extends AbstractMessageHandler implements InitializingBean, DisposableBean {
 
 	private final StoredProcExecutor executor;
 
+	private final MessageBatcher batcher = new MessageBatcher(this, new MessageBatcher.BatchExecutor() {
+
+		public void executeBatch(List<Message<?>> messages) {
+			executor.executeStoredProcedureBatch(messages);
+		}
+
+	});
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be
 	 * obtained and the name of the stored procedure or function to
@@ -98,8 +113,42 @@ public class StoredProcMessageHandler extends AbstractMessageHandler implements
 	@Override
 	protected void onInit() throws Exception {
 		super.onInit();
+		this.batcher.initialize(this.getTaskScheduler(), this.getBeanFactory());
 	};
 
+	/**
+	 * The number of messages to accumulate before calling the Stored Procedure for
+	 * all of them with a single JDBC batch. Default 1 (no batching). Only Stored
+	 * Procedures with just IN parameters can be called in a batch.
+	 * @param batchSize the batchSize to set
+	 * @since 3.0
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batcher.setBatchSize(batchSize);
+	}
+
+	/**
+	 * When batching, also execute the batch when the total size of the accumulated payloads
+	 * reaches this number of bytes. Only <code>byte[]</code> and <code>String</code> payloads
+	 * (2 bytes per character) are counted. Default 0 (no limit).
+	 * @param batchMaxBytes the batchMaxBytes to set
+	 * @since 3.0
+	 */
+	public void setBatchMaxBytes(long batchMaxBytes) {
+		this.batcher.setBatchMaxBytes(batchMaxBytes);
+	}
+
+	/**
+	 * When batching outside of a transaction, the maximum time (milliseconds) a message waits
+	 * before the batch is executed, even if it is not full. Requires a task scheduler.
+	 * Default 0 (wait until the batch is full, or {@link #flush()} is called).
+	 * @param batchTimeout the batchTimeout to set
+	 * @since 3.0
+	 */
+	public void setBatchTimeout(long batchTimeout) {
+		this.batcher.setBatchTimeout(batchTimeout);
+	}
+
 	/**
 	 * Executes the Stored procedure, delegates to executeStoredProcedure(...).
 	 * Any return values from the Stored procedure are ignored.
@@ -109,6 +158,11 @@ public class StoredProcMessageHandler extends AbstractMessageHandler implements
 	@Override
 	protected void handleMessageInternal(Message<?> message) {
 
+		if (this.batcher.isBatching()) {
+			this.batcher.add(message);
+			return;
+		}
+
 		Map<String, Object> resultMap = executor.executeStoredProcedure(message);
 
 		if (logger.isDebugEnabled()) {
@@ -122,6 +176,77 @@ public class StoredProcMessageHandler extends AbstractMessageHandler implements
 
 	}
 
+	/**
+	 * Execute the calls for any messages accumulated in the batch shared by non-transactional
+	 * senders. Messages in batches bound to transactions are not affected.
+	 * @since 3.0
+	 */
+	@ManagedOperation
+	public void flush() {
+		this.batcher.flush();
+	}
+
+	/**
+	 * Executes any messages remaining in the shared batch.
+	 */
+	public void destroy() throws Exception {
+		this.flush();
+	}
+
+	/**
+	 * @return the number of batches executed.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getBatchCount() {
+		return this.batcher.getBatchCount();
+	}
+
+	/**
+	 * @return the number of messages handled by batches.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getBatchedMessageCount() {
+		return this.batcher.getBatchedMessageCount();
+	}
+
+	/**
+	 * @return the number of batches that failed.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getBatchFailureCount() {
+		return this.batcher.getBatchFailureCount();
+	}
+
+	/**
+	 * @return the number of messages in the last batch executed.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public int getLastBatchSize() {
+		return this.batcher.getLastBatchSize();
+	}
+
+	/**
+	 * @return the time (milliseconds) taken to execute the last batch.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getLastBatchDuration() {
+		return this.batcher.getLastBatchDuration();
+	}
+
+	/**
+	 * @return the number of messages waiting in the batch shared by non-transactional senders.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public int getPendingBatchSize() {
+		return this.batcher.getPendingBatchSize();
+	}
+
 	/**
 	 * The name of the Stored Procedure or Stored Function to be executed.
 	 * If {@link StoredProcExecutor#isFunction} is set to "true", then this
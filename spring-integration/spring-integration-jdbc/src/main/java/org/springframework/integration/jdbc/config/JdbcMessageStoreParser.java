@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -61,6 +61,9 @@ public class JdbcMessageStoreParser extends AbstractBeanDefinitionParser {
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "deserializer");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "table-prefix", "tablePrefix");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "region", "region");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "max-inline-size");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "lazy-load-message-groups");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "cache-group-metadata");
 
 		return builder.getBeanDefinition();
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -76,6 +76,10 @@ public class JdbcPollingChannelAdapterParser extends AbstractPollingInboundChann
 			builder.addPropertyValue("updateSql", update);
 		}
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "update-per-row");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "fetch-size");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "keyset-column");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "keyset-initial-value");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "metadata-store");
 		return builder.getBeanDefinition();
 	}
 
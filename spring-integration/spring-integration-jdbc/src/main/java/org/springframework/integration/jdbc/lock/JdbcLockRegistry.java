@@ -0,0 +1,533 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.jdbc.lock;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.integration.util.LockRegistry;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@link LockRegistry} that coordinates several application instances (for example
+ * aggregators sharing a {@code JdbcMessageStore}) using rows in the <code>INT_LOCK</code>
+ * table; see the <code>schema-*.sql</code> scripts.
+ * <p>
+ * A lock is held by an instance while it owns the row for the lock key; a row that is older
+ * than the {@link #setTimeToLive(long) timeToLive} is considered expired (its holder has
+ * presumably failed) and may be taken over by another instance, so the instances' clocks
+ * should be synchronized.
+ * <p>
+ * While a lock is held, its row is renewed every third of the time to live (on a
+ * {@link TaskScheduler} thread), so a lock may be held for longer than the time to live
+ * while the instance is running. If a renewal finds that the lock has been taken over
+ * (for example, because the database was unavailable for longer than the time to live),
+ * the loss is logged and {@link Lock#unlock()} throws an {@link IllegalStateException}.
+ * <p>
+ * Each lock is also backed by a local {@link ReentrantLock}, so threads in the same instance
+ * wait for each other without polling the database, and re-entrant acquisitions by the
+ * owning thread do not access the database at all. Each lock object identifies its row with
+ * its own owner id, so a lock obtained again after it was discarded by
+ * {@link #expireUnusedOlderThan(long)} cannot be held at the same time as the original.
+ * <p>
+ * Obtaining a free lock inserts its row. When the lock is released, the row is kept, leased
+ * to the lock object but marked as expired, so that any instance can take it over; obtaining
+ * the lock again in the same instance then only renews the row, unless it has been taken over
+ * meanwhile. The rows are deleted when the locks are discarded by
+ * {@link #expireUnusedOlderThan(long)}.
+ * <p>
+ * The statements are executed in their own transactions (propagation
+ * <code>REQUIRES_NEW</code>), so that a lock is visible to other instances as soon as it is
+ * obtained, and a surrounding transaction that rolls back does not release it; this needs a
+ * second connection while a transaction is active. When constructed with
+ * {@link JdbcOperations}, provide a {@link #setTransactionManager(PlatformTransactionManager)
+ * transactionManager}; otherwise, the statements participate in any surrounding transaction.
+ *
+ * @since 3.0
+ */
+public class JdbcLockRegistry implements LockRegistry, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(JdbcLockRegistry.class);
+
+	/**
+	 * Default value for the table prefix property.
+	 */
+	public static final String DEFAULT_TABLE_PREFIX = "INT_";
+
+	/**
+	 * Default value for the time to live property.
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 10000;
+
+	private static final String RENEW_QUERY = "UPDATE %PREFIX%LOCK set CREATED_DATE=? " +
+			"where REGION=? and LOCK_KEY=? and CLIENT_ID=?";
+
+	private static final String TAKE_EXPIRED_QUERY = "UPDATE %PREFIX%LOCK set CLIENT_ID=?, CREATED_DATE=? " +
+			"where REGION=? and LOCK_KEY=? and CREATED_DATE<?";
+
+	private static final String INSERT_QUERY = "INSERT into %PREFIX%LOCK (REGION, LOCK_KEY, CLIENT_ID, CREATED_DATE) " +
+			"values (?, ?, ?, ?)";
+
+	private static final String RELEASE_QUERY = "UPDATE %PREFIX%LOCK set CREATED_DATE=? " +
+			"where REGION=? and LOCK_KEY=? and CLIENT_ID=?";
+
+	private static final String DELETE_QUERY = "DELETE from %PREFIX%LOCK where REGION=? and LOCK_KEY=? and CLIENT_ID=?";
+
+	/*
+	 * The CREATED_DATE of a released row; any instance considers it expired.
+	 */
+	private static final long RELEASED_DATE = 0;
+
+	private final JdbcOperations jdbcTemplate;
+
+	private volatile TransactionTemplate transactionTemplate;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ThreadPoolTaskScheduler defaultTaskScheduler;
+
+	private final ConcurrentMap<String, JdbcLock> locks = new ConcurrentHashMap<String, JdbcLock>();
+
+	private volatile String region = "DEFAULT";
+
+	private volatile String tablePrefix = DEFAULT_TABLE_PREFIX;
+
+	private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	private volatile long idleBetweenTries = 100;
+
+	public JdbcLockRegistry(DataSource dataSource) {
+		Assert.notNull(dataSource, "'dataSource' cannot be null");
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.setTransactionManager(new DataSourceTransactionManager(dataSource));
+	}
+
+	public JdbcLockRegistry(JdbcOperations jdbcOperations) {
+		Assert.notNull(jdbcOperations, "'jdbcOperations' cannot be null");
+		this.jdbcTemplate = jdbcOperations;
+	}
+
+	/**
+	 * Locks in different regions are independent; use a region to separate locks used by
+	 * different applications sharing the same table. Default "DEFAULT".
+	 * @param region the region.
+	 */
+	public void setRegion(String region) {
+		Assert.hasText(region, "Region must not be null or empty.");
+		this.region = region;
+	}
+
+	/**
+	 * Public setter for the table prefix property. This will be prefixed to the
+	 * <code>LOCK</code> table name. Defaults to {@link #DEFAULT_TABLE_PREFIX}.
+	 * @param tablePrefix the tablePrefix to set
+	 */
+	public void setTablePrefix(String tablePrefix) {
+		this.tablePrefix = tablePrefix;
+	}
+
+	/**
+	 * The time (milliseconds) after which a lock that has been neither released nor renewed
+	 * is considered expired (for example, because its holder has failed), and may be obtained
+	 * by another instance. Default {@link #DEFAULT_TIME_TO_LIVE}.
+	 * @param timeToLive the timeToLive.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be greater than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * The time (milliseconds) to wait between attempts to obtain a lock held by another
+	 * instance. Default 100.
+	 * @param idleBetweenTries the idleBetweenTries.
+	 */
+	public void setIdleBetweenTries(long idleBetweenTries) {
+		Assert.isTrue(idleBetweenTries > 0, "'idleBetweenTries' must be greater than 0");
+		this.idleBetweenTries = idleBetweenTries;
+	}
+
+	/**
+	 * The transaction manager used to execute the statements in their own transactions;
+	 * by default, a {@link DataSourceTransactionManager} when constructed with a
+	 * {@link DataSource}.
+	 * @param transactionManager the transactionManager.
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		Assert.notNull(transactionManager, "'transactionManager' cannot be null");
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	/**
+	 * The scheduler used to renew held locks. By default, a scheduler with a single daemon
+	 * thread is created when a lock is first obtained, and shut down when the registry is
+	 * destroyed.
+	 * @param taskScheduler the taskScheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "'taskScheduler' cannot be null");
+		this.taskScheduler = taskScheduler;
+	}
+
+	public Lock obtain(Object lockKey) {
+		Assert.notNull(lockKey, "'lockKey' must not be null");
+		String key = UUIDConverter.getUUID(lockKey).toString();
+		JdbcLock lock = this.locks.get(key);
+		if (lock == null) {
+			lock = new JdbcLock(key);
+			JdbcLock existing = this.locks.putIfAbsent(key, lock);
+			if (existing != null) {
+				lock = existing;
+			}
+		}
+		lock.lastUsed = System.currentTimeMillis();
+		return lock;
+	}
+
+	/**
+	 * Remove the local locks that are not held and were last used more than age
+	 * milliseconds ago, and delete the rows they keep; the registry keeps a local
+	 * lock for each key, so call this periodically if many different keys are used.
+	 * @param age the age (milliseconds).
+	 */
+	public void expireUnusedOlderThan(long age) {
+		long now = System.currentTimeMillis();
+		Iterator<JdbcLock> iterator = this.locks.values().iterator();
+		while (iterator.hasNext()) {
+			JdbcLock lock = iterator.next();
+			if (now - lock.lastUsed > age && !lock.localLock.hasQueuedThreads() && lock.localLock.tryLock()) {
+				try {
+					if (lock.localLock.getHoldCount() == 1) {
+						iterator.remove();
+						lock.discardRow();
+					}
+				}
+				finally {
+					lock.localLock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Shut down the default task scheduler, if it was created.
+	 */
+	public void destroy() {
+		if (this.defaultTaskScheduler != null) {
+			this.defaultTaskScheduler.destroy();
+		}
+	}
+
+	private TaskScheduler getTaskScheduler() {
+		if (this.taskScheduler == null) {
+			synchronized (this) {
+				if (this.taskScheduler == null) {
+					ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+					scheduler.setThreadNamePrefix("jdbcLockRegistry-");
+					scheduler.setDaemon(true);
+					scheduler.afterPropertiesSet();
+					this.defaultTaskScheduler = scheduler;
+					this.taskScheduler = scheduler;
+				}
+			}
+		}
+		return this.taskScheduler;
+	}
+
+	private int update(String query, final Object... args) {
+		final String sql = StringUtils.replace(query, "%PREFIX%", this.tablePrefix);
+		if (this.transactionTemplate == null) {
+			return this.jdbcTemplate.update(sql, args);
+		}
+		return this.transactionTemplate.execute(new TransactionCallback<Integer>() {
+
+			public Integer doInTransaction(TransactionStatus status) {
+				return jdbcTemplate.update(sql, args);
+			}
+
+		});
+	}
+
+	private final class JdbcLock implements Lock {
+
+		private final String key;
+
+		private final String ownerId = UUID.randomUUID().toString();
+
+		private final ReentrantLock localLock = new ReentrantLock();
+
+		private volatile long lastUsed = System.currentTimeMillis();
+
+		/*
+		 * True while the row may be leased to this lock, when held or after it was released;
+		 * guarded by the local lock.
+		 */
+		private boolean leased;
+
+		private volatile boolean held;
+
+		private volatile boolean lost;
+
+		private volatile ScheduledFuture<?> renewal;
+
+		private JdbcLock(String key) {
+			this.key = key;
+		}
+
+		public void lock() {
+			this.localLock.lock();
+			boolean interrupted = false;
+			try {
+				while (!this.acquireIfFirst()) {
+					try {
+						Thread.sleep(idleBetweenTries);
+					}
+					catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			catch (RuntimeException e) {
+				this.localLock.unlock();
+				throw e;
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		public void lockInterruptibly() throws InterruptedException {
+			this.localLock.lockInterruptibly();
+			try {
+				while (!this.acquireIfFirst()) {
+					Thread.sleep(idleBetweenTries);
+				}
+			}
+			catch (InterruptedException e) {
+				this.localLock.unlock();
+				throw e;
+			}
+			catch (RuntimeException e) {
+				this.localLock.unlock();
+				throw e;
+			}
+		}
+
+		public boolean tryLock() {
+			if (!this.localLock.tryLock()) {
+				return false;
+			}
+			boolean acquired = false;
+			try {
+				acquired = this.acquireIfFirst();
+			}
+			finally {
+				if (!acquired) {
+					this.localLock.unlock();
+				}
+			}
+			return acquired;
+		}
+
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + unit.toMillis(time);
+			if (!this.localLock.tryLock(time, unit)) {
+				return false;
+			}
+			boolean acquired = false;
+			try {
+				while (!(acquired = this.acquireIfFirst())) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						break;
+					}
+					Thread.sleep(Math.min(idleBetweenTries, remaining));
+				}
+			}
+			finally {
+				if (!acquired) {
+					this.localLock.unlock();
+				}
+			}
+			return acquired;
+		}
+
+		public void unlock() {
+			Assert.state(this.localLock.isHeldByCurrentThread(), "The current thread does not hold lock: " + this.key);
+			boolean wasLost = false;
+			try {
+				if (this.localLock.getHoldCount() == 1) {
+					this.stopRenewal();
+					wasLost = this.lost || update(RELEASE_QUERY, new Timestamp(RELEASED_DATE), region, this.key,
+							this.ownerId) == 0;
+				}
+			}
+			catch (DataAccessException e) {
+				logger.error("Failed to release lock: " + this.key + "; it will expire after "
+						+ timeToLive + "ms", e);
+			}
+			finally {
+				this.lastUsed = System.currentTimeMillis();
+				this.localLock.unlock();
+			}
+			Assert.state(!wasLost, "Lock " + this.key + " was lost (taken over by another instance) while it was held");
+		}
+
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+		/**
+		 * Obtain the database lock, unless the current thread already holds this lock.
+		 * @return true if the lock is held.
+		 */
+		private boolean acquireIfFirst() {
+			this.lastUsed = System.currentTimeMillis();
+			if (this.localLock.getHoldCount() > 1) {
+				return true;
+			}
+			if (this.acquire()) {
+				this.startRenewal();
+				return true;
+			}
+			return false;
+		}
+
+		private boolean acquire() {
+			Timestamp now = new Timestamp(System.currentTimeMillis());
+			if (this.leased) {
+				// the row kept when the lock was released is still ours, unless it was taken over
+				if (update(RENEW_QUERY, now, region, this.key, this.ownerId) > 0) {
+					return true;
+				}
+				this.leased = false;
+			}
+			try {
+				update(INSERT_QUERY, region, this.key, this.ownerId, now);
+				this.leased = true;
+				return true;
+			}
+			catch (DuplicateKeyException e) {
+				// the row is held, or was released, by another lock
+			}
+			Timestamp expired = new Timestamp(now.getTime() - timeToLive);
+			if (update(TAKE_EXPIRED_QUERY, this.ownerId, now, region, this.key, expired) > 0) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Obtained expired or released lock: " + this.key);
+				}
+				this.leased = true;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Delete the row kept after the lock was released; called with the local lock held.
+		 */
+		private void discardRow() {
+			if (this.leased) {
+				this.leased = false;
+				try {
+					update(DELETE_QUERY, region, this.key, this.ownerId);
+				}
+				catch (DataAccessException e) {
+					logger.warn("Failed to delete the row of lock: " + this.key, e);
+				}
+			}
+		}
+
+		private void startRenewal() {
+			this.lost = false;
+			this.held = true;
+			long interval = Math.max(1, timeToLive / 3);
+			this.renewal = getTaskScheduler().scheduleAtFixedRate(new Runnable() {
+
+				public void run() {
+					renew();
+				}
+
+			}, new Date(System.currentTimeMillis() + interval), interval);
+		}
+
+		private void stopRenewal() {
+			this.held = false;
+			ScheduledFuture<?> renewal = this.renewal;
+			if (renewal != null) {
+				renewal.cancel(false);
+				this.renewal = null;
+			}
+		}
+
+		private void renew() {
+			if (!this.held) {
+				return;
+			}
+			try {
+				int renewed = update(RENEW_QUERY, new Timestamp(System.currentTimeMillis()), region, this.key,
+						this.ownerId);
+				if (renewed == 0 && this.held) {
+					this.lost = true;
+					logger.error("Lock " + this.key + " was taken over by another instance while it was held");
+					ScheduledFuture<?> renewal = this.renewal;
+					if (renewal != null) {
+						renewal.cancel(false);
+					}
+				}
+			}
+			catch (DataAccessException e) {
+				logger.warn("Failed to renew lock: " + this.key, e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "JdbcLock [" + this.key + "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides a JDBC-backed {@code LockRegistry} for coordinating several application instances.
+ */
+package org.springframework.integration.jdbc.lock;
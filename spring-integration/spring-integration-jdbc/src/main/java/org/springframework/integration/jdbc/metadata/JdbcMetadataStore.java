@@ -0,0 +1,518 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.jdbc.metadata;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.integration.store.metadata.MetadataStore;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@link MetadataStore} that keeps its entries in the <code>INT_METADATA_STORE</code>
+ * table (see the <code>schema-*.sql</code> scripts), so that they survive restarts and can
+ * be shared by several application instances. Keys are stored as UUIDs, derived from the
+ * key using {@link UUIDConverter}.
+ * <p>
+ * Entries are cached locally; by default, {@link #get(String)} reads the database every
+ * time, so that values written by other instances are seen. Set a
+ * {@link #setCacheTimeToLive(long) cacheTimeToLive} to serve reads from the cache for that
+ * long. By default, {@link #put(String, String)} writes through to the database; if a
+ * {@link #setFlushInterval(long) flushInterval} is set, writes are deferred and the latest
+ * value for each key is written in batches when the store is {@link #flush() flushed},
+ * which happens every flushInterval milliseconds and when the store is destroyed.
+ * <p>
+ * Each row has a version, which is used for optimistic concurrency. If another instance has
+ * updated an entry since it was read by this store, a write-through put throws an
+ * {@link OptimisticLockingFailureException} (after refreshing the entry, so it can be
+ * retried); a deferred write is discarded, the entry is refreshed from the database and a
+ * warning is logged.
+ *
+ * @since 3.0
+ */
+public class JdbcMetadataStore implements MetadataStore, InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(JdbcMetadataStore.class);
+
+	/**
+	 * Default value for the table prefix property.
+	 */
+	public static final String DEFAULT_TABLE_PREFIX = "INT_";
+
+	private static final String GET_QUERY = "SELECT METADATA_VALUE, METADATA_VERSION from %PREFIX%METADATA_STORE " +
+			"where METADATA_KEY=? and REGION=?";
+
+	private static final String UPDATE_QUERY = "UPDATE %PREFIX%METADATA_STORE set METADATA_VALUE=?, METADATA_VERSION=? " +
+			"where METADATA_KEY=? and REGION=? and METADATA_VERSION=?";
+
+	private static final String INSERT_QUERY = "INSERT into %PREFIX%METADATA_STORE" +
+			"(METADATA_KEY, REGION, METADATA_VALUE, METADATA_VERSION) values (?, ?, ?, ?)";
+
+	private final JdbcOperations jdbcTemplate;
+
+	private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+
+	private final Set<String> pendingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final Object flushMonitor = new Object();
+
+	private final AtomicLong writeCount = new AtomicLong();
+
+	private final AtomicLong conflictCount = new AtomicLong();
+
+	private volatile String region = "DEFAULT";
+
+	private volatile String tablePrefix = DEFAULT_TABLE_PREFIX;
+
+	private volatile long flushInterval;
+
+	private volatile long cacheTimeToLive;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ScheduledFuture<?> flushTask;
+
+	public JdbcMetadataStore(DataSource dataSource) {
+		Assert.notNull(dataSource, "'dataSource' cannot be null");
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	public JdbcMetadataStore(JdbcOperations jdbcOperations) {
+		Assert.notNull(jdbcOperations, "'jdbcOperations' cannot be null");
+		this.jdbcTemplate = jdbcOperations;
+	}
+
+	/**
+	 * Entries in different regions are independent; use a region to separate entries used
+	 * by different applications sharing the same table. Default "DEFAULT".
+	 * @param region the region.
+	 */
+	public void setRegion(String region) {
+		Assert.hasText(region, "Region must not be null or empty.");
+		this.region = region;
+	}
+
+	/**
+	 * Public setter for the table prefix property. This will be prefixed to the
+	 * <code>METADATA_STORE</code> table name. Defaults to {@link #DEFAULT_TABLE_PREFIX}.
+	 * @param tablePrefix the tablePrefix to set
+	 */
+	public void setTablePrefix(String tablePrefix) {
+		this.tablePrefix = tablePrefix;
+	}
+
+	/**
+	 * When greater than 0, {@link #put(String, String)} only updates the local cache and
+	 * pending writes are flushed to the database every flushInterval milliseconds,
+	 * using the {@link #setTaskScheduler(TaskScheduler) taskScheduler}. Values written
+	 * by a put are lost if the application fails before they are flushed. Default 0
+	 * (write through).
+	 * @param flushInterval the flushInterval.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * The time (milliseconds) for which a cached entry is returned by {@link #get(String)}
+	 * (and used for a write-through put) without reading the database again. Default 0
+	 * (always read the database, so values written by other instances are seen). A negative
+	 * value caches entries indefinitely, which is only appropriate when this store is the
+	 * only writer of its region. An entry with a deferred write is never refreshed.
+	 * @param cacheTimeToLive the cacheTimeToLive.
+	 */
+	public void setCacheTimeToLive(long cacheTimeToLive) {
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	/**
+	 * The scheduler used to flush pending writes; required if a
+	 * {@link #setFlushInterval(long) flushInterval} is set.
+	 * @param taskScheduler the taskScheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * @return the number of rows written to the database.
+	 */
+	public long getWriteCount() {
+		return this.writeCount.get();
+	}
+
+	/**
+	 * @return the number of writes that were rejected (or discarded, if deferred) because
+	 * the entry had been updated by another instance.
+	 */
+	public long getConflictCount() {
+		return this.conflictCount.get();
+	}
+
+	/**
+	 * @return the number of keys with writes that have not been flushed.
+	 */
+	public int getPendingCount() {
+		return this.pendingKeys.size();
+	}
+
+	public void afterPropertiesSet() throws Exception {
+		if (this.flushInterval > 0) {
+			Assert.notNull(this.taskScheduler, "A 'taskScheduler' is required when a 'flushInterval' is set");
+			this.flushTask = this.taskScheduler.scheduleWithFixedDelay(new Runnable() {
+
+				public void run() {
+					flush();
+				}
+
+			}, this.flushInterval);
+		}
+	}
+
+	/**
+	 * Write the value; when writing through, a failed write leaves the entry unchanged.
+	 * @throws OptimisticLockingFailureException when writing through, if the entry was
+	 * updated by another instance since it was read.
+	 */
+	public void put(String key, String value) {
+		Assert.notNull(key, "'key' must not be null");
+		if (this.flushInterval > 0) {
+			// a stale version is detected when the write is flushed
+			Entry entry = this.getEntry(key, false);
+			synchronized (entry) {
+				entry.value = value;
+				entry.dirty = true;
+			}
+			this.pendingKeys.add(key);
+			return;
+		}
+		Entry entry = this.getEntry(key, true);
+		synchronized (entry) {
+			boolean written;
+			if (entry.version > 0) {
+				written = this.jdbcTemplate.update(this.getQuery(UPDATE_QUERY), value, entry.version + 1,
+						this.getDatabaseKey(key), this.region, entry.version) > 0;
+			}
+			else {
+				try {
+					this.jdbcTemplate.update(this.getQuery(INSERT_QUERY), this.getDatabaseKey(key), this.region,
+							value, 1L);
+					written = true;
+				}
+				catch (DuplicateKeyException e) {
+					written = false;
+				}
+			}
+			if (!written) {
+				this.conflictCount.incrementAndGet();
+				entry.refresh(this.load(key));
+				throw new OptimisticLockingFailureException("Metadata entry '" + key
+						+ "' was updated by another instance; current value: '" + entry.value + "'");
+			}
+			this.writeCount.incrementAndGet();
+			entry.value = value;
+			entry.version++;
+			entry.loaded = System.currentTimeMillis();
+		}
+	}
+
+	public String get(String key) {
+		Assert.notNull(key, "'key' must not be null");
+		Entry entry = this.getEntry(key, true);
+		synchronized (entry) {
+			return entry.value;
+		}
+	}
+
+	/**
+	 * Write the pending entries to the database; updates of existing rows and inserts of
+	 * new rows are each executed as a batch.
+	 * If the database cannot be updated, the entries remain pending and the exception is
+	 * thrown.
+	 */
+	public void flush() {
+		synchronized (this.flushMonitor) {
+			List<PendingWrite> updates = new ArrayList<PendingWrite>();
+			List<PendingWrite> inserts = new ArrayList<PendingWrite>();
+			Iterator<String> iterator = this.pendingKeys.iterator();
+			while (iterator.hasNext()) {
+				String key = iterator.next();
+				iterator.remove();
+				Entry entry = this.cache.get(key);
+				synchronized (entry) {
+					if (entry.dirty) {
+						entry.dirty = false;
+						PendingWrite write = new PendingWrite(key, entry, entry.value, entry.version);
+						if (entry.version > 0) {
+							updates.add(write);
+						}
+						else {
+							inserts.add(write);
+						}
+					}
+				}
+			}
+			if (updates.isEmpty() && inserts.isEmpty()) {
+				return;
+			}
+			try {
+				this.doUpdates(updates);
+				this.doInserts(inserts);
+			}
+			catch (RuntimeException e) {
+				for (PendingWrite write : updates) {
+					this.restorePending(write);
+				}
+				for (PendingWrite write : inserts) {
+					this.restorePending(write);
+				}
+				throw e;
+			}
+		}
+	}
+
+	public void destroy() throws Exception {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+		}
+		this.flush();
+	}
+
+	private void doUpdates(List<PendingWrite> updates) {
+		if (updates.isEmpty()) {
+			return;
+		}
+		List<Object[]> args = new ArrayList<Object[]>(updates.size());
+		for (PendingWrite write : updates) {
+			args.add(new Object[] {write.value, write.version + 1, this.getDatabaseKey(write.key), this.region,
+					write.version});
+		}
+		int[] results = this.jdbcTemplate.batchUpdate(this.getQuery(UPDATE_QUERY), args);
+		for (int i = 0; i < updates.size(); i++) {
+			PendingWrite write = updates.get(i);
+			if (results[i] > 0 || results[i] == Statement.SUCCESS_NO_INFO) {
+				this.written(write);
+			}
+			else {
+				this.conflict(write);
+			}
+		}
+	}
+
+	private void doInserts(List<PendingWrite> inserts) {
+		if (inserts.isEmpty()) {
+			return;
+		}
+		List<Object[]> args = new ArrayList<Object[]>(inserts.size());
+		for (PendingWrite write : inserts) {
+			args.add(new Object[] {this.getDatabaseKey(write.key), this.region, write.value, 1L});
+		}
+		try {
+			this.jdbcTemplate.batchUpdate(this.getQuery(INSERT_QUERY), args);
+			for (PendingWrite write : inserts) {
+				this.written(write);
+			}
+		}
+		catch (DuplicateKeyException e) {
+			// another instance inserted some of the keys; the batch may have been partly applied
+			for (PendingWrite write : inserts) {
+				this.insertAfterBatchFailure(write);
+			}
+		}
+	}
+
+	private void insertAfterBatchFailure(PendingWrite write) {
+		Entry current = this.load(write.key);
+		if (current.version == 1 && ObjectUtils.nullSafeEquals(current.value, write.value)) {
+			this.written(write);
+			return;
+		}
+		if (current.version > 0) {
+			this.conflict(write);
+			return;
+		}
+		try {
+			this.jdbcTemplate.update(this.getQuery(INSERT_QUERY), this.getDatabaseKey(write.key), this.region,
+					write.value, 1L);
+			this.written(write);
+		}
+		catch (DuplicateKeyException e) {
+			this.conflict(write);
+		}
+	}
+
+	private void written(PendingWrite write) {
+		this.writeCount.incrementAndGet();
+		synchronized (write.entry) {
+			if (write.entry.version == write.version) {
+				write.entry.version = write.version + 1;
+				write.entry.loaded = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private void conflict(PendingWrite write) {
+		this.conflictCount.incrementAndGet();
+		Entry current = this.load(write.key);
+		synchronized (write.entry) {
+			write.entry.dirty = false;
+			write.entry.refresh(current);
+		}
+		logger.warn("Metadata entry '" + write.key + "' was updated by another instance; the value '"
+				+ write.value + "' has been discarded, current value: '" + current.value + "'");
+	}
+
+	private void restorePending(PendingWrite write) {
+		synchronized (write.entry) {
+			if (!write.entry.dirty && write.entry.version == write.version) {
+				write.entry.dirty = true;
+			}
+		}
+		this.pendingKeys.add(write.key);
+	}
+
+	/**
+	 * Return the cached entry, reading it from the database if it is not cached or, when
+	 * refreshing, has expired (unless it has a deferred write).
+	 */
+	private Entry getEntry(String key, boolean refresh) {
+		Entry entry = this.cache.get(key);
+		if (entry == null) {
+			entry = this.load(key);
+			Entry existing = this.cache.putIfAbsent(key, entry);
+			if (existing == null) {
+				return entry;
+			}
+			entry = existing;
+		}
+		if (refresh && this.isExpired(entry)) {
+			Entry current = this.load(key);
+			synchronized (entry) {
+				if (!entry.dirty) {
+					entry.refresh(current);
+				}
+			}
+		}
+		return entry;
+	}
+
+	private boolean isExpired(Entry entry) {
+		long cacheTimeToLive = this.cacheTimeToLive;
+		if (cacheTimeToLive < 0) {
+			return false;
+		}
+		synchronized (entry) {
+			return !entry.dirty && System.currentTimeMillis() - entry.loaded >= cacheTimeToLive;
+		}
+	}
+
+	private Entry load(String key) {
+		Entry entry = DataAccessUtils.singleResult(this.jdbcTemplate.query(this.getQuery(GET_QUERY),
+				new RowMapper<Entry>() {
+
+					public Entry mapRow(ResultSet rs, int rowNum) throws SQLException {
+						Entry entry = new Entry();
+						entry.value = rs.getString(1);
+						entry.version = rs.getLong(2);
+						return entry;
+					}
+
+				}, this.getDatabaseKey(key), this.region));
+		return entry == null ? new Entry() : entry;
+	}
+
+	private String getDatabaseKey(String key) {
+		return UUIDConverter.getUUID(key).toString();
+	}
+
+	private String getQuery(String query) {
+		return StringUtils.replace(query, "%PREFIX%", this.tablePrefix);
+	}
+
+	/**
+	 * A cached entry; a version of 0 means there is no row for the key. Guarded by the
+	 * entry's monitor.
+	 */
+	private static class Entry {
+
+		private String value;
+
+		private long version;
+
+		private boolean dirty;
+
+		private long loaded = System.currentTimeMillis();
+
+		/**
+		 * Replace the value with one read from the database, unless that is older.
+		 */
+		private void refresh(Entry current) {
+			if (current.version >= this.version || current.version == 0) {
+				this.value = current.value;
+				this.version = current.version;
+			}
+			this.loaded = current.loaded;
+		}
+
+	}
+
+	private static class PendingWrite {
+
+		private final String key;
+
+		private final Entry entry;
+
+		private final String value;
+
+		private final long version;
+
+		private PendingWrite(String key, Entry entry, String value, long version) {
+			this.key = key;
+			this.entry = entry;
+			this.value = value;
+			this.version = version;
+		}
+
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides a JDBC-backed {@code MetadataStore}.
+ */
+package org.springframework.integration.jdbc.metadata;
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.jdbc.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.support.converter.BinaryMessageConverter;
+import org.springframework.integration.support.converter.MessageConversionException;
+import org.springframework.util.Assert;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * A (de)serializer for JDBC message stores that writes a {@link Message} in a compact
+ * binary form using a {@link BinaryMessageConverter}, rather than with Java serialization.
+ * <p>
+ * Each stored message starts with a marker and a format version, followed by the message
+ * {@code id} and {@code timestamp} (which are preserved) and the encoded message, which is
+ * compressed if it is larger than the {@link #setCompressionThreshold(int) compressionThreshold}.
+ * Messages that were stored using Java serialization are recognized and deserialized as
+ * before, so an existing store can be switched to this format and will be migrated
+ * incrementally, as messages are added.
+ * <p>
+ * The contents of the store are trusted (as they are when Java serialization is used),
+ * so the default converter allows any {@link java.io.Serializable} header value or
+ * payload to be stored with Java serialization; provide a
+ * {@link #setMessageConverter(BinaryMessageConverter) messageConverter} to restrict
+ * the classes.
+ *
+ * @since 3.0
+ */
+public class CompactMessageSerializer implements Serializer<Message<?>>, Deserializer<Message<?>> {
+
+	private static final byte MARKER_1 = 'S';
+
+	private static final byte MARKER_2 = 'I';
+
+	private static final byte VERSION = 1;
+
+	private static final byte FLAG_COMPRESSED = 1;
+
+	private static final int PREAMBLE_LENGTH = 4 + 16 + 8;
+
+	private static final byte JAVA_SERIALIZATION_MAGIC_1 = (byte) 0xac;
+
+	private static final byte JAVA_SERIALIZATION_MAGIC_2 = (byte) 0xed;
+
+	private final Deserializer<Object> javaDeserializer = new DefaultDeserializer();
+
+	private volatile BinaryMessageConverter messageConverter = new BinaryMessageConverter();
+
+	private volatile int compressionThreshold;
+
+	public CompactMessageSerializer() {
+		this.messageConverter.setAllowedSerializableClasses("*");
+	}
+
+	/**
+	 * The {@link BinaryMessageConverter} used to encode and decode messages; set
+	 * one if you wish to limit the headers that are stored, or the classes that
+	 * may be stored with Java serialization.
+	 * @param messageConverter the messageConverter.
+	 */
+	public void setMessageConverter(BinaryMessageConverter messageConverter) {
+		Assert.notNull(messageConverter, "'messageConverter' cannot be null");
+		this.messageConverter = messageConverter;
+	}
+
+	/**
+	 * Encoded messages larger than this number of bytes are compressed (if that
+	 * makes them smaller). Default 0 (no compression).
+	 * @param compressionThreshold the compressionThreshold to set
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	public void serialize(Message<?> message, OutputStream outputStream) throws IOException {
+		byte[] encoded;
+		try {
+			encoded = (byte[]) this.messageConverter.fromMessage(message);
+		}
+		catch (MessageConversionException e) {
+			throw new IOException(e);
+		}
+		byte flags = 0;
+		if (this.compressionThreshold > 0 && encoded.length > this.compressionThreshold) {
+			byte[] compressed = this.compress(encoded);
+			if (compressed != null) {
+				encoded = compressed;
+				flags |= FLAG_COMPRESSED;
+			}
+		}
+		DataOutputStream stream = new DataOutputStream(outputStream);
+		stream.writeByte(MARKER_1);
+		stream.writeByte(MARKER_2);
+		stream.writeByte(VERSION);
+		stream.writeByte(flags);
+		UUID id = message.getHeaders().getId();
+		stream.writeLong(id.getMostSignificantBits());
+		stream.writeLong(id.getLeastSignificantBits());
+		stream.writeLong(message.getHeaders().getTimestamp());
+		stream.write(encoded);
+		stream.flush();
+	}
+
+	public Message<?> deserialize(InputStream inputStream) throws IOException {
+		byte[] bytes = FileCopyUtils.copyToByteArray(inputStream);
+		if (bytes.length > 1 && bytes[0] == JAVA_SERIALIZATION_MAGIC_1 && bytes[1] == JAVA_SERIALIZATION_MAGIC_2) {
+			return (Message<?>) this.javaDeserializer.deserialize(new ByteArrayInputStream(bytes));
+		}
+		if (bytes.length < PREAMBLE_LENGTH || bytes[0] != MARKER_1 || bytes[1] != MARKER_2) {
+			throw new IOException("Unrecognized stored message format");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.position(2);
+		byte version = buffer.get();
+		if (version != VERSION) {
+			throw new IOException("Unsupported stored message version: " + version);
+		}
+		byte flags = buffer.get();
+		UUID id = new UUID(buffer.getLong(), buffer.getLong());
+		long timestamp = buffer.getLong();
+		byte[] encoded = new byte[buffer.remaining()];
+		buffer.get(encoded);
+		if ((flags & FLAG_COMPRESSED) != 0) {
+			encoded = this.decompress(encoded);
+		}
+		Message<?> message;
+		try {
+			message = this.messageConverter.toMessage(encoded);
+		}
+		catch (MessageConversionException e) {
+			throw new IOException(e);
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, Object> innerMap = (Map<String, Object>) new DirectFieldAccessor(message.getHeaders())
+				.getPropertyValue("headers");
+		// using reflection to restore the ID and TIMESTAMP since they are immutable through MessageHeaders
+		innerMap.put(MessageHeaders.ID, id);
+		innerMap.put(MessageHeaders.TIMESTAMP, timestamp);
+		return message;
+	}
+
+	/**
+	 * @return the compressed bytes, or null if compression does not make them smaller.
+	 */
+	private byte[] compress(byte[] bytes) {
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			byte[] buffer = new byte[bytes.length];
+			int length = 0;
+			while (!deflater.finished() && length < buffer.length) {
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			if (!deflater.finished() || 4 + length >= bytes.length) {
+				return null;
+			}
+			ByteBuffer compressed = ByteBuffer.allocate(4 + length);
+			compressed.putInt(bytes.length);
+			compressed.put(buffer, 0, length);
+			return compressed.array();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private byte[] decompress(byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		byte[] decompressed = new byte[buffer.getInt()];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(bytes, 4, bytes.length - 4);
+			int length = 0;
+			while (length < decompressed.length) {
+				int n = inflater.inflate(decompressed, length, decompressed.length - length);
+				if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new IOException("Truncated compressed message");
+				}
+				length += n;
+			}
+			return decompressed;
+		}
+		catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+}
@@ -14,20 +14,19 @@
 package org.springframework.integration.jdbc.store;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -49,18 +48,27 @@ import org.springframework.integration.jdbc.store.channel.OracleChannelMessageSt
 import org.springframework.integration.jdbc.store.channel.PostgresChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.ChannelMessageStoreQueryProvider;
 import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.BatchPollingMessageGroupStore;
 import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupQueue;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
-import org.springframework.integration.transaction.TransactionSynchronizationFactory;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.lob.DefaultLobHandler;
 import org.springframework.jdbc.support.lob.LobHandler;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
@@ -90,24 +98,31 @@ import org.springframework.util.StringUtils;
  * database table only. The SQL scripts to create the necessary table are packaged
  * under <code>org/springframework/integration/jdbc/messagestore/channel/schema-*.sql</code>,
  * where <code>*</code> denotes the target database type.
- * </p
- * >
+ * </p>
+ * <p>
+ * Messages can be polled in batches using {@link #pollMessagesFromGroup(Object, int)};
+ * see {@link MessageGroupQueue#setPollBatchSize(int)}.
+ * </p>
+ * <p>
+ * If {@link #setPriorityEnabled(boolean) priorityEnabled}, messages are polled in
+ * {@link MessageHeaders#PRIORITY} order (highest first), then oldest first.
+ * </p>
+ *
  * @author Gunnar Hillert
  * @author Artem Bilan
  * @since 2.2
  */
 @ManagedResource
-public class JdbcChannelMessageStore extends AbstractMessageGroupStore implements InitializingBean {
+public class JdbcChannelMessageStore extends AbstractMessageGroupStore
+		implements BatchPollingMessageGroupStore, InitializingBean {
 
 	private static final Log logger = LogFactory.getLog(JdbcChannelMessageStore.class);
 
-	private final Set<String> idCache = new HashSet<String>();
-
-	private final ReadWriteLock idCacheLock = new ReentrantReadWriteLock();
-
-	private final Lock idCacheReadLock = idCacheLock.readLock();
-
-	private final Lock idCacheWriteLock = idCacheLock.writeLock();
+	/**
+	 * The number of times {@link #pollMessageFromGroup(Object)} (and
+	 * {@link #pollMessagesFromGroup(Object, int)}) tries to claim messages before giving up, when other consumers claim the selected messages first.
+	 */
+	private static final int MAX_CLAIM_ATTEMPTS = 3;
 
 	/**
 	 * Default value for the table prefix property.
@@ -152,7 +167,14 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 
 	private volatile Map<String, String> queryCache = new HashMap<String, String>();
 
-	private boolean usingIdCache = false;
+	private volatile int partitionCount = 1;
+
+	// start at a random partition so that threads on different nodes tend to use different partitions
+	private final AtomicInteger partitionSequence = new AtomicInteger(new Random().nextInt(Integer.MAX_VALUE));
+
+	private final ThreadLocal<Integer> homePartition = new ThreadLocal<Integer>();
+
+	private volatile boolean priorityEnabled;
 
 	/**
 	 * Convenient constructor for configuration use.
@@ -312,52 +334,62 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	}
 
 	/**
-	 * <p>Consider using this property when polling the database transactionally
-	 * using multiple parallel threads, meaning when the configured poller is configured
-	 * using a task executor.</p>
-	 *
-	 * <p>The issue is that the {@link #pollMessageFromGroup(Object)} looks for the
-	 * oldest entry for a giving channel (groupKey) and region ({@link #setRegion(String)}).
-	 * If you do that with multiple threads and you are using transactions, other
-	 * threads may be waiting for that same locked row.</p>
-	 *
-	 * <p>If using the provided {@link OracleChannelMessageStoreQueryProvider}, don't set {@link #usingIdCache}
-	 * to true, as the Oracle query will ignore locked rows.</p>
+	 * <p>Concurrent consumers (a poller with a task executor, or several application
+	 * instances) claim a message by deleting it: a message is only returned by
+	 * {@link #pollMessageFromGroup(Object)} if the calling consumer's delete succeeded.
+	 * The same strategy is used by {@link #pollMessagesFromGroup(Object, int)}. The Oracle
+	 * and PostgreSQL queries skip rows locked by other consumers (<code>FOR UPDATE SKIP
+	 * LOCKED</code>; PostgreSQL 9.5 or later is required) and the MySQL queries lock the
+	 * selected rows (<code>FOR UPDATE</code>), so that transactional consumers wait for
+	 * each other rather than select the same rows. On HSQLDB and Derby, claiming is
+	 * best-effort: consumers may select the same (oldest) messages, and either wait for
+	 * each other's row locks or retry.</p>
 	 *
-	 * <p>Using the id cache, the {@link JdbcChannelMessageStore} will store each
-	 * message id in an in-memory collection for the duration of processing. With
-	 * that, any polling threads will explicitly exclude those messages from
-	 * being polled.</p>
+	 * <p>Setting the partition count to a value greater than 1 reduces this contention:
+	 * each polling thread is assigned a home partition and first looks for the oldest
+	 * message whose <code>CREATED_DATE</code> modulo the partition count is its
+	 * partition, only looking for the oldest message overall when its partition is
+	 * empty. Strict FIFO ordering is not preserved across partitions. A value of at
+	 * least the total number of polling threads (across all application instances)
+	 * is recommended. Default 1 (no partitioning).</p>
 	 *
-	 * <p>For this to work, you must setup the corresponding
-	 * {@link TransactionSynchronizationFactory}:</p>
-	 *
-	 * <pre>
-	 * {@code
-	 * <int:transaction-synchronization-factory id="syncFactory">
-	 *     <int:after-commit   expression="@jdbcChannelMessageStore.removeFromIdCache(headers.id.toString())" />
-	 *     <int:after-rollback expression="@jdbcChannelMessageStore.removeFromIdCache(headers.id.toString())" />
-	 * </int:transaction-synchronization-factory>
-	 * }
-	 * </pre>
-	 *
-	 * This {@link TransactionSynchronizationFactory} is then referenced in the
-	 * transaction configuration of the poller:
+	 * @param partitionCount the partitionCount to set
+	 * @since 3.0
+	 */
+	public void setPartitionCount(int partitionCount) {
+		Assert.isTrue(partitionCount > 0, "'partitionCount' must be greater than 0");
+		this.partitionCount = partitionCount;
+	}
+
+	/**
+	 * <p>When true, the {@link MessageHeaders#PRIORITY} header of each message is stored
+	 * in the <code>MESSAGE_PRIORITY</code> column (0 if the header is absent, as with a
+	 * <code>PriorityChannel</code>) and messages are polled highest priority first, then
+	 * oldest first, using the
+	 * {@link ChannelMessageStoreQueryProvider#getPriorityPollFromGroupQuery()}. The
+	 * {@link #setPartitionCount(int) partitionCount} is ignored. All stores using the same
+	 * table and region should have the same setting; messages stored while priority is not
+	 * enabled get the column's default priority, 0.</p>
 	 *
-	 * <pre>
-	 * {@code
-	 * <int:poller fixed-delay="300" receive-timeout="500"
-	 *     max-messages-per-poll="1" task-executor="pool">
-	 *     <int:transactional propagation="REQUIRED" synchronization-factory="syncFactory"
-	 *         isolation="READ_COMMITTED" transaction-manager="transactionManager" />
-	 * </int:poller>
-	 * }
-	 * </pre>
+	 * @param priorityEnabled true to enable priority ordering.
+	 * @since 3.0
+	 */
+	public void setPriorityEnabled(boolean priorityEnabled) {
+		this.priorityEnabled = priorityEnabled;
+	}
+
+	/**
+	 * No longer used; concurrent consumers claim messages by deleting them; see
+	 * {@link #setPartitionCount(int)}.
 	 *
-	 * @param usingIdCache When <code>true</code> the id cache will be used.
+	 * @param usingIdCache ignored.
+	 * @deprecated the id cache has been removed; this method will be removed in a future release.
 	 */
+	@Deprecated
 	public void setUsingIdCache(boolean usingIdCache) {
-		this.usingIdCache = usingIdCache;
+		if (usingIdCache && logger.isWarnEnabled()) {
+			logger.warn("The id cache is no longer supported; 'usingIdCache' is ignored");
+		}
 	}
 
 	/**
@@ -386,6 +418,10 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 			logger.warn("The jdbcTemplate's fetchsize is not 1 but %s. This may cause FIFO issues with Oracle databases.");
 		}
 
+		if (this.priorityEnabled && this.partitionCount > 1 && logger.isWarnEnabled()) {
+			logger.warn("'partitionCount' is ignored when 'priorityEnabled' is true");
+		}
+
 	}
 
 	/**
@@ -414,7 +450,12 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 		final String messageId = getKey(result.getHeaders().getId());
 		final byte[] messageBytes = serializer.convert(result);
 
-		jdbcTemplate.update(getQuery(channelMessageStoreQueryProvider.getCreateMessageQuery()), new PreparedStatementSetter() {
+		final boolean priorityEnabled = this.priorityEnabled;
+		final Integer priority = message.getHeaders().getPriority();
+		String createQuery = priorityEnabled ? channelMessageStoreQueryProvider.getCreatePriorityMessageQuery()
+				: channelMessageStoreQueryProvider.getCreateMessageQuery();
+
+		jdbcTemplate.update(getQuery(createQuery), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				if (logger.isDebugEnabled()){
 					logger.debug("Inserting message with id key=" + messageId);
@@ -423,7 +464,13 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 				ps.setString(2, groupKey);
 				ps.setString(3, region);
 				ps.setLong(4, createdDate);
-				lobHandler.getLobCreator().setBlobAsBytes(ps, 5, messageBytes);
+				if (priorityEnabled) {
+					ps.setLong(5, priority != null ? priority : 0);
+					lobHandler.getLobCreator().setBlobAsBytes(ps, 6, messageBytes);
+				}
+				else {
+					lobHandler.getLobCreator().setBlobAsBytes(ps, 5, messageBytes);
+				}
 			}
 		});
 
@@ -454,48 +501,113 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 		parameters.addValue("region", region);
 		parameters.addValue("group_key", groupIdKey);
 
-		final String query;
+		List<Message<?>> messages = null;
 
-		final List<Message<?>> messages;
-
-		this.idCacheReadLock.lock();
-		try {
-			if (this.usingIdCache && !this.idCache.isEmpty()) {
-				query = getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupExcludeIdsQuery());
-				parameters.addValue("message_ids", idCache);
-			} else {
-				query = getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupQuery());
-			}
-			messages = namedParameterJdbcTemplate.query(query, parameters, messageRowMapper);
+		ChannelMessageStoreQueryProvider queryProvider = this.channelMessageStoreQueryProvider;
+		if (this.priorityEnabled) {
+			messages = namedParameterJdbcTemplate.query(getQuery(queryProvider.getPriorityPollFromGroupQuery()),
+					parameters, messageRowMapper);
 		}
-		finally {
-			this.idCacheReadLock.unlock();
+		else {
+			int partitionCount = this.partitionCount;
+			if (partitionCount > 1) {
+				parameters.addValue("partition_count", partitionCount);
+				parameters.addValue("partition", this.getHomePartition(partitionCount));
+				messages = namedParameterJdbcTemplate.query(getQuery(queryProvider.getPollFromGroupPartitionQuery()),
+						parameters, messageRowMapper);
+			}
+			if (messages == null || messages.size() == 0) {
+				messages = namedParameterJdbcTemplate.query(getQuery(queryProvider.getPollFromGroupQuery()),
+						parameters, messageRowMapper);
+			}
 		}
 
-
 		Assert.isTrue(messages.size() == 0 || messages.size() == 1);
 		if (messages.size() > 0){
+			return messages.get(0);
+		}
+		return null;
+	}
 
-			final Message<?>message = messages.get(0);
-			final String messageId = message.getHeaders().getId().toString();
+	private int getHomePartition(int partitionCount) {
+		Integer sequence = this.homePartition.get();
+		if (sequence == null) {
+			sequence = this.partitionSequence.getAndIncrement() & Integer.MAX_VALUE;
+			this.homePartition.set(sequence);
+		}
+		return sequence % partitionCount;
+	}
 
-			if (this.usingIdCache) {
-				this.idCacheWriteLock.lock();
-				try {
-					boolean added = this.idCache.add(messageId);
+	/**
+	 * This method executes a call to the DB to get up to maxMessages of the oldest
+	 * Messages in the MessageGroup (channel), using the
+	 * {@link ChannelMessageStoreQueryProvider#getPollFromGroupBatchQuery()} (or the
+	 * {@link ChannelMessageStoreQueryProvider#getPriorityPollFromGroupBatchQuery()}
+	 * if {@link #setPriorityEnabled(boolean) priorityEnabled}). As with
+	 * {@link #doPollForMessage(String)}, if the {@link #setPartitionCount(int)
+	 * partitionCount} is greater than 1, the messages in the calling thread's home
+	 * partition are selected first, using the
+	 * {@link ChannelMessageStoreQueryProvider#getPollFromGroupPartitionBatchQuery()}. The
+	 * statement's fetch size and max rows are set to maxMessages, regardless of the
+	 * settings of the {@link JdbcTemplate}.
+	 *
+	 * @param groupIdKey String representation of message group (Channel) ID
+	 * @param maxMessages the maximum number of messages to return
+	 * @return the messages; could be empty if the query produced no Messages
+	 * @since 3.0
+	 */
+	protected List<Message<?>> doPollForMessages(String groupIdKey, int maxMessages) {
 
-					if (logger.isDebugEnabled()) {
-						logger.debug(String.format("Polled message with id '%s' added: '%s'.", messageId, added));
-					}
-				}
-				finally {
-					this.idCacheWriteLock.unlock();
-				}
-			}
+		final MapSqlParameterSource parameters = new MapSqlParameterSource();
+
+		parameters.addValue("region", region);
+		parameters.addValue("group_key", groupIdKey);
+		parameters.addValue("max_rows", maxMessages);
 
-			return message;
+		List<Message<?>> messages = null;
+
+		ChannelMessageStoreQueryProvider queryProvider = this.channelMessageStoreQueryProvider;
+		if (this.priorityEnabled) {
+			messages = this.queryForMessages(queryProvider.getPriorityPollFromGroupBatchQuery(), parameters,
+					maxMessages);
 		}
-		return null;
+		else {
+			int partitionCount = this.partitionCount;
+			if (partitionCount > 1) {
+				parameters.addValue("partition_count", partitionCount);
+				parameters.addValue("partition", this.getHomePartition(partitionCount));
+				messages = this.queryForMessages(queryProvider.getPollFromGroupPartitionBatchQuery(), parameters,
+						maxMessages);
+			}
+			if (messages == null || messages.size() == 0) {
+				messages = this.queryForMessages(queryProvider.getPollFromGroupBatchQuery(), parameters, maxMessages);
+			}
+		}
+		return messages;
+	}
+
+	private List<Message<?>> queryForMessages(String query, MapSqlParameterSource parameters, final int maxMessages) {
+		final ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(getQuery(query));
+		final Object[] args = NamedParameterUtils.buildValueArray(parsedSql, parameters, null);
+
+		return jdbcTemplate.execute(NamedParameterUtils.substituteNamedParameters(parsedSql, parameters),
+				new PreparedStatementCallback<List<Message<?>>>() {
+					public List<Message<?>> doInPreparedStatement(PreparedStatement ps) throws SQLException {
+						// overrides the JdbcTemplate's settings (normally 1)
+						ps.setMaxRows(maxMessages);
+						ps.setFetchSize(maxMessages);
+						for (int i = 0; i < args.length; i++) {
+							StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, args[i]);
+						}
+						ResultSet rs = ps.executeQuery();
+						try {
+							return new RowMapperResultSetExtractor<Message<?>>(messageRowMapper).extractData(rs);
+						}
+						finally {
+							JdbcUtils.closeResultSet(rs);
+						}
+					}
+				});
 	}
 
 	/**
@@ -584,18 +696,95 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 
 	/**
 	 * Polls the database for a new message that is persisted for the given
-	 * group id which represents the channel identifier.
+	 * group id which represents the channel identifier. The message is only
+	 * returned if it is successfully deleted (claimed); if another consumer
+	 * claimed it first, the poll is retried.
 	 */
 	public Message<?> pollMessageFromGroup(Object groupId) {
 
 		final String key = getKey(groupId);
-		final Message<?> polledMessage = this.doPollForMessage(key);
 
-		if (polledMessage != null){
-			this.removeMessageFromGroup(groupId, polledMessage);
+		for (int i = 0; i < MAX_CLAIM_ATTEMPTS; i++) {
+			final Message<?> polledMessage = this.doPollForMessage(key);
+			if (polledMessage == null) {
+				return null;
+			}
+			if (this.doRemoveMessageFromGroup(key, polledMessage) > 0) {
+				return polledMessage;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("Message with id '%s' was claimed by another consumer.",
+						polledMessage.getHeaders().getId()));
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Polls the database for up to maxMessages messages persisted for the given
+	 * group id which represents the channel identifier; the messages are deleted
+	 * using a single batch statement. Both operations participate in the current
+	 * transaction, if any. As with {@link #pollMessageFromGroup(Object)}, only the
+	 * messages that are successfully deleted (claimed) are returned; if other
+	 * consumers claimed all of them first, the poll is retried.
+	 *
+	 * @since 3.0
+	 */
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be greater than 0");
+
+		final String key = getKey(groupId);
+
+		for (int i = 0; i < MAX_CLAIM_ATTEMPTS; i++) {
+			final List<Message<?>> polledMessages = this.doPollForMessages(key, maxMessages);
+			if (polledMessages.size() == 0) {
+				return polledMessages;
+			}
+			List<Message<?>> claimedMessages = this.removeMessagesFromGroup(key, polledMessages);
+			if (claimedMessages.size() > 0) {
+				return claimedMessages;
+			}
 		}
 
-		return polledMessage;
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Deletes the messages with a single batch statement and returns those that
+	 * were actually deleted (claimed) by this consumer.
+	 */
+	private List<Message<?>> removeMessagesFromGroup(final String groupKey, final List<Message<?>> messagesToRemove) {
+
+		int[] updated = jdbcTemplate.batchUpdate(getQuery(channelMessageStoreQueryProvider.getDeleteMessageQuery()),
+				new BatchPreparedStatementSetter() {
+
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ps.setString(1, getKey(messagesToRemove.get(i).getHeaders().getId()));
+						ps.setString(2, groupKey);
+						ps.setString(3, region);
+					}
+
+					public int getBatchSize() {
+						return messagesToRemove.size();
+					}
+				});
+
+		List<Message<?>> claimedMessages = new ArrayList<Message<?>>(messagesToRemove.size());
+		for (int i = 0; i < updated.length; i++) {
+			// some drivers don't report the update counts for batches
+			if (updated[i] > 0 || updated[i] == Statement.SUCCESS_NO_INFO) {
+				claimedMessages.add(messagesToRemove.get(i));
+			}
+			else if (logger.isDebugEnabled()) {
+				logger.debug(String.format("Message with id '%s' was claimed by another consumer.",
+						messagesToRemove.get(i).getHeaders().getId()));
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("%d messages were deleted from group '%s'.", claimedMessages.size(), groupKey));
+		}
+		return claimedMessages;
 	}
 
 	/**
@@ -609,8 +798,7 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 
 		final UUID id = messageToRemove.getHeaders().getId();
 
-		int updated = jdbcTemplate.update(getQuery(channelMessageStoreQueryProvider.getDeleteMessageQuery()), new Object[] { getKey(id), getKey(groupId), region }, new int[] {
-					Types.VARCHAR, Types.VARCHAR, Types.VARCHAR });
+		int updated = this.doRemoveMessageFromGroup(getKey(groupId), messageToRemove);
 
 		if (updated != 0) {
 			logger.debug(String.format("Message with id '%s' was deleted.", id));
@@ -621,38 +809,31 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 		return getMessageGroup(groupId);
 	}
 
+	private int doRemoveMessageFromGroup(String groupKey, Message<?> messageToRemove) {
+		return jdbcTemplate.update(getQuery(channelMessageStoreQueryProvider.getDeleteMessageQuery()),
+				new Object[] { getKey(messageToRemove.getHeaders().getId()), groupKey, region },
+				new int[] { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR });
+	}
+
 	/**
-	 * <p>Remove a Message Id from the idCache. Should be used in conjunction
-	 * with the Spring Integration Transaction Synchronization feature to remove
-	 * a message from the Message Id cache once a transaction either succeeded or
-	 * rolled back.</p>
-	 * <p>Only applicable if {@link #setUsingIdCache(boolean)} is set to
-	 * <code>true</code></p>.
+	 * No longer used; retained so that existing transaction synchronization
+	 * expressions continue to work.
 	 *
-	 * @param messageId
+	 * @param messageId ignored.
+	 * @deprecated the id cache has been removed; this method will be removed in a future release.
 	 */
+	@Deprecated
 	public void removeFromIdCache(String messageId) {
-		if (logger.isDebugEnabled()) {
-			logger.debug("Removing Message Id:" + messageId);
-		}
-		this.idCacheWriteLock.lock();
-		try {
-			this.idCache.remove(messageId);
-		}
-		finally {
-			this.idCacheWriteLock.unlock();
-		}
 	}
 
 	/**
-	 * Returns the size of the Message Id Cache, which caches Message Ids for
-	 * those messages that are currently being processed.
-	 *
-	 * @return The size of the Message Id Cache
+	 * @return 0; the id cache has been removed.
+	 * @deprecated the id cache has been removed; this method will be removed in a future release.
 	 */
+	@Deprecated
 	@ManagedMetric
 	public int getSizeOfIdCache() {
-		return this.idCache.size();
+		return 0;
 	}
 
 	/**
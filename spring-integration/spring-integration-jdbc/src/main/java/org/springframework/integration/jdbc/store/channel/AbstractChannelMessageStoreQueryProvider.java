@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -23,8 +23,14 @@ public abstract class AbstractChannelMessageStoreQueryProvider implements Channe
 		return "SELECT COUNT(MESSAGE_ID) from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=?";
 	}
 
+	@Deprecated
 	public abstract String getPollFromGroupExcludeIdsQuery();
 	public abstract String getPollFromGroupQuery();
+	public abstract String getPollFromGroupPartitionQuery();
+	public abstract String getPollFromGroupBatchQuery();
+	public abstract String getPollFromGroupPartitionBatchQuery();
+	public abstract String getPriorityPollFromGroupQuery();
+	public abstract String getPriorityPollFromGroupBatchQuery();
 
 	public String getMessageQuery() {
 		return "SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES from %PREFIX%CHANNEL_MESSAGE where MESSAGE_ID=? and GROUP_KEY=? and REGION=?";
@@ -43,6 +49,11 @@ public abstract class AbstractChannelMessageStoreQueryProvider implements Channe
 				+ " values (?, ?, ?, ?, ?)";
 	}
 
+	public String getCreatePriorityMessageQuery() {
+		return "INSERT into %PREFIX%CHANNEL_MESSAGE(MESSAGE_ID, GROUP_KEY, REGION, CREATED_DATE, MESSAGE_PRIORITY, MESSAGE_BYTES)"
+				+ " values (?, ?, ?, ?, ?, ?)";
+	}
+
 	public String getDeleteMessageGroupQuery() {
 		return "DELETE from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=?";
 	}
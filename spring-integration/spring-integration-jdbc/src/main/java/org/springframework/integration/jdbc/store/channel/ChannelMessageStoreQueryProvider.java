@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -37,7 +37,10 @@ public interface ChannelMessageStoreQueryProvider {
 	 * messages that match the provided message ids.
 	 *
 	 * @return Sql Query
+	 * @deprecated no longer used by the {@link JdbcChannelMessageStore}, which no
+	 * longer maintains an id cache.
 	 */
+	@Deprecated
 	String getPollFromGroupExcludeIdsQuery();
 
 	/**
@@ -47,6 +50,61 @@ public interface ChannelMessageStoreQueryProvider {
 	 */
 	String getPollFromGroupQuery();
 
+	/**
+	 * Get the query used to retrieve the oldest message for a channel within a
+	 * partition: the messages whose <code>CREATED_DATE</code> modulo
+	 * <code>:partition_count</code> equals <code>:partition</code>.
+	 *
+	 * @return Sql Query
+	 * @since 3.0
+	 */
+	String getPollFromGroupPartitionQuery();
+
+	/**
+	 * Get the query used to retrieve (and, where supported, lock) the oldest
+	 * messages for a channel. In addition to <code>:group_key</code> and
+	 * <code>:region</code>, the query may use the <code>:max_rows</code>
+	 * parameter to limit the number of rows returned; the store also caps the
+	 * rows fetched through the JDBC statement.
+	 *
+	 * @return Sql Query
+	 * @since 3.0
+	 */
+	String getPollFromGroupBatchQuery();
+
+	/**
+	 * Get the query used to retrieve (and, where supported, lock) up to
+	 * <code>:max_rows</code> of the oldest messages for a channel within a
+	 * partition.
+	 *
+	 * @return Sql Query
+	 * @since 3.0
+	 * @see #getPollFromGroupPartitionQuery()
+	 * @see #getPollFromGroupBatchQuery()
+	 */
+	String getPollFromGroupPartitionBatchQuery();
+
+	/**
+	 * Get the query used to retrieve the highest priority message for a channel;
+	 * messages with the same <code>MESSAGE_PRIORITY</code> are returned oldest
+	 * first.
+	 *
+	 * @return Sql Query
+	 * @since 3.0
+	 */
+	String getPriorityPollFromGroupQuery();
+
+	/**
+	 * Get the query used to retrieve (and, where supported, lock) up to
+	 * <code>:max_rows</code> messages for a channel, highest priority first,
+	 * then oldest first.
+	 *
+	 * @return Sql Query
+	 * @since 3.0
+	 * @see #getPollFromGroupBatchQuery()
+	 */
+	String getPriorityPollFromGroupBatchQuery();
+
 	/**
 	 * Query that retrieves a message for the provided message id, channel and
 	 * region.
@@ -76,6 +134,14 @@ public interface ChannelMessageStoreQueryProvider {
 	 */
 	String getCreateMessageQuery();
 
+	/**
+	 * Query to add a single message, with its priority, to the database.
+	 *
+	 * @return Sql Query
+	 * @since 3.0
+	 */
+	String getCreatePriorityMessageQuery();
+
 	/**
 	 * Query to delete all messages that belong to a specific channel.
 	 *
@@ -3,4 +3,6 @@
 DROP TABLE  INT_MESSAGE IF EXISTS;
 DROP TABLE  INT_MESSAGE_GROUP IF EXISTS;
 DROP TABLE  INT_GROUP_TO_MESSAGE IF EXISTS;
+DROP TABLE  INT_LOCK IF EXISTS;
+DROP TABLE  INT_METADATA_STORE IF EXISTS;
 DROP INDEX  INT_MESSAGE_IX1 IF EXISTS;
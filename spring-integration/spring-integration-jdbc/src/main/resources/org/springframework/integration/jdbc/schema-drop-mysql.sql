@@ -3,4 +3,6 @@
 DROP TABLE IF EXISTS INT_MESSAGE ;
 DROP TABLE IF EXISTS INT_MESSAGE_GROUP ;
 DROP TABLE IF EXISTS INT_GROUP_TO_MESSAGE ;
+DROP TABLE IF EXISTS INT_LOCK ;
+DROP TABLE IF EXISTS INT_METADATA_STORE ;
 DROP INDEX IF EXISTS INT_MESSAGE_IX1 ;
@@ -3,4 +3,6 @@
 DROP TABLE  INT_MESSAGE ;
 DROP TABLE  INT_MESSAGE_GROUP ;
 DROP TABLE  INT_GROUP_TO_MESSAGE ;
+DROP TABLE  INT_LOCK ;
+DROP TABLE  INT_METADATA_STORE ;
 DROP INDEX  INT_MESSAGE_IX1 ;
@@ -5,6 +5,7 @@ CREATE TABLE INT_MESSAGE  (
 	REGION VARCHAR(100),
 	CREATED_DATE DATETIME NOT NULL,
 	MESSAGE_BYTES IMAGE,
+	MESSAGE_INLINE VARBINARY(2000),
 	constraint MESSAGE_PK primary key (MESSAGE_ID, REGION)
 ) LOCK DATAROWS;
 
@@ -26,4 +27,20 @@ CREATE TABLE INT_MESSAGE_GROUP  (
 	CREATED_DATE DATETIME NOT NULL,
 	UPDATED_DATE DATETIME DEFAULT NULL,
 	constraint MESSAGE_GROUP_PK primary key (GROUP_KEY, REGION)
+) LOCK DATAROWS;
+
+CREATE TABLE INT_LOCK  (
+	LOCK_KEY CHAR(36),
+	REGION VARCHAR(100),
+	CLIENT_ID CHAR(36),
+	CREATED_DATE DATETIME NOT NULL,
+	constraint LOCK_PK primary key (LOCK_KEY, REGION)
+) LOCK DATAROWS;
+
+CREATE TABLE INT_METADATA_STORE  (
+	METADATA_KEY CHAR(36),
+	REGION VARCHAR(100),
+	METADATA_VALUE VARCHAR(4000),
+	METADATA_VERSION BIGINT NOT NULL,
+	constraint METADATA_STORE_PK primary key (METADATA_KEY, REGION)
 ) LOCK DATAROWS;
\ No newline at end of file
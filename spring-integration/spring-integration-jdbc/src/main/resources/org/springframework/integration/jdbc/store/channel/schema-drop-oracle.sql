@@ -1,3 +1,4 @@
 DROP INDEX INT_CHANNEL_MSG_DATE_IDX;
+DROP INDEX INT_CHANNEL_MSG_PRIORITY_IDX;
 DROP TABLE INT_CHANNEL_MESSAGE;
 
@@ -2,9 +2,12 @@ CREATE TABLE INT_CHANNEL_MESSAGE (
 	MESSAGE_ID CHAR(36) NOT NULL,
 	GROUP_KEY CHAR(36) NOT NULL,
 	CREATED_DATE BIGINT NOT NULL,
+	MESSAGE_PRIORITY BIGINT DEFAULT 0 NOT NULL,
 	MESSAGE_BYTES LONGVARBINARY,
 	REGION VARCHAR(100) NOT NULL,
 	constraint INT_CHANNEL_MESSAGE_PK primary key (GROUP_KEY, MESSAGE_ID, REGION)
 );
 
 CREATE INDEX INT_CHANNEL_MSG_DATE_IDX ON INT_CHANNEL_MESSAGE (CREATED_DATE);
+
+CREATE INDEX INT_CHANNEL_MSG_PRIORITY_IDX ON INT_CHANNEL_MESSAGE (GROUP_KEY, REGION, MESSAGE_PRIORITY DESC, CREATED_DATE);
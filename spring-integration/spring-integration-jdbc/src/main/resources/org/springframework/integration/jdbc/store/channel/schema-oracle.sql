@@ -2,6 +2,7 @@ CREATE TABLE INT_CHANNEL_MESSAGE (
 	MESSAGE_ID CHAR(36) NOT NULL,
 	GROUP_KEY CHAR(36) NOT NULL,
 	CREATED_DATE NUMBER(19,0) NOT NULL,
+	MESSAGE_PRIORITY NUMBER(19,0) DEFAULT 0 NOT NULL,
 	MESSAGE_BYTES BLOB,
 	REGION VARCHAR2(100) NOT NULL,
 	constraint INT_CHANNEL_MESSAGE_PK primary key (GROUP_KEY, MESSAGE_ID, REGION)
@@ -9,3 +10,6 @@ CREATE TABLE INT_CHANNEL_MESSAGE (
 
 CREATE INDEX INT_CHANNEL_MSG_DATE_IDX
 	ON INT_CHANNEL_MESSAGE (CREATED_DATE);
+
+CREATE INDEX INT_CHANNEL_MSG_PRIORITY_IDX
+	ON INT_CHANNEL_MESSAGE (GROUP_KEY, REGION, MESSAGE_PRIORITY DESC, CREATED_DATE);
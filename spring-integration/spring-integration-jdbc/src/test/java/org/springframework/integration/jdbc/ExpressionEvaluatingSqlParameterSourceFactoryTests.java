@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,15 +16,18 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 
 /**
@@ -76,6 +79,20 @@ public class ExpressionEvaluatingSqlParameterSourceFactoryTests {
 		assertEquals("BAR", source.getValue("foo.toUpperCase()"));
 	}
 
+	@Test
+	public void testExpressionsParsedOnce() throws Exception {
+		factory.setParameterExpressions(Collections.singletonMap("upper", "foo.toUpperCase()"));
+		factory.setBeanFactory(mock(BeanFactory.class));
+		factory.afterPropertiesSet();
+		assertEquals("BAR", factory.createParameterSource(Collections.singletonMap("foo", "bar")).getValue("upper"));
+		Map<?, ?> expressionCache = TestUtils.getPropertyValue(factory, "expressionCache", Map.class);
+		assertEquals(1, expressionCache.size());
+		Object expression = expressionCache.get("foo.toUpperCase()");
+		assertEquals("BAZ", factory.createParameterSource(Collections.singletonMap("foo", "baz")).getValue("upper"));
+		assertEquals(1, expressionCache.size());
+		assertSame(expression, expressionCache.get("foo.toUpperCase()"));
+	}
+
 	@Test
 	public void testMapInputWithMappedExpression() throws Exception {
 		factory.setParameterExpressions(Collections.singletonMap("spam", "foo.toUpperCase()"));
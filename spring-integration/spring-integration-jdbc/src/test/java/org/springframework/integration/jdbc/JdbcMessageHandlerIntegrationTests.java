@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,19 +17,32 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.message.ErrorMessage;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Dave Syer
@@ -96,4 +109,121 @@ public class JdbcMessageHandlerIntegrationTests {
 		assertEquals("Wrong name", "foo", map.get("NAME"));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testBatchInsert() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:headers[business.id], 0, :payload)");
+		handler.setBatchSize(3);
+		handler.afterPropertiesSet();
+		handler.handleMessage(MessageBuilder.withPayload("foo").setHeader("business.id", "1").build());
+		handler.handleMessage(MessageBuilder.withPayload("bar").setHeader("business.id", "2").build());
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		assertEquals(2, handler.getPendingBatchSize());
+		handler.handleMessage(MessageBuilder.withPayload("baz").setHeader("business.id", "3").build());
+		assertEquals(3, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		assertEquals(1, handler.getBatchCount());
+		assertEquals(3, handler.getLastBatchSize());
+		handler.handleMessage(MessageBuilder.withPayload("qux").setHeader("business.id", "4").build());
+		handler.destroy();
+		assertEquals(4, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		assertEquals("qux", jdbcTemplate.queryForMap("SELECT * FROM FOOS WHERE ID=?", "4").get("NAME"));
+		assertEquals(2, handler.getBatchCount());
+		assertEquals(4, handler.getBatchedMessageCount());
+		assertEquals(0, handler.getPendingBatchSize());
+	}
+
+	@Test
+	public void testBatchMaxBytes() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:headers[business.id], 0, :payload)");
+		handler.setBatchSize(10);
+		handler.setBatchMaxBytes(12);
+		handler.afterPropertiesSet();
+		handler.handleMessage(MessageBuilder.withPayload("foo").setHeader("business.id", "1").build());
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		handler.handleMessage(MessageBuilder.withPayload("bar").setHeader("business.id", "2").build());
+		assertEquals(2, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+	}
+
+	@Test
+	public void testBatchInsertInTransaction() throws Exception {
+		final JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:headers[business.id], 0, :payload)");
+		handler.setBatchSize(10);
+		handler.afterPropertiesSet();
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.embeddedDatabase));
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				handler.handleMessage(MessageBuilder.withPayload("foo").setHeader("business.id", "1").build());
+				handler.handleMessage(MessageBuilder.withPayload("bar").setHeader("business.id", "2").build());
+				assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+				assertEquals(0, handler.getPendingBatchSize());
+			}
+		});
+		assertEquals(2, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		assertEquals(1, handler.getBatchCount());
+
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				handler.handleMessage(MessageBuilder.withPayload("baz").setHeader("business.id", "3").build());
+				status.setRollbackOnly();
+			}
+		});
+		assertEquals(2, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		assertEquals(1, handler.getBatchCount());
+	}
+
+	@Test
+	public void testBatchTimeout() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:headers[business.id], 0, :payload)");
+		handler.setBatchSize(10);
+		handler.setBatchTimeout(100);
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, scheduler);
+		handler.setBeanFactory(beanFactory);
+		handler.afterPropertiesSet();
+		try {
+			handler.handleMessage(MessageBuilder.withPayload("foo").setHeader("business.id", "1").build());
+			int n = 0;
+			while (n++ < 100 && handler.getBatchCount() < 1) {
+				Thread.sleep(50);
+			}
+			assertTrue(n < 100);
+			assertEquals(1, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		}
+		finally {
+			scheduler.destroy();
+		}
+	}
+
+	@Test
+	public void testFailedTimedBatchIsSentToErrorChannel() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into nofoos (id, status, name) values (:headers[business.id], 0, :payload)");
+		handler.setBatchSize(10);
+		handler.setBatchTimeout(100);
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, scheduler);
+		handler.setBeanFactory(beanFactory);
+		handler.afterPropertiesSet();
+		QueueChannel errorChannel = new QueueChannel();
+		try {
+			Message<String> message = MessageBuilder.withPayload("foo").setHeader("business.id", "1")
+					.setErrorChannel(errorChannel).build();
+			handler.handleMessage(message);
+			Message<?> error = errorChannel.receive(10000);
+			assertNotNull(error);
+			assertTrue(error instanceof ErrorMessage);
+			MessageHandlingException exception = (MessageHandlingException) error.getPayload();
+			assertSame(message, exception.getFailedMessage());
+			assertEquals(1, handler.getBatchFailureCount());
+			assertEquals(0, handler.getBatchCount());
+		}
+		finally {
+			scheduler.destroy();
+		}
+	}
+
+}
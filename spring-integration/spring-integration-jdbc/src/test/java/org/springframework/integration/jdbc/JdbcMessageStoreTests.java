@@ -17,6 +17,7 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -30,8 +31,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -43,17 +49,23 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
+import org.springframework.dao.DataAccessException;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.jdbc.store.CompactMessageSerializer;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageGroupStore.MessageGroupCallback;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
@@ -212,6 +224,75 @@ public class JdbcMessageStoreTests {
 		assertNotNull(messageStore.getMessage(saved.getHeaders().getId()));
 	}
 
+	@Test
+	@Transactional
+	public void testCompactSerializerAndInlineStorage() throws Exception {
+		Message<String> legacy = messageStore.addMessage(MessageBuilder.withPayload("foo").build());
+		JdbcMessageStore compactStore = new JdbcMessageStore(dataSource);
+		CompactMessageSerializer serializer = new CompactMessageSerializer();
+		compactStore.setSerializer(serializer);
+		compactStore.setDeserializer(serializer);
+		compactStore.setMaxInlineSize(200);
+		Message<?> result = compactStore.getMessage(legacy.getHeaders().getId());
+		assertEquals(legacy, result);
+
+		Message<String> small = compactStore.addMessage(MessageBuilder.withPayload("bar").build());
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			builder.append("baz");
+		}
+		Message<String> large = compactStore.addMessage(MessageBuilder.withPayload(builder.toString()).build());
+		JdbcTemplate template = new JdbcTemplate(dataSource);
+		assertEquals(1, template.queryForInt("SELECT COUNT(*) FROM INT_MESSAGE WHERE MESSAGE_INLINE IS NOT NULL"));
+		assertEquals(small, compactStore.getMessage(small.getHeaders().getId()));
+		assertEquals(large, compactStore.getMessage(large.getHeaders().getId()));
+
+		compactStore.addMessageToGroup("X", small);
+		MessageGroup group = compactStore.addMessageToGroup("X", large);
+		assertEquals(2, group.size());
+		Message<?> polled = compactStore.pollMessageFromGroup("X");
+		assertTrue(small.equals(polled) || large.equals(polled));
+	}
+
+	@Test
+	@Transactional
+	public void testAddMessagesToGroup() throws Exception {
+		final AtomicInteger updates = new AtomicInteger();
+		final AtomicInteger batchUpdates = new AtomicInteger();
+		messageStore.setJdbcTemplate(new JdbcTemplate(dataSource) {
+
+			@Override
+			public int update(String sql, PreparedStatementSetter pss) {
+				updates.incrementAndGet();
+				return super.update(sql, pss);
+			}
+
+			@Override
+			public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+				batchUpdates.incrementAndGet();
+				return super.batchUpdate(sql, pss);
+			}
+
+		});
+		String groupId = "X";
+		Message<String> saved = messageStore.addMessage(MessageBuilder.withPayload("foo").build());
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		messages.add(saved);
+		messages.add(MessageBuilder.withPayload("bar").build());
+		messages.add(MessageBuilder.withPayload("baz").build());
+		updates.set(0);
+		MessageGroup group = messageStore.addMessagesToGroup(groupId, messages);
+		// create group, then one batch for the new messages and one for the group associations
+		assertEquals(1, updates.get());
+		assertEquals(2, batchUpdates.get());
+		assertEquals(3, group.size());
+		assertEquals(3, messageStore.getMessageCount());
+		assertNotNull(messageStore.getMessage(messages.get(1).getHeaders().getId()));
+		group = messageStore.addMessagesToGroup(groupId,
+				Collections.singletonList(MessageBuilder.withPayload("qux").build()));
+		assertEquals(4, group.size());
+	}
+
 	@Test
 	@Transactional
 	public void testAddAndRemoveMessageGroup() throws Exception {
@@ -516,6 +597,103 @@ public class JdbcMessageStoreTests {
 		assertTrue(messageGroup.isComplete());
 	}
 
+	@Test
+	@Transactional
+	public void testLazyMessageGroup() throws Exception {
+		messageStore.setLazyLoadMessageGroups(true);
+		String groupId = "lazy";
+		Message<?> first = MessageBuilder.withPayload("foo").setSequenceNumber(1).setSequenceSize(3).build();
+		messageStore.addMessageToGroup(groupId, first);
+		Thread.sleep(1);
+		messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("bar").setSequenceNumber(2).setSequenceSize(3).build());
+		messageStore.setLastReleasedSequenceNumberForGroup(groupId, 1);
+		MessageGroup group = messageStore.getMessageGroup(groupId);
+		assertEquals(2, group.size());
+		assertEquals(1, group.getLastReleasedMessageSequenceNumber());
+		assertFalse(group.isComplete());
+		assertTrue(group.getTimestamp() > 0);
+		assertTrue(group.getLastModified() >= group.getTimestamp());
+		assertNull(TestUtils.getPropertyValue(group, "messages"));
+		assertEquals(3, group.getSequenceSize());
+		assertEquals(first.getHeaders().getId(), group.getOne().getHeaders().getId());
+		assertNull(TestUtils.getPropertyValue(group, "messages"));
+		assertEquals(2, group.getMessages().size());
+		assertEquals(first.getHeaders().getId(), group.getOne().getHeaders().getId());
+
+		messageStore.completeGroup(groupId);
+		assertTrue(messageStore.getMessageGroup(groupId).isComplete());
+		assertEquals(0, messageStore.getMessageGroup("none").size());
+	}
+
+	@Test
+	public void testGroupMetadataCache() throws Exception {
+		messageStore.setLazyLoadMessageGroups(true);
+		messageStore.setCacheGroupMetadata(true);
+		JdbcMessageStore uncached = new JdbcMessageStore(dataSource);
+		uncached.setLazyLoadMessageGroups(true);
+		String groupId = "cached";
+		try {
+			messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo").build());
+			Message<?> bar = MessageBuilder.withPayload("bar").build();
+			messageStore.addMessageToGroup(groupId, bar);
+			assertEquals(2, messageStore.messageGroupSize(groupId));
+			messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("baz").build());
+			messageStore.setLastReleasedSequenceNumberForGroup(groupId, 2);
+			messageStore.completeGroup(groupId);
+			messageStore.removeMessageFromGroup(groupId, bar);
+			MessageGroup cachedGroup = messageStore.getMessageGroup(groupId);
+			MessageGroup group = uncached.getMessageGroup(groupId);
+			assertEquals(2, cachedGroup.size());
+			assertEquals(group.size(), cachedGroup.size());
+			assertEquals(group.isComplete(), cachedGroup.isComplete());
+			assertEquals(group.getLastReleasedMessageSequenceNumber(), cachedGroup.getLastReleasedMessageSequenceNumber());
+			assertEquals(group.getTimestamp(), cachedGroup.getTimestamp());
+			assertEquals(group.getLastModified(), cachedGroup.getLastModified());
+
+			// changes made by another store are not visible while the metadata is cached
+			uncached.removeMessageGroup(groupId);
+			assertEquals(2, messageStore.messageGroupSize(groupId));
+			messageStore.removeMessageGroup(groupId);
+			assertEquals(0, messageStore.messageGroupSize(groupId));
+		}
+		finally {
+			uncached.removeMessageGroup(groupId);
+		}
+	}
+
+	@Test
+	public void testGroupMetadataCacheNotFilledWithStaleRead() throws Exception {
+		final String groupId = "raced";
+		final AtomicBoolean raced = new AtomicBoolean();
+		final JdbcMessageStore store = new JdbcMessageStore();
+		store.setJdbcTemplate(new JdbcTemplate(dataSource) {
+
+			@Override
+			public <T> List<T> query(String sql, Object[] args, RowMapper<T> rowMapper) throws DataAccessException {
+				List<T> result = super.query(sql, args, rowMapper);
+				if (sql.contains("MESSAGE_COUNT") && raced.compareAndSet(false, true)) {
+					// another thread adds a message after the metadata is read
+					store.addMessageToGroup(groupId, MessageBuilder.withPayload("bar").build());
+				}
+				return result;
+			}
+
+		});
+		store.setLazyLoadMessageGroups(true);
+		store.setCacheGroupMetadata(true);
+		try {
+			store.addMessageToGroup(groupId, MessageBuilder.withPayload("foo").build());
+			assertTrue(raced.get());
+			assertEquals(2, store.messageGroupSize(groupId));
+			assertEquals(2, store.messageGroupSize(groupId));
+			store.addMessageToGroup(groupId, MessageBuilder.withPayload("baz").build());
+			assertEquals(3, store.messageGroupSize(groupId));
+		}
+		finally {
+			store.removeMessageGroup(groupId);
+		}
+	}
+
 
 
 }
\ No newline at end of file
@@ -17,8 +17,10 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 import java.sql.ResultSet;
@@ -26,6 +28,9 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,12 +40,18 @@ import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.integration.Message;
+import org.springframework.integration.store.metadata.MetadataStore;
+import org.springframework.integration.store.metadata.SimpleMetadataStore;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Jonas Partner
@@ -298,6 +309,148 @@ public class JdbcPollingChannelAdapterIntegrationTests {
 
 	}
 
+	@Test
+	public void testKeysetPolling() throws Exception {
+		for (int i = 1; i <= 5; i++) {
+			this.jdbcTemplate.update("insert into item values(?,2)", i);
+		}
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		JdbcPollingChannelAdapter adapter = this.createKeysetAdapter(metadataStore);
+		assertEquals(2, ((List<?>) adapter.receive().getPayload()).size());
+		List<?> rows = (List<?>) adapter.receive().getPayload();
+		assertEquals(2, rows.size());
+		assertEquals(4, ((Item) rows.get(1)).getId());
+		assertEquals("4", metadataStore.get("items"));
+		assertEquals(1, ((List<?>) adapter.receive().getPayload()).size());
+		assertNull(adapter.receive());
+		assertEquals(5, adapter.getHighWaterMark());
+
+		// resumes from the stored mark
+		this.jdbcTemplate.update("insert into item values(6,2)");
+		adapter = this.createKeysetAdapter(metadataStore);
+		rows = (List<?>) adapter.receive().getPayload();
+		assertEquals(1, rows.size());
+		assertEquals(6, ((Item) rows.get(0)).getId());
+		assertEquals(0, this.jdbcTemplate.queryForInt("select count(*) from item where status <> 2"));
+	}
+
+	@Test
+	public void testKeysetPollingInTransaction() throws Exception {
+		for (int i = 1; i <= 3; i++) {
+			this.jdbcTemplate.update("insert into item values(?,2)", i);
+		}
+		final SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		final JdbcPollingChannelAdapter adapter = this.createKeysetAdapter(metadataStore);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(
+				new DataSourceTransactionManager(this.embeddedDatabase));
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertEquals(2, ((List<?>) adapter.receive().getPayload()).size());
+				assertEquals(1, ((List<?>) adapter.receive().getPayload()).size());
+				status.setRollbackOnly();
+			}
+		});
+		assertEquals(0, adapter.getHighWaterMark());
+		assertNull(metadataStore.get("items"));
+
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertEquals(2, ((List<?>) adapter.receive().getPayload()).size());
+				assertNull(metadataStore.get("items"));
+			}
+		});
+		assertEquals("2", metadataStore.get("items"));
+		assertEquals(1, ((List<?>) adapter.receive().getPayload()).size());
+	}
+
+	@Test
+	public void testConcurrentKeysetPollsInTransactionsAreSerialized() throws Exception {
+		for (int i = 1; i <= 4; i++) {
+			this.jdbcTemplate.update("insert into item values(?,2)", i);
+		}
+		final SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		final JdbcPollingChannelAdapter adapter = this.createKeysetAdapter(metadataStore);
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(
+				new DataSourceTransactionManager(this.embeddedDatabase));
+		final CountDownLatch polled = new CountDownLatch(1);
+		final CountDownLatch commit = new CountDownLatch(1);
+		final AtomicReference<List<?>> firstRows = new AtomicReference<List<?>>();
+		Thread first = new Thread(new Runnable() {
+			public void run() {
+				transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						firstRows.set((List<?>) adapter.receive().getPayload());
+						polled.countDown();
+						try {
+							commit.await(10, TimeUnit.SECONDS);
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+			}
+		});
+		first.start();
+		assertTrue(polled.await(10, TimeUnit.SECONDS));
+		final CountDownLatch secondPolled = new CountDownLatch(1);
+		final AtomicReference<List<?>> secondRows = new AtomicReference<List<?>>();
+		Thread second = new Thread(new Runnable() {
+			public void run() {
+				transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						secondRows.set((List<?>) adapter.receive().getPayload());
+						secondPolled.countDown();
+					}
+				});
+			}
+		});
+		second.start();
+		assertFalse(secondPolled.await(500, TimeUnit.MILLISECONDS));
+		commit.countDown();
+		assertTrue(secondPolled.await(10, TimeUnit.SECONDS));
+		first.join(10000);
+		second.join(10000);
+		assertEquals(2, ((Item) firstRows.get().get(1)).getId());
+		assertEquals(3, ((Item) secondRows.get().get(0)).getId());
+		assertEquals("4", metadataStore.get("items"));
+	}
+
+	@Test
+	public void testKeysetColumnMustBeUnique() throws Exception {
+		this.jdbcTemplate.update("insert into item values(1,2)");
+		this.jdbcTemplate.update("insert into item values(1,2)");
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		JdbcPollingChannelAdapter adapter = this.createKeysetAdapter(metadataStore);
+		try {
+			adapter.receive();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("must be unique"));
+		}
+		assertEquals(0, adapter.getHighWaterMark());
+		assertNull(metadataStore.get("items"));
+	}
+
+	private JdbcPollingChannelAdapter createKeysetAdapter(MetadataStore metadataStore) throws Exception {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(
+				this.embeddedDatabase, "select * from item where id > :lastKey order by id");
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.setKeysetColumn("id");
+		adapter.setKeysetInitialValue(0);
+		adapter.setMaxRowsPerPoll(2);
+		adapter.setFetchSize(2);
+		adapter.setMetadataStore(metadataStore);
+		adapter.setMetadataKey("items");
+		adapter.afterPropertiesSet();
+		return adapter;
+	}
+
 	private static class Item {
 
 		private int id;
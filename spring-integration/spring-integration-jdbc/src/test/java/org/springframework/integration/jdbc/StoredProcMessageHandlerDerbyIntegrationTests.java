@@ -17,6 +17,7 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import java.sql.SQLException;
@@ -204,4 +205,49 @@ public class StoredProcMessageHandlerDerbyIntegrationTests {
 		assertEquals("Wrong email", "static_email", map.get("EMAIL"));
 	}
 
+	@Test
+	public void testDerbyStoredProcedureBatchInsert() {
+
+		StoredProcExecutor storedProcExecutor = new StoredProcExecutor(this.embeddedDatabase);
+		StoredProcMessageHandler messageHandler = new StoredProcMessageHandler(storedProcExecutor);
+
+		storedProcExecutor.setStoredProcedureName("CREATE_USER");
+
+		final List<ProcedureParameter> procedureParameters = new ArrayList<ProcedureParameter>();
+		procedureParameters.add(new ProcedureParameter("username", null, "payload.username.toUpperCase()"));
+		procedureParameters.add(new ProcedureParameter("password", null, "payload.password"));
+		procedureParameters.add(new ProcedureParameter("email",    "static_email", null));
+
+		storedProcExecutor.setProcedureParameters(procedureParameters);
+		storedProcExecutor.setBeanFactory(mock(BeanFactory.class));
+		messageHandler.setBatchSize(3);
+
+		storedProcExecutor.afterPropertiesSet();
+		messageHandler.afterPropertiesSet();
+
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("kyle", "k", "kyle@sp.com")).build());
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("stan", "s", "stan@sp.com")).build());
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM USERS"));
+		assertEquals(2, messageHandler.getPendingBatchSize());
+
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("kenny", "k", "kenny@sp.com")).build());
+		assertEquals(3, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM USERS"));
+		assertEquals(1, messageHandler.getBatchCount());
+		assertEquals(3, messageHandler.getLastBatchSize());
+		assertTrue(messageHandler.getLastBatchDuration() >= 0);
+
+		Map<String, Object> map = jdbcTemplate.queryForMap("SELECT * FROM USERS WHERE USERNAME=?", "STAN");
+		assertEquals("Wrong password", "s", map.get("PASSWORD"));
+		assertEquals("Wrong email", "static_email", map.get("EMAIL"));
+
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("eric", "e", "eric@sp.com")).build());
+		messageHandler.flush();
+		assertEquals(4, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM USERS"));
+		assertEquals(2, messageHandler.getBatchCount());
+		assertEquals(4, messageHandler.getBatchedMessageCount());
+
+		assertEquals(2, storedProcExecutor.getJdbcCallOperationsCacheHitCount());
+		assertEquals(0, storedProcExecutor.getJdbcCallOperationsCacheMissCount());
+	}
+
 }
@@ -121,6 +121,18 @@ public class JdbcMessageHandlerParserTests {
 		assertEquals("Wrong id", "foo", map.get("name"));
 	}
 
+	@Test
+	public void testBatchOutboundChannelAdapter(){
+		setUp("handlingBatchJdbcOutboundChannelAdapterTest.xml", getClass());
+		JdbcMessageHandler handler = context.getBean(JdbcMessageHandler.class);
+		assertEquals(2, TestUtils.getPropertyValue(handler, "batcher.batchSize"));
+		assertEquals(1024L, TestUtils.getPropertyValue(handler, "batcher.batchMaxBytes"));
+		channel.send(MessageBuilder.withPayload("foo").setHeader("business.key", "FOO").build());
+		assertEquals(0, this.jdbcTemplate.queryForInt("SELECT COUNT(*) from FOOS"));
+		channel.send(MessageBuilder.withPayload("bar").setHeader("business.key", "BAR").build());
+		assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) from FOOS"));
+	}
+
 	@Test
 	public void testOutboundChannelAdapterWithinChain(){
 		setUp("handlingJdbcOutboundChannelAdapterWithinChainTest.xml", getClass());
@@ -57,6 +57,9 @@ public class JdbcMessageStoreParserTests {
 		assertEquals("FOO", ReflectionTestUtils.getField(store, "region"));
 		assertEquals("BAR_", ReflectionTestUtils.getField(store, "tablePrefix"));
 		assertEquals(context.getBean(LobHandler.class), ReflectionTestUtils.getField(store, "lobHandler"));
+		assertEquals(1000, ReflectionTestUtils.getField(store, "maxInlineSize"));
+		assertEquals(true, ReflectionTestUtils.getField(store, "lazyLoadMessageGroups"));
+		assertEquals(true, ReflectionTestUtils.getField(store, "cacheGroupMetadata"));
 	}
 
 	@After
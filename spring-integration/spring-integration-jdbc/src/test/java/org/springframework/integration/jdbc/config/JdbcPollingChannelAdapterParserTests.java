@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -158,6 +158,31 @@ public class JdbcPollingChannelAdapterParserTests {
 		}
 	}
 
+	@Test
+	public void testKeysetInboundChannelAdapter() {
+		setUp("pollingWithKeysetJdbcInboundChannelAdapterTest.xml", getClass());
+		Object source = TestUtils.getPropertyValue(appCtx.getBean("keysetAdapter"), "source");
+		assertEquals(2, TestUtils.getPropertyValue(source, "fetchSize"));
+		assertSame(appCtx.getBean("metadataStore"), TestUtils.getPropertyValue(source, "metadataStore"));
+		new TransactionTemplate(transactionManager).execute(new TransactionCallback<Void>() {
+			public Void doInTransaction(TransactionStatus status) {
+				jdbcTemplate.update("insert into item values(1,'',2)");
+				jdbcTemplate.update("insert into item values(2,'',2)");
+				jdbcTemplate.update("insert into item values(3,'',2)");
+				return null;
+			}
+		});
+		int count = 0;
+		while (count < 3) {
+			Message<List<?>> message = messagingTemplate.receive();
+			assertNotNull(message);
+			count += message.getPayload().size();
+		}
+		assertEquals(3, count);
+		assertNull(messagingTemplate.receive());
+		assertEquals("3", TestUtils.getPropertyValue(source, "highWaterMark").toString());
+	}
+
 	@Test
 	public void testAutoChannel() {
 		setUp("autoChannelJdbcPollingChannelAdapterParserTests-context.xml", getClass());
@@ -67,6 +67,16 @@ public class StoredProcMessageHandlerParserTests {
 		assertEquals("Resolution Required should be 'testProcedure1' but was " + testProcedure1, "testProcedure1",  testProcedure1.getValue());
 	}
 
+	@Test
+	public void testBatchAttributesAreSet() throws Exception {
+		setUp("basicStoredProcOutboundChannelAdapterTest.xml", getClass());
+
+		Object handler = TestUtils.getPropertyValue(this.consumer, "handler");
+		assertEquals(5, TestUtils.getPropertyValue(handler, "batcher.batchSize"));
+		assertEquals(1000L, TestUtils.getPropertyValue(handler, "batcher.batchTimeout"));
+		assertEquals(2048L, TestUtils.getPropertyValue(handler, "batcher.batchMaxBytes"));
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testProcedurepParametersAreSet() throws Exception {
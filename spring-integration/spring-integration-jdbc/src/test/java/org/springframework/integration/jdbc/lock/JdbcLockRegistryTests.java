@@ -0,0 +1,281 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.jdbc.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @since 3.0
+ *
+ */
+public class JdbcLockRegistryTests {
+
+	private EmbeddedDatabase embeddedDatabase;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setUp() {
+		this.embeddedDatabase = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.DERBY)
+				.addScript("classpath:org/springframework/integration/jdbc/schema-derby.sql")
+				.build();
+		this.jdbcTemplate = new JdbcTemplate(this.embeddedDatabase);
+	}
+
+	@After
+	public void tearDown() {
+		this.embeddedDatabase.shutdown();
+	}
+
+	@Test
+	public void testLockAcrossRegistries() throws Exception {
+		JdbcLockRegistry registry1 = new JdbcLockRegistry(this.embeddedDatabase);
+		JdbcLockRegistry registry2 = new JdbcLockRegistry(this.embeddedDatabase);
+		Lock lock1 = registry1.obtain("foo");
+		assertSame(lock1, registry1.obtain("foo"));
+		Lock lock2 = registry2.obtain("foo");
+		lock1.lock();
+		assertEquals(1, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM INT_LOCK"));
+		assertFalse(lock2.tryLock());
+		assertFalse(lock2.tryLock(200, TimeUnit.MILLISECONDS));
+		assertTrue(registry2.obtain("bar").tryLock());
+		lock1.unlock();
+		assertTrue(lock2.tryLock());
+		assertFalse(lock1.tryLock());
+		lock2.unlock();
+		registry2.obtain("bar").unlock();
+		// released rows are kept until the locks are discarded
+		assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM INT_LOCK"));
+		registry1.expireUnusedOlderThan(0);
+		assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM INT_LOCK"));
+		registry2.expireUnusedOlderThan(0);
+		assertEquals(0, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM INT_LOCK"));
+	}
+
+	@Test
+	public void testReacquireOnlyRenewsRow() throws Exception {
+		final AtomicInteger statements = new AtomicInteger();
+		JdbcLockRegistry registry = new JdbcLockRegistry(new JdbcTemplate(this.embeddedDatabase) {
+
+			@Override
+			public int update(String sql, Object... args) throws DataAccessException {
+				statements.incrementAndGet();
+				return super.update(sql, args);
+			}
+
+		});
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		assertEquals(1, statements.get()); // insert
+		lock.unlock();
+		assertEquals(2, statements.get()); // release, keeping the row
+		lock.lock();
+		assertEquals(3, statements.get()); // renew the kept row
+		lock.unlock();
+
+		// another instance can take over the released row
+		JdbcLockRegistry other = new JdbcLockRegistry(this.embeddedDatabase);
+		Lock otherLock = other.obtain("foo");
+		assertTrue(otherLock.tryLock());
+		statements.set(0);
+		assertFalse(lock.tryLock());
+		assertEquals(3, statements.get()); // renew, insert and take over all fail
+		otherLock.unlock();
+		statements.set(0);
+		assertTrue(lock.tryLock());
+		assertEquals(2, statements.get()); // insert fails, take over the released row
+		lock.unlock();
+		registry.destroy();
+		other.destroy();
+	}
+
+	@Test
+	public void testReentrant() throws Exception {
+		JdbcLockRegistry registry1 = new JdbcLockRegistry(this.embeddedDatabase);
+		JdbcLockRegistry registry2 = new JdbcLockRegistry(this.embeddedDatabase);
+		Lock lock1 = registry1.obtain("foo");
+		lock1.lockInterruptibly();
+		lock1.lockInterruptibly();
+		lock1.unlock();
+		assertFalse(registry2.obtain("foo").tryLock());
+		lock1.unlock();
+		assertTrue(registry2.obtain("foo").tryLock());
+		registry2.obtain("foo").unlock();
+	}
+
+	@Test
+	public void testExpiredLock() throws Exception {
+		JdbcLockRegistry registry1 = new JdbcLockRegistry(this.embeddedDatabase);
+		JdbcLockRegistry registry2 = new JdbcLockRegistry(this.embeddedDatabase);
+		registry2.setTimeToLive(100);
+		registry1.obtain("foo").lock();
+		Thread.sleep(200);
+		Lock lock2 = registry2.obtain("foo");
+		assertTrue(lock2.tryLock());
+		lock2.unlock();
+		registry1.destroy();
+		registry2.destroy();
+	}
+
+	@Test
+	public void testHeldLockIsRenewed() throws Exception {
+		JdbcLockRegistry registry1 = new JdbcLockRegistry(this.embeddedDatabase);
+		JdbcLockRegistry registry2 = new JdbcLockRegistry(this.embeddedDatabase);
+		registry1.setTimeToLive(300);
+		registry2.setTimeToLive(300);
+		Lock lock1 = registry1.obtain("foo");
+		lock1.lock();
+		Thread.sleep(1000);
+		Lock lock2 = registry2.obtain("foo");
+		assertFalse(lock2.tryLock());
+		lock1.unlock();
+		assertTrue(lock2.tryLock());
+		lock2.unlock();
+		registry1.destroy();
+		registry2.destroy();
+	}
+
+	@Test
+	public void testLostLockIsReported() throws Exception {
+		JdbcLockRegistry registry = new JdbcLockRegistry(this.embeddedDatabase);
+		registry.setTimeToLive(300);
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		this.jdbcTemplate.update("DELETE FROM INT_LOCK");
+		Thread.sleep(300);
+		try {
+			lock.unlock();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("was lost"));
+		}
+		assertTrue(lock.tryLock());
+		lock.unlock();
+		registry.destroy();
+	}
+
+	@Test
+	public void testLockStatementsDoNotJoinTransaction() throws Exception {
+		final JdbcLockRegistry registry = new JdbcLockRegistry(this.embeddedDatabase);
+		final JdbcLockRegistry other = new JdbcLockRegistry(this.embeddedDatabase);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(
+				new DataSourceTransactionManager(this.embeddedDatabase));
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				registry.obtain("foo").lock();
+				status.setRollbackOnly();
+			}
+
+		});
+		assertFalse(other.obtain("foo").tryLock());
+		registry.obtain("foo").unlock();
+		assertTrue(other.obtain("foo").tryLock());
+		other.obtain("foo").unlock();
+		registry.destroy();
+		other.destroy();
+	}
+
+	@Test
+	public void testLocalContention() throws Exception {
+		JdbcLockRegistry registry = new JdbcLockRegistry(this.embeddedDatabase);
+		final Lock lock = registry.obtain("foo");
+		lock.lock();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicBoolean locked = new AtomicBoolean();
+		Thread thread = new Thread(new Runnable() {
+
+			public void run() {
+				try {
+					locked.set(lock.tryLock(10, TimeUnit.SECONDS));
+					lock.unlock();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				latch.countDown();
+			}
+
+		});
+		thread.start();
+		Thread.sleep(100);
+		assertFalse(locked.get());
+		lock.unlock();
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(locked.get());
+	}
+
+	@Test
+	public void testExpireUnused() throws Exception {
+		JdbcLockRegistry registry = new JdbcLockRegistry(this.embeddedDatabase);
+		Lock foo = registry.obtain("foo");
+		Lock bar = registry.obtain("bar");
+		bar.lock();
+		Thread.sleep(10);
+		registry.expireUnusedOlderThan(0);
+		Map<?, ?> locks = TestUtils.getPropertyValue(registry, "locks", Map.class);
+		assertEquals(1, locks.size());
+		assertSame(bar, registry.obtain("bar"));
+		Lock newFoo = registry.obtain("foo");
+		assertNotSame(foo, newFoo);
+		bar.unlock();
+
+		// the discarded lock and its replacement cannot both be held
+		foo.lock();
+		assertFalse(newFoo.tryLock());
+		foo.unlock();
+		assertTrue(newFoo.tryLock());
+		newFoo.unlock();
+
+		// obtaining a lock counts as using it
+		Thread.sleep(50);
+		assertSame(newFoo, registry.obtain("foo"));
+		registry.expireUnusedOlderThan(40);
+		assertSame(newFoo, registry.obtain("foo"));
+		registry.destroy();
+	}
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.jdbc.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @since 3.0
+ *
+ */
+public class JdbcMetadataStoreTests {
+
+	private EmbeddedDatabase embeddedDatabase;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setUp() {
+		this.embeddedDatabase = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.DERBY)
+				.addScript("classpath:org/springframework/integration/jdbc/schema-derby.sql")
+				.build();
+		this.jdbcTemplate = new JdbcTemplate(this.embeddedDatabase);
+	}
+
+	@After
+	public void tearDown() {
+		this.embeddedDatabase.shutdown();
+	}
+
+	@Test
+	public void testWriteThrough() throws Exception {
+		JdbcMetadataStore store1 = new JdbcMetadataStore(this.embeddedDatabase);
+		store1.afterPropertiesSet();
+		assertNull(store1.get("foo"));
+		store1.put("foo", "bar");
+		store1.put("foo", "baz");
+		assertEquals(2, store1.getWriteCount());
+		assertEquals(2, this.jdbcTemplate.queryForInt("SELECT METADATA_VERSION FROM INT_METADATA_STORE"));
+		JdbcMetadataStore store2 = new JdbcMetadataStore(this.embeddedDatabase);
+		assertEquals("baz", store2.get("foo"));
+		JdbcMetadataStore store3 = new JdbcMetadataStore(this.embeddedDatabase);
+		store3.setRegion("other");
+		assertNull(store3.get("foo"));
+	}
+
+	@Test
+	public void testOptimisticConcurrency() throws Exception {
+		JdbcMetadataStore store1 = new JdbcMetadataStore(this.embeddedDatabase);
+		store1.setCacheTimeToLive(-1);
+		JdbcMetadataStore store2 = new JdbcMetadataStore(this.embeddedDatabase);
+		store2.setCacheTimeToLive(-1);
+		assertNull(store1.get("foo"));
+		assertNull(store2.get("foo"));
+		store1.put("foo", "bar");
+		try {
+			store2.put("foo", "baz");
+			fail("Expected OptimisticLockingFailureException");
+		}
+		catch (OptimisticLockingFailureException e) {
+		}
+		assertEquals(1, store2.getConflictCount());
+		assertEquals("bar", store2.get("foo"));
+		store2.put("foo", "qux");
+		try {
+			store1.put("foo", "fiz");
+			fail("Expected OptimisticLockingFailureException");
+		}
+		catch (OptimisticLockingFailureException e) {
+		}
+		assertEquals(1, store1.getConflictCount());
+		assertEquals("qux", store1.get("foo"));
+		assertEquals("qux", new JdbcMetadataStore(this.embeddedDatabase).get("foo"));
+	}
+
+	@Test
+	public void testReadOtherInstanceWrites() throws Exception {
+		JdbcMetadataStore store1 = new JdbcMetadataStore(this.embeddedDatabase);
+		JdbcMetadataStore store2 = new JdbcMetadataStore(this.embeddedDatabase);
+		JdbcMetadataStore store3 = new JdbcMetadataStore(this.embeddedDatabase);
+		store3.setCacheTimeToLive(60000);
+		assertNull(store1.get("foo"));
+		assertNull(store3.get("foo"));
+		store2.put("foo", "bar");
+		assertEquals("bar", store1.get("foo"));
+		store1.put("foo", "baz");
+		assertEquals(0, store1.getConflictCount());
+		assertEquals("baz", store2.get("foo"));
+		assertNull(store3.get("foo"));
+	}
+
+	@Test
+	public void testFailedPutLeavesPreviousValue() throws Exception {
+		JdbcMetadataStore store = new JdbcMetadataStore(this.embeddedDatabase);
+		store.setCacheTimeToLive(-1);
+		store.put("foo", "bar");
+		char[] tooLong = new char[5000];
+		Arrays.fill(tooLong, 'x');
+		try {
+			store.put("foo", new String(tooLong));
+			fail("Expected DataAccessException");
+		}
+		catch (DataAccessException e) {
+		}
+		assertEquals("bar", store.get("foo"));
+		assertEquals(1, store.getWriteCount());
+		store.put("foo", "baz");
+		assertEquals("baz", new JdbcMetadataStore(this.embeddedDatabase).get("foo"));
+	}
+
+	@Test
+	public void testWriteBehindBatchesInsertsAndDiscardsConflicts() throws Exception {
+		final AtomicInteger batches = new AtomicInteger();
+		final AtomicInteger updates = new AtomicInteger();
+		JdbcTemplate countingTemplate = new JdbcTemplate(this.embeddedDatabase) {
+
+			@Override
+			public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+				batches.incrementAndGet();
+				return super.batchUpdate(sql, batchArgs);
+			}
+
+			@Override
+			public int update(String sql, Object... args) {
+				updates.incrementAndGet();
+				return super.update(sql, args);
+			}
+
+		};
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		JdbcMetadataStore store = new JdbcMetadataStore(countingTemplate);
+		store.setFlushInterval(60000);
+		store.setTaskScheduler(scheduler);
+		store.afterPropertiesSet();
+		store.put("foo", "bar");
+		store.put("baz", "qux");
+		store.flush();
+		assertEquals(1, batches.get());
+		assertEquals(0, updates.get());
+		assertEquals(2, store.getWriteCount());
+
+		store.put("a", "1");
+		store.put("b", "2");
+		store.put("c", "3");
+		new JdbcMetadataStore(this.embeddedDatabase).put("b", "other");
+		store.flush();
+		assertEquals(4, store.getWriteCount());
+		assertEquals(1, store.getConflictCount());
+		assertEquals(0, store.getPendingCount());
+		JdbcMetadataStore store2 = new JdbcMetadataStore(this.embeddedDatabase);
+		assertEquals("1", store2.get("a"));
+		assertEquals("other", store2.get("b"));
+		assertEquals("3", store2.get("c"));
+		assertEquals("other", store.get("b"));
+		store.destroy();
+		scheduler.destroy();
+	}
+
+	@Test
+	public void testWriteBehind() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		JdbcMetadataStore store = new JdbcMetadataStore(this.embeddedDatabase);
+		store.setFlushInterval(60000);
+		store.setTaskScheduler(scheduler);
+		store.afterPropertiesSet();
+		store.put("foo", "bar");
+		store.flush();
+		for (int i = 0; i < 10; i++) {
+			store.put("foo", "baz" + i);
+			store.put("bar", "qux" + i);
+		}
+		assertEquals("baz9", store.get("foo"));
+		assertEquals(2, store.getPendingCount());
+		assertEquals("bar", new JdbcMetadataStore(this.embeddedDatabase).get("foo"));
+		store.destroy();
+		assertEquals(3, store.getWriteCount());
+		assertEquals(0, store.getPendingCount());
+		JdbcMetadataStore store2 = new JdbcMetadataStore(this.embeddedDatabase);
+		assertEquals("baz9", store2.get("foo"));
+		assertEquals("qux9", store2.get("bar"));
+		scheduler.destroy();
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.jdbc.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * @since 3.0
+ *
+ */
+public class CompactMessageSerializerTests {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setHeader("bar", 42L)
+				.setCorrelationId("baz")
+				.build();
+		CompactMessageSerializer serializer = new CompactMessageSerializer();
+		byte[] bytes = this.serialize(serializer, message);
+		assertTrue(bytes.length < new SerializingConverter().convert(message).length);
+		Message<?> result = serializer.deserialize(new ByteArrayInputStream(bytes));
+		assertEquals(message, result);
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), result.getHeaders().getTimestamp());
+	}
+
+	@Test
+	public void testCompression() throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.append("foo");
+		}
+		Message<String> message = MessageBuilder.withPayload(builder.toString()).build();
+		CompactMessageSerializer serializer = new CompactMessageSerializer();
+		int uncompressed = this.serialize(serializer, message).length;
+		serializer.setCompressionThreshold(100);
+		byte[] bytes = this.serialize(serializer, message);
+		assertTrue(bytes.length < uncompressed / 10);
+		assertEquals(message, serializer.deserialize(new ByteArrayInputStream(bytes)));
+
+		Message<String> small = MessageBuilder.withPayload("foo").build();
+		assertEquals(small, serializer.deserialize(new ByteArrayInputStream(this.serialize(serializer, small))));
+	}
+
+	@Test
+	public void testJavaSerializedMessage() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		byte[] bytes = new SerializingConverter().convert(message);
+		assertEquals(message, new CompactMessageSerializer().deserialize(new ByteArrayInputStream(bytes)));
+	}
+
+	private byte[] serialize(CompactMessageSerializer serializer, Message<?> message) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(message, out);
+		return out.toByteArray();
+	}
+
+}
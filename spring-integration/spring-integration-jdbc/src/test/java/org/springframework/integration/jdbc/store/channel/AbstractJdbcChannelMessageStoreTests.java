@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,13 @@ package org.springframework.integration.jdbc.store.channel;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -26,10 +33,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.Message;
 import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
@@ -90,4 +100,201 @@ public class AbstractJdbcChannelMessageStoreTests {
 		assertNotNull(messageFromDb.getHeaders().get(JdbcChannelMessageStore.CREATED_DATE_KEY));
 	}
 
+	public void testBatchPoll() throws Exception {
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		transactionTemplate.setIsolationLevel(Isolation.READ_COMMITTED.value());
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+
+		for (int i = 0; i < 5; i++) {
+			final Message<Integer> message = MessageBuilder.withPayload(i).build();
+			transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+				@Override
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message);
+				}
+			});
+			// ensure distinct creation dates
+			Thread.sleep(5);
+		}
+
+		List<Message<?>> messages = transactionTemplate.execute(new TransactionCallback<List<Message<?>>>() {
+			public List<Message<?>> doInTransaction(TransactionStatus status) {
+				return messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3);
+			}
+		});
+
+		assertEquals(3, messages.size());
+		assertEquals(0, messages.get(0).getPayload());
+		assertEquals(2, messages.get(2).getPayload());
+
+		messages = messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3);
+		assertEquals(2, messages.size());
+		assertEquals(3, messages.get(0).getPayload());
+		assertEquals(4, messages.get(1).getPayload());
+		assertEquals(0, messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3).size());
+		assertNull(messageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP));
+	}
+
+	@SuppressWarnings("unchecked")
+	public void testPartitionedPoll() throws Exception {
+		final int partitionCount = 4;
+		messageStore.setPartitionCount(partitionCount);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		Set<Long> partitions = new HashSet<Long>();
+		Set<Object> payloads = new HashSet<Object>();
+		int n = 0;
+		// ensure each partition has messages
+		while (partitions.size() < partitionCount || n < 10) {
+			messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload(n).build());
+			payloads.add(n++);
+			partitions.clear();
+			for (Long createdDate : this.getCreatedDates(jdbcTemplate)) {
+				partitions.add(createdDate % partitionCount);
+			}
+			Thread.sleep(1);
+		}
+		int partitionHits = 0;
+		List<Long> createdDates = this.getCreatedDates(jdbcTemplate);
+		Message<?> message;
+		while ((message = messageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP)) != null) {
+			assertTrue("Unexpected or duplicate payload " + message.getPayload(), payloads.remove(message.getPayload()));
+			int partition = ((ThreadLocal<Integer>) TestUtils.getPropertyValue(messageStore, "homePartition",
+					ThreadLocal.class)).get() % partitionCount;
+			Long oldestInPartition = null;
+			for (Long createdDate : createdDates) {
+				if (createdDate % partitionCount == partition) {
+					oldestInPartition = createdDate;
+					break;
+				}
+			}
+			Long expected = oldestInPartition != null ? oldestInPartition : createdDates.get(0);
+			assertEquals(expected, message.getHeaders().get(JdbcChannelMessageStore.CREATED_DATE_KEY));
+			if (oldestInPartition != null) {
+				partitionHits++;
+			}
+			createdDates.remove(expected);
+		}
+		assertEquals(0, payloads.size());
+		// the home partition had at least one message
+		assertTrue(partitionHits > 0);
+	}
+
+	private List<Long> getCreatedDates(JdbcTemplate jdbcTemplate) {
+		return jdbcTemplate.queryForList("SELECT CREATED_DATE from INT_CHANNEL_MESSAGE where REGION = ? "
+				+ "order by CREATED_DATE", Long.class, "AbstractJdbcChannelMessageStoreTests");
+	}
+
+	public void testMessageClaimedByAnotherConsumerIsSkipped() throws Exception {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		final AtomicBoolean claimed = new AtomicBoolean();
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(dataSource) {
+
+			@Override
+			protected Message<?> doPollForMessage(String groupIdKey) {
+				Message<?> message = super.doPollForMessage(groupIdKey);
+				if (message != null && claimed.compareAndSet(false, true)) {
+					// another consumer claims the selected message first
+					jdbcTemplate.update("DELETE from INT_CHANNEL_MESSAGE where MESSAGE_ID = ?",
+							message.getHeaders().getId().toString());
+				}
+				return message;
+			}
+
+		};
+		store.setRegion("AbstractJdbcChannelMessageStoreTests");
+		store.setChannelMessageStoreQueryProvider(queryProvider);
+		store.afterPropertiesSet();
+		for (int i = 0; i < 2; i++) {
+			store.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload(i).build());
+			Thread.sleep(5);
+		}
+		Message<?> message = store.pollMessageFromGroup(TEST_MESSAGE_GROUP);
+		assertNotNull(message);
+		assertEquals(1, message.getPayload());
+		assertNull(store.pollMessageFromGroup(TEST_MESSAGE_GROUP));
+	}
+
+	public void testBatchPollSkipsMessagesClaimedByAnotherConsumer() throws Exception {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		final AtomicInteger polls = new AtomicInteger();
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(dataSource) {
+
+			@Override
+			protected List<Message<?>> doPollForMessages(String groupIdKey, int maxMessages) {
+				List<Message<?>> messages = super.doPollForMessages(groupIdKey, maxMessages);
+				int poll = polls.incrementAndGet();
+				// another consumer claims some (first poll) or all (second poll) of the selected messages first
+				for (int i = 0; i < (poll == 1 ? 1 : poll == 2 ? messages.size() : 0); i++) {
+					jdbcTemplate.update("DELETE from INT_CHANNEL_MESSAGE where MESSAGE_ID = ?",
+							messages.get(i).getHeaders().getId().toString());
+				}
+				return messages;
+			}
+
+		};
+		store.setRegion("AbstractJdbcChannelMessageStoreTests");
+		store.setChannelMessageStoreQueryProvider(queryProvider);
+		store.afterPropertiesSet();
+		for (int i = 0; i < 6; i++) {
+			store.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload(i).build());
+			Thread.sleep(5);
+		}
+		List<Message<?>> messages = store.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 2);
+		assertEquals(1, messages.size());
+		assertEquals(1, messages.get(0).getPayload());
+		messages = store.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 2);
+		assertEquals(3, polls.get());
+		assertEquals(2, messages.size());
+		assertEquals(4, messages.get(0).getPayload());
+		assertEquals(5, messages.get(1).getPayload());
+	}
+
+	public void testPartitionedBatchPoll() throws Exception {
+		final int partitionCount = 2;
+		messageStore.setPartitionCount(partitionCount);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		Set<Long> partitions = new HashSet<Long>();
+		int n = 0;
+		// ensure each partition has messages
+		while (partitions.size() < partitionCount || n < 6) {
+			messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload(n++).build());
+			partitions.clear();
+			for (Long createdDate : this.getCreatedDates(jdbcTemplate)) {
+				partitions.add(createdDate % partitionCount);
+			}
+			Thread.sleep(1);
+		}
+		List<Message<?>> messages = messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, n);
+		assertTrue(messages.size() > 0);
+		assertTrue(messages.size() < n);
+		Set<Long> polledPartitions = new HashSet<Long>();
+		for (Message<?> message : messages) {
+			polledPartitions.add((Long) message.getHeaders().get(JdbcChannelMessageStore.CREATED_DATE_KEY) % partitionCount);
+		}
+		assertEquals(1, polledPartitions.size());
+		assertEquals(n - messages.size(), this.getCreatedDates(jdbcTemplate).size());
+	}
+
+	public void testPriorityPoll() throws Exception {
+		messageStore.setPriorityEnabled(true);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("low").setPriority(-1).build());
+		Thread.sleep(5);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("none1").build());
+		Thread.sleep(5);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("high1").setPriority(5).build());
+		Thread.sleep(5);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("none2").build());
+		Thread.sleep(5);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("high2").setPriority(5).build());
+		assertEquals("high1", messageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP).getPayload());
+		List<Message<?>> messages = messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3);
+		assertEquals(3, messages.size());
+		assertEquals("high2", messages.get(0).getPayload());
+		assertEquals("none1", messages.get(1).getPayload());
+		assertEquals("none2", messages.get(2).getPayload());
+		assertEquals("low", messageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP).getPayload());
+		assertNull(messageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP));
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -50,4 +50,40 @@ public class MySqlJdbcChannelMessageStoreTests extends AbstractJdbcChannelMessag
 		super.testAddAndGet();
 	}
 
+	@Test
+	@Override
+	public void testBatchPoll() throws Exception {
+		super.testBatchPoll();
+	}
+
+	@Test
+	@Override
+	public void testPartitionedPoll() throws Exception {
+		super.testPartitionedPoll();
+	}
+
+	@Test
+	@Override
+	public void testMessageClaimedByAnotherConsumerIsSkipped() throws Exception {
+		super.testMessageClaimedByAnotherConsumerIsSkipped();
+	}
+
+	@Test
+	@Override
+	public void testBatchPollSkipsMessagesClaimedByAnotherConsumer() throws Exception {
+		super.testBatchPollSkipsMessagesClaimedByAnotherConsumer();
+	}
+
+	@Test
+	@Override
+	public void testPartitionedBatchPoll() throws Exception {
+		super.testPartitionedBatchPoll();
+	}
+
+	@Test
+	@Override
+	public void testPriorityPoll() throws Exception {
+		super.testPriorityPoll();
+	}
+
 }
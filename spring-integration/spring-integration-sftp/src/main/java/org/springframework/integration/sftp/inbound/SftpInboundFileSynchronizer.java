@@ -46,4 +46,14 @@ public class SftpInboundFileSynchronizer extends AbstractInboundFileSynchronizer
 		return (file != null ? file.getFilename() : null);
 	}
 
+	@Override
+	protected long getModified(LsEntry file) {
+		return (file != null && file.getAttrs() != null) ? ((long) file.getAttrs().getMTime()) * 1000 : -1;
+	}
+
+	@Override
+	protected long getSize(LsEntry file) {
+		return (file != null && file.getAttrs() != null) ? file.getAttrs().getSize() : -1;
+	}
+
 }
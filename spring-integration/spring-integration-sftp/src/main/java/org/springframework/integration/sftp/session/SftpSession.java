@@ -118,6 +118,30 @@ class SftpSession implements Session<LsEntry> {
 		}
 	}
 
+	public void read(String source, OutputStream os, long offset) throws IOException {
+		Assert.state(this.channel != null, "session is not connected");
+		try {
+			this.channel.get(source, os, null, ChannelSftp.RESUME, offset);
+		}
+		catch (SftpException e) {
+			throw new NestedIOException("failed to read file from offset " + offset, e);
+		}
+	}
+
+	public InputStream readRaw(String source) throws IOException {
+		Assert.state(this.channel != null, "session is not connected");
+		try {
+			return this.channel.get(source);
+		}
+		catch (SftpException e) {
+			throw new NestedIOException("failed to read file", e);
+		}
+	}
+
+	public boolean finalizeRaw() throws IOException {
+		return true;
+	}
+
 	public void write(InputStream inputStream, String destination) throws IOException {
 		Assert.state(this.channel != null, "session is not connected");
 		try {